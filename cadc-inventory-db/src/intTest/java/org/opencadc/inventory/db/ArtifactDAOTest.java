@@ -78,9 +78,11 @@ import ca.nrc.cadc.util.Log4jInit;
 import java.net.URI;
 import java.security.MessageDigest;
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeMap;
@@ -98,6 +100,7 @@ import org.opencadc.inventory.SiteLocation;
 import org.opencadc.inventory.StorageLocation;
 import org.opencadc.inventory.StoredArtifactComparator;
 import org.opencadc.inventory.db.version.InitDatabase;
+import org.springframework.dao.DataIntegrityViolationException;
 
 /**
  *
@@ -839,6 +842,69 @@ public class ArtifactDAOTest {
         }
     }
     
+    @Test
+    public void testUnstoredIteratorLastModified() {
+        int num = 10;
+        try {
+            List<Artifact> unstored = new ArrayList<>();
+            for (int i = 0; i < 2 * num; i++) {
+                Artifact a = new Artifact(
+                        URI.create("cadc:ARCHIVE/filename" + i),
+                        URI.create("md5:d41d8cd98f00b204e9800998ecf8427e"),
+                        new Date(),
+                        666L);
+                if (i % 2 == 0) {
+                    a.storageLocation = new StorageLocation(URI.create("foo:" + UUID.randomUUID()));
+                } else {
+                    unstored.add(a);
+                }
+                originDAO.put(a);
+                Thread.sleep(2L);
+            }
+            
+            // all unstored in lastModified order
+            int count = 0;
+            try (ResourceIterator<Artifact> iter = originDAO.unstoredIterator(null, null)) {
+                Date prev = null;
+                while (iter.hasNext()) {
+                    Artifact a = iter.next();
+                    Assert.assertNull(a.storageLocation);
+                    if (prev != null) {
+                        Assert.assertTrue("order", !prev.after(a.getLastModified()));
+                    }
+                    prev = a.getLastModified();
+                    count++;
+                }
+            }
+            Assert.assertEquals("count", num, count);
+            
+            // resume from a high-water mark: inclusive
+            Artifact hwm = unstored.get(num / 2);
+            List<Artifact> found = new ArrayList<>();
+            try (ResourceIterator<Artifact> iter = originDAO.unstoredIterator(null, hwm.getLastModified())) {
+                while (iter.hasNext()) {
+                    found.add(iter.next());
+                }
+            }
+            Assert.assertEquals("resume count", num - num / 2, found.size());
+            Assert.assertEquals(hwm.getID(), found.get(0).getID());
+            Assert.assertEquals(unstored.get(num - 1).getID(), found.get(found.size() - 1).getID());
+            
+            // combined with bucket prefix
+            String prefix = hwm.getBucket().substring(0, 1);
+            try (ResourceIterator<Artifact> iter = originDAO.unstoredIterator(prefix, hwm.getLastModified())) {
+                while (iter.hasNext()) {
+                    Artifact a = iter.next();
+                    Assert.assertTrue("prefix match", a.getBucket().startsWith(prefix));
+                    Assert.assertFalse("lastModified", a.getLastModified().before(hwm.getLastModified()));
+                }
+            }
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
     @Test
     public void testIteratorDelete() {
         int num = 10;
@@ -1092,6 +1158,83 @@ public class ArtifactDAOTest {
         }
     }
     
+    @Test
+    public void testBucketDigest() {
+        int num = 10;
+        try {
+            BucketDigest empty = originDAO.getBucketDigest(null, null);
+            Assert.assertEquals("empty", 0L, empty.getNumArtifacts());
+            Assert.assertEquals("empty", 0L, empty.getDigest());
+            
+            UUID siteID = UUID.randomUUID();
+            List<Artifact> artifacts = new ArrayList<>();
+            for (int i = 0; i < 2 * num; i++) {
+                Artifact a = new Artifact(
+                        URI.create("cadc:STUFF/filename" + i),
+                        URI.create("md5:d41d8cd98f00b204e9800998ecf8427e"),
+                        new Date(),
+                        666L);
+                if (i < num) {
+                    a.siteLocations.add(new SiteLocation(siteID));
+                }
+                originDAO.put(a);
+                artifacts.add(a);
+            }
+            
+            BucketDigest all = originDAO.getBucketDigest(null, null);
+            log.info("all: " + all);
+            Assert.assertEquals("count", 2 * num, all.getNumArtifacts());
+            
+            BucketDigest site = originDAO.getBucketDigest(siteID, null);
+            log.info("site: " + site);
+            Assert.assertEquals("count", num, site.getNumArtifacts());
+            
+            // bucket digests add up to the total
+            Map<String, BucketDigest> buckets = new TreeMap<>();
+            long count = 0L;
+            long sum = 0L;
+            for (byte b = 0; b < 16; b++) {
+                String bpre = HexUtil.toHex(b).substring(1);
+                BucketDigest bd = originDAO.getBucketDigest(null, bpre);
+                Assert.assertEquals(bpre, bd.getBucket());
+                buckets.put(bpre, bd);
+                count += bd.getNumArtifacts();
+                sum += bd.getDigest();
+            }
+            Assert.assertEquals("count", all.getNumArtifacts(), count);
+            Assert.assertEquals("digest", all.getDigest(), sum);
+            
+            // replace one artifact with different metadata: same count, different digest
+            Artifact orig = artifacts.get(num);
+            String bucket = orig.getBucket().substring(0, 1);
+            originDAO.delete(orig.getID());
+            Artifact replacement = new Artifact(orig.getURI(), orig.getContentChecksum(), orig.getContentLastModified(), 
+                    orig.getContentLength());
+            originDAO.put(replacement);
+            
+            BucketDigest modified = originDAO.getBucketDigest(null, bucket);
+            log.info("modified: " + modified);
+            Assert.assertEquals("count", buckets.get(bucket).getNumArtifacts(), modified.getNumArtifacts());
+            Assert.assertNotEquals("digest", buckets.get(bucket), modified);
+            Assert.assertEquals("other site", site, originDAO.getBucketDigest(siteID, null));
+            for (Map.Entry<String, BucketDigest> me : buckets.entrySet()) {
+                if (!bucket.equals(me.getKey())) {
+                    Assert.assertEquals("unmodified", me.getValue(), originDAO.getBucketDigest(null, me.getKey()));
+                }
+            }
+            
+            // restore the original: same digest
+            originDAO.delete(replacement.getID());
+            originDAO.put(orig);
+            Assert.assertEquals("restored", buckets.get(bucket), originDAO.getBucketDigest(null, bucket));
+            Assert.assertEquals("restored", all, originDAO.getBucketDigest(null, null));
+            
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
     private class LastModifiedComparator implements Comparator<Artifact> {
 
         @Override
@@ -1099,4 +1242,139 @@ public class ArtifactDAOTest {
             return lhs.getLastModified().compareTo(rhs.getLastModified());
         }
     }
+
+    @Test
+    public void testPutAll() {
+        int num = 2 * AbstractDAO.BATCH_SIZE + 10; // multiple batches
+        try {
+            List<Artifact> artifacts = new ArrayList<>();
+            for (int i = 0; i < num; i++) {
+                Artifact a = new Artifact(
+                        URI.create("cadc:ARCHIVE/filename" + i),
+                        URI.create("md5:d41d8cd98f00b204e9800998ecf8427e"),
+                        new Date(),
+                        666L);
+                artifacts.add(a);
+            }
+            originDAO.putAll(artifacts);
+            
+            // origin: database assigns lastModified
+            for (Artifact expected : artifacts) {
+                Assert.assertNotNull(expected.getLastModified());
+                Assert.assertNotNull(expected.getMetaChecksum());
+                Artifact actual = originDAO.get(expected.getID());
+                Assert.assertNotNull(actual);
+                Assert.assertEquals(expected.getURI(), actual.getURI());
+                Assert.assertEquals(expected.getLastModified(), actual.getLastModified());
+                Assert.assertEquals(expected.getMetaChecksum(), actual.getMetaChecksum());
+            }
+            
+            // no change: no update
+            Artifact first = artifacts.get(0);
+            final Date unchanged = first.getLastModified();
+            Thread.sleep(10L);
+            originDAO.putAll(artifacts);
+            Assert.assertEquals(unchanged, originDAO.get(first.getID()).getLastModified());
+            
+            // no change with a fresh instance: current lastModified is assigned
+            Artifact copy = new Artifact(first.getID(), first.getURI(), first.getContentChecksum(), 
+                    first.getContentLastModified(), first.getContentLength());
+            Assert.assertNull(copy.getLastModified());
+            List<Artifact> copies = new ArrayList<>();
+            copies.add(copy);
+            originDAO.putAll(copies);
+            Assert.assertEquals(unchanged, copy.getLastModified());
+            
+            // Artifact.uri collision: only the conflicting artifact fails
+            Artifact dupe = new Artifact(first.getURI(), first.getContentChecksum(), new Date(), 666L);
+            Artifact ok = new Artifact(URI.create("cadc:ARCHIVE/filename-ok"), first.getContentChecksum(), new Date(), 666L);
+            List<Artifact> conflict = new ArrayList<>();
+            conflict.add(dupe);
+            conflict.add(ok);
+            try {
+                originDAO.putAll(conflict);
+                Assert.fail("expected DataIntegrityViolationException");
+            } catch (DataIntegrityViolationException expected) {
+                log.info("caught expected: " + expected);
+            }
+            Assert.assertNull(originDAO.get(dupe.getID()));
+            Artifact okActual = originDAO.get(ok.getID());
+            Assert.assertNotNull(okActual);
+            Assert.assertEquals(ok.getLastModified(), okActual.getLastModified());
+            originDAO.delete(ok.getID());
+            
+            // metadata change: update with new lastModified
+            first.contentType = "text/plain";
+            Artifact second = artifacts.get(1);
+            originDAO.putAll(artifacts);
+            Artifact actual = originDAO.get(first.getID());
+            Assert.assertEquals("text/plain", actual.contentType);
+            Assert.assertEquals(first.getMetaChecksum(), actual.getMetaChecksum());
+            Assert.assertTrue(unchanged.before(actual.getLastModified()));
+            Assert.assertEquals(first.getLastModified(), actual.getLastModified());
+            Assert.assertEquals(second.getLastModified(), originDAO.get(second.getID()).getLastModified());
+            
+            // extended update: storageLocation is not part of metaChecksum
+            second.storageLocation = new StorageLocation(URI.create("foo:" + UUID.randomUUID()));
+            originDAO.putAll(artifacts, true);
+            actual = originDAO.get(second.getID());
+            Assert.assertNotNull(actual.storageLocation);
+            Assert.assertEquals(second.storageLocation.getStorageID(), actual.storageLocation.getStorageID());
+            Assert.assertEquals(second.getLastModified(), actual.getLastModified());
+            
+            // non-origin: lastModified from the entity
+            Date remoteLastModified = new Date(unchanged.getTime() - 3600 * 1000L);
+            InventoryUtil.assignLastModified(second, remoteLastModified);
+            List<Artifact> remote = new ArrayList<>();
+            remote.add(second);
+            nonOriginDAO.putAll(remote);
+            actual = originDAO.get(second.getID());
+            Assert.assertEquals(remoteLastModified, actual.getLastModified());
+            
+            for (Artifact a : artifacts) {
+                originDAO.delete(a.getID());
+            }
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testGetAll() {
+        int num = AbstractDAO.BATCH_SIZE + 10; // multiple batches
+        try {
+            List<Artifact> artifacts = new ArrayList<>();
+            List<URI> uris = new ArrayList<>();
+            for (int i = 0; i < num; i++) {
+                Artifact a = new Artifact(
+                        URI.create("cadc:ARCHIVE/filename" + i),
+                        URI.create("md5:d41d8cd98f00b204e9800998ecf8427e"),
+                        new Date(),
+                        666L);
+                artifacts.add(a);
+                uris.add(a.getURI());
+            }
+            originDAO.putAll(artifacts);
+            
+            // some not found
+            uris.add(URI.create("cadc:ARCHIVE/not-found-1"));
+            uris.add(URI.create("cadc:ARCHIVE/not-found-2"));
+            
+            Map<URI, Artifact> actual = originDAO.getAll(uris);
+            Assert.assertEquals(num, actual.size());
+            for (Artifact expected : artifacts) {
+                Artifact a = actual.get(expected.getURI());
+                Assert.assertNotNull(expected.getURI().toASCIIString(), a);
+                Assert.assertEquals(expected.getID(), a.getID());
+                Assert.assertEquals(expected.getMetaChecksum(), a.getMetaChecksum());
+            }
+            
+            actual = originDAO.getAll(new ArrayList<>());
+            Assert.assertTrue(actual.isEmpty());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
 }
@@ -75,6 +75,7 @@ import ca.nrc.cadc.util.Log4jInit;
 import java.net.URI;
 import java.security.MessageDigest;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
@@ -240,6 +241,44 @@ public class HarvestStateDAOTest {
         }
     }
     
+    @Test
+    public void testListByPrefix() {
+        try {
+            final String prefix = HarvestStateDAOTest.class.getSimpleName() + ":";
+            HarvestState hs1 = new HarvestState(prefix + "a", RID);
+            hs1.curID = UUID.randomUUID();
+            dao.put(hs1);
+            HarvestState hs2 = new HarvestState(prefix + "b", RID);
+            hs2.curID = UUID.randomUUID();
+            dao.put(hs2);
+            HarvestState other = new HarvestState(HarvestStateDAOTest.class.getSimpleName(), RID);
+            dao.put(other);
+            HarvestState otherSource = new HarvestState(prefix + "c", URI.create("ivo://cadc.nrc.ca/other"));
+            dao.put(otherSource);
+            
+            List<HarvestState> found = dao.list(prefix, RID);
+            log.info("found: " + found.size());
+            Assert.assertEquals(2, found.size());
+            for (HarvestState hs : found) {
+                Assert.assertTrue(hs.getName().startsWith(prefix));
+                Assert.assertEquals(RID, hs.getResourceID());
+                if (hs.getID().equals(hs1.getID())) {
+                    Assert.assertEquals(hs1.curID, hs.curID);
+                } else {
+                    Assert.assertEquals(hs2.getID(), hs.getID());
+                    Assert.assertEquals(hs2.curID, hs.curID);
+                }
+            }
+            
+            List<HarvestState> none = dao.list(prefix + "x", RID);
+            Assert.assertTrue(none.isEmpty());
+            
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
     @Test
     public void testRenameSelf() {
         try {
@@ -74,7 +74,10 @@ import ca.nrc.cadc.db.DBUtil;
 import ca.nrc.cadc.util.Log4jInit;
 import java.net.URI;
 import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
 import javax.sql.DataSource;
@@ -234,4 +237,97 @@ public class ObsoleteStorageLocationDAOTest {
             Assert.fail("unexpected exception: " + unexpected);
         }
     }
+    
+    @Test
+    public void testList() {
+        try {
+            List<ObsoleteStorageLocation> empty = dao.list(10);
+            Assert.assertNotNull(empty);
+            Assert.assertTrue(empty.isEmpty());
+            
+            for (int i = 0; i < 5; i++) {
+                StorageLocation loc = new StorageLocation(URI.create("uuid:" + UUID.randomUUID()));
+                loc.storageBucket = "abc";
+                dao.put(new ObsoleteStorageLocation(loc));
+                Thread.sleep(10L);
+            }
+            
+            List<ObsoleteStorageLocation> first = dao.list(3);
+            Assert.assertEquals(3, first.size());
+            for (int i = 1; i < first.size(); i++) {
+                ObsoleteStorageLocation prev = first.get(i - 1);
+                ObsoleteStorageLocation cur = first.get(i);
+                Assert.assertFalse("oldest first", cur.getLastModified().before(prev.getLastModified()));
+                Assert.assertEquals("abc", cur.getLocation().storageBucket);
+            }
+            
+            for (ObsoleteStorageLocation o : first) {
+                dao.delete(o.getID());
+            }
+            List<ObsoleteStorageLocation> rest = dao.list(10);
+            Assert.assertEquals(2, rest.size());
+            for (ObsoleteStorageLocation o : rest) {
+                Assert.assertTrue(o.getLastModified().compareTo(first.get(2).getLastModified()) >= 0);
+            }
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testListAfter() {
+        try {
+            Set<UUID> all = new HashSet<>();
+            for (int i = 0; i < 7; i++) {
+                StorageLocation loc = new StorageLocation(URI.create("uuid:" + UUID.randomUUID()));
+                loc.storageBucket = "abc";
+                ObsoleteStorageLocation osl = new ObsoleteStorageLocation(loc);
+                dao.put(osl);
+                all.add(osl.getID());
+            }
+            
+            // keyset paging visits every row once
+            Set<UUID> found = new HashSet<>();
+            ObsoleteStorageLocation after = null;
+            int pages = 0;
+            List<ObsoleteStorageLocation> page = dao.list(3, after);
+            while (!page.isEmpty()) {
+                pages++;
+                for (ObsoleteStorageLocation o : page) {
+                    Assert.assertTrue("duplicate: " + o.getID(), found.add(o.getID()));
+                }
+                after = page.get(page.size() - 1);
+                page = dao.list(3, after);
+            }
+            Assert.assertEquals(3, pages);
+            Assert.assertEquals(all, found);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testListByBucketPrefix() {
+        try {
+            String[] buckets = new String[] { "abc", "abd", "bcd" };
+            for (String b : buckets) {
+                StorageLocation loc = new StorageLocation(URI.create("uuid:" + UUID.randomUUID()));
+                loc.storageBucket = b;
+                dao.put(new ObsoleteStorageLocation(loc));
+            }
+            
+            Assert.assertEquals(3, dao.list((String) null).size());
+            Assert.assertEquals(2, dao.list("ab").size());
+            List<ObsoleteStorageLocation> abc = dao.list("abc");
+            Assert.assertEquals(1, abc.size());
+            Assert.assertEquals("abc", abc.get(0).getLocation().storageBucket);
+            Assert.assertTrue(dao.list("c").isEmpty());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
 }
@@ -78,8 +78,13 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
@@ -88,9 +93,11 @@ import javax.sql.DataSource;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.Entity;
 import org.opencadc.inventory.InventoryUtil;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  *
@@ -101,6 +108,9 @@ public abstract class AbstractDAO<T extends Entity> {
 
     private static final Logger log = Logger.getLogger(AbstractDAO.class);
 
+    // max number of rows in a single batch upsert statement
+    static final int BATCH_SIZE = 1000;
+
     protected SQLGenerator gen;
     protected DataSource dataSource;
     
@@ -357,6 +367,108 @@ public abstract class AbstractDAO<T extends Entity> {
         }
     }
     
+    /**
+     * Insert or update multiple entities. The entities are written in batches using
+     * a single upsert statement per batch, so the per-entity skeleton get and current
+     * time query done by put(T) are not needed. For origin=true, lastModified is assigned
+     * by the database for new entities and for entities with a metaChecksum change and
+     * the assigned value is copied back into the entity; unchanged entities get the current
+     * lastModified. For origin=false, all entities must have a lastModified value.
+     * 
+     * <p>If a batch fails with a constraint violation (e.g. Artifact.uri collision) and there is
+     * no enclosing transaction, the entities of that batch are written one at a time with 
+     * put so only the conflicting entities fail; the first failure is thrown after all 
+     * entities have been tried.
+     *
+     * @param vals entities to insert or update
+     */
+    public void putAll(Collection<T> vals) {
+        putAll(vals, false);
+    }
+
+    protected void putAll(Collection<T> vals, boolean extendedUpdate) {
+        if (vals == null) {
+            throw new IllegalArgumentException("entity collection cannot be null");
+        }
+        checkInit();
+        if (vals.isEmpty()) {
+            return;
+        }
+        log.debug("PUT-ALL: " + vals.size() + " force=" + extendedUpdate);
+        long t = System.currentTimeMillis();
+
+        // a single upsert cannot affect the same row twice: last value wins
+        Map<UUID, T> batch = new LinkedHashMap<>();
+        Class entityClass = null;
+        MessageDigest digest = getDigest();
+        for (T val : vals) {
+            if (val == null) {
+                throw new IllegalArgumentException("entity cannot be null");
+            }
+            if (entityClass == null) {
+                entityClass = val.getClass();
+            } else if (!entityClass.equals(val.getClass())) {
+                throw new IllegalArgumentException("cannot mix entity types: "
+                        + entityClass.getSimpleName() + " and " + val.getClass().getSimpleName());
+            }
+            if (!origin && val.getLastModified() == null) {
+                throw new IllegalArgumentException("lastModified cannot be null with origin=false: " + val.getID());
+            }
+            InventoryUtil.assignMetaChecksum(val, val.computeMetaChecksum(digest));
+            batch.remove(val.getID());
+            batch.put(val.getID(), val);
+        }
+
+        DataIntegrityViolationException firstFail = null;
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            List<T> chunk = new ArrayList<>(BATCH_SIZE);
+            Iterator<T> iter = batch.values().iterator();
+            while (iter.hasNext()) {
+                chunk.add(iter.next());
+                if (chunk.size() == BATCH_SIZE || !iter.hasNext()) {
+                    EntityBatchPut put = gen.getEntityBatchPut(entityClass, origin, extendedUpdate);
+                    put.setValues(chunk);
+                    try {
+                        Map<UUID, Date> current = put.execute(jdbc);
+                        log.debug("PUT-ALL: " + chunk.size() + " current: " + current.size());
+                        for (T val : chunk) {
+                            Date lastModified = current.get(val.getID());
+                            if (lastModified != null) {
+                                InventoryUtil.assignLastModified(val, lastModified);
+                            }
+                        }
+                    } catch (DataIntegrityViolationException ex) {
+                        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                            // failed statement aborts the enclosing transaction
+                            throw ex;
+                        }
+                        log.debug("PUT-ALL: batch failed, fallback to put: " + ex);
+                        for (T val : chunk) {
+                            try {
+                                put(val, extendedUpdate, false);
+                            } catch (DataIntegrityViolationException rex) {
+                                log.debug("PUT-ALL: put failed: " + val.getID() + " " + rex);
+                                if (firstFail == null) {
+                                    firstFail = rex;
+                                }
+                            }
+                        }
+                    }
+                    chunk = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        } catch (BadSqlGrammarException ex) {
+            handleInternalFail(ex);
+        } finally {
+            long dt = System.currentTimeMillis() - t;
+            log.debug("PUT-ALL: " + batch.size() + " " + dt + "ms");
+        }
+        if (firstFail != null) {
+            throw firstFail;
+        }
+    }
+
     protected void delete(Class entityClass, UUID id) {
         if (id == null) {
             throw new IllegalArgumentException("id cannot be null");
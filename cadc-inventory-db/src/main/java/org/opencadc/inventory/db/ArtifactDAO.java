@@ -69,6 +69,13 @@ package org.opencadc.inventory.db;
 
 import ca.nrc.cadc.io.ResourceIterator;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.Artifact;
@@ -124,6 +131,49 @@ public class ArtifactDAO extends AbstractDAO<Artifact> {
         throw new RuntimeException("BUG: should be unreachable");
     }
 
+    /**
+     * Get multiple artifacts by URI. The lookup is done in batches with one query per
+     * batch. URIs that do not match an artifact are not included in the result.
+     * 
+     * <p>Use case: bulk transfer negotiation
+     * 
+     * @param uris artifact URIs
+     * @return map of artifact URI to artifact
+     */
+    public Map<URI, Artifact> getAll(Collection<URI> uris) {
+        if (uris == null) {
+            throw new IllegalArgumentException("uris cannot be null");
+        }
+        checkInit();
+        log.debug("getAll: " + uris.size());
+        long t = System.currentTimeMillis();
+
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            Map<URI, Artifact> ret = new HashMap<>();
+            List<URI> chunk = new ArrayList<>(BATCH_SIZE);
+            Iterator<URI> iter = uris.iterator();
+            while (iter.hasNext()) {
+                chunk.add(iter.next());
+                if (chunk.size() == BATCH_SIZE || !iter.hasNext()) {
+                    SQLGenerator.ArtifactListGet get = gen.getArtifactListGet();
+                    get.setURIs(chunk);
+                    for (Artifact a : get.execute(jdbc)) {
+                        ret.put(a.getURI(), a);
+                    }
+                    chunk.clear();
+                }
+            }
+            return ret;
+        } catch (BadSqlGrammarException ex) {
+            handleInternalFail(ex);
+        } finally {
+            long dt = System.currentTimeMillis() - t;
+            log.debug("getAll: " + uris.size() + " " + dt + "ms");
+        }
+        throw new RuntimeException("BUG: should be unreachable");
+    }
+
     // delete an artifact, all SiteLocation(s), and StorageLocation
     // caller must also fire an appropriate event via DeletedEventDAO in same txn
     // unless performing this delete in reaction to such an event
@@ -135,6 +185,20 @@ public class ArtifactDAO extends AbstractDAO<Artifact> {
         return super.lock(Artifact.class, id);
     }
     
+    /**
+     * Insert or update multiple artifacts in batches. The siteLocations and storageLocation
+     * are not included in the metaChecksum so a change to those requires extendedUpdate=true.
+     *
+     * <p>Use case: metadata-sync applying many remote artifacts
+     *
+     * @param artifacts artifacts to insert or update
+     * @param extendedUpdate true to write all existing artifacts, false to only write
+     *     artifacts with a metadata change
+     */
+    public void putAll(Collection<Artifact> artifacts, boolean extendedUpdate) {
+        super.putAll(artifacts, extendedUpdate);
+    }
+
     // used by file-sync and file-validate to track local copy in storage
     public void setStorageLocation(Artifact a, StorageLocation loc) {
         if (!origin) {
@@ -230,6 +294,41 @@ public class ArtifactDAO extends AbstractDAO<Artifact> {
         throw new RuntimeException("BUG: should be unreachable");
     }
     
+    /**
+     * Iterate over Artifacts with no StorageLocation and lastModified at or after the 
+     * specified timestamp. The iteration is ordered by Artifact.lastModified so callers
+     * can resume from the lastModified of the last artifact seen.
+     * 
+     * <p>Use case: implement incremental file-sync
+     * 
+     * @param uriBucketPrefix null, prefix, or complete Artifact.uriBucket string
+     * @param minLastModified minimum lastModified timestamp (null: all)
+     * @return iterator over artifacts without a StorageLocation
+     */
+    public ResourceIterator<Artifact> unstoredIterator(String uriBucketPrefix, Date minLastModified) {
+        checkInit();
+        long t = System.currentTimeMillis();
+
+        try {
+            SQLGenerator.ArtifactIteratorQuery iter = (SQLGenerator.ArtifactIteratorQuery) gen.getEntityIteratorQuery(Artifact.class);
+            iter.setStorageLocationRequired(false);
+            iter.setOrderedOutput(true);
+            iter.setPrefix(uriBucketPrefix);
+            if (minLastModified != null) {
+                iter.setMinLastModified(minLastModified);
+            } else {
+                iter.setMinLastModified(new Date(0L));
+            }
+            return iter.query(dataSource);
+        } catch (BadSqlGrammarException ex) {
+            handleInternalFail(ex);
+        } finally {
+            long dt = System.currentTimeMillis() - t;
+            log.debug("iterator: " + dt + "ms");
+        }
+        throw new RuntimeException("BUG: should be unreachable");
+    }
+    
     /**
      * Iterate over Artifacts.
      * 
@@ -304,4 +403,33 @@ public class ArtifactDAO extends AbstractDAO<Artifact> {
         }
         throw new RuntimeException("BUG: should be unreachable");
     }
+    
+    /**
+     * Compute an order-independent digest of the artifacts in a uri bucket. The artifacts
+     * included are the same as iterator(siteID, uriBucketPrefix, ordered).
+     * 
+     * <p>Use case: metadata validation can skip buckets where the local and remote digests match
+     * 
+     * @param siteID optional siteID to restrict artifacts to those in a site
+     * @param uriBucketPrefix optional uri bucket prefix
+     * @return digest of artifacts in the bucket
+     */
+    public BucketDigest getBucketDigest(UUID siteID, String uriBucketPrefix) {
+        checkInit();
+        long t = System.currentTimeMillis();
+
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            SQLGenerator.ArtifactBucketDigest digest = gen.getArtifactBucketDigest();
+            digest.setPrefix(uriBucketPrefix);
+            digest.setSiteID(siteID);
+            return digest.execute(jdbc);
+        } catch (BadSqlGrammarException ex) {
+            handleInternalFail(ex);
+        } finally {
+            long dt = System.currentTimeMillis() - t;
+            log.debug("getBucketDigest: " + uriBucketPrefix + " " + dt + "ms");
+        }
+        throw new RuntimeException("BUG: should be unreachable");
+    }
 }
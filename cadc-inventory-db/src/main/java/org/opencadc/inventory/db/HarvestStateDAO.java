@@ -69,6 +69,7 @@ package org.opencadc.inventory.db;
 
 import java.net.URI;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.UUID;
 import org.apache.log4j.Logger;
 import org.springframework.jdbc.BadSqlGrammarException;
@@ -174,6 +175,36 @@ public class HarvestStateDAO extends AbstractDAO<HarvestState> {
         throw new RuntimeException("BUG: should be unreachable");
     }
 
+    /**
+     * List HarvestState(s) for the specified resourceID with names that start with the specified
+     * prefix. This supports callers that keep one state per item (e.g. per open transaction).
+     * 
+     * @param namePrefix prefix of the name of the entity being harvested
+     * @param resourceID source of entities
+     * @return list of matching HarvestState, possibly empty
+     */
+    public List<HarvestState> list(String namePrefix, URI resourceID) {
+        if (namePrefix == null || resourceID == null) {
+            throw new IllegalArgumentException("namePrefix and resourceID cannot be null");
+        }
+        checkInit();
+        log.debug("LIST: " + namePrefix + " " + resourceID);
+        long t = System.currentTimeMillis();
+
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            SQLGenerator.HarvestStateList list = gen.getHarvestStateList();
+            list.setSource(namePrefix, resourceID);
+            return list.execute(jdbc);
+        } catch (BadSqlGrammarException ex) {
+            handleInternalFail(ex);
+        } finally {
+            long dt = System.currentTimeMillis() - t;
+            log.debug("LIST: " + namePrefix + " " + resourceID + " " + dt + "ms");
+        }
+        throw new RuntimeException("BUG: should be unreachable");
+    }
+
     @Override
     public void put(HarvestState val) {
         if (curBufferCount < updateBufferCount) {
@@ -67,10 +67,12 @@
 
 package org.opencadc.inventory.db;
 
+import java.util.List;
 import java.util.UUID;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.ObsoleteStorageLocation;
 import org.opencadc.inventory.StorageLocation;
+import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 /**
@@ -114,6 +116,76 @@ public class ObsoleteStorageLocationDAO extends AbstractDAO<ObsoleteStorageLocat
         }
     }
 
+    /**
+     * List obsolete storage locations, oldest first (same as list(maxRecords, null)).
+     * 
+     * <p>Use case: background removal of obsolete stored objects
+     * 
+     * @param maxRecords max number of locations to return
+     * @return list of obsolete storage locations
+     */
+    public List<ObsoleteStorageLocation> list(int maxRecords) {
+        return list(maxRecords, null);
+    }
+    
+    /**
+     * List obsolete storage locations in (lastModified, id) order, starting after the specified 
+     * location. This supports paging through the table with a keyset cursor.
+     * 
+     * <p>Use case: background removal of obsolete stored objects
+     * 
+     * @param maxRecords max number of locations to return
+     * @param after last location of the previous page, null to start with the oldest
+     * @return list of obsolete storage locations
+     */
+    public List<ObsoleteStorageLocation> list(int maxRecords, ObsoleteStorageLocation after) {
+        checkInit();
+        log.debug("LIST: " + maxRecords + " after " + after);
+        long t = System.currentTimeMillis();
+
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            SQLGenerator.ObsoleteStorageLocationList list = gen.getObsoleteStorageLocationList();
+            list.setMaxRecords(maxRecords);
+            list.setAfter(after);
+            return list.execute(jdbc);
+        } catch (BadSqlGrammarException ex) {
+            handleInternalFail(ex);
+        } finally {
+            long dt = System.currentTimeMillis() - t;
+            log.debug("LIST: " + maxRecords + " " + dt + "ms");
+        }
+        throw new RuntimeException("BUG: should be unreachable");
+    }
+
+    /**
+     * List obsolete storage locations with the specified bucket prefix.
+     * 
+     * <p>Use case: file validation loads the (normally small) set of obsolete
+     * locations for a bucket instead of querying once per stored object
+     * 
+     * @param bucketPrefix storageBucket prefix, null or empty for all
+     * @return list of obsolete storage locations
+     */
+    public List<ObsoleteStorageLocation> list(String bucketPrefix) {
+        checkInit();
+        log.debug("LIST: " + bucketPrefix);
+        long t = System.currentTimeMillis();
+
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            SQLGenerator.ObsoleteStorageLocationList list = gen.getObsoleteStorageLocationList();
+            list.setBucketPrefix(bucketPrefix);
+            return list.execute(jdbc);
+        } catch (BadSqlGrammarException ex) {
+            handleInternalFail(ex);
+        } finally {
+            long dt = System.currentTimeMillis() - t;
+            log.debug("LIST: " + bucketPrefix + " " + dt + "ms");
+        }
+        throw new RuntimeException("BUG: should be unreachable");
+    }
+
     public void delete(UUID id) {
         super.delete(ObsoleteStorageLocation.class, id);
     }
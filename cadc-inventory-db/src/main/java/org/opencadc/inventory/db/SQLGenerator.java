@@ -78,7 +78,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
@@ -101,7 +103,9 @@ import org.opencadc.inventory.StorageLocationEvent;
 import org.opencadc.inventory.StorageSite;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 
 /**
@@ -257,6 +261,22 @@ public class SQLGenerator {
         throw new UnsupportedOperationException("entity-get: " + c.getName());
     }
     
+    public ArtifactListGet getArtifactListGet() {
+        return new ArtifactListGet();
+    }
+    
+    public ObsoleteStorageLocationList getObsoleteStorageLocationList() {
+        return new ObsoleteStorageLocationList();
+    }
+    
+    public ArtifactBucketDigest getArtifactBucketDigest() {
+        return new ArtifactBucketDigest();
+    }
+    
+    public HarvestStateList getHarvestStateList() {
+        return new HarvestStateList();
+    }
+    
     public EntityIteratorQuery getEntityIteratorQuery(Class c) {
         if (Artifact.class.equals(c)) {
             return new ArtifactIteratorQuery();
@@ -307,7 +327,28 @@ public class SQLGenerator {
         }
         throw new UnsupportedOperationException("entity-put: " + c.getName());
     }
-    
+
+    /**
+     * Get a batch upsert for the specified entity class. With origin=true, the database
+     * assigns lastModified to inserted rows and to updated rows with a metaChecksum change;
+     * otherwise the lastModified value of the entity is stored.
+     *
+     * @param c entity class
+     * @param origin true if lastModified should be assigned by the database
+     * @param extendedUpdate true to update all existing rows, false to only update rows
+     *     with a metaChecksum (or non-origin lastModified) change
+     * @return batch put
+     */
+    public EntityBatchPut getEntityBatchPut(Class c, boolean origin, boolean extendedUpdate) {
+        if (Artifact.class.equals(c)
+                || DeletedArtifactEvent.class.equals(c)
+                || DeletedStorageLocationEvent.class.equals(c)
+                || StorageLocationEvent.class.equals(c)) {
+            return new EntityBatchPutImpl(c, origin, extendedUpdate);
+        }
+        throw new UnsupportedOperationException("entity-batch-put: " + c.getName());
+    }
+
     public EntityDelete getEntityDelete(Class c) {
         return new EntityDeleteImpl(c);
     }
@@ -467,6 +508,133 @@ public class SQLGenerator {
         }
     }
     
+    // used directly in ObsoleteStorageLocationDAO
+    class ObsoleteStorageLocationList implements PreparedStatementCreator {
+        private Integer maxRecords;
+        private String bucketPrefix;
+        private ObsoleteStorageLocation after;
+        private final Calendar utc = Calendar.getInstance(DateUtil.UTC);
+        
+        public void setMaxRecords(Integer maxRecords) {
+            this.maxRecords = maxRecords;
+        }
+
+        /**
+         * Only include locations after the specified one in (lastModified, id) order.
+         * 
+         * @param after last location of the previous page
+         */
+        public void setAfter(ObsoleteStorageLocation after) {
+            this.after = after;
+        }
+
+        public void setBucketPrefix(String bucketPrefix) {
+            this.bucketPrefix = bucketPrefix;
+        }
+        
+        public List<ObsoleteStorageLocation> execute(JdbcTemplate jdbc) {
+            return jdbc.query(this, new ObsoleteStorageLocationRowMapper());
+        }
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection conn) throws SQLException {
+            StringBuilder sb = getSelectFromSQL(ObsoleteStorageLocation.class, false);
+            String[] cols = columnMap.get(ObsoleteStorageLocation.class);
+            String pk = cols[cols.length - 1];
+            String and = " WHERE ";
+            if (StringUtil.hasText(bucketPrefix)) {
+                sb.append(and).append(cols[1]).append(" LIKE ?");
+                and = " AND ";
+            }
+            if (after != null) {
+                // keyset paging
+                sb.append(and).append("(").append(cols[2]).append(",").append(pk).append(") > (?,?)");
+            }
+            sb.append(" ORDER BY ").append(cols[2]).append(",").append(pk);
+            if (maxRecords != null) {
+                sb.append(" LIMIT ?");
+            }
+            String sql = sb.toString();
+            log.debug("ObsoleteStorageLocationList: " + sql);
+            PreparedStatement prep = conn.prepareStatement(sql);
+            int col = 1;
+            if (StringUtil.hasText(bucketPrefix)) {
+                prep.setString(col++, bucketPrefix + "%");
+            }
+            if (after != null) {
+                prep.setTimestamp(col++, new Timestamp(after.getLastModified().getTime()), utc);
+                prep.setObject(col++, after.getID());
+            }
+            if (maxRecords != null) {
+                prep.setInt(col++, maxRecords);
+            }
+            return prep;
+        }
+    }
+    
+    class ArtifactBucketDigest implements PreparedStatementCreator {
+        private String prefix;
+        private UUID siteID;
+        
+        public void setPrefix(String prefix) {
+            if (StringUtil.hasText(prefix)) {
+                this.prefix = prefix.trim();
+            } else {
+                this.prefix = null;
+            }
+        }
+
+        public void setSiteID(UUID siteID) {
+            this.siteID = siteID;
+        }
+        
+        public BucketDigest execute(JdbcTemplate jdbc) {
+            List<BucketDigest> result = jdbc.query(this, (ResultSet rs, int rowNum) -> {
+                // sum() is null when there are no rows
+                return new BucketDigest(prefix, rs.getLong(1), rs.getLong(2));
+            });
+            return result.get(0);
+        }
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection conn) throws SQLException {
+            // same artifacts as ArtifactIteratorQuery with prefix and siteID
+            // must match the luskan meta_digest() function: first 56 bits of md5(metaChecksum)
+            // summed as numeric and reduced mod 2^63-1 so the result fits in a bigint
+            StringBuilder sb = new StringBuilder();
+            sb.append("SELECT count(*), mod(sum(");
+            for (int i = 0; i < 7; i++) {
+                if (i > 0) {
+                    sb.append(" + ");
+                }
+                sb.append("get_byte(decode(md5(metaChecksum), 'hex'), ").append(i).append(")");
+                int shift = 8 * (6 - i);
+                if (shift > 0) {
+                    sb.append(" * ").append(1L << shift);
+                }
+            }
+            sb.append("), ").append(Long.MAX_VALUE).append(") FROM ").append(tableMap.get(Artifact.class));
+            if (prefix != null && siteID != null) {
+                sb.append(" WHERE uriBucket LIKE ? AND siteLocations @> ARRAY[?]");
+            } else if (prefix != null) {
+                sb.append(" WHERE uriBucket LIKE ?");
+            } else if (siteID != null) {
+                sb.append(" WHERE siteLocations @> ARRAY[?]");
+            }
+            String sql = sb.toString();
+            log.debug("ArtifactBucketDigest: " + sql);
+            PreparedStatement prep = conn.prepareStatement(sql);
+            int col = 1;
+            if (prefix != null) {
+                prep.setString(col++, prefix + "%");
+            }
+            if (siteID != null) {
+                prep.setObject(col++, siteID);
+            }
+            return prep;
+        }
+    }
+    
     // used directly in HarvestStateDAO
     class HarvestStateGet implements EntityGet<HarvestState> {
         private UUID id;
@@ -518,6 +686,39 @@ public class SQLGenerator {
         }
     }
     
+    // used directly in HarvestStateDAO
+    class HarvestStateList implements PreparedStatementCreator {
+        private String namePrefix;
+        private URI resourceID;
+        
+        public void setSource(String namePrefix, URI resourceID) {
+            this.namePrefix = namePrefix;
+            this.resourceID = resourceID;
+        }
+        
+        public List<HarvestState> execute(JdbcTemplate jdbc) {
+            return jdbc.query(this, new HarvestStateRowMapper());
+        }
+        
+        @Override
+        public PreparedStatement createPreparedStatement(Connection conn) throws SQLException {
+            if (namePrefix == null || resourceID == null) {
+                throw new IllegalStateException("BUG: execute called with no value for namePrefix/resourceID"); 
+            }
+            
+            String[] cols = columnMap.get(HarvestState.class);
+            StringBuilder sb = getSelectFromSQL(HarvestState.class, false);
+            sb.append(" WHERE ").append(cols[0]).append(" LIKE ?");
+            sb.append(" AND ").append(cols[1]).append(" = ?");
+            String sql = sb.toString();
+            log.debug("HarvestStateList: " + sql);
+            PreparedStatement prep = conn.prepareStatement(sql);
+            prep.setString(1, namePrefix + "%");
+            prep.setString(2, resourceID.toASCIIString());
+            return prep;
+        }
+    }
+    
     // used directly in ArtifactDAO
     class ArtifactGet implements EntityGet<Artifact> {
         private UUID id;
@@ -568,6 +769,36 @@ public class SQLGenerator {
         }
     }
     
+    class ArtifactListGet implements PreparedStatementCreator {
+        private final List<URI> uris = new ArrayList<>();
+        
+        public void setURIs(Collection<URI> uris) {
+            this.uris.clear();
+            this.uris.addAll(uris);
+        }
+        
+        public List<Artifact> execute(JdbcTemplate jdbc) {
+            return jdbc.query(this, new ArtifactListExtractor());
+        }
+        
+        @Override
+        public PreparedStatement createPreparedStatement(Connection conn) throws SQLException {
+            StringBuilder sb = getSelectFromSQL(Artifact.class, false);
+            String col = getKeyColumn(Artifact.class, false);
+            sb.append(" WHERE ").append(col).append(" = ANY(?)");
+            String sql = sb.toString();
+            log.debug("ArtifactListGet: " + sql + " [" + uris.size() + "]");
+            PreparedStatement prep = conn.prepareStatement(sql);
+            String[] vals = new String[uris.size()];
+            int i = 0;
+            for (URI u : uris) {
+                vals[i++] = u.toASCIIString();
+            }
+            prep.setArray(1, conn.createArrayOf("varchar", vals));
+            return prep;
+        }
+    }
+    
     class ArtifactIteratorQuery implements EntityIteratorQuery<Artifact> {
 
         private Boolean storageLocationRequired;
@@ -575,6 +806,8 @@ public class SQLGenerator {
         private UUID siteID;
         private String whereClause;
         private boolean ordered;
+        private Date minLastModified;
+        private final Calendar utc = Calendar.getInstance(DateUtil.UTC);
 
         public ArtifactIteratorQuery() {
         }
@@ -614,6 +847,16 @@ public class SQLGenerator {
             this.siteID = siteID;
         }
         
+        /**
+         * Only include artifacts with lastModified &gt;= the specified value; ordered output 
+         * is in lastModified order. Currently only used with storageLocationRequired=false.
+         * 
+         * @param minLastModified minimum lastModified timestamp
+         */
+        public void setMinLastModified(Date minLastModified) {
+            this.minLastModified = minLastModified;
+        }
+        
         @Override
         public ResourceIterator<Artifact> query(DataSource ds) {
             
@@ -639,8 +882,14 @@ public class SQLGenerator {
                 if (StringUtil.hasText(prefix)) {
                     sb.append(" uriBucket LIKE ? AND");
                 }
+                if (minLastModified != null) {
+                    // incremental: a_unstored_index
+                    sb.append(" lastModified >= ? AND");
+                }
                 sb.append(" storageLocation_storageID IS NULL");
-                if (ordered) {
+                if (ordered && minLastModified != null) {
+                    sb.append(" ORDER BY lastModified");
+                } else if (ordered) {
                     sb.append(" ORDER BY uri");
                 }
             } else if (siteID != null) {
@@ -688,6 +937,10 @@ public class SQLGenerator {
                     log.debug("bucket prefix: " + val);
                     ps.setString(col++, val);
                 }
+                if (minLastModified != null && storageLocationRequired != null && !storageLocationRequired) {
+                    log.debug("minLastModified: " + minLastModified);
+                    ps.setTimestamp(col++, new Timestamp(minLastModified.getTime()), utc);
+                }
                 if (siteID != null) {
                     log.debug("siteID: " + siteID);
                     ps.setObject(col++, siteID);
@@ -829,42 +1082,48 @@ public class SQLGenerator {
             log.debug("ArtifactPut: " + sql);
             PreparedStatement prep = conn.prepareStatement(sql);
             int col = 1;
-            safeSetString(prep, col++, value.getURI().toASCIIString());
-            safeSetString(prep, col++, value.getBucket());
-            safeSetString(prep, col++, value.getContentChecksum().toASCIIString());
-            safeSetTimestamp(prep, col++, new Timestamp(value.getContentLastModified().getTime()), utc);
-            safeSetLong(prep, col++, value.getContentLength());
-            safeSetString(prep, col++, value.contentType);
-            safeSetString(prep, col++, value.contentEncoding);
-            
-            if (!value.siteLocations.isEmpty()) {
-                UUID[] ua = new UUID[value.siteLocations.size()];
-                int i = 0;
-                for (SiteLocation si : value.siteLocations) {
-                    ua[i++] = si.getSiteID();
-                }
-                safeSetArray(prep, col++, ua);
-            } else {
-                safeSetArray(prep, col++, (UUID[]) null);
-            }
-            
-            if (value.storageLocation != null) {
-                safeSetString(prep, col++, value.storageLocation.getStorageID().toASCIIString());
-                safeSetString(prep, col++, value.storageLocation.storageBucket);
-            } else {
-                safeSetString(prep, col++, null); // storageLocation.storageID
-                safeSetString(prep, col++, null); // storageLocation.storageBucket
-            }
-            
+            col = setArtifactValues(prep, col, value, utc);
+
             safeSetTimestamp(prep, col++, new Timestamp(value.getLastModified().getTime()), utc);
             safeSetString(prep, col++, value.getMetaChecksum().toASCIIString());
-            
+
             log.debug("id " + value.getID());
             prep.setObject(col++, value.getID());
-            
+
             return prep;
         }
-        
+
+    }
+
+    // set the artifact-specific column values; return the next column
+    private int setArtifactValues(PreparedStatement prep, int col, Artifact value, Calendar utc) throws SQLException {
+        safeSetString(prep, col++, value.getURI().toASCIIString());
+        safeSetString(prep, col++, value.getBucket());
+        safeSetString(prep, col++, value.getContentChecksum().toASCIIString());
+        safeSetTimestamp(prep, col++, new Timestamp(value.getContentLastModified().getTime()), utc);
+        safeSetLong(prep, col++, value.getContentLength());
+        safeSetString(prep, col++, value.contentType);
+        safeSetString(prep, col++, value.contentEncoding);
+
+        if (!value.siteLocations.isEmpty()) {
+            UUID[] ua = new UUID[value.siteLocations.size()];
+            int i = 0;
+            for (SiteLocation si : value.siteLocations) {
+                ua[i++] = si.getSiteID();
+            }
+            safeSetArray(prep, col++, ua);
+        } else {
+            safeSetArray(prep, col++, (UUID[]) null);
+        }
+
+        if (value.storageLocation != null) {
+            safeSetString(prep, col++, value.storageLocation.getStorageID().toASCIIString());
+            safeSetString(prep, col++, value.storageLocation.storageBucket);
+        } else {
+            safeSetString(prep, col++, null); // storageLocation.storageID
+            safeSetString(prep, col++, null); // storageLocation.storageBucket
+        }
+        return col;
     }
 
     private class StorageSitePut implements EntityPut<StorageSite> {
@@ -1048,10 +1307,71 @@ public class SQLGenerator {
             prep.setTimestamp(col++, new Timestamp(value.getLastModified().getTime()), utc);
             prep.setString(col++, value.getMetaChecksum().toASCIIString());
             prep.setObject(col++, value.getID());
-            
+
+            return prep;
+        }
+
+    }
+
+    // batch upsert of Artifact and entity event rows: with origin=true the lastModified
+    // value is assigned by the database, otherwise the value in the entity is used
+    private class EntityBatchPutImpl implements EntityBatchPut<Entity> {
+        private final Calendar utc = Calendar.getInstance(DateUtil.UTC);
+        private final Class entityClass;
+        private final boolean origin;
+        private final boolean extendedUpdate;
+        private Collection<Entity> values;
+
+        EntityBatchPutImpl(Class entityClass, boolean origin, boolean extendedUpdate) {
+            this.entityClass = entityClass;
+            this.origin = origin;
+            this.extendedUpdate = extendedUpdate;
+        }
+
+        @Override
+        public void setValues(Collection<Entity> values) {
+            this.values = values;
+        }
+
+        @Override
+        public Map<UUID, Date> execute(JdbcTemplate jdbc) {
+            final Map<UUID, Date> ret = new TreeMap<>();
+            jdbc.query(this, new RowCallbackHandler() {
+                @Override
+                public void processRow(ResultSet rs) throws SQLException {
+                    UUID id = Util.getUUID(rs, 1);
+                    Date lastModified = Util.getDate(rs, 2, utc);
+                    ret.put(id, lastModified);
+                }
+            });
+            return ret;
+        }
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection conn) throws SQLException {
+            if (values == null || values.isEmpty()) {
+                throw new IllegalStateException("BUG: execute called with no values");
+            }
+            String sql = getBatchUpsertSQL(entityClass, values.size(), origin, extendedUpdate);
+            log.debug("EntityBatchPut: " + sql);
+            PreparedStatement prep = conn.prepareStatement(sql);
+            int col = 1;
+            for (Entity value : values) {
+                if (value instanceof Artifact) {
+                    col = setArtifactValues(prep, col, (Artifact) value, utc);
+                }
+                if (!origin) {
+                    safeSetTimestamp(prep, col++, new Timestamp(value.getLastModified().getTime()), utc);
+                }
+                safeSetString(prep, col++, value.getMetaChecksum().toASCIIString());
+                prep.setObject(col++, value.getID());
+            }
+            // ids to select the current lastModified of unchanged rows
+            for (Entity value : values) {
+                prep.setObject(col++, value.getID());
+            }
             return prep;
         }
-        
     }
 
     private class EntityDeleteImpl implements EntityDelete {
@@ -1159,6 +1479,80 @@ public class SQLGenerator {
         return sb.toString();
     }
     
+    // INSERT ... ON CONFLICT (id) DO UPDATE with numRows value lists; the outer select
+    // returns id and lastModified of all rows: unchanged rows are not returned by the upsert
+    // so they come from the table snapshot taken before the upsert
+    private String getBatchUpsertSQL(Class c, int numRows, boolean origin, boolean extendedUpdate) {
+        String[] cols = columnMap.get(c);
+        String pk = getKeyColumn(c, true);
+        StringBuilder sb = new StringBuilder();
+        sb.append("WITH up AS (");
+        sb.append("INSERT INTO ");
+        sb.append(tableMap.get(c));
+        sb.append(" AS cur (");
+        for (int i = 0; i < cols.length; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(cols[i]);
+        }
+        sb.append(" ) VALUES ");
+        for (int r = 0; r < numRows; r++) {
+            if (r > 0) {
+                sb.append(",");
+            }
+            sb.append("(");
+            for (int i = 0; i < cols.length; i++) {
+                if (i > 0) {
+                    sb.append(",");
+                }
+                if (origin && "lastModified".equals(cols[i])) {
+                    sb.append(getCurrentTimeExpression());
+                } else {
+                    sb.append("?");
+                }
+            }
+            sb.append(")");
+        }
+        sb.append(" ON CONFLICT (").append(pk).append(") DO UPDATE SET ");
+        for (int i = 0; i < cols.length - 1; i++) { // PK is last
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(cols[i]).append(" = ");
+            if (origin && "lastModified".equals(cols[i])) {
+                sb.append("CASE WHEN cur.metaChecksum <> EXCLUDED.metaChecksum THEN EXCLUDED.lastModified"
+                        + " ELSE cur.lastModified END");
+            } else {
+                sb.append("EXCLUDED.").append(cols[i]);
+            }
+        }
+        if (!extendedUpdate) {
+            sb.append(" WHERE cur.metaChecksum <> EXCLUDED.metaChecksum");
+            if (!origin) {
+                sb.append(" OR cur.lastModified <> EXCLUDED.lastModified");
+            }
+        }
+        sb.append(" RETURNING cur.").append(pk).append(", cur.lastModified");
+        sb.append(") SELECT ").append(pk).append(", lastModified FROM up");
+        sb.append(" UNION ALL SELECT ").append(pk).append(", lastModified FROM ").append(tableMap.get(c));
+        sb.append(" WHERE ").append(pk).append(" IN (");
+        for (int r = 0; r < numRows; r++) {
+            if (r > 0) {
+                sb.append(",");
+            }
+            sb.append("?");
+        }
+        sb.append(") AND ").append(pk).append(" NOT IN (SELECT ").append(pk).append(" FROM up)");
+        return sb.toString();
+    }
+
+    // current time as a timestamp (without time zone) in UTC so it matches values
+    // written with a UTC calendar
+    String getCurrentTimeExpression() {
+        return "(now() AT TIME ZONE 'UTC')";
+    }
+
     private String getDeleteSQL(Class c) {
         StringBuilder sb = new StringBuilder();
         sb.append("DELETE FROM ");
@@ -1221,6 +1615,20 @@ public class SQLGenerator {
         }
     }
     
+    private class ArtifactListExtractor implements ResultSetExtractor<List<Artifact>> {
+
+        final Calendar utc = Calendar.getInstance(DateUtil.UTC);
+        
+        @Override
+        public List<Artifact> extractData(ResultSet rs) throws SQLException {
+            List<Artifact> ret = new ArrayList<>();
+            while (rs.next()) {
+                ret.add(mapRowToArtifact(rs, utc));
+            }
+            return ret;
+        }
+    }
+    
     private class ArtifactResultSetIterator implements ResourceIterator<Artifact> {
         final Calendar utc = Calendar.getInstance(DateUtil.UTC);
         private final Connection con;
@@ -1316,13 +1724,21 @@ public class SQLGenerator {
     
     private class ObsoleteStorageLocationExtractor implements ResultSetExtractor {
 
-        final Calendar utc = Calendar.getInstance(DateUtil.UTC);
-        
         @Override
         public Object extractData(ResultSet rs) throws SQLException, DataAccessException {
             if (!rs.next()) {
                 return null;
             }
+            ObsoleteStorageLocationRowMapper m = new ObsoleteStorageLocationRowMapper();
+            return m.mapRow(rs, 1);
+        }
+    }
+    
+    private class ObsoleteStorageLocationRowMapper implements RowMapper<ObsoleteStorageLocation> {
+        final Calendar utc = Calendar.getInstance(DateUtil.UTC);
+        
+        @Override
+        public ObsoleteStorageLocation mapRow(ResultSet rs, int i) throws SQLException {
             int col = 1;
             final URI storLoc = Util.getURI(rs, col++);
             final String storBucket = rs.getString(col++);
@@ -1332,7 +1748,7 @@ public class SQLGenerator {
             
             StorageLocation s = new StorageLocation(storLoc);
             s.storageBucket = storBucket;
-            Entity ret = new ObsoleteStorageLocation(id, s);
+            ObsoleteStorageLocation ret = new ObsoleteStorageLocation(id, s);
             InventoryUtil.assignLastModified(ret, lastModified);
             InventoryUtil.assignMetaChecksum(ret, metaChecksum);
             return ret;
@@ -1340,13 +1756,22 @@ public class SQLGenerator {
     }
     
     private class HarvestStateExtractor implements ResultSetExtractor<HarvestState> {
-        final Calendar utc = Calendar.getInstance(DateUtil.UTC);
         
         @Override
         public HarvestState extractData(ResultSet rs) throws SQLException, DataAccessException {
             if (!rs.next()) {
                 return null;
             }
+            HarvestStateRowMapper m = new HarvestStateRowMapper();
+            return m.mapRow(rs, 1);
+        }
+    }
+    
+    private class HarvestStateRowMapper implements RowMapper<HarvestState> {
+        final Calendar utc = Calendar.getInstance(DateUtil.UTC);
+        
+        @Override
+        public HarvestState mapRow(ResultSet rs, int i) throws SQLException {
             int col = 1;
             final String name = rs.getString(col++);
             final URI resourecID = Util.getURI(rs, col++);
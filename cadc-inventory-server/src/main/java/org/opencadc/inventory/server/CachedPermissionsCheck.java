@@ -0,0 +1,212 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.server;
+
+import ca.nrc.cadc.auth.AuthenticationUtil;
+import ca.nrc.cadc.log.WebServiceLogInfo;
+import ca.nrc.cadc.net.ResourceNotFoundException;
+import ca.nrc.cadc.net.TransientException;
+import java.io.IOException;
+import java.net.URI;
+import java.security.AccessControlException;
+import java.security.Principal;
+import java.security.cert.CertificateException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.security.auth.Subject;
+import org.apache.log4j.Logger;
+import org.opencadc.permissions.Grant;
+import org.opencadc.permissions.ReadGrant;
+import org.opencadc.permissions.WriteGrant;
+import org.opencadc.permissions.client.PermissionsCheck;
+
+/**
+ * Permission check for an artifact that caches the result of the standard PermissionsCheck
+ * in a shared GrantCache. The result for a caller and artifact is re-used until it expires,
+ * so changes to grants or group membership may take up to the cache TTL to take effect.
+ * 
+ * @author agent
+ */
+public class CachedPermissionsCheck {
+    private static final Logger log = Logger.getLogger(CachedPermissionsCheck.class);
+
+    private final URI artifactURI;
+    private final boolean authenticateOnly;
+    private final WebServiceLogInfo logInfo;
+    private final GrantCache grantCache;
+    
+    /**
+     * Constructor.
+     * 
+     * @param artifactURI the artifact to check
+     * @param authenticateOnly true: allow read and authenticated write without checking grants
+     * @param logInfo request log info to record the grant used
+     * @param grantCache cache of permission check results
+     */
+    public CachedPermissionsCheck(URI artifactURI, boolean authenticateOnly, WebServiceLogInfo logInfo, 
+            GrantCache grantCache) {
+        this.artifactURI = artifactURI;
+        this.authenticateOnly = authenticateOnly;
+        this.logInfo = logInfo;
+        this.grantCache = grantCache;
+    }
+
+    /**
+     * Check read permission for the current subject.
+     * 
+     * @param readGrantServices read grant providers
+     * @throws AccessControlException if permission is denied
+     * @throws ResourceNotFoundException if a grant provider could not be found
+     * @throws TransientException if a grant provider is temporarily unavailable
+     * @throws CertificateException if the caller's certificate is invalid
+     * @throws IOException if a grant provider or group service call failed
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public void checkReadPermission(List<URI> readGrantServices)
+        throws AccessControlException, CertificateException, IOException, InterruptedException,
+               ResourceNotFoundException, TransientException {
+        check(ReadGrant.class, readGrantServices);
+    }
+    
+    /**
+     * Check write permission for the current subject.
+     * 
+     * @param writeGrantServices write grant providers
+     * @throws AccessControlException if permission is denied
+     * @throws ResourceNotFoundException if a grant provider could not be found
+     * @throws TransientException if a grant provider is temporarily unavailable
+     * @throws CertificateException if the caller's certificate is invalid
+     * @throws IOException if a grant provider or group service call failed
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public void checkWritePermission(List<URI> writeGrantServices)
+        throws AccessControlException, CertificateException, IOException, InterruptedException,
+               ResourceNotFoundException, TransientException {
+        check(WriteGrant.class, writeGrantServices);
+    }
+    
+    private void check(Class<? extends Grant> grantClass, List<URI> grantServices)
+        throws AccessControlException, CertificateException, IOException, InterruptedException,
+               ResourceNotFoundException, TransientException {
+        String op = (ReadGrant.class.equals(grantClass) ? "read" : "write");
+        Set<Principal> caller = getCaller();
+        Boolean granted = grantCache.get(grantClass, caller, artifactURI);
+        log.debug("cached " + op + " permission: " + artifactURI + " granted=" + granted);
+        if (Boolean.TRUE.equals(granted)) {
+            logInfo.setGrant(op + ": cached");
+            return;
+        }
+        if (Boolean.FALSE.equals(granted)) {
+            throw new AccessControlException(op + " permission denied: " + artifactURI);
+        }
+        
+        try {
+            doCheck(grantClass, grantServices);
+            grantCache.put(grantClass, caller, artifactURI, true);
+        } catch (AccessControlException ex) {
+            grantCache.put(grantClass, caller, artifactURI, false);
+            throw ex;
+        }
+    }
+    
+    /**
+     * Perform the permission check with the grant providers. Tests can override this method.
+     * 
+     * @param grantClass ReadGrant or WriteGrant
+     * @param grantServices grant providers
+     * @throws AccessControlException if permission is denied
+     * @throws ResourceNotFoundException if a grant provider could not be found
+     * @throws TransientException if a grant provider is temporarily unavailable
+     * @throws CertificateException if the caller's certificate is invalid
+     * @throws IOException if a grant provider or group service call failed
+     * @throws InterruptedException if the thread is interrupted
+     */
+    protected void doCheck(Class<? extends Grant> grantClass, List<URI> grantServices)
+        throws AccessControlException, CertificateException, IOException, InterruptedException,
+               ResourceNotFoundException, TransientException {
+        PermissionsCheck pc = new PermissionsCheck(artifactURI, authenticateOnly, logInfo);
+        if (ReadGrant.class.equals(grantClass)) {
+            pc.checkReadPermission(grantServices);
+        } else {
+            pc.checkWritePermission(grantServices);
+        }
+    }
+    
+    private Set<Principal> getCaller() {
+        Subject subject = AuthenticationUtil.getCurrentSubject();
+        if (subject == null) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(subject.getPrincipals());
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.server;
+
+import ca.nrc.cadc.util.MultiValuedProperties;
+import java.net.URI;
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.apache.log4j.Logger;
+import org.opencadc.permissions.Grant;
+
+/**
+ * Bounded cache of permission check results. Results are cached by grant type, 
+ * caller (the principals of the subject), and asset (artifact) URI. A granted 
+ * permission is kept for positiveTTL and a denied permission is kept for negativeTTL.
+ * Failed checks are not cached. Instances are thread safe and intended to be shared 
+ * by all requests in a service; see CachedPermissionsCheck.
+ * 
+ * @author agent
+ */
+public class GrantCache {
+    private static final Logger log = Logger.getLogger(GrantCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    
+    public static final String POSITIVE_TTL_KEY = ".grantCache.positiveTTL";
+    public static final String NEGATIVE_TTL_KEY = ".grantCache.negativeTTL";
+    public static final long DEFAULT_POSITIVE_TTL = 60L; // seconds
+    public static final long DEFAULT_NEGATIVE_TTL = 10L; // seconds
+    
+    private final long positiveTTL;
+    private final long negativeTTL;
+    private final Map<CacheKey,CacheEntry> cache;
+    
+    /**
+     * Constructor. A TTL of 0 disables caching of that kind of result.
+     * 
+     * @param maxEntries maximum number of cached results
+     * @param positiveTTL time to keep a granted permission (milliseconds)
+     * @param negativeTTL time to keep a denied permission (milliseconds)
+     */
+    public GrantCache(int maxEntries, long positiveTTL, long negativeTTL) {
+        if (maxEntries <= 0 || positiveTTL < 0L || negativeTTL < 0L) {
+            throw new IllegalArgumentException("invalid GrantCache config: maxEntries=" + maxEntries
+                    + " positiveTTL=" + positiveTTL + " negativeTTL=" + negativeTTL);
+        }
+        this.positiveTTL = positiveTTL;
+        this.negativeTTL = negativeTTL;
+        this.cache = new LinkedHashMap<CacheKey,CacheEntry>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey,CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    /**
+     * Create a GrantCache from service config. The optional {prefix}.grantCache.positiveTTL
+     * and {prefix}.grantCache.negativeTTL properties are times in seconds.
+     * 
+     * @param props service config
+     * @param prefix property name prefix, e.g. org.opencadc.minoc
+     * @return configured GrantCache
+     * @throws IllegalStateException if a TTL is not a non-negative integer
+     */
+    public static GrantCache getInstance(MultiValuedProperties props, String prefix) {
+        long pos = getSeconds(props, prefix + POSITIVE_TTL_KEY, DEFAULT_POSITIVE_TTL);
+        long neg = getSeconds(props, prefix + NEGATIVE_TTL_KEY, DEFAULT_NEGATIVE_TTL);
+        return new GrantCache(DEFAULT_MAX_ENTRIES, pos * 1000L, neg * 1000L);
+    }
+    
+    private static long getSeconds(MultiValuedProperties props, String key, long defaultValue) {
+        String s = props.getFirstPropertyValue(key);
+        if (s == null) {
+            return defaultValue;
+        }
+        try {
+            long ret = Long.parseLong(s);
+            if (ret >= 0L) {
+                return ret;
+            }
+        } catch (NumberFormatException ex) {
+            log.debug("invalid " + key + ": " + s);
+        }
+        throw new IllegalStateException("invalid config: " + key + "=" + s + " must be a non-negative integer (seconds)");
+    }
+
+    /**
+     * Get a cached permission check result.
+     * 
+     * @param grantClass ReadGrant or WriteGrant
+     * @param caller principals of the caller
+     * @param assetID artifact URI
+     * @return true if granted, false if denied, null if not cached
+     */
+    public Boolean get(Class<? extends Grant> grantClass, Set<Principal> caller, URI assetID) {
+        CacheKey key = new CacheKey(grantClass, caller, assetID);
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            CacheEntry ce = cache.get(key);
+            if (ce != null) {
+                if (ce.expires > now) {
+                    log.debug("cache hit: " + key);
+                    return ce.granted;
+                }
+                cache.remove(key);
+            }
+        }
+        log.debug("cache miss: " + key);
+        return null;
+    }
+    
+    /**
+     * Cache a permission check result.
+     * 
+     * @param grantClass ReadGrant or WriteGrant
+     * @param caller principals of the caller
+     * @param assetID artifact URI
+     * @param granted true if permission was granted, false if denied
+     */
+    public void put(Class<? extends Grant> grantClass, Set<Principal> caller, URI assetID, boolean granted) {
+        long ttl = (granted ? positiveTTL : negativeTTL);
+        if (ttl > 0L) {
+            CacheKey key = new CacheKey(grantClass, caller, assetID);
+            synchronized (cache) {
+                cache.put(key, new CacheEntry(granted, System.currentTimeMillis() + ttl));
+            }
+        }
+    }
+    
+    /**
+     * Remove all cached results.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+    
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+    
+    private static class CacheKey {
+        private final Class<? extends Grant> grantClass;
+        private final Set<Principal> caller;
+        private final URI assetID;
+
+        CacheKey(Class<? extends Grant> grantClass, Set<Principal> caller, URI assetID) {
+            this.grantClass = grantClass;
+            this.caller = caller;
+            this.assetID = assetID;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof CacheKey) {
+                CacheKey rhs = (CacheKey) o;
+                return grantClass.equals(rhs.grantClass) && caller.equals(rhs.caller) 
+                        && assetID.equals(rhs.assetID);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            int ret = grantClass.hashCode();
+            ret = 31 * ret + caller.hashCode();
+            ret = 31 * ret + assetID.hashCode();
+            return ret;
+        }
+
+        @Override
+        public String toString() {
+            return grantClass.getSimpleName() + "[" + caller + "," + assetID + "]";
+        }
+    }
+    
+    private static class CacheEntry {
+        private final boolean granted;
+        private final long expires;
+
+        CacheEntry(boolean granted, long expires) {
+            this.granted = granted;
+            this.expires = expires;
+        }
+    }
+}
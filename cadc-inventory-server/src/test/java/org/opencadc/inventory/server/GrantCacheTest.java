@@ -0,0 +1,219 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.server;
+
+import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.util.MultiValuedProperties;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.permissions.ReadGrant;
+import org.opencadc.permissions.WriteGrant;
+
+/**
+ *
+ * @author agent
+ */
+public class GrantCacheTest {
+    private static final Logger log = Logger.getLogger(GrantCacheTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.inventory.server", Level.INFO);
+    }
+    
+    private static final Set<Principal> ANON = Collections.emptySet();
+    private static final Set<Principal> USER = Collections.singleton(new HttpPrincipal("someone"));
+    
+    public GrantCacheTest() { 
+    }
+    
+    @Test
+    public void testPositive() throws Exception {
+        GrantCache gc = new GrantCache(10, 60000L, 60000L);
+        URI a1 = URI.create("cadc:PUBLIC/foo.fits");
+        URI a2 = URI.create("cadc:PUBLIC/bar.fits");
+        
+        Assert.assertNull(gc.get(ReadGrant.class, ANON, a1));
+        gc.put(ReadGrant.class, ANON, a1, true);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(Boolean.TRUE, gc.get(ReadGrant.class, ANON, a1));
+        }
+        
+        // different asset, different caller, different grant type are different entries
+        Assert.assertNull(gc.get(ReadGrant.class, ANON, a2));
+        Assert.assertNull(gc.get(ReadGrant.class, USER, a1));
+        Assert.assertNull(gc.get(WriteGrant.class, ANON, a1));
+        Assert.assertEquals(1, gc.size());
+        
+        // equal principals from another request are the same caller
+        gc.put(ReadGrant.class, USER, a1, true);
+        Set<Principal> sameUser = Collections.singleton(new HttpPrincipal("someone"));
+        Assert.assertEquals(Boolean.TRUE, gc.get(ReadGrant.class, sameUser, a1));
+        Assert.assertEquals(2, gc.size());
+        
+        gc.clear();
+        Assert.assertNull(gc.get(ReadGrant.class, ANON, a1));
+        Assert.assertEquals(0, gc.size());
+    }
+    
+    @Test
+    public void testNegative() throws Exception {
+        GrantCache gc = new GrantCache(10, 60000L, 60000L);
+        URI a1 = URI.create("cadc:PRIVATE/foo.fits");
+        gc.put(ReadGrant.class, USER, a1, false);
+        Assert.assertEquals(Boolean.FALSE, gc.get(ReadGrant.class, USER, a1));
+        
+        // negative caching disabled
+        gc = new GrantCache(10, 60000L, 0L);
+        gc.put(ReadGrant.class, USER, a1, false);
+        Assert.assertNull(gc.get(ReadGrant.class, USER, a1));
+        Assert.assertEquals(0, gc.size());
+    }
+    
+    @Test
+    public void testExpiry() throws Exception {
+        GrantCache gc = new GrantCache(10, 200L, 200L);
+        URI a1 = URI.create("cadc:WRITE/foo.fits");
+        gc.put(WriteGrant.class, USER, a1, true);
+        Assert.assertEquals(Boolean.TRUE, gc.get(WriteGrant.class, USER, a1));
+        
+        Thread.sleep(300L);
+        Assert.assertNull(gc.get(WriteGrant.class, USER, a1));
+        Assert.assertEquals(0, gc.size());
+    }
+    
+    @Test
+    public void testMaxEntries() throws Exception {
+        GrantCache gc = new GrantCache(3, 60000L, 60000L);
+        for (int i = 0; i < 10; i++) {
+            gc.put(ReadGrant.class, ANON, URI.create("cadc:PUBLIC/file-" + i), true);
+        }
+        Assert.assertEquals(3, gc.size());
+        
+        // most recent still cached, oldest evicted
+        Assert.assertNotNull(gc.get(ReadGrant.class, ANON, URI.create("cadc:PUBLIC/file-9")));
+        Assert.assertNull(gc.get(ReadGrant.class, ANON, URI.create("cadc:PUBLIC/file-0")));
+    }
+    
+    @Test
+    public void testInvalidConfig() {
+        try {
+            GrantCache gc = new GrantCache(0, 1L, 1L);
+            Assert.fail("expected IllegalArgumentException, got: " + gc);
+        } catch (IllegalArgumentException expected) {
+            log.info("caught expected: " + expected);
+        }
+        try {
+            GrantCache gc = new GrantCache(10, -1L, 1L);
+            Assert.fail("expected IllegalArgumentException, got: " + gc);
+        } catch (IllegalArgumentException expected) {
+            log.info("caught expected: " + expected);
+        }
+    }
+    
+    @Test
+    public void testGetInstance() {
+        Map<String, String> config = new HashMap<>();
+        MultiValuedProperties props = new MultiValuedProperties() {
+            @Override
+            public String getFirstPropertyValue(String key) {
+                return config.get(key);
+            }
+        };
+        URI a1 = URI.create("cadc:PRIVATE/foo.fits");
+        
+        // defaults
+        GrantCache gc = GrantCache.getInstance(props, "org.opencadc.test");
+        gc.put(ReadGrant.class, USER, a1, false);
+        Assert.assertEquals(Boolean.FALSE, gc.get(ReadGrant.class, USER, a1));
+        
+        config.put("org.opencadc.test.grantCache.negativeTTL", "0");
+        gc = GrantCache.getInstance(props, "org.opencadc.test");
+        gc.put(ReadGrant.class, USER, a1, false);
+        Assert.assertNull(gc.get(ReadGrant.class, USER, a1));
+        
+        config.put("org.opencadc.test.grantCache.positiveTTL", "-1");
+        try {
+            gc = GrantCache.getInstance(props, "org.opencadc.test");
+            Assert.fail("expected IllegalStateException, got: " + gc);
+        } catch (IllegalStateException expected) {
+            log.info("caught expected: " + expected);
+        }
+    }
+}
@@ -141,9 +141,19 @@ public class AdStorageAdapter implements StorageAdapter {
     private static final URI DATA_RESOURCE_ID = URI.create("ivo://cadc.nrc.ca/data");
     private static final String TAP_SERVICE_URI = "ivo://cadc.nrc.ca/ad";
 
-    // cache for repeated ByteRange requests
-    private StorageLocation storageLoc;
-    private URL storageURL;
+    // cache for repeated ByteRange requests: single immutable entry so concurrent
+    // callers never see a location paired with the URL of another location
+    private volatile CachedURL cachedURL;
+    
+    private static class CachedURL {
+        final StorageLocation storageLocation;
+        final URL url;
+        
+        CachedURL(StorageLocation storageLocation, URL url) {
+            this.storageLocation = storageLocation;
+            this.url = url;
+        }
+    }
     
     /**
      * Construct an AdStorageAdapter with the config stored in the
@@ -202,18 +212,16 @@ public class AdStorageAdapter implements StorageAdapter {
 
         try {
             URL sourceURL;
-            if (byteRange != null && storageLoc != null && storageLoc.equals(storageLocation)) {
+            CachedURL cur = cachedURL;
+            if (byteRange != null && cur != null && cur.storageLocation.equals(storageLocation)) {
                 // use cached value
-                sourceURL = storageURL;
+                sourceURL = cur.url;
                 log.debug("cached URL: " + sourceURL);
             } else {
-                this.storageLoc = null;
-                this.storageURL = null;
                 sourceURL = this.toURL(storageLocation.getStorageID());
                 log.debug("negotiated URL: " + sourceURL);
                 // cache for next request
-                this.storageLoc = storageLocation;
-                this.storageURL = sourceURL;
+                this.cachedURL = new CachedURL(storageLocation, sourceURL);
             }
         
             boolean followRedirects = true;
@@ -344,7 +352,7 @@ public class AdStorageAdapter implements StorageAdapter {
     public Iterator<PutTransaction> transactionIterator() throws StorageEngageException, TransientException {
         throw new UnsupportedOperationException();
     }
-    
+
     // negotiate a URL so we can potentially re-use it for multiple ByteRange requests
     private URL toURL(URI uri) throws AccessControlException, NotAuthenticatedException,
             ByteLimitExceededException, ResourceNotFoundException, TransientException {
@@ -73,12 +73,16 @@ import ca.nrc.cadc.util.Log4jInit;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.URI;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 
 import org.apache.log4j.Level;
@@ -86,7 +90,11 @@ import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.opencadc.inventory.storage.BucketSummary;
+import org.opencadc.inventory.storage.NewArtifact;
+import org.opencadc.inventory.storage.StorageMetadata;
 import org.opencadc.inventory.storage.test.StorageAdapterBasicTest;
+import org.opencadc.inventory.storage.test.TestUtil;
 
 /**
  * Integration tests that interact with the file system. These tests require a file system
@@ -109,7 +117,7 @@ public class OpaqueStorageAdapterTest extends StorageAdapterBasicTest {
     final OpaqueFileSystemStorageAdapter ofsAdapter;
             
     public OpaqueStorageAdapterTest() throws InvalidConfigException {
-        super(new OpaqueFileSystemStorageAdapter(ROOT_DIR, BUCKET_LEN));
+        super(new OpaqueFileSystemStorageAdapter(ROOT_DIR, BUCKET_LEN, true));
         this.ofsAdapter = (OpaqueFileSystemStorageAdapter) super.adapter;
 
         log.debug("    content path: " + ofsAdapter.contentPath);
@@ -147,6 +155,9 @@ public class OpaqueStorageAdapterTest extends StorageAdapterBasicTest {
                 }
             });
         }
+        if (Files.exists(ofsAdapter.summaryPath)) {
+            cleanupSummaries();
+        }
         log.info("cleanupBefore: " + ofsAdapter.contentPath.getParent() + " DONE");
     }
     
@@ -183,4 +194,85 @@ public class OpaqueStorageAdapterTest extends StorageAdapterBasicTest {
             Assert.fail("unexpected exception: " + unexpected);
         }
     }
+    
+    private BucketSummary iterateSummary(String prefix) throws Exception {
+        BucketSummary ret = new BucketSummary(prefix);
+        Iterator<StorageMetadata> iter = ofsAdapter.iterator(prefix);
+        while (iter.hasNext()) {
+            ret.add(iter.next());
+        }
+        return ret;
+    }
+    
+    @Test
+    public void testBucketSummary() {
+        try {
+            List<StorageMetadata> stored = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                NewArtifact na = new NewArtifact(URI.create("cadc:TEST/testBucketSummary-" + i));
+                na.contentLength = 1024L + i;
+                stored.add(ofsAdapter.put(na, TestUtil.getInputStreamOfRandomBytes(na.contentLength), null));
+            }
+            
+            BucketSummary all = ofsAdapter.getBucketSummary(null);
+            log.info("all: " + all);
+            Assert.assertEquals(20L, all.getNumObjects());
+            Assert.assertEquals(iterateSummary(null), all);
+            
+            String bucket = stored.get(0).getStorageLocation().storageBucket;
+            String prefix = bucket.substring(0, 1);
+            Assert.assertEquals(iterateSummary(prefix), ofsAdapter.getBucketSummary(prefix));
+            Assert.assertEquals(iterateSummary(bucket), ofsAdapter.getBucketSummary(bucket));
+            
+            // delete: maintained incrementally
+            ofsAdapter.delete(stored.get(0).getStorageLocation());
+            BucketSummary actual = ofsAdapter.getBucketSummary(null);
+            log.info("after delete: " + actual);
+            Assert.assertEquals(19L, actual.getNumObjects());
+            Assert.assertEquals(iterateSummary(null), actual);
+            
+            // missing summary files are rebuilt
+            cleanupSummaries();
+            Assert.assertEquals(actual, ofsAdapter.getBucketSummary(null));
+            
+            // file removed without using the adapter
+            Thread.sleep(20L);
+            StorageMetadata sm = stored.get(1);
+            Files.delete(ofsAdapter.storageLocationToPath(sm.getStorageLocation()));
+            actual = ofsAdapter.getBucketSummary(null);
+            log.info("after external delete: " + actual);
+            Assert.assertEquals(18L, actual.getNumObjects());
+            Assert.assertEquals(iterateSummary(null), actual);
+            
+            // prefix longer than bucketLength
+            try {
+                BucketSummary bs = ofsAdapter.getBucketSummary(bucket + "0");
+                Assert.fail("expected UnsupportedOperationException, got: " + bs);
+            } catch (UnsupportedOperationException expected) {
+                log.info("expected: " + expected);
+            }
+            
+            // not enabled: default
+            OpaqueFileSystemStorageAdapter noSummary = new OpaqueFileSystemStorageAdapter(ROOT_DIR, BUCKET_LEN);
+            try {
+                BucketSummary bs = noSummary.getBucketSummary(null);
+                Assert.fail("expected UnsupportedOperationException, got: " + bs);
+            } catch (UnsupportedOperationException expected) {
+                log.info("expected: " + expected);
+            }
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    private void cleanupSummaries() throws IOException {
+        Files.walkFileTree(ofsAdapter.summaryPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
 }
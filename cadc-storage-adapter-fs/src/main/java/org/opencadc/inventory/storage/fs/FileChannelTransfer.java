@@ -0,0 +1,207 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.storage.fs;
+
+import ca.nrc.cadc.io.ReadException;
+import ca.nrc.cadc.io.WriteException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.log4j.Logger;
+import org.opencadc.inventory.storage.ByteRange;
+import org.opencadc.inventory.storage.StorageEngageException;
+
+/**
+ * Copy stored bytes to a channel with FileChannel.transferTo. This avoids copying through
+ * user-space buffers; when the destination is a FileChannel or socket the copy is done 
+ * entirely by the OS.
+ * 
+ * @author agent
+ */
+class FileChannelTransfer {
+    private static final Logger log = Logger.getLogger(FileChannelTransfer.class);
+    
+    private static final long PROBE_SIZE = 8192L;
+
+    private FileChannelTransfer() { 
+    }
+    
+    /**
+     * Transfer bytes from the file to the destination.
+     * 
+     * @param path file to read
+     * @param dest destination
+     * @param byteRange optional byte range, null means entire file
+     * @return number of bytes transferred
+     * @throws StorageEngageException if the file could not be opened
+     * @throws ReadException if reading the file failed
+     * @throws WriteException if writing to the destination failed
+     */
+    static long transfer(Path path, WritableByteChannel dest, ByteRange byteRange) 
+            throws StorageEngageException, ReadException, WriteException {
+        SortedSet<ByteRange> ranges = null;
+        if (byteRange != null) {
+            ranges = new TreeSet<>();
+            ranges.add(byteRange);
+        }
+        return transfer(path, dest, ranges);
+    }
+    
+    /**
+     * Transfer multiple byte ranges from the file to the destination. All ranges are 
+     * read from a single open channel using positional transfers.
+     * 
+     * @param path file to read
+     * @param dest destination
+     * @param byteRanges optional byte ranges, null means entire file
+     * @return number of bytes transferred
+     * @throws StorageEngageException if the file could not be opened
+     * @throws ReadException if reading the file failed
+     * @throws WriteException if writing to the destination failed
+     */
+    static long transfer(Path path, WritableByteChannel dest, SortedSet<ByteRange> byteRanges) 
+            throws StorageEngageException, ReadException, WriteException {
+        FileChannel src;
+        try {
+            src = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            throw new StorageEngageException("failed to open channel for stored file: " + path, ex);
+        }
+        
+        try {
+            long size = src.size();
+            long tot = 0L;
+            if (byteRanges == null) {
+                tot = transfer(src, 0L, size, dest, path);
+            } else {
+                // callers validate ranges against the expected length: a range past the end 
+                // means the stored file is shorter than expected so fail before writing any bytes
+                for (ByteRange r : byteRanges) {
+                    if (r.getOffset() + r.getLength() > size) {
+                        throw new ReadException("stored file shorter than requested range: " + path 
+                            + " size=" + size + " range=" + r);
+                    }
+                }
+                for (ByteRange r : byteRanges) {
+                    tot += transfer(src, r.getOffset(), r.getOffset() + r.getLength(), dest, path);
+                }
+            }
+            log.debug("transfer: " + path + " " + byteRanges + " bytes=" + tot);
+            return tot;
+        } catch (IOException ex) {
+            throw new ReadException("failed to read stored file: " + path, ex);
+        } finally {
+            try {
+                src.close();
+            } catch (IOException ex) {
+                log.debug("failed to close channel: " + path, ex);
+            }
+        }
+    }
+    
+    private static long transfer(FileChannel src, long pos, long end, WritableByteChannel dest, Path path) 
+            throws ReadException, WriteException {
+        long tot = 0L;
+        while (pos < end) {
+            long n;
+            try {
+                n = src.transferTo(pos, end - pos, dest);
+            } catch (IOException ex) {
+                // transferTo does not distinguish read and write failures: check the source
+                if (isReadable(src, pos, end)) {
+                    throw new WriteException("failed to write stored file: " + path, ex);
+                }
+                throw new ReadException("failed to read stored file: " + path + " at " + pos, ex);
+            }
+            if (n <= 0L) {
+                throw new ReadException("stored file truncated: " + path + " at " + pos);
+            }
+            pos += n;
+            tot += n;
+        }
+        return tot;
+    }
+    
+    private static boolean isReadable(FileChannel src, long pos, long end) {
+        try {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(PROBE_SIZE, end - pos));
+            return src.read(buf, pos) > 0;
+        } catch (IOException ex) {
+            log.debug("read probe failed at " + pos + ": " + ex);
+            return false;
+        }
+    }
+}
@@ -85,6 +85,8 @@ import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -302,6 +304,41 @@ public class FileSystemStorageAdapter implements StorageAdapter {
         }
     }
     
+    @Override
+    public void get(StorageLocation storageLocation, OutputStream dest, SortedSet<ByteRange> byteRanges)
+        throws ResourceNotFoundException, ReadException, WriteException, StorageEngageException, TransientException {
+        InventoryUtil.assertNotNull(FileSystemStorageAdapter.class, "storageLocation", storageLocation);
+        InventoryUtil.assertNotNull(FileSystemStorageAdapter.class, "dest", dest);
+        InventoryUtil.assertNotNull(FileSystemStorageAdapter.class, "byteRanges", byteRanges);
+        log.debug("get: " + storageLocation + " " + byteRanges);
+
+        Path path = createStorageLocationPath(storageLocation);
+        if (!Files.exists(path)) {
+            throw new ResourceNotFoundException("not found: " + storageLocation.getStorageID());
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("not found: " + storageLocation.getStorageID());
+        }
+        FileChannelTransfer.transfer(path, Channels.newChannel(dest), byteRanges);
+    }
+    
+    @Override
+    public void get(StorageLocation storageLocation, WritableByteChannel dest, ByteRange byteRange)
+        throws ResourceNotFoundException, ReadException, WriteException, StorageEngageException, TransientException {
+        InventoryUtil.assertNotNull(FileSystemStorageAdapter.class, "storageLocation", storageLocation);
+        InventoryUtil.assertNotNull(FileSystemStorageAdapter.class, "dest", dest);
+        log.debug("get: " + storageLocation + " " + byteRange);
+
+        Path path = createStorageLocationPath(storageLocation);
+        if (!Files.exists(path)) {
+            throw new ResourceNotFoundException("not found: " + storageLocation.getStorageID());
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("not found: " + storageLocation.getStorageID());
+        }
+        FileChannelTransfer.transfer(path, dest, byteRange);
+    }
+    
     @Override
     public StorageMetadata put(NewArtifact newArtifact, InputStream source, String transactionID)
         throws IncorrectContentChecksumException, IncorrectContentLengthException, ReadException, WriteException,
@@ -523,7 +560,7 @@ public class FileSystemStorageAdapter implements StorageAdapter {
     public Iterator<PutTransaction> transactionIterator() throws StorageEngageException, TransientException {
         throw new UnsupportedOperationException();
     }
-    
+
     private StorageLocation createStorageLocation(URI artifactURI) {
         URI storageID = artifactURI;
         String storageBucket = null;
@@ -87,6 +87,10 @@ import java.io.RandomAccessFile;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystemException;
@@ -108,11 +112,13 @@ import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.InventoryUtil;
 import org.opencadc.inventory.Namespace;
 import org.opencadc.inventory.StorageLocation;
+import org.opencadc.inventory.storage.BucketSummary;
 import org.opencadc.inventory.storage.BucketType;
 import org.opencadc.inventory.storage.ByteRange;
 import org.opencadc.inventory.storage.DigestOutputStream;
@@ -129,6 +135,13 @@ import org.opencadc.inventory.storage.StorageMetadata;
  * storageBucket(s) form a directory tree of hex characters and files are 
  * stored at the bottom level  with random (UUID) file names.
  * 
+ * <p>Optionally (CONFIG_PROPERTY_BUCKET_SUMMARY), a summary of each bucket (BucketSummary) 
+ * is kept in a separate directory and updated by put, delete, and recover. The summary is 
+ * cleared while a change is in progress and is rebuilt by listing the bucket if it is missing, 
+ * incomplete, or older than the bucket directory (files added or removed by another program).
+ * Every change then locks the summary file of the bucket and forces it to disk, so this is 
+ * disabled by default and getBucketSummary is not supported.
+ * 
  * @author pdowler
  *
  */
@@ -138,6 +151,7 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
     public static final String CONFIG_FILE = "cadc-storage-adapter-fs.properties";
     public static final String CONFIG_PROPERTY_ROOT = OpaqueFileSystemStorageAdapter.class.getPackage().getName() + ".baseDir";
     public static final String CONFIG_PROPERTY_BUCKET_LENGTH = OpaqueFileSystemStorageAdapter.class.getName() + ".bucketLength";
+    public static final String CONFIG_PROPERTY_BUCKET_SUMMARY = OpaqueFileSystemStorageAdapter.class.getName() + ".bucketSummary";
     public static final int MAX_BUCKET_LENGTH = 7;
             
     static final String ARTIFACTID_ATTR = "artifactID";
@@ -149,6 +163,7 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
     
     private static final String TXN_FOLDER = "transaction";
     private static final String CONTENT_FOLDER = "content";
+    private static final String SUMMARY_FOLDER = "summary";
 
     private static final String DEFAULT_CHECKSUM_ALGORITHM = "MD5";
     private static final int CIRC_BUFFERS = 3;
@@ -160,9 +175,20 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
     
     private static final String DELETED_PRESERVED = "deleted-preserved";
     
+    // in-JVM locks for bucket summary files: FileLock only excludes other processes
+    private static final Object[] SUMMARY_LOCKS = new Object[64];
+    
+    static {
+        for (int i = 0; i < SUMMARY_LOCKS.length; i++) {
+            SUMMARY_LOCKS[i] = new Object();
+        }
+    }
+    
     final Path txnPath;
     final Path contentPath;
+    final Path summaryPath;
     private final int bucketLength;
+    private final boolean bucketSummary;
     private final List<Namespace> recoverableNamespaces = new ArrayList<>();
     private final List<Namespace> purgeNamespaces = new ArrayList<>();
 
@@ -194,10 +220,20 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
         }
         this.bucketLength = bucketLen;
         
+        String summary = props.getFirstPropertyValue(CONFIG_PROPERTY_BUCKET_SUMMARY);
+        if (summary == null || "false".equals(summary.trim())) {
+            this.bucketSummary = false;
+        } else if ("true".equals(summary.trim())) {
+            this.bucketSummary = true;
+        } else {
+            throw new InvalidConfigException("invalid boolean value: " + CONFIG_PROPERTY_BUCKET_SUMMARY + " = " + summary);
+        }
+        
         FileSystem fs = FileSystems.getDefault();
         Path root = fs.getPath(rootVal);
         this.contentPath = root.resolve(CONTENT_FOLDER);
         this.txnPath = root.resolve(TXN_FOLDER);
+        this.summaryPath = root.resolve(SUMMARY_FOLDER);
 
         init(root);
     }
@@ -205,6 +241,12 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
     // for test code
     public OpaqueFileSystemStorageAdapter(File rootDirectory, int bucketLen) 
             throws InvalidConfigException {
+        this(rootDirectory, bucketLen, false);
+    }
+    
+    // for test code
+    public OpaqueFileSystemStorageAdapter(File rootDirectory, int bucketLen, boolean bucketSummary) 
+            throws InvalidConfigException {
 
         InventoryUtil.assertNotNull(FileSystemStorageAdapter.class, "rootDirectory", rootDirectory);
 
@@ -212,11 +254,13 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
             throw new InvalidConfigException(CONFIG_PROPERTY_BUCKET_LENGTH + " must be in [1," + MAX_BUCKET_LENGTH + "], found " + bucketLen);
         }
         this.bucketLength = bucketLen;
+        this.bucketSummary = bucketSummary;
         
         FileSystem fs = FileSystems.getDefault();
         Path root = fs.getPath(rootDirectory.getAbsolutePath());
         this.contentPath = root.resolve(CONTENT_FOLDER);
         this.txnPath = root.resolve(TXN_FOLDER);
+        this.summaryPath = root.resolve(SUMMARY_FOLDER);
         
         init(root);
     }
@@ -248,10 +292,21 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
             }
             log.debug("validated txn dir: " + txnPath);
 
+            if (bucketSummary) {
+                if (!Files.exists(summaryPath)) {
+                    Files.createDirectories(summaryPath);
+                    log.debug("created summary dir: " + summaryPath);
+                }
+                if (!Files.isReadable(summaryPath) || (!Files.isWritable(summaryPath))) {
+                    throw new InvalidConfigException("read-write permission required on summary directory");
+                }
+                log.debug("validated summary dir: " + summaryPath);
+            }
+
         } catch (InvalidPathException e) {
             throw new InvalidConfigException("Invalid root directory: " + root, e);
         } catch (IOException io) {
-            throw new InvalidConfigException(("Could not create content or transaction directory"), io);
+            throw new InvalidConfigException(("Could not create content, transaction, or summary directory"), io);
         }
     }
 
@@ -289,22 +344,7 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
         InventoryUtil.assertNotNull(OpaqueFileSystemStorageAdapter.class, "dest", dest);
         log.debug("get: " + storageLocation);
 
-        Path path = storageLocationToPath(storageLocation);
-        if (!Files.exists(path)) {
-            throw new ResourceNotFoundException("not found: " + storageLocation);
-        }
-        try {
-            String delAttr = getFileAttribute(path, DELETED_PRESERVED);
-            if ("true".equals(delAttr)) {
-                log.debug("skip " + DELETED_PRESERVED + ": " + storageLocation);
-                throw new ResourceNotFoundException("not found: " + storageLocation);
-            }
-        } catch (IOException ex) {
-            throw new StorageEngageException("failed to read attributes for stored file: " + storageLocation, ex);
-        }
-        if (!Files.isRegularFile(path)) {
-            throw new IllegalArgumentException("not a file: " + storageLocation);
-        }
+        Path path = getReadablePath(storageLocation);
         InputStream source = null;
         try {
             source = Files.newInputStream(path, StandardOpenOption.READ);
@@ -328,23 +368,7 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
         InventoryUtil.assertNotNull(OpaqueFileSystemStorageAdapter.class, "byteRange", byteRange);
         log.debug("get: " + storageLocation + " " + byteRange);
 
-        Path path = storageLocationToPath(storageLocation);
-        if (!Files.exists(path)) {
-            throw new ResourceNotFoundException("not found: " + storageLocation);
-        }
-        try {
-            String delAttr = getFileAttribute(path, DELETED_PRESERVED);
-            if ("true".equals(delAttr)) {
-                log.debug("skip " + DELETED_PRESERVED + ": " + storageLocation);
-                throw new ResourceNotFoundException("not found: " + storageLocation);
-            }
-        } catch (IOException ex) {
-            throw new StorageEngageException("failed to read attributes for stored file: " + storageLocation, ex);
-        }
-        
-        if (!Files.isRegularFile(path)) {
-            throw new IllegalArgumentException("not a file: " + storageLocation);
-        }
+        Path path = getReadablePath(storageLocation);
         
         InputStream source = null;
         try {
@@ -368,6 +392,51 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
         }
     }
     
+    @Override
+    public void get(StorageLocation storageLocation, OutputStream dest, SortedSet<ByteRange> byteRanges)
+        throws ResourceNotFoundException, ReadException, WriteException, StorageEngageException, TransientException {
+        InventoryUtil.assertNotNull(OpaqueFileSystemStorageAdapter.class, "storageLocation", storageLocation);
+        InventoryUtil.assertNotNull(OpaqueFileSystemStorageAdapter.class, "dest", dest);
+        InventoryUtil.assertNotNull(OpaqueFileSystemStorageAdapter.class, "byteRanges", byteRanges);
+        log.debug("get: " + storageLocation + " " + byteRanges);
+
+        Path path = getReadablePath(storageLocation);
+        FileChannelTransfer.transfer(path, Channels.newChannel(dest), byteRanges);
+    }
+    
+    @Override
+    public void get(StorageLocation storageLocation, WritableByteChannel dest, ByteRange byteRange)
+        throws ResourceNotFoundException, ReadException, WriteException, StorageEngageException, TransientException {
+        InventoryUtil.assertNotNull(OpaqueFileSystemStorageAdapter.class, "storageLocation", storageLocation);
+        InventoryUtil.assertNotNull(OpaqueFileSystemStorageAdapter.class, "dest", dest);
+        log.debug("get: " + storageLocation + " " + byteRange);
+
+        Path path = getReadablePath(storageLocation);
+        FileChannelTransfer.transfer(path, dest, byteRange);
+    }
+    
+    // path to a stored object that can be read
+    private Path getReadablePath(StorageLocation storageLocation) 
+        throws ResourceNotFoundException, StorageEngageException {
+        Path path = storageLocationToPath(storageLocation);
+        if (!Files.exists(path)) {
+            throw new ResourceNotFoundException("not found: " + storageLocation);
+        }
+        try {
+            String delAttr = getFileAttribute(path, DELETED_PRESERVED);
+            if ("true".equals(delAttr)) {
+                log.debug("skip " + DELETED_PRESERVED + ": " + storageLocation);
+                throw new ResourceNotFoundException("not found: " + storageLocation);
+            }
+        } catch (IOException ex) {
+            throw new StorageEngageException("failed to read attributes for stored file: " + storageLocation, ex);
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("not a file: " + storageLocation);
+        }
+        return path;
+    }
+    
     @Override
     public StorageMetadata put(NewArtifact newArtifact, InputStream source, String transactionID)
         throws IncorrectContentChecksumException, IncorrectContentLengthException, 
@@ -708,8 +777,10 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
             }
 
             // atomic copy into content directory
-            final Path result = Files.move(txnTarget, contentTarget, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
-            log.debug("committed: " + result);
+            changeBucket(sm.getStorageLocation().storageBucket, () -> {
+                final Path result = Files.move(txnTarget, contentTarget, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                log.debug("committed: " + result);
+            }, sm, null);
             
             // defensive check in case commit tweaked lastModified timestamp slightly:
             Date d2 = new Date(Files.getLastModifiedTime(contentTarget).toMillis());
@@ -771,7 +842,9 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
                     // avoid poking fs timestamp unecessarily
                     if (!deletePreserved) {
                         try {
-                            setFileAttribute(path, DELETED_PRESERVED, "true");
+                            StorageMetadata removed = createStorageMetadata(contentPath, path, true);
+                            changeBucket(storageLocation.storageBucket, 
+                                () -> setFileAttribute(path, DELETED_PRESERVED, "true"), null, removed);
                         } catch (IOException ex) {
                             throw new StorageEngageException("failed to set attribute for stored file: " + storageLocation, ex);
                         }
@@ -788,7 +861,12 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
         
         log.debug("delete/actual: " + storageLocation + " aka " + uriAttr);
         try {
-            Files.delete(path);
+            // deleted-preserved objects are not included in the summary
+            StorageMetadata removed = null;
+            if (!deletePreserved) {
+                removed = createStorageMetadata(contentPath, path, true);
+            }
+            changeBucket(storageLocation.storageBucket, () -> Files.delete(path), null, removed);
         } catch (IOException ex) {
             throw new StorageEngageException("failed to delete stored file: " + storageLocation, ex);
         }
@@ -817,11 +895,14 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
             if ("true".equals(delAttr)) {
                 String uriAttr = getFileAttribute(path, ARTIFACTID_ATTR);
                 log.debug("recover: " + storageLocation + " aka " + uriAttr);
-                setFileAttribute(path, DELETED_PRESERVED, null);
-                if (contentLastModified != null) {
-                    FileTime t = FileTime.fromMillis(contentLastModified.getTime());
-                    Files.setLastModifiedTime(path, t);
-                }
+                StorageMetadata added = createStorageMetadata(contentPath, path, true);
+                changeBucket(storageLocation.storageBucket, () -> {
+                    setFileAttribute(path, DELETED_PRESERVED, null);
+                    if (contentLastModified != null) {
+                        FileTime t = FileTime.fromMillis(contentLastModified.getTime());
+                        Files.setLastModifiedTime(path, t);
+                    }
+                }, added, null);
             }
         } catch (IOException ex) {
             throw new StorageEngageException("failed to read attributes for stored file: " + storageLocation, ex);
@@ -853,6 +934,157 @@ public class OpaqueFileSystemStorageAdapter implements StorageAdapter {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public BucketSummary getBucketSummary(String storageBucketPrefix) throws StorageEngageException, TransientException {
+        String prefix = storageBucketPrefix;
+        if (prefix == null) {
+            prefix = "";
+        }
+        if (!bucketSummary) {
+            throw new UnsupportedOperationException("bucket summary not enabled: " + CONFIG_PROPERTY_BUCKET_SUMMARY);
+        }
+        if (bucketLength == 0 || prefix.length() > bucketLength) {
+            throw new UnsupportedOperationException("bucket summary: prefix=" + prefix + " bucketLength=" + bucketLength);
+        }
+        BucketSummary ret = new BucketSummary(prefix);
+        try {
+            addBucketSummaries(ret, prefix, bucketToPath(prefix));
+        } catch (IOException ex) {
+            throw new StorageEngageException("failed to get bucket summary: " + prefix, ex);
+        }
+        log.debug("getBucketSummary: " + ret);
+        return ret;
+    }
+    
+    // add summaries of the existing buckets below dir
+    private void addBucketSummaries(BucketSummary summary, String bucket, Path dir) 
+        throws IOException, StorageEngageException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        if (bucket.length() == bucketLength) {
+            summary.add(changeBucket(bucket, null, null, null));
+            return;
+        }
+        List<Path> children = new ArrayList<>();
+        try (Stream<Path> str = Files.list(dir)) {
+            str.forEach(p -> children.add(p));
+        }
+        for (Path p : children) {
+            addBucketSummaries(summary, bucket + p.getFileName().toString(), p);
+        }
+    }
+    
+    // a change to the stored objects in a single bucket
+    private interface BucketChange {
+        void apply() throws IOException;
+    }
+    
+    /**
+     * Apply a change to the stored objects in a bucket and update the bucket summary. The summary 
+     * file is locked for the duration and left empty while the change is in progress so that it is
+     * rebuilt if the change fails or the process dies. If bucket summaries are not enabled, the
+     * change is applied without locking.
+     * 
+     * @param bucket the bucket
+     * @param change change to stored objects, null to get the current summary
+     * @param added stored object added by the change, may be null
+     * @param removed stored object removed by the change, may be null
+     * @return the current summary of the bucket
+     */
+    private BucketSummary changeBucket(String bucket, BucketChange change, StorageMetadata added, StorageMetadata removed) 
+        throws IOException, StorageEngageException {
+        if (bucketLength == 0 || !bucketSummary) {
+            if (change != null) {
+                change.apply();
+            }
+            return null;
+        }
+        Path sp = summaryPath.resolve(bucket);
+        Object lock = SUMMARY_LOCKS[(bucket.hashCode() & 0x7fffffff) % SUMMARY_LOCKS.length];
+        synchronized (lock) {
+            try (FileChannel fc = FileChannel.open(sp, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+                FileLock flock = fc.lock()) {
+                BucketSummary cur = readBucketSummary(bucket, sp, fc);
+                if (change != null) {
+                    writeBucketSummary(fc, null);
+                    change.apply();
+                    if (cur != null) {
+                        if (added != null) {
+                            cur.add(added);
+                        }
+                        if (removed != null) {
+                            cur.remove(removed);
+                        }
+                    }
+                }
+                if (cur == null) {
+                    cur = new BucketSummary(bucket);
+                    Iterator<StorageMetadata> iter = new OpaqueIterator(contentPath, bucket, false);
+                    while (iter.hasNext()) {
+                        cur.add(iter.next());
+                    }
+                    log.debug("changeBucket: rebuilt " + cur);
+                    writeBucketSummary(fc, cur);
+                } else if (change != null) {
+                    writeBucketSummary(fc, cur);
+                }
+                return cur;
+            }
+        }
+    }
+    
+    // summary file content: {numObjects} {totalBytes} {hex fold}
+    // return null if the summary needs to be rebuilt
+    private BucketSummary readBucketSummary(String bucket, Path sp, FileChannel fc) throws IOException {
+        if (fc.size() == 0L) {
+            return null;
+        }
+        Path dir = bucketToPath(bucket);
+        if (Files.exists(dir) && Files.getLastModifiedTime(dir).compareTo(Files.getLastModifiedTime(sp)) > 0) {
+            log.debug("readBucketSummary: " + bucket + " older than bucket directory");
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) fc.size());
+        while (buf.hasRemaining() && fc.read(buf, buf.position()) >= 0) {
+            // read fully
+        }
+        String[] parts = new String(buf.array(), Charset.forName("UTF-8")).trim().split(" ");
+        try {
+            if (parts.length == 3) {
+                return new BucketSummary(bucket, Long.parseLong(parts[0]), Long.parseLong(parts[1]), 
+                        Long.parseUnsignedLong(parts[2], 16));
+            }
+        } catch (NumberFormatException ex) {
+            log.debug("readBucketSummary: " + bucket + " invalid content: " + ex);
+        }
+        return null;
+    }
+    
+    // null summary: clear and force to disk before a change is applied
+    private void writeBucketSummary(FileChannel fc, BucketSummary summary) throws IOException {
+        fc.truncate(0L);
+        if (summary == null) {
+            fc.force(true);
+            return;
+        }
+        String s = summary.getNumObjects() + " " + summary.getTotalBytes() + " " + Long.toHexString(summary.getFold());
+        ByteBuffer buf = ByteBuffer.wrap(s.getBytes(Charset.forName("UTF-8")));
+        long pos = 0L;
+        while (buf.hasRemaining()) {
+            pos += fc.write(buf, pos);
+        }
+    }
+    
+    // bucket or bucket prefix directory under contentPath
+    private Path bucketToPath(String bucket) {
+        Path ret = contentPath;
+        for (char c : bucket.toCharArray()) {
+            ret = ret.resolve(String.valueOf(c));
+        }
+        return ret;
+    }
+
     // create from tmpfile in the txnPath to re-use UUID
     StorageLocation pathToStorageLocation(Path tmpfile) {
         // re-use the UUID from the tmpfile
@@ -0,0 +1,168 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.storage.s3;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.util.Iterator;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencadc.inventory.StorageLocation;
+import org.opencadc.inventory.storage.PutTransaction;
+import org.opencadc.inventory.storage.StorageMetadata;
+import org.opencadc.inventory.storage.test.StorageAdapterPutTxnTest;
+
+/**
+ * Transaction tests with tiny segments: the S3 server (usually a local stand-in) 
+ * must accept parts smaller than the S3 minimum part size.
+ * 
+ * @author agent
+ */
+public class S3PutTxnTest extends StorageAdapterPutTxnTest {
+    private static final Logger log = Logger.getLogger(S3PutTxnTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.inventory.storage.s3", Level.INFO);
+    }
+    
+    final S3StorageAdapterSB s3Adapter;
+    
+    public S3PutTxnTest() throws Exception {
+        super(new S3StorageAdapterSB());
+        this.s3Adapter = (S3StorageAdapterSB) super.adapter;
+        s3Adapter.segmentMinBytes = 10L;
+    }
+    
+    @Before
+    public void cleanupBefore() throws Exception {
+        log.info("cleanupBefore: START");
+        Iterator<StorageMetadata> sbi = s3Adapter.iterator();
+        while (sbi.hasNext()) {
+            StorageLocation loc = sbi.next().getStorageLocation();
+            s3Adapter.delete(loc);
+            log.info("\tdeleted: " + loc);
+        }
+        Iterator<String> trans = s3Adapter.listTransactions();
+        while (trans.hasNext()) {
+            String tid = trans.next();
+            s3Adapter.abortTransaction(tid);
+            log.info("\tdeleted: txn " + tid);
+        }
+        log.info("cleanupBefore: DONE");        
+    }
+    
+    @Test
+    public void testTransactionStatus() {
+        try {
+            URI uri = URI.create("cadc:TEST/testStartTransaction-null");
+            PutTransaction txn = adapter.startTransaction(uri, null);
+            log.info("null content length: " + txn);
+            Assert.assertNotNull(txn);
+            Assert.assertEquals(s3Adapter.segmentMinBytes, txn.getMinSegmentSize().longValue());
+            Assert.assertEquals(S3StorageAdapter.MAX_OBJECT_SIZE, txn.getMaxSegmentSize().longValue());
+            Assert.assertEquals(s3Adapter.partBytes, ((S3PutTransaction) txn).partSize);
+            
+            PutTransaction ts = adapter.getTransactionStatus(txn.getID());
+            Assert.assertNotNull(ts);
+            Assert.assertEquals(txn.getMinSegmentSize(), ts.getMinSegmentSize());
+            Assert.assertEquals(txn.getMaxSegmentSize(), ts.getMaxSegmentSize());
+            Assert.assertNull("no content", ts.storageMetadata);
+            
+            adapter.abortTransaction(txn.getID());
+            try {
+                PutTransaction nf = adapter.getTransactionStatus(txn.getID());
+                Assert.fail("expected IllegalArgumentException, got: " + nf);
+            } catch (IllegalArgumentException expected) {
+                log.info("caught expected: " + expected);
+            }
+            
+            // large object: part size grows so the object fits in MAX_PARTS
+            uri = URI.create("cadc:TEST/testStartTransaction-large");
+            Long len = S3StorageAdapter.MAX_PARTS * s3Adapter.partBytes * 2L;
+            txn = adapter.startTransaction(uri, len);
+            log.info("large content length: " + txn);
+            Assert.assertNotNull(txn);
+            Assert.assertEquals(2L * s3Adapter.partBytes, ((S3PutTransaction) txn).partSize);
+            
+            ts = adapter.getTransactionStatus(txn.getID());
+            Assert.assertEquals(((S3PutTransaction) txn).partSize, ((S3PutTransaction) ts).partSize);
+            Assert.assertEquals(len, ((S3PutTransaction) ts).totalLength);
+            
+            adapter.abortTransaction(txn.getID());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        } 
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.storage.s3;
+
+import java.net.URI;
+import java.util.Properties;
+import org.apache.log4j.Logger;
+import org.opencadc.inventory.StorageLocation;
+import org.opencadc.inventory.storage.PutTransaction;
+
+/**
+ * Transaction state for a put implemented as an S3 multipart upload. Each put
+ * (segment) in the transaction appends one or more parts to the upload; the state
+ * is persisted in a small object in the transaction bucket so it survives between
+ * requests.
+ * 
+ * @author agent
+ */
+public class S3PutTransaction extends PutTransaction {
+    private static final Logger log = Logger.getLogger(S3PutTransaction.class);
+
+    private static final String URI_ATTR = "uri";
+    private static final String STORAGE_ID_ATTR = "storageID";
+    private static final String STORAGE_BUCKET_ATTR = "storageBucket";
+    private static final String UPLOAD_ID_ATTR = "uploadID";
+    private static final String PART_SIZE_ATTR = "partSize";
+    private static final String MIN_SEGMENT_ATTR = "minSegmentSize";
+    private static final String MAX_SEGMENT_ATTR = "maxSegmentSize";
+    private static final String TOTAL_LENGTH_ATTR = "totalLength";
+    private static final String NUM_PARTS_ATTR = "numParts";
+    private static final String LENGTH_ATTR = "length";
+    private static final String DIGEST_ATTR = "digest";
+    private static final String PREV_NUM_PARTS_ATTR = "prevNumParts";
+    private static final String PREV_LENGTH_ATTR = "prevLength";
+    private static final String PREV_DIGEST_ATTR = "prevDigest";
+    
+    URI artifactURI;
+    StorageLocation storageLocation;
+    String uploadID;
+    long partSize;
+    Long totalLength;
+    
+    // current state: number of parts and bytes written, encoded digest state
+    int numParts = 0;
+    long length = 0L;
+    String digestState;
+    
+    // previous state: enables revert of the last segment
+    Integer prevNumParts;
+    Long prevLength;
+    String prevDigestState;
+    
+    public S3PutTransaction(String transactionID, Long minSegmentSize, Long maxSegmentSize) { 
+        super(transactionID, minSegmentSize, maxSegmentSize);
+    }
+    
+    Properties toProperties() {
+        Properties ret = new Properties();
+        ret.setProperty(URI_ATTR, artifactURI.toASCIIString());
+        ret.setProperty(STORAGE_ID_ATTR, storageLocation.getStorageID().toASCIIString());
+        if (storageLocation.storageBucket != null) {
+            ret.setProperty(STORAGE_BUCKET_ATTR, storageLocation.storageBucket);
+        }
+        ret.setProperty(UPLOAD_ID_ATTR, uploadID);
+        ret.setProperty(PART_SIZE_ATTR, Long.toString(partSize));
+        ret.setProperty(MIN_SEGMENT_ATTR, getMinSegmentSize().toString());
+        ret.setProperty(MAX_SEGMENT_ATTR, getMaxSegmentSize().toString());
+        if (totalLength != null) {
+            ret.setProperty(TOTAL_LENGTH_ATTR, totalLength.toString());
+        }
+        ret.setProperty(NUM_PARTS_ATTR, Integer.toString(numParts));
+        ret.setProperty(LENGTH_ATTR, Long.toString(length));
+        ret.setProperty(DIGEST_ATTR, digestState);
+        if (prevDigestState != null) {
+            ret.setProperty(PREV_NUM_PARTS_ATTR, prevNumParts.toString());
+            ret.setProperty(PREV_LENGTH_ATTR, prevLength.toString());
+            ret.setProperty(PREV_DIGEST_ATTR, prevDigestState);
+        }
+        return ret;
+    }
+    
+    static S3PutTransaction fromProperties(String transactionID, Properties props) {
+        Long minSeg = Long.parseLong(props.getProperty(MIN_SEGMENT_ATTR));
+        Long maxSeg = Long.parseLong(props.getProperty(MAX_SEGMENT_ATTR));
+        S3PutTransaction ret = new S3PutTransaction(transactionID, minSeg, maxSeg);
+        ret.artifactURI = URI.create(props.getProperty(URI_ATTR));
+        ret.storageLocation = new StorageLocation(URI.create(props.getProperty(STORAGE_ID_ATTR)));
+        ret.storageLocation.storageBucket = props.getProperty(STORAGE_BUCKET_ATTR);
+        ret.uploadID = props.getProperty(UPLOAD_ID_ATTR);
+        ret.partSize = Long.parseLong(props.getProperty(PART_SIZE_ATTR));
+        String stot = props.getProperty(TOTAL_LENGTH_ATTR);
+        if (stot != null) {
+            ret.totalLength = Long.parseLong(stot);
+        }
+        ret.numParts = Integer.parseInt(props.getProperty(NUM_PARTS_ATTR));
+        ret.length = Long.parseLong(props.getProperty(LENGTH_ATTR));
+        ret.digestState = props.getProperty(DIGEST_ATTR);
+        ret.prevDigestState = props.getProperty(PREV_DIGEST_ATTR);
+        if (ret.prevDigestState != null) {
+            ret.prevNumParts = Integer.parseInt(props.getProperty(PREV_NUM_PARTS_ATTR));
+            ret.prevLength = Long.parseLong(props.getProperty(PREV_LENGTH_ATTR));
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        String ret = super.toString() 
+                + " len=" + totalLength
+                + " parts=" + numParts
+                + " bytes=" + length
+                + " partSize=" + partSize;
+        return ret;
+    }
+}
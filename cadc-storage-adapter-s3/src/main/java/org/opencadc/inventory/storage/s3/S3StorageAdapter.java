@@ -79,27 +79,46 @@ import ca.nrc.cadc.net.ResourceNotFoundException;
 import ca.nrc.cadc.net.TransientException;
 import ca.nrc.cadc.util.HexUtil;
 import ca.nrc.cadc.util.StringUtil;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.InventoryUtil;
+import org.opencadc.inventory.Namespace;
 import org.opencadc.inventory.StorageLocation;
+import org.opencadc.inventory.storage.BucketType;
 import org.opencadc.inventory.storage.ByteRange;
+import org.opencadc.inventory.storage.ByteRangeUtil;
+import org.opencadc.inventory.storage.MessageDigestAPI;
 import org.opencadc.inventory.storage.NewArtifact;
 import org.opencadc.inventory.storage.PutTransaction;
 import org.opencadc.inventory.storage.StorageAdapter;
@@ -108,28 +127,45 @@ import org.opencadc.inventory.storage.StorageMetadata;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.BucketAlreadyExistsException;
 import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.DeleteBucketRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.Part;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 /**
  * Base implementation of a Storage Adapter using the Amazon S3 API. 
@@ -148,15 +184,41 @@ abstract class S3StorageAdapter implements StorageAdapter {
     private static final String CONF_S3BUCKET = S3StorageAdapter.class.getName() + ".s3bucket";
 
     static final int BUFFER_SIZE_BYTES = 8192;
+    static final long RANGE_COALESCE_GAP = 256 * 1024L;
     static final String DEFAULT_CHECKSUM_ALGORITHM = "md5";
     static final String CHECKSUM_KEY = "checksum";
     static final String ARTIFACT_URI_KEY = "uri";
+    
+    // S3 multipart upload limits
+    static final long MIN_PART_SIZE = 5L * 1024L * 1024L; // all but the last part
+    static final long MAX_PART_SIZE = 5L * 1024L * 1024L * 1024L;
+    static final long MAX_OBJECT_SIZE = 1024L * MAX_PART_SIZE;
+    static final int MAX_PARTS = 10000;
+    
+    static final long DEFAULT_PART_SIZE = 8L * 1024L * 1024L;
+    static final long COPY_PART_SIZE = 1024L * 1024L * 1024L;
+    static final long UPLOAD_BUFFER_LIMIT = 64L * 1024L * 1024L; // max memory for part buffers per put
+    static final int UPLOAD_THREADS = 4;
+    static final String TXN_BUCKET_SUFFIX = "-transactions";
 
     protected final URI s3endpoint;
     protected final int storageBucketLength;
     protected final String s3bucket;
     protected final S3Client s3client; // S3Client is thread safe
     
+    private final List<Namespace> purgeNamespaces = new ArrayList<>();
+    
+    // test code can lower these to use small content with a server that accepts small parts
+    long segmentMinBytes = MIN_PART_SIZE;
+    long partBytes = DEFAULT_PART_SIZE;
+    
+    // parts of a transaction segment are uploaded in parallel
+    private final ExecutorService uploadPool = Executors.newFixedThreadPool(UPLOAD_THREADS, r -> {
+        Thread t = new Thread(r, S3StorageAdapter.class.getSimpleName() + ".upload");
+        t.setDaemon(true);
+        return t;
+    });
+    
     // ctor for unit tests that do not connect to an S3 backend
     protected S3StorageAdapter(String s3bucket, int storageBucketLength) {
         this.s3bucket = s3bucket;
@@ -280,6 +342,42 @@ abstract class S3StorageAdapter implements StorageAdapter {
     
     protected abstract StorageLocation toExternal(InternalBucket bucket, String key);
     
+    @Override
+    public BucketType getBucketType() {
+        return BucketType.HEX;
+    }
+    
+    /**
+     * Recoverable namespaces are not supported: deleted objects are always removed
+     * from storage.
+     * 
+     * @param recoverable must be empty
+     * @throws UnsupportedOperationException if recoverable is not empty
+     */
+    @Override
+    public void setRecoverableNamespaces(List<Namespace> recoverable) {
+        if (!recoverable.isEmpty()) {
+            throw new UnsupportedOperationException("recoverable namespaces not supported");
+        }
+    }
+
+    @Override
+    public List<Namespace> getRecoverableNamespaces() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public void setPurgeNamespaces(List<Namespace> purge) {
+        // all deletes purge
+        this.purgeNamespaces.clear();
+        this.purgeNamespaces.addAll(purge);
+    }
+
+    @Override
+    public List<Namespace> getPurgeNamespaces() {
+        return purgeNamespaces;
+    }
+    
     /**
      * Obtain the InputStream for the given object. Tests can override this method.
      *
@@ -292,6 +390,22 @@ abstract class S3StorageAdapter implements StorageAdapter {
                 .key(storageLocation.getStorageID().toASCIIString())
                 .build());
     }
+    
+    /**
+     * Obtain the InputStream for a byte range of the given object. Tests can override this method.
+     *
+     * @param storageLocation The Storage Location of the desired object.
+     * @param byteRange The range of bytes to read.
+     * @return InputStream to the object content in the range.
+     */
+    InputStream toObjectInputStream(final StorageLocation storageLocation, final ByteRange byteRange) {
+        long endPos = byteRange.getOffset() + byteRange.getLength() - 1L; // RFC7233 range is inclusive
+        return s3client.getObject(GetObjectRequest.builder()
+                .bucket(toInternalBucket(storageLocation).name)
+                .key(storageLocation.getStorageID().toASCIIString())
+                .range("bytes=" + byteRange.getOffset() + "-" + endPos)
+                .build());
+    }
 
     /**
      * Reusable way to create a StorageMetadata object.
@@ -305,9 +419,7 @@ abstract class S3StorageAdapter implements StorageAdapter {
      */
     StorageMetadata toStorageMetadata(StorageLocation loc, URI md5, long contentLength, 
             final URI artifactURI, Date lastModified) {
-        StorageMetadata storageMetadata = new StorageMetadata(loc, md5, contentLength, lastModified);
-        storageMetadata.artifactURI = artifactURI;
-        return storageMetadata;
+        return new StorageMetadata(loc, artifactURI, md5, contentLength, lastModified);
     }
 
     /**
@@ -344,7 +456,31 @@ abstract class S3StorageAdapter implements StorageAdapter {
     @Override
     public void get(StorageLocation storageLocation, OutputStream dest, ByteRange byteRange) 
         throws InterruptedException, ResourceNotFoundException, ReadException, WriteException, StorageEngageException, TransientException {
-        throw new UnsupportedOperationException();
+        SortedSet<ByteRange> byteRanges = new TreeSet<>();
+        byteRanges.add(byteRange);
+        get(storageLocation, dest, byteRanges);
+    }
+    
+    @Override
+    public void get(StorageLocation storageLocation, OutputStream dest, SortedSet<ByteRange> byteRanges) 
+        throws InterruptedException, ResourceNotFoundException, ReadException, WriteException, StorageEngageException, TransientException {
+        LOGGER.debug("get: " + storageLocation + " " + byteRanges);
+        // one range request per group of nearby ranges: discarding a small gap is cheaper than a round trip
+        for (SortedSet<ByteRange> group : ByteRangeUtil.coalesce(byteRanges, RANGE_COALESCE_GAP)) {
+            ByteRange span = ByteRangeUtil.span(group);
+            try (final InputStream inputStream = toObjectInputStream(storageLocation, span)) {
+                ByteRangeUtil.copy(inputStream, span.getOffset(), group, dest);
+            } catch (NoSuchBucketException | NoSuchKeyException e) {
+                throw new ResourceNotFoundException("not found: " + storageLocation);
+            } catch (S3Exception | SdkClientException e) {
+                throw new StorageEngageException(e.getMessage(), e);
+            } catch (ReadException | WriteException e) {
+                // Handle before the IOException below so it's not wrapped into that catch.
+                throw e;
+            } catch (IOException e) {
+                throw new ReadException(e.getMessage(), e);
+            }
+        }
     }
 
     // internal bucket management used for init, dynamic buckets, and intTest cleanup
@@ -418,17 +554,17 @@ abstract class S3StorageAdapter implements StorageAdapter {
     public StorageMetadata put(NewArtifact newArtifact, InputStream source, String transactionID)
             throws ByteLimitExceededException, 
             IncorrectContentChecksumException, IncorrectContentLengthException, 
-            ReadException, WriteException,
+            InterruptedException, ReadException, WriteException,
             StorageEngageException {
         InventoryUtil.assertNotNull(S3StorageAdapter.class, "newArtifact", newArtifact);
         LOGGER.debug("put: " + newArtifact);
         
-        if (newArtifact.contentChecksum == null || newArtifact.contentLength == null) {
-            throw new UnsupportedOperationException("put requires contentChecksum and contentLength");
+        if (transactionID != null) {
+            return putSegment(newArtifact, source, transactionID);
         }
         
-        if (transactionID != null) {
-            throw new UnsupportedOperationException("put with transaction");
+        if (newArtifact.contentChecksum == null || newArtifact.contentLength == null) {
+            throw new UnsupportedOperationException("put requires contentChecksum and contentLength");
         }
         
         final StorageLocation loc = generateStorageLocation();
@@ -560,24 +696,617 @@ abstract class S3StorageAdapter implements StorageAdapter {
         }
     }
 
+    // put a segment in a transaction: the segment is split into parts of the multipart upload
+    // that are uploaded in parallel (see PartUploader); the transaction state is only updated
+    // when the whole segment was uploaded so a failed put leaves the previous state
+    private StorageMetadata putSegment(NewArtifact newArtifact, InputStream source, String transactionID)
+            throws ByteLimitExceededException, 
+            IncorrectContentChecksumException, IncorrectContentLengthException, 
+            InterruptedException, ReadException, WriteException,
+            StorageEngageException {
+        S3PutTransaction txn = getTransactionStatusImpl(transactionID);
+        if (!txn.artifactURI.equals(newArtifact.getArtifactURI())) {
+            throw new IllegalArgumentException("incorrect Artifact.uri in transaction: " + transactionID
+                + " expected: " + txn.artifactURI);
+        }
+        
+        // enforce segment size limits
+        if (newArtifact.contentLength == null) {
+            throw new IllegalArgumentException("invalid put: must specify content-length of segment");
+        }
+        if (txn.getMaxSegmentSize() < newArtifact.contentLength) {
+            throw new IllegalArgumentException("invalid put: segment too large - expected content-length in "
+                    + "[" + txn.getMinSegmentSize() + "," + txn.getMaxSegmentSize() + "]");
+        }
+        // without totalLength any segment could be followed by another one: S3 rejects parts
+        // other than the last that are too small (EntityTooSmall) when the upload is completed
+        if ((txn.totalLength == null || txn.length + newArtifact.contentLength != txn.totalLength)
+                && newArtifact.contentLength < txn.getMinSegmentSize()) {
+            throw new IllegalArgumentException("invalid put: segment too small - expected content-length in "
+                    + "[" + txn.getMinSegmentSize() + "," + txn.getMaxSegmentSize() + "]");
+        }
+        
+        MessageDigestAPI md;
+        try {
+            md = MessageDigestAPI.getDigest(txn.digestState);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("BUG: failed to restore digest in transaction " + transactionID, ex);
+        }
+        
+        final InternalBucket b = toInternalBucket(txn.storageLocation);
+        final String key = txn.storageLocation.getStorageID().toASCIIString();
+        final long partSize = txn.partSize;
+        final long minPartSize = txn.getMinSegmentSize();
+        final PartUploader up = new PartUploader(b.name, key, txn.uploadID, txn.numParts + 1, partSize + minPartSize);
+        try {
+            long remaining = newArtifact.contentLength;
+            while (remaining > 0L) {
+                long len = Math.min(partSize, remaining);
+                if (remaining - len < minPartSize) {
+                    // short tail: merge with this part so only the last part of the upload is small
+                    len = remaining;
+                }
+                up.upload(source, len, md);
+                remaining -= len;
+            }
+            up.finish();
+            if (source.read() != -1) {
+                throw new IncorrectContentLengthException("length mismatch: segment longer than content-length " 
+                        + newArtifact.contentLength);
+            }
+        } catch (ByteLimitExceededException | IncorrectContentLengthException | InterruptedException | WriteException ex) {
+            up.cancel();
+            throw ex;
+        } catch (IOException ex) {
+            up.cancel();
+            throw new ReadException("read from input stream failed", ex);
+        }
+        
+        final String prevDigestState = txn.digestState;
+        final String curDigestState = MessageDigestAPI.getEncodedState(md);
+        final long curLength = txn.length + up.numBytes;
+        URI checksum = URI.create(md.getAlgorithmName() + ":" + HexUtil.toHex(md.digest()));
+        LOGGER.debug("current checksum: " + checksum);
+        LOGGER.debug("current file size: " + curLength);
+        
+        if (txn.totalLength != null && curLength < txn.totalLength) {
+            // incomplete: no further content checks
+            LOGGER.debug("incomplete put in transaction: " + txn.getID() + " - not verifying checksum or length");
+        } else {
+            // complete: do content checks; state not saved so the segment is effectively reverted
+            if (newArtifact.contentChecksum != null && !checksum.equals(newArtifact.contentChecksum)) {
+                throw new IncorrectContentChecksumException("checksum mismatch: " + newArtifact.contentChecksum + " != " + checksum);
+            }
+            if (txn.totalLength != null && curLength != txn.totalLength) {
+                throw new IncorrectContentLengthException("length mismatch: " + txn.totalLength + " != " + curLength);
+            }
+        }
+        
+        txn.prevNumParts = txn.numParts;
+        txn.prevLength = txn.length;
+        txn.prevDigestState = prevDigestState;
+        txn.numParts = up.nextPart - 1;
+        txn.length = curLength;
+        txn.digestState = curDigestState;
+        saveTransaction(txn);
+        LOGGER.debug("transaction uncommitted: " + txn);
+        
+        PutTransaction t = getTransactionStatusImpl(transactionID);
+        return t.storageMetadata;
+    }
+    
+    // fill the buffer from the stream: fewer than buf.length bytes means end of stream
+    private static int fill(InputStream istream, byte[] buf, MessageDigestAPI md) throws IOException {
+        int off = 0;
+        while (off < buf.length) {
+            int n = istream.read(buf, off, buf.length - off);
+            if (n < 0) {
+                break;
+            }
+            md.update(buf, off, n);
+            off += n;
+        }
+        return off;
+    }
+    
+    // upload parts of one segment: at most UPLOAD_BUFFER_LIMIT / maxPartSize part buffers (the 
+    // one being filled plus those in flight) so memory use per put stays under UPLOAD_BUFFER_LIMIT;
+    // parts too large for two buffers are streamed from the source one at a time
+    private class PartUploader {
+        private final String bucket;
+        private final String key;
+        private final String uploadID;
+        private final int maxInFlight;
+        private final LinkedList<Future<String>> inFlight = new LinkedList<>();
+        
+        int nextPart;
+        long numBytes = 0L;
+        
+        PartUploader(String bucket, String key, String uploadID, int firstPart, long maxPartSize) {
+            this.bucket = bucket;
+            this.key = key;
+            this.uploadID = uploadID;
+            this.nextPart = firstPart;
+            this.maxInFlight = getMaxInFlight(maxPartSize);
+        }
+        
+        void upload(InputStream source, long len, MessageDigestAPI md) 
+                throws ByteLimitExceededException, IncorrectContentLengthException, InterruptedException, 
+                    IOException, WriteException {
+            if (nextPart > MAX_PARTS) {
+                throw new ByteLimitExceededException("put exceeds max number of parts (" + MAX_PARTS + ") in transaction", 
+                        MAX_PARTS);
+            }
+            final int partNumber = nextPart++;
+            if (maxInFlight == 0) {
+                PartInputStream part = new PartInputStream(source, len, md);
+                try {
+                    uploadPart(bucket, key, uploadID, partNumber, part, len);
+                } catch (S3Exception | SdkClientException ex) {
+                    if (part.readFail != null) {
+                        throw part.readFail;
+                    }
+                    if (part.eof) {
+                        throw new IncorrectContentLengthException("length mismatch: segment shorter than content-length");
+                    }
+                    throw new WriteException("failed to upload part: " + ex, ex);
+                }
+                if (part.remaining > 0L) {
+                    throw new IncorrectContentLengthException("length mismatch: segment shorter than content-length");
+                }
+            } else {
+                while (inFlight.size() >= maxInFlight) {
+                    waitFor(inFlight.removeFirst());
+                }
+                final byte[] buf = new byte[(int) len];
+                final int n = fill(source, buf, md);
+                if (n < len) {
+                    throw new IncorrectContentLengthException("length mismatch: segment shorter than content-length");
+                }
+                inFlight.add(uploadPool.submit(() -> uploadPart(bucket, key, uploadID, partNumber, buf, n)));
+            }
+            numBytes += len;
+        }
+        
+        void finish() throws InterruptedException, WriteException {
+            while (!inFlight.isEmpty()) {
+                waitFor(inFlight.removeFirst());
+            }
+        }
+        
+        void cancel() {
+            for (Future<String> f : inFlight) {
+                f.cancel(true);
+            }
+            inFlight.clear();
+        }
+        
+        private void waitFor(Future<String> f) throws InterruptedException, WriteException {
+            try {
+                f.get();
+            } catch (ExecutionException ex) {
+                throw new WriteException("failed to upload part: " + ex.getCause(), ex.getCause());
+            }
+        }
+    }
+    
+    // number of part buffers that can be uploading while the next one is filled; 0 if 
+    // two buffers do not fit in UPLOAD_BUFFER_LIMIT and parts must be streamed
+    static int getMaxInFlight(long maxPartSize) {
+        long maxBuffers = UPLOAD_BUFFER_LIMIT / maxPartSize;
+        return (int) Math.max(0L, Math.min(UPLOAD_THREADS, maxBuffers - 1L));
+    }
+    
+    // one part read directly from the segment stream: the source is not closed
+    private static class PartInputStream extends InputStream {
+        private final InputStream source;
+        private final MessageDigestAPI md;
+        long remaining;
+        boolean eof = false;
+        IOException readFail;
+        
+        PartInputStream(InputStream source, long len, MessageDigestAPI md) {
+            this.source = source;
+            this.remaining = len;
+            this.md = md;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            if (n < 0) {
+                return -1;
+            }
+            return b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0L) {
+                return -1;
+            }
+            try {
+                int n = source.read(b, off, (int) Math.min(len, remaining));
+                if (n < 0) {
+                    eof = true;
+                } else if (n > 0) {
+                    md.update(b, off, n);
+                    remaining -= n;
+                }
+                return n;
+            } catch (IOException ex) {
+                readFail = ex;
+                throw ex;
+            }
+        }
+
+        @Override
+        public void close() {
+            // the source is the rest of the segment
+        }
+    }
+    
+    // upload one part with Content-MD5 so S3 verifies each part; returns the part ETag
+    String uploadPart(String bucket, String key, String uploadID, int partNumber, byte[] buf, int len) {
+        try {
+            MessageDigest md = MessageDigest.getInstance(DEFAULT_CHECKSUM_ALGORITHM);
+            md.update(buf, 0, len);
+            String contentMD5 = new String(Base64.getEncoder().encode(md.digest()));
+            UploadPartRequest req = UploadPartRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadID)
+                    .partNumber(partNumber)
+                    .contentLength((long) len)
+                    .contentMD5(contentMD5)
+                    .build();
+            UploadPartResponse resp = s3client.uploadPart(req, RequestBody.fromInputStream(new ByteArrayInputStream(buf, 0, len), len));
+            LOGGER.debug("uploadPart: " + key + " " + partNumber + " " + len + " bytes");
+            return resp.eTag();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("BUG: failed to create MessageDigest: " + DEFAULT_CHECKSUM_ALGORITHM, ex);
+        }
+    }
+    
+    // upload one part streamed from the input: the checksum of the whole file is verified in 
+    // putSegment; returns the part ETag
+    String uploadPart(String bucket, String key, String uploadID, int partNumber, InputStream istream, long len) {
+        UploadPartRequest req = UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadID)
+                .partNumber(partNumber)
+                .contentLength(len)
+                .build();
+        UploadPartResponse resp = s3client.uploadPart(req, RequestBody.fromInputStream(istream, len));
+        LOGGER.debug("uploadPart: " + key + " " + partNumber + " " + len + " bytes (streamed)");
+        return resp.eTag();
+    }
+
     @Override
-    public PutTransaction startTransaction(URI uri) throws StorageEngageException, TransientException {
-        throw new UnsupportedOperationException();
+    public PutTransaction startTransaction(URI artifactURI, Long contentLength) 
+            throws StorageEngageException, TransientException {
+        InventoryUtil.assertNotNull(S3StorageAdapter.class, "artifactURI", artifactURI);
+        if (contentLength != null && contentLength > MAX_OBJECT_SIZE) {
+            throw new IllegalArgumentException("invalid content length: " + contentLength + " exceeds max object size " + MAX_OBJECT_SIZE);
+        }
+        
+        // part size large enough that the whole object fits in MAX_PARTS
+        long partSize = partBytes;
+        if (contentLength != null) {
+            partSize = Math.max(partSize, (contentLength + MAX_PARTS - 1) / MAX_PARTS);
+        }
+        
+        final String transactionID = UUID.randomUUID().toString();
+        final S3PutTransaction ret = new S3PutTransaction(transactionID, segmentMinBytes, MAX_OBJECT_SIZE);
+        ret.artifactURI = artifactURI;
+        ret.storageLocation = generateStorageLocation();
+        ret.partSize = partSize;
+        ret.totalLength = contentLength;
+        try {
+            // TODO: accept non-default checksum algorithm for txn?
+            MessageDigestAPI md = MessageDigestAPI.getInstance(DEFAULT_CHECKSUM_ALGORITHM);
+            ret.digestState = MessageDigestAPI.getEncodedState(md);
+            
+            InternalBucket b = toInternalBucket(ret.storageLocation);
+            ensureBucket(b);
+            ensureTransactionBucket();
+            
+            // object is not visible until the upload is completed in commitTransaction
+            final Map<String, String> metadata = new HashMap<>();
+            metadata.put(ARTIFACT_URI_KEY, artifactURI.toASCIIString().trim());
+            CreateMultipartUploadRequest req = CreateMultipartUploadRequest.builder()
+                    .bucket(b.name)
+                    .key(ret.storageLocation.getStorageID().toASCIIString())
+                    .metadata(metadata)
+                    .build();
+            ret.uploadID = s3client.createMultipartUpload(req).uploadId();
+            saveTransaction(ret);
+            LOGGER.debug("startTransaction: contentLength=" + contentLength + " " + ret);
+            return ret;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("BUG: failed to create MessageDigestAPI: " + DEFAULT_CHECKSUM_ALGORITHM, ex);
+        } catch (ResourceAlreadyExistsException | S3Exception | SdkClientException ex) {
+            throw new StorageEngageException("failed to create transaction", ex);
+        }
     }
 
     @Override
-    public StorageMetadata commitTransaction(String string) throws StorageEngageException, TransientException {
-        throw new UnsupportedOperationException();
+    public PutTransaction revertTransaction(String transactionID) 
+            throws IllegalArgumentException, StorageEngageException, TransientException, UnsupportedOperationException {
+        S3PutTransaction txn = getTransactionStatusImpl(transactionID);
+        if (txn.prevDigestState == null) {
+            throw new IllegalArgumentException("transaction not revertable: " + transactionID);
+        }
+        
+        // parts of the reverted segment stay in the upload: the next put overwrites them
+        // and commit only includes parts up to numParts
+        txn.numParts = txn.prevNumParts;
+        txn.length = txn.prevLength;
+        txn.digestState = txn.prevDigestState;
+        txn.prevNumParts = null;
+        txn.prevLength = null;
+        txn.prevDigestState = null;
+        saveTransaction(txn);
+        
+        return getTransactionStatusImpl(transactionID);
+    }
+    
+    @Override
+    public StorageMetadata commitTransaction(String transactionID) 
+            throws IllegalArgumentException, StorageEngageException, TransientException {
+        S3PutTransaction txn = getTransactionStatusImpl(transactionID);
+        if (txn.totalLength != null && txn.length != txn.totalLength) {
+            throw new IllegalArgumentException("incomplete transaction: " + transactionID 
+                    + " length: " + txn.length + " expected: " + txn.totalLength);
+        }
+        
+        final InternalBucket b = toInternalBucket(txn.storageLocation);
+        final String key = txn.storageLocation.getStorageID().toASCIIString();
+        try {
+            if (txn.numParts == 0) {
+                // empty object: upload needs at least one part
+                uploadPart(b.name, key, txn.uploadID, 1, new byte[0], 0);
+                txn.numParts = 1;
+            }
+            List<CompletedPart> parts = listParts(b.name, key, txn.uploadID, txn.numParts);
+            if (parts.size() != txn.numParts) {
+                throw new RuntimeException("BUG: found " + parts.size() + " parts, expected " + txn.numParts 
+                        + " in transaction " + transactionID);
+            }
+            CompleteMultipartUploadRequest req = CompleteMultipartUploadRequest.builder()
+                    .bucket(b.name)
+                    .key(key)
+                    .uploadId(txn.uploadID)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build();
+            s3client.completeMultipartUpload(req);
+            
+            // object metadata is fixed when the upload is created so the checksum calculated 
+            // here (the multipart ETag is not an MD5 of the content) is added by a copy in place
+            MessageDigestAPI md = MessageDigestAPI.getDigest(txn.digestState);
+            URI checksum = URI.create(md.getAlgorithmName() + ":" + HexUtil.toHex(md.digest()));
+            final Map<String, String> metadata = new HashMap<>();
+            metadata.put(ARTIFACT_URI_KEY, txn.artifactURI.toASCIIString().trim());
+            metadata.put(CHECKSUM_KEY, checksum.toASCIIString());
+            copyWithMetadata(b.name, key, txn.length, metadata);
+            
+            deleteTransaction(transactionID);
+            return head(b, key);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("BUG: failed to restore digest in transaction " + transactionID, ex);
+        } catch (InterruptedException ex) {
+            throw new StorageEngageException("interrupted while committing transaction: " + transactionID, ex);
+        } catch (S3Exception | SdkClientException ex) {
+            throw new StorageEngageException("failed to commit transaction: " + transactionID, ex);
+        }
+    }
+    
+    // parts of the upload in order, ignoring parts left behind by a failed or reverted put
+    private List<CompletedPart> listParts(String bucket, String key, String uploadID, int numParts) {
+        List<CompletedPart> ret = new ArrayList<>();
+        Integer marker = null;
+        boolean more = true;
+        while (more) {
+            ListPartsRequest.Builder lb = ListPartsRequest.builder().bucket(bucket).key(key).uploadId(uploadID);
+            if (marker != null) {
+                lb.partNumberMarker(marker);
+            }
+            ListPartsResponse resp = s3client.listParts(lb.build());
+            for (Part p : resp.parts()) {
+                if (p.partNumber() <= numParts) {
+                    ret.add(CompletedPart.builder().partNumber(p.partNumber()).eTag(p.eTag()).build());
+                }
+            }
+            more = Boolean.TRUE.equals(resp.isTruncated());
+            marker = resp.nextPartNumberMarker();
+        }
+        return ret;
+    }
+    
+    // replace object metadata with a server-side copy; objects larger than the single copy 
+    // limit are copied in parallel parts
+    private void copyWithMetadata(String bucket, String key, long contentLength, Map<String, String> metadata) 
+            throws InterruptedException, StorageEngageException {
+        final String src;
+        try {
+            src = bucket + "/" + URLEncoder.encode(key, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new RuntimeException("BUG: UTF-8 encoding not supported", ex);
+        }
+        
+        if (contentLength <= MAX_PART_SIZE) {
+            CopyObjectRequest req = CopyObjectRequest.builder()
+                    .copySource(src)
+                    .bucket(bucket)
+                    .key(key)
+                    .metadata(metadata)
+                    .metadataDirective(MetadataDirective.REPLACE)
+                    .build();
+            s3client.copyObject(req);
+            return;
+        }
+        
+        CreateMultipartUploadRequest creq = CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .metadata(metadata)
+                .build();
+        final String uploadID = s3client.createMultipartUpload(creq).uploadId();
+        try {
+            List<Future<CompletedPart>> results = new ArrayList<>();
+            int partNumber = 1;
+            for (long off = 0L; off < contentLength; off += COPY_PART_SIZE) {
+                final int pn = partNumber++;
+                final long end = Math.min(off + COPY_PART_SIZE, contentLength) - 1L; // inclusive
+                final String range = "bytes=" + off + "-" + end;
+                results.add(uploadPool.submit(() -> {
+                    UploadPartCopyRequest req = UploadPartCopyRequest.builder()
+                            .copySource(src)
+                            .copySourceRange(range)
+                            .bucket(bucket)
+                            .key(key)
+                            .uploadId(uploadID)
+                            .partNumber(pn)
+                            .build();
+                    String etag = s3client.uploadPartCopy(req).copyPartResult().eTag();
+                    return CompletedPart.builder().partNumber(pn).eTag(etag).build();
+                }));
+            }
+            List<CompletedPart> parts = new ArrayList<>();
+            for (Future<CompletedPart> f : results) {
+                parts.add(f.get());
+            }
+            CompleteMultipartUploadRequest req = CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadID)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build();
+            s3client.completeMultipartUpload(req);
+        } catch (ExecutionException ex) {
+            s3client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket).key(key).uploadId(uploadID).build());
+            throw new StorageEngageException("failed to copy object: " + bucket + "/" + key, ex.getCause());
+        }
     }
 
     @Override
-    public void abortTransaction(String string) throws StorageEngageException, TransientException {
-        throw new UnsupportedOperationException();
+    public void abortTransaction(String transactionID) throws IllegalArgumentException, StorageEngageException, TransientException {
+        S3PutTransaction txn = getTransactionStatusImpl(transactionID);
+        try {
+            AbortMultipartUploadRequest req = AbortMultipartUploadRequest.builder()
+                    .bucket(toInternalBucket(txn.storageLocation).name)
+                    .key(txn.storageLocation.getStorageID().toASCIIString())
+                    .uploadId(txn.uploadID)
+                    .build();
+            s3client.abortMultipartUpload(req);
+        } catch (NoSuchUploadException ex) {
+            LOGGER.debug("abortTransaction: upload not found: " + txn.uploadID);
+        } catch (S3Exception | SdkClientException ex) {
+            throw new StorageEngageException("failed to abort transaction: " + transactionID, ex);
+        }
+        deleteTransaction(transactionID);
     }
 
     @Override
-    public PutTransaction getTransactionStatus(String string) throws StorageEngageException, TransientException {
-        throw new UnsupportedOperationException();
+    public PutTransaction getTransactionStatus(String transactionID) 
+            throws IllegalArgumentException, StorageEngageException, TransientException {
+        return getTransactionStatusImpl(transactionID);
+    }
+    
+    // enable internal calls to avoid cast
+    private S3PutTransaction getTransactionStatusImpl(String transactionID) throws IllegalArgumentException, StorageEngageException {
+        InventoryUtil.assertNotNull(S3StorageAdapter.class, "transactionID", transactionID);
+        UUID.fromString(transactionID); // validate
+        try {
+            LOGGER.debug("getTransactionStatus: " + transactionID);
+            GetObjectRequest req = GetObjectRequest.builder()
+                    .bucket(getTransactionBucket().name)
+                    .key(transactionID)
+                    .build();
+            ResponseBytes<GetObjectResponse> resp = s3client.getObjectAsBytes(req);
+            Properties props = new Properties();
+            props.load(new StringReader(resp.asUtf8String()));
+            S3PutTransaction ret = S3PutTransaction.fromProperties(transactionID, props);
+            if (ret.length > 0L) {
+                MessageDigestAPI md = MessageDigestAPI.getDigest(ret.digestState);
+                URI checksum = URI.create(md.getAlgorithmName() + ":" + HexUtil.toHex(md.digest()));
+                Date lastModified = Date.from(resp.response().lastModified());
+                ret.storageMetadata = toStorageMetadata(ret.storageLocation, checksum, ret.length, ret.artifactURI, lastModified);
+            }
+            LOGGER.debug("getTransactionStatus: " + ret);
+            return ret;
+        } catch (NoSuchKeyException | NoSuchBucketException ex) {
+            throw new IllegalArgumentException("unknown transaction: " + transactionID);
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            throw new RuntimeException("BUG: invalid transaction state: " + transactionID, ex);
+        } catch (S3Exception | SdkClientException ex) {
+            throw new StorageEngageException("failed to get transaction status: " + transactionID, ex);
+        }
+    }
+    
+    private void saveTransaction(S3PutTransaction txn) throws StorageEngageException {
+        StringWriter sw = new StringWriter();
+        try {
+            txn.toProperties().store(sw, null);
+        } catch (IOException ex) {
+            throw new RuntimeException("BUG: failed to write transaction state: " + txn.getID(), ex);
+        }
+        try {
+            PutObjectRequest req = PutObjectRequest.builder()
+                    .bucket(getTransactionBucket().name)
+                    .key(txn.getID())
+                    .build();
+            s3client.putObject(req, RequestBody.fromString(sw.toString()));
+        } catch (S3Exception | SdkClientException ex) {
+            throw new StorageEngageException("failed to save transaction: " + txn.getID(), ex);
+        }
+    }
+    
+    private void deleteTransaction(String transactionID) throws StorageEngageException {
+        try {
+            DeleteObjectRequest req = DeleteObjectRequest.builder()
+                    .bucket(getTransactionBucket().name)
+                    .key(transactionID)
+                    .build();
+            s3client.deleteObject(req);
+        } catch (S3Exception | SdkClientException ex) {
+            throw new StorageEngageException("failed to delete transaction: " + transactionID, ex);
+        }
+    }
+    
+    InternalBucket getTransactionBucket() {
+        return new InternalBucket(s3bucket + TXN_BUCKET_SUFFIX);
+    }
+    
+    private void ensureTransactionBucket() throws SdkClientException, S3Exception {
+        InternalBucket tb = getTransactionBucket();
+        try {
+            s3client.headBucket(HeadBucketRequest.builder().bucket(tb.name).build());
+        } catch (NoSuchBucketException e) {
+            try {
+                createBucket(tb);
+            } catch (ResourceAlreadyExistsException ex) {
+                LOGGER.debug("transaction bucket created concurrently: " + tb);
+            }
+        }
+    }
+    
+    // used by transactionIterator and intTest cleanup
+    Iterator<String> listTransactions() {
+        // assume it's small
+        ListObjectsRequest req = ListObjectsRequest.builder().bucket(getTransactionBucket().name).build();
+        List<String> ret = new ArrayList<>();
+        try {
+            for (S3Object o : s3client.listObjects(req).contents()) {
+                ret.add(o.key());
+            }
+        } catch (NoSuchBucketException ex) {
+            LOGGER.debug("no transaction bucket: " + getTransactionBucket());
+        }
+        return ret.iterator();
     }
 
     // used by intTest
@@ -648,6 +1377,41 @@ abstract class S3StorageAdapter implements StorageAdapter {
         }
     }
 
+    @Override
+    public void delete(StorageLocation storageLocation, boolean includeRecoverable)
+            throws ResourceNotFoundException, IOException, StorageEngageException, TransientException {
+        // no recoverable objects
+        delete(storageLocation);
+    }
+    
+    @Override
+    public void recover(StorageLocation storageLocation, Date contentLastModified) 
+            throws ResourceNotFoundException, IOException, InterruptedException, StorageEngageException, TransientException {
+        throw new UnsupportedOperationException("recover not supported");
+    }
+    
+    @Override
+    public Iterator<StorageMetadata> iterator(String storageBucketPrefix, boolean includeRecoverable) 
+            throws StorageEngageException, TransientException {
+        // no recoverable objects
+        return iterator(storageBucketPrefix);
+    }
+    
+    @Override
+    public Iterator<PutTransaction> transactionIterator() throws StorageEngageException, TransientException {
+        List<PutTransaction> ret = new ArrayList<>();
+        Iterator<String> iter = listTransactions();
+        while (iter.hasNext()) {
+            String transactionID = iter.next();
+            try {
+                ret.add(getTransactionStatusImpl(transactionID));
+            } catch (IllegalArgumentException ex) {
+                LOGGER.debug("transaction removed concurrently: " + transactionID);
+            }
+        }
+        return ret.iterator();
+    }
+
     /**
      * Obtain a list of objects from the S3 server. This will use the nextMarkerKey value to start listing the next
      * page of data from. This is hard-coded to 1000 objects by default, but is modifiable to something smaller
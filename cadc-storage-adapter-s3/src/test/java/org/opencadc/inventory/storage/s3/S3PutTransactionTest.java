@@ -0,0 +1,173 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.storage.s3;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.util.Properties;
+import java.util.UUID;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.inventory.StorageLocation;
+
+/**
+ *
+ * @author agent
+ */
+public class S3PutTransactionTest {
+    private static final Logger log = Logger.getLogger(S3PutTransactionTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.inventory", Level.INFO);
+    }
+    
+    public S3PutTransactionTest() { 
+    }
+    
+    @Test
+    public void testRoundTrip() {
+        try {
+            S3StorageAdapterSB adapter = new S3StorageAdapterSB("test-bucket", 3);
+            S3PutTransaction txn = new S3PutTransaction(UUID.randomUUID().toString(), 
+                    S3StorageAdapter.MIN_PART_SIZE, S3StorageAdapter.MAX_OBJECT_SIZE);
+            txn.artifactURI = URI.create("cadc:TEST/testRoundTrip");
+            txn.storageLocation = adapter.generateStorageLocation();
+            txn.uploadID = "upload-id-from-s3";
+            txn.partSize = S3StorageAdapter.DEFAULT_PART_SIZE;
+            txn.digestState = "md5:state1";
+            
+            // initial state: unknown length, nothing to revert
+            Properties props = txn.toProperties();
+            log.info("testRoundTrip: " + props);
+            S3PutTransaction actual = S3PutTransaction.fromProperties(txn.getID(), props);
+            Assert.assertEquals(txn.getID(), actual.getID());
+            Assert.assertEquals(txn.getMinSegmentSize(), actual.getMinSegmentSize());
+            Assert.assertEquals(txn.getMaxSegmentSize(), actual.getMaxSegmentSize());
+            Assert.assertEquals(txn.artifactURI, actual.artifactURI);
+            Assert.assertEquals(txn.storageLocation, actual.storageLocation);
+            Assert.assertEquals(txn.storageLocation.storageBucket, actual.storageLocation.storageBucket);
+            Assert.assertEquals(txn.uploadID, actual.uploadID);
+            Assert.assertEquals(txn.partSize, actual.partSize);
+            Assert.assertNull(actual.totalLength);
+            Assert.assertEquals(0, actual.numParts);
+            Assert.assertEquals(0L, actual.length);
+            Assert.assertEquals(txn.digestState, actual.digestState);
+            Assert.assertNull(actual.prevDigestState);
+            Assert.assertNull(actual.prevNumParts);
+            Assert.assertNull(actual.prevLength);
+            
+            // after a segment: previous state retained for revert
+            txn.totalLength = 123456789L;
+            txn.prevNumParts = txn.numParts;
+            txn.prevLength = txn.length;
+            txn.prevDigestState = txn.digestState;
+            txn.numParts = 3;
+            txn.length = 23456789L;
+            txn.digestState = "md5:state2";
+            
+            actual = S3PutTransaction.fromProperties(txn.getID(), txn.toProperties());
+            Assert.assertEquals(txn.totalLength, actual.totalLength);
+            Assert.assertEquals(txn.numParts, actual.numParts);
+            Assert.assertEquals(txn.length, actual.length);
+            Assert.assertEquals(txn.digestState, actual.digestState);
+            Assert.assertEquals(txn.prevNumParts, actual.prevNumParts);
+            Assert.assertEquals(txn.prevLength, actual.prevLength);
+            Assert.assertEquals(txn.prevDigestState, actual.prevDigestState);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testUploadBuffers() {
+        final long mib = 1024L * 1024L;
+        
+        // default part size: buffers (in flight + the one being filled) fit in the limit
+        long maxPart = S3StorageAdapter.DEFAULT_PART_SIZE + S3StorageAdapter.MIN_PART_SIZE;
+        int n = S3StorageAdapter.getMaxInFlight(maxPart);
+        Assert.assertEquals(3, n);
+        Assert.assertTrue((n + 1) * maxPart <= S3StorageAdapter.UPLOAD_BUFFER_LIMIT);
+        
+        // small parts: limited by upload threads
+        Assert.assertEquals(S3StorageAdapter.UPLOAD_THREADS, S3StorageAdapter.getMaxInFlight(mib));
+        
+        // two buffers fit: one in flight
+        Assert.assertEquals(1, S3StorageAdapter.getMaxInFlight(S3StorageAdapter.UPLOAD_BUFFER_LIMIT / 2));
+        
+        // large parts for large files: streamed
+        Assert.assertEquals(0, S3StorageAdapter.getMaxInFlight(S3StorageAdapter.UPLOAD_BUFFER_LIMIT / 2 + 1));
+        long maxObjectPart = S3StorageAdapter.MAX_OBJECT_SIZE / S3StorageAdapter.MAX_PARTS + S3StorageAdapter.MIN_PART_SIZE;
+        Assert.assertEquals(0, S3StorageAdapter.getMaxInFlight(maxObjectPart));
+    }
+}
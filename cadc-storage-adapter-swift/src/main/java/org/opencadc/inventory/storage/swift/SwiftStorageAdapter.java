@@ -99,8 +99,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.javaswift.joss.client.factory.AccountConfig;
@@ -120,6 +125,7 @@ import org.opencadc.inventory.Namespace;
 import org.opencadc.inventory.StorageLocation;
 import org.opencadc.inventory.storage.BucketType;
 import org.opencadc.inventory.storage.ByteRange;
+import org.opencadc.inventory.storage.ByteRangeUtil;
 import org.opencadc.inventory.storage.DigestInputStream;
 import org.opencadc.inventory.storage.MessageDigestAPI;
 import org.opencadc.inventory.storage.NewArtifact;
@@ -181,6 +187,10 @@ public class SwiftStorageAdapter  implements StorageAdapter {
     
     private static final int CIRC_BUFFERS = 3;
     private static final int CIRC_BUFFERSIZE = 64 * 1024;
+    private static final long RANGE_COALESCE_GAP = 256 * 1024L;
+    
+    // max concurrent HEAD requests to get object metadata for iterators
+    static final int METADATA_THREADS = 8;
 
     // test code checks these
     final int storageBucketLength;
@@ -195,6 +205,13 @@ public class SwiftStorageAdapter  implements StorageAdapter {
     private final Account client;
     private Container txnContainer;
     
+    // shared by all iterators so the number of concurrent HEAD requests is bounded
+    private final ExecutorService metadataPool = Executors.newFixedThreadPool(METADATA_THREADS, r -> {
+        Thread t = new Thread(r, SwiftStorageAdapter.class.getSimpleName() + ".metadata");
+        t.setDaemon(true);
+        return t;
+    });
+    
     // ctor for unit tests that do not connect
     SwiftStorageAdapter(String storageBucket, int storageBucketLength, boolean multiBucket) {
         this.storageBucket = storageBucket;
@@ -637,6 +654,36 @@ public class SwiftStorageAdapter  implements StorageAdapter {
         }
     }
 
+    @Override
+    public void get(StorageLocation storageLocation, OutputStream dest, SortedSet<ByteRange> byteRanges) 
+        throws ResourceNotFoundException, ReadException, WriteException, StorageEngageException, TransientException {
+        log.debug("get: " + storageLocation + " " + byteRanges);
+        
+        StoredObject obj = getStoredObject(storageLocation, false);
+        String delAttr = (String) obj.getMetadata(DELETED_PRESERVED_ATTR);
+        if ("true".equals(delAttr)) {
+            log.debug("skip " + DELETED_PRESERVED_ATTR + ": " + storageLocation);
+            throw new ResourceNotFoundException("not found: " + storageLocation);
+        }
+        
+        // one range request per group of nearby ranges: discarding a small gap is cheaper than a round trip
+        for (SortedSet<ByteRange> group : ByteRangeUtil.coalesce(byteRanges, RANGE_COALESCE_GAP)) {
+            ByteRange span = ByteRangeUtil.span(group);
+            long endPos = span.getOffset() + span.getLength() - 1L; // RFC7233 range is inclusive
+            DownloadInstructions di = new DownloadInstructions();
+            di.setRange(new JossRangeWorkaround(span.getOffset(), endPos));
+            log.debug("get: " + storageLocation + " " + span + " ranges: " + group.size());
+            try (final InputStream source = obj.downloadObjectAsInputStream(di)) {
+                ByteRangeUtil.copy(source, span.getOffset(), group, dest);
+            } catch (ReadException | WriteException e) {
+                // Handle before the IOException below so it's not wrapped into that catch.
+                throw e;
+            } catch (IOException ex) {
+                throw new ReadException("close stream failure", ex);
+            }
+        }
+    }
+
     @Override
     public StorageMetadata put(NewArtifact newArtifact, InputStream source, String transactionID)
             throws ByteLimitExceededException, 
@@ -1306,6 +1353,47 @@ public class SwiftStorageAdapter  implements StorageAdapter {
         
     }
     
+    /**
+     * Get metadata for a batch of listed objects concurrently. The listing only includes
+     * name, size, and timestamp so a HEAD request is needed to get the object metadata
+     * for each object; JOSS caches the metadata in the StoredObject so subsequent calls in 
+     * isIteratorVisible and objectToStorageMetadata do not make further requests. Failures 
+     * are ignored here: the metadata is requested again (with retry) when the object is used.
+     * 
+     * @param objects listed objects
+     */
+    void prefetchMetadata(Collection<StoredObject> objects) {
+        if (objects.size() < 2) {
+            return;
+        }
+        long t = System.currentTimeMillis();
+        List<Future<?>> results = new ArrayList<>(objects.size());
+        for (final StoredObject obj : objects) {
+            results.add(metadataPool.submit(() -> {
+                obj.getMetadata();
+            }));
+        }
+        int num = 0;
+        try {
+            for (Future<?> f : results) {
+                try {
+                    f.get();
+                    num++;
+                } catch (ExecutionException ex) {
+                    log.debug("prefetchMetadata failed: " + ex.getCause());
+                }
+            }
+        } catch (InterruptedException ex) {
+            log.debug("prefetchMetadata interrupted");
+            for (Future<?> f : results) {
+                f.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+        }
+        long dt = System.currentTimeMillis() - t;
+        log.debug("prefetchMetadata: " + num + "/" + objects.size() + " " + dt + "ms");
+    }
+    
     // main use: iterator
     private StorageMetadata objectToStorageMetadata(InternalBucket bucket, StoredObject obj) {
         final StorageLocation loc = toExternal(bucket, obj.getName());
@@ -1654,6 +1742,7 @@ public class SwiftStorageAdapter  implements StorageAdapter {
                         log.debug("SingleBucketStorageIterator bucket=" + currentBucket.getName()
                                 + " size=" + list.size() + " from=" + nextMarkerKey);
                         if (!list.isEmpty()) {
+                            prefetchMetadata(list);
                             objectIterator = list.iterator();
                         } else {
                             log.debug("MultiBucketStorageIterator: " + currentBucket.getName() + " DONE");
@@ -1731,6 +1820,7 @@ public class SwiftStorageAdapter  implements StorageAdapter {
                         Collection<StoredObject> list = swiftContainer.list(bucketPrefix, nextMarkerKey, BATCH_SIZE);
                         log.debug("SingleBucketStorageIterator bucketPrefix=" + bucketPrefix + " size=" + list.size() + " from=" + nextMarkerKey);
                         if (!list.isEmpty()) {
+                            prefetchMetadata(list);
                             objectIterator = list.iterator();
                         } else {
                             log.debug("SingleBucketStorageIterator: DONE");
@@ -73,11 +73,17 @@ import ca.nrc.cadc.util.Log4jInit;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.javaswift.joss.model.StoredObject;
 import org.junit.Assert;
 import org.junit.Test;
 import org.opencadc.inventory.Namespace;
@@ -102,6 +108,53 @@ public class SwiftStorageAdapterTest {
         
     }
     
+    // stand-in for a listed object: getMetadata() simulates a HEAD request with fixed latency
+    private StoredObject createObject(final String name, final long latency, final AtomicInteger numHead, final boolean fail) {
+        return (StoredObject) Proxy.newProxyInstance(StoredObject.class.getClassLoader(), new Class<?>[] { StoredObject.class },
+            (proxy, method, args) -> {
+                if ("getName".equals(method.getName())) {
+                    return name;
+                }
+                if ("getMetadata".equals(method.getName())) {
+                    numHead.incrementAndGet();
+                    Thread.sleep(latency);
+                    if (fail) {
+                        throw new RuntimeException("simulated HEAD failure: " + name);
+                    }
+                    Map<String,Object> ret = new TreeMap<>();
+                    ret.put("name", name);
+                    return ret;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+    }
+    
+    @Test
+    public void testPrefetchMetadata() throws Exception {
+        SwiftStorageAdapter ssa = new SwiftStorageAdapter("test-bucket", 0, false);
+        final int num = 64;
+        final long latency = 50L;
+        
+        AtomicInteger numHead = new AtomicInteger();
+        List<StoredObject> objects = new ArrayList<>();
+        for (int i = 0; i < num; i++) {
+            objects.add(createObject("id:" + i, latency, numHead, (i % 10 == 0)));
+        }
+        
+        long t = System.currentTimeMillis();
+        ssa.prefetchMetadata(objects);
+        long dt = System.currentTimeMillis() - t;
+        long serial = num * latency;
+        log.info("prefetchMetadata: " + num + " objects in " + dt + "ms (serial: " + serial + "ms)");
+        Assert.assertEquals("all objects requested", num, numHead.get());
+        Assert.assertTrue("concurrent: " + dt + " vs " + serial, dt < serial / 2);
+        
+        // single object: no prefetch
+        numHead.set(0);
+        ssa.prefetchMetadata(Collections.singletonList(createObject("id:single", latency, numHead, false)));
+        Assert.assertEquals(0, numHead.get());
+    }
+    
     @Test
     public void testCalcMinSegmentSize() throws Exception {
         SwiftStorageAdapter ssa = new SwiftStorageAdapter("test-bucket", 0, false);
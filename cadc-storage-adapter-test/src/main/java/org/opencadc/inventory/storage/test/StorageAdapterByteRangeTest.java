@@ -71,10 +71,12 @@ import ca.nrc.cadc.io.ByteCountOutputStream;
 import ca.nrc.cadc.io.DiscardOutputStream;
 import ca.nrc.cadc.util.HexUtil;
 import ca.nrc.cadc.util.Log4jInit;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.Channels;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -179,6 +181,31 @@ public abstract class StorageAdapterByteRangeTest {
             sb.append(" aka ~").append(spd).append(" MiB/sec");
             log.info(sb);
             
+            // optional channel-aware get
+            out = new DigestOutputStream(new DiscardOutputStream(), MessageDigest.getInstance("MD5"));
+            bcos = new ByteCountOutputStream(out);
+            try {
+                t1 = System.nanoTime();
+                adapter.get(storageMetadata.getStorageLocation(), Channels.newChannel(bcos), null);
+                t2 = System.nanoTime();
+                final long chanMicros = (t2 - t1) / 1024L;
+                Assert.assertEquals("num bytes returned", datalen, bcos.getByteCount());
+                actualMD5 = URI.create("md5:" + HexUtil.toHex(out.getMessageDigest().digest()));
+                Assert.assertEquals("checksum", storageMetadata.getContentChecksum(), actualMD5);
+                sb = new StringBuilder();
+                sb.append("channel read ").append(r);
+                stim = Long.toString(chanMicros);
+                while (sb.length() < 42 - stim.length()) {
+                    sb.append(" ");
+                }
+                sb.append(stim).append(" microsec");
+                spd = (double) (10 * datalen / chanMicros) / 10.0;
+                sb.append(" aka ~").append(spd).append(" MiB/sec");
+                log.info(sb);
+            } catch (UnsupportedOperationException ex) {
+                log.info("channel get not supported: " + adapter.getClass().getName());
+            }
+            
             adapter.delete(storageMetadata.getStorageLocation());
             
         } catch (Exception unexpected) {
@@ -269,6 +296,37 @@ public abstract class StorageAdapterByteRangeTest {
                 log.info(sb);
             }
             
+            // optional channel-aware get
+            try {
+                for (int i : readOrder) {
+                    ByteRange r = ranges.get(i);
+                    ByteCountOutputStream bcos = new ByteCountOutputStream(new DiscardOutputStream());
+                    adapter.get(storageMetadata.getStorageLocation(), Channels.newChannel(bcos), r);
+                    Assert.assertEquals("num bytes returned", rlen, bcos.getByteCount());
+                }
+            } catch (UnsupportedOperationException ex) {
+                log.info("channel get not supported: " + adapter.getClass().getName());
+            }
+            
+            // optional multiple byte range get: same bytes as the individual ranges in order
+            SortedSet<ByteRange> rangeSet = new TreeSet<>(ranges);
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            for (ByteRange r : rangeSet) {
+                adapter.get(storageMetadata.getStorageLocation(), expected, r);
+            }
+            try {
+                ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                t1 = System.nanoTime();
+                adapter.get(storageMetadata.getStorageLocation(), actual, rangeSet);
+                t2 = System.nanoTime();
+                micros = (t2 - t1) / 1024L;
+                Assert.assertEquals("num bytes returned", rangeSet.size() * rlen, actual.size());
+                Assert.assertArrayEquals("content", expected.toByteArray(), actual.toByteArray());
+                log.info("read " + rangeSet.size() + " ranges: " + micros + " microsec");
+            } catch (UnsupportedOperationException ex) {
+                log.info("multiple byte range get not supported: " + adapter.getClass().getName());
+            }
+            
         } catch (Exception unexpected) {
             log.error("unexpected exception", unexpected);
             Assert.fail("unexpected exception: " + unexpected);
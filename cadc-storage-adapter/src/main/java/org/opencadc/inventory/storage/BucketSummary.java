@@ -0,0 +1,231 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.storage;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Summary of the stored objects in a bucket (or bucket prefix): the number of objects,
+ * the total number of bytes, and an order-independent fold (XOR) of a 64-bit hash of 
+ * storageID, contentChecksum, and contentLength of each object. Two summaries of the 
+ * same bucket are equal when (with high probability) the same set of objects is present
+ * with the same content metadata. Invalid stored objects (no content metadata) are included
+ * in the summary with null contentChecksum and contentLength.
+ * 
+ * <p>The fold is XOR so objects can be added and removed in any order and summaries of 
+ * separate buckets can be combined to summarize a bucket prefix.
+ * 
+ * @author agent
+ */
+public class BucketSummary {
+    private final String bucket;
+    private long numObjects = 0L;
+    private long totalBytes = 0L;
+    private long fold = 0L;
+
+    /**
+     * Constructor for an empty summary.
+     * 
+     * @param bucket bucket or bucket prefix summarized, may be null
+     */
+    public BucketSummary(String bucket) {
+        this.bucket = bucket;
+    }
+
+    /**
+     * Constructor to restore a previously computed summary.
+     * 
+     * @param bucket bucket or bucket prefix summarized, may be null
+     * @param numObjects number of stored objects
+     * @param totalBytes total content length of stored objects
+     * @param fold XOR of the hash of stored objects
+     */
+    public BucketSummary(String bucket, long numObjects, long totalBytes, long fold) {
+        this.bucket = bucket;
+        this.numObjects = numObjects;
+        this.totalBytes = totalBytes;
+        this.fold = fold;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public long getNumObjects() {
+        return numObjects;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getFold() {
+        return fold;
+    }
+    
+    public void add(StorageMetadata sm) {
+        add(sm.getStorageLocation().getStorageID(), sm.getContentChecksum(), sm.getContentLength());
+    }
+    
+    public void remove(StorageMetadata sm) {
+        remove(sm.getStorageLocation().getStorageID(), sm.getContentChecksum(), sm.getContentLength());
+    }
+    
+    /**
+     * Add a stored object.
+     * 
+     * @param storageID storage identifier
+     * @param contentChecksum content checksum, null for an invalid stored object
+     * @param contentLength content length, null for an invalid stored object
+     */
+    public void add(URI storageID, URI contentChecksum, Long contentLength) {
+        numObjects++;
+        if (contentLength != null) {
+            totalBytes += contentLength;
+        }
+        fold ^= hash(storageID, contentChecksum, contentLength);
+    }
+    
+    /**
+     * Remove a previously added stored object.
+     * 
+     * @param storageID storage identifier
+     * @param contentChecksum content checksum, null for an invalid stored object
+     * @param contentLength content length, null for an invalid stored object
+     */
+    public void remove(URI storageID, URI contentChecksum, Long contentLength) {
+        numObjects--;
+        if (contentLength != null) {
+            totalBytes -= contentLength;
+        }
+        fold ^= hash(storageID, contentChecksum, contentLength);
+    }
+    
+    /**
+     * Add all the objects summarized by another (disjoint) summary.
+     * 
+     * @param summary summary of another bucket
+     */
+    public void add(BucketSummary summary) {
+        numObjects += summary.numObjects;
+        totalBytes += summary.totalBytes;
+        fold ^= summary.fold;
+    }
+    
+    // first 64 bits of MD5: collisions only cause an unnecessary full validation or 
+    // (very unlikely) a missed difference
+    static long hash(URI storageID, URI contentChecksum, Long contentLength) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(storageID.toASCIIString());
+        sb.append(" ").append(contentChecksum == null ? "" : contentChecksum.toASCIIString());
+        sb.append(" ").append(contentLength == null ? "" : contentLength.toString());
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] b = md.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            long ret = 0L;
+            for (int i = 0; i < 8; i++) {
+                ret = (ret << 8) | (b[i] & 0xffL);
+            }
+            return ret;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("BUG: failed to create MessageDigest: MD5", ex);
+        }
+    }
+
+    /**
+     * Compare the summarized content. The bucket label is not compared so a summary
+     * computed from storage can be compared to one computed from another source.
+     * 
+     * @param o object to compare
+     * @return true if the summarized content is the same
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || !(o instanceof BucketSummary)) {
+            return false;
+        }
+        BucketSummary rhs = (BucketSummary) o;
+        return numObjects == rhs.numObjects && totalBytes == rhs.totalBytes && fold == rhs.fold;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fold);
+    }
+
+    @Override
+    public String toString() {
+        return "BucketSummary[" + bucket + "," + numObjects + "," + totalBytes + "," + Long.toHexString(fold) + "]";
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.storage;
+
+import ca.nrc.cadc.io.ReadException;
+import ca.nrc.cadc.io.WriteException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.log4j.Logger;
+
+/**
+ * Utility methods to support multiple byte range reads in storage adapters.
+ * 
+ * @author agent
+ */
+public class ByteRangeUtil {
+    private static final Logger log = Logger.getLogger(ByteRangeUtil.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private ByteRangeUtil() { 
+    }
+    
+    /**
+     * Group ranges that are close together so they can be read with a single request.
+     * Consecutive ranges are put in the same group if the gap between them is less
+     * than or equal to maxGap bytes.
+     * 
+     * @param ranges ranges to group
+     * @param maxGap maximum number of unwanted bytes to read between ranges
+     * @return list of groups, each with one or more ranges
+     */
+    public static List<SortedSet<ByteRange>> coalesce(SortedSet<ByteRange> ranges, long maxGap) {
+        if (maxGap < 0L) {
+            throw new IllegalArgumentException("invalid maxGap: " + maxGap);
+        }
+        List<SortedSet<ByteRange>> ret = new ArrayList<>();
+        SortedSet<ByteRange> cur = null;
+        long curEnd = 0L;
+        for (ByteRange r : ranges) {
+            if (cur == null || r.getOffset() - curEnd > maxGap) {
+                cur = new TreeSet<>();
+                ret.add(cur);
+            }
+            cur.add(r);
+            curEnd = r.getOffset() + r.getLength();
+        }
+        log.debug("coalesce: " + ranges.size() + " ranges -> " + ret.size() + " groups");
+        return ret;
+    }
+    
+    /**
+     * Compute the single range that spans all the specified ranges.
+     * 
+     * @param ranges one or more ranges
+     * @return range from the start of the first to the end of the last range
+     */
+    public static ByteRange span(SortedSet<ByteRange> ranges) {
+        ByteRange first = ranges.first();
+        ByteRange last = ranges.last();
+        return new ByteRange(first.getOffset(), last.getOffset() + last.getLength() - first.getOffset());
+    }
+    
+    /**
+     * Copy the specified ranges from the source to the destination. The source is positioned 
+     * at sourceOffset and must contain all the ranges; bytes between ranges are read 
+     * and discarded.
+     * 
+     * @param source input stream positioned at sourceOffset
+     * @param sourceOffset offset of the first byte in the source
+     * @param ranges ranges to copy
+     * @param dest destination
+     * @return number of bytes written to dest
+     * @throws ReadException if reading from the source failed or the source ended prematurely
+     * @throws WriteException if writing to the destination failed
+     */
+    public static long copy(InputStream source, long sourceOffset, SortedSet<ByteRange> ranges, OutputStream dest) 
+            throws ReadException, WriteException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        long pos = sourceOffset;
+        long tot = 0L;
+        for (ByteRange r : ranges) {
+            if (r.getOffset() < pos) {
+                throw new IllegalArgumentException("range " + r + " before current position " + pos);
+            }
+            // discard gap
+            while (pos < r.getOffset()) {
+                int len = (int) Math.min(buf.length, r.getOffset() - pos);
+                pos += read(source, buf, len, pos);
+            }
+            long end = r.getOffset() + r.getLength();
+            while (pos < end) {
+                int len = (int) Math.min(buf.length, end - pos);
+                int n = read(source, buf, len, pos);
+                try {
+                    dest.write(buf, 0, n);
+                } catch (IOException ex) {
+                    throw new WriteException("failed to write range " + r, ex);
+                }
+                pos += n;
+                tot += n;
+            }
+        }
+        return tot;
+    }
+    
+    private static int read(InputStream source, byte[] buf, int len, long pos) throws ReadException {
+        try {
+            int n = source.read(buf, 0, len);
+            if (n < 0) {
+                throw new ReadException("unexpected end of stream at offset " + pos);
+            }
+            return n;
+        } catch (ReadException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new ReadException("failed to read at offset " + pos, ex);
+        }
+    }
+}
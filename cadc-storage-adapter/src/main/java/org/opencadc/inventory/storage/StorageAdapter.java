@@ -81,10 +81,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.channels.WritableByteChannel;
 import java.util.Date;
 import java.util.Iterator;
 
 import java.util.List;
+import java.util.SortedSet;
 import org.opencadc.inventory.Namespace;
 import org.opencadc.inventory.StorageLocation;
 
@@ -92,6 +94,13 @@ import org.opencadc.inventory.StorageLocation;
  * The interface to storage implementations. Implementations may throw InvalidConfigException
  * or StorageEngageException from the constructor.
  * 
+ * <p>Implementations must be thread-safe: services create a single instance at startup
+ * and call it concurrently from all request threads. Configuration methods
+ * (setRecoverableNamespaces and setPurgeNamespaces) are called once after construction
+ * and before the instance is shared. Any other mutable state kept in the instance (caches,
+ * connections, client sessions) must be safe for concurrent use; per-call state (streams,
+ * digests, iterators) must not be stored in instance fields.
+ * 
  * @author majorb
  *
  */
@@ -161,6 +170,55 @@ public interface StorageAdapter {
      */
     public void get(StorageLocation storageLocation, OutputStream dest, ByteRange byteRange)
         throws InterruptedException, ResourceNotFoundException, ReadException, WriteException, StorageEngageException, TransientException;
+    
+    /**
+     * Get parts of a stored object identified by storageLocation using multiple byte ranges.
+     * The content of each range is written to dest in order with no separators; callers that
+     * need to frame the output (e.g. multipart/byteranges) must track the range boundaries.
+     * This optional method allows implementations to read all the ranges with a single open
+     * file or a small number of coalesced requests. Implementations that do not support this 
+     * must throw UnsupportedOperationException before writing any bytes so the caller can fall 
+     * back to reading one range at a time.
+     * 
+     * @param storageLocation the object to read
+     * @param dest the destination stream
+     * @param byteRanges one or more non-overlapping byte ranges to retrieve
+     * 
+     * @throws java.lang.InterruptedException if thread receives an interrupt
+     * @throws ResourceNotFoundException if the artifact could not be found
+     * @throws ReadException if the storage system failed to stream
+     * @throws WriteException if the client failed to stream
+     * @throws StorageEngageException if the adapter failed to interact with storage
+     * @throws TransientException if an unexpected, temporary exception occurred
+     * @throws UnsupportedOperationException if multiple byte ranges are not supported
+     */
+    public default void get(StorageLocation storageLocation, OutputStream dest, SortedSet<ByteRange> byteRanges)
+        throws InterruptedException, ResourceNotFoundException, ReadException, WriteException, StorageEngageException, TransientException {
+        throw new UnsupportedOperationException("multiple byte ranges not supported");
+    }
+    
+    /**
+     * Get all or part of a stored object and write it to a channel. This optional method allows
+     * implementations to avoid copying bytes through user-space buffers (e.g. FileChannel.transferTo).
+     * Implementations that do not support this must throw UnsupportedOperationException before 
+     * writing any bytes so the caller can fall back to one of the OutputStream methods.
+     * 
+     * @param storageLocation the object to read
+     * @param dest the destination channel
+     * @param byteRange a single byte range to retrieve, null for the complete object
+     * 
+     * @throws java.lang.InterruptedException if thread receives an interrupt
+     * @throws ResourceNotFoundException if the artifact could not be found
+     * @throws ReadException if the storage system failed to stream
+     * @throws WriteException if the client failed to stream
+     * @throws StorageEngageException if the adapter failed to interact with storage
+     * @throws TransientException if an unexpected, temporary exception occurred
+     * @throws UnsupportedOperationException if channel output is not supported
+     */
+    public default void get(StorageLocation storageLocation, WritableByteChannel dest, ByteRange byteRange)
+        throws InterruptedException, ResourceNotFoundException, ReadException, WriteException, StorageEngageException, TransientException {
+        throw new UnsupportedOperationException("channel output not supported");
+    }
             
     /**
      * Write an object to storage. The returned storage location will be used for future get and 
@@ -347,7 +405,27 @@ public interface StorageAdapter {
      */
     public Iterator<StorageMetadata> iterator(String storageBucketPrefix, boolean includeRecoverable)
         throws StorageEngageException, TransientException;
-    
+
+    /**
+     * Get a summary of the stored objects in a bucket or bucket prefix. The summary includes the
+     * same stored objects as iterator(storageBucketPrefix, false). This optional method allows
+     * validation to skip buckets where the summary matches the expected content. Implementations
+     * that maintain a summary incrementally must return a correct summary; an implementation that
+     * cannot guarantee that must throw UnsupportedOperationException so the caller falls back to
+     * iterating.
+     *
+     * @param storageBucketPrefix null, partial, or complete storageBucket string
+     * @return summary of the stored objects
+     *
+     * @throws StorageEngageException if the adapter failed to interact with storage
+     * @throws TransientException if an unexpected, temporary exception occurred
+     * @throws UnsupportedOperationException if bucket summaries are not supported
+     */
+    public default BucketSummary getBucketSummary(String storageBucketPrefix)
+        throws StorageEngageException, TransientException {
+        throw new UnsupportedOperationException("bucket summary not supported");
+    }
+
     /**
      * Iterate over current transactions. This method is expected to be used by 
      * a maintenance program like file-validate to cleanup stale transactions.
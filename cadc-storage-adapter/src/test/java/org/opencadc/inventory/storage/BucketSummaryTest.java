@@ -0,0 +1,175 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.storage;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.util.Date;
+import java.util.UUID;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.inventory.StorageLocation;
+
+/**
+ *
+ * @author agent
+ */
+public class BucketSummaryTest {
+    private static final Logger log = Logger.getLogger(BucketSummaryTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.inventory.storage", Level.INFO);
+    }
+    
+    public BucketSummaryTest() { 
+    }
+    
+    private StorageMetadata create(String bucket, long len) {
+        StorageLocation loc = new StorageLocation(URI.create("uuid:" + UUID.randomUUID()));
+        loc.storageBucket = bucket;
+        URI checksum = URI.create("md5:" + UUID.randomUUID().toString().replace("-", ""));
+        return new StorageMetadata(loc, URI.create("cadc:TEST/" + UUID.randomUUID()), checksum, len, new Date());
+    }
+    
+    @Test
+    public void testAddRemove() {
+        StorageMetadata a = create("ab", 10L);
+        StorageMetadata b = create("ab", 20L);
+        StorageMetadata c = create("ab", 30L);
+        
+        BucketSummary empty = new BucketSummary("ab");
+        BucketSummary s1 = new BucketSummary("ab");
+        s1.add(a);
+        s1.add(b);
+        log.info("s1: " + s1);
+        Assert.assertEquals(2L, s1.getNumObjects());
+        Assert.assertEquals(30L, s1.getTotalBytes());
+        Assert.assertNotEquals(empty, s1);
+        
+        // order independent
+        BucketSummary s2 = new BucketSummary("ab");
+        s2.add(c);
+        s2.add(b);
+        s2.add(a);
+        s2.remove(c);
+        log.info("s2: " + s2);
+        Assert.assertEquals(s1, s2);
+        Assert.assertEquals(s1.hashCode(), s2.hashCode());
+        
+        // same storageID with different content
+        BucketSummary s3 = new BucketSummary("ab");
+        s3.add(a);
+        s3.add(b.getStorageLocation().getStorageID(), a.getContentChecksum(), b.getContentLength());
+        log.info("s3: " + s3);
+        Assert.assertNotEquals(s1, s3);
+        
+        // invalid stored object
+        BucketSummary s4 = new BucketSummary("ab");
+        s4.add(a);
+        s4.add(b);
+        StorageMetadata invalid = new StorageMetadata(c.getStorageLocation());
+        s4.add(invalid);
+        Assert.assertEquals(3L, s4.getNumObjects());
+        Assert.assertEquals(30L, s4.getTotalBytes());
+        Assert.assertNotEquals(s1, s4);
+        s4.remove(invalid);
+        Assert.assertEquals(s1, s4);
+        
+        s1.remove(a);
+        s1.remove(b);
+        Assert.assertEquals(empty, s1);
+    }
+    
+    @Test
+    public void testCombine() {
+        StorageMetadata a = create("a0", 10L);
+        StorageMetadata b = create("a1", 20L);
+        
+        BucketSummary a0 = new BucketSummary("a0");
+        a0.add(a);
+        BucketSummary a1 = new BucketSummary("a1");
+        a1.add(b);
+        
+        BucketSummary prefix = new BucketSummary("a");
+        prefix.add(a0);
+        prefix.add(a1);
+        
+        BucketSummary expected = new BucketSummary(null);
+        expected.add(b);
+        expected.add(a);
+        Assert.assertEquals(expected, prefix);
+        
+        BucketSummary restored = new BucketSummary("a", prefix.getNumObjects(), prefix.getTotalBytes(), prefix.getFold());
+        Assert.assertEquals(prefix, restored);
+    }
+}
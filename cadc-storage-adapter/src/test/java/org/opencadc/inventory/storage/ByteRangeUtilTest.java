@@ -0,0 +1,161 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.inventory.storage;
+
+import ca.nrc.cadc.io.ReadException;
+import ca.nrc.cadc.util.Log4jInit;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class ByteRangeUtilTest {
+    private static final Logger log = Logger.getLogger(ByteRangeUtilTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.inventory.storage", Level.INFO);
+    }
+    
+    public ByteRangeUtilTest() { 
+    }
+    
+    @Test
+    public void testCoalesce() {
+        SortedSet<ByteRange> rs = new TreeSet<>();
+        rs.add(new ByteRange(0, 10));
+        rs.add(new ByteRange(20, 10));  // gap 10
+        rs.add(new ByteRange(100, 10)); // gap 70
+        rs.add(new ByteRange(115, 5));  // gap 5
+        
+        List<SortedSet<ByteRange>> groups = ByteRangeUtil.coalesce(rs, 0L);
+        Assert.assertEquals(4, groups.size());
+        
+        groups = ByteRangeUtil.coalesce(rs, 10L);
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(2, groups.get(0).size());
+        Assert.assertEquals(new ByteRange(0, 30), ByteRangeUtil.span(groups.get(0)));
+        Assert.assertEquals(2, groups.get(1).size());
+        Assert.assertEquals(new ByteRange(100, 20), ByteRangeUtil.span(groups.get(1)));
+        
+        groups = ByteRangeUtil.coalesce(rs, 100L);
+        Assert.assertEquals(1, groups.size());
+        Assert.assertEquals(new ByteRange(0, 120), ByteRangeUtil.span(groups.get(0)));
+        
+        try {
+            ByteRangeUtil.coalesce(rs, -1L);
+            Assert.fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            log.info("expected: " + expected);
+        }
+    }
+    
+    @Test
+    public void testCopy() throws Exception {
+        byte[] data = new byte[1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        SortedSet<ByteRange> rs = new TreeSet<>();
+        rs.add(new ByteRange(110, 10));
+        rs.add(new ByteRange(200, 100));
+        
+        // source starts at offset 100
+        ByteArrayInputStream source = new ByteArrayInputStream(Arrays.copyOfRange(data, 100, 300));
+        ByteArrayOutputStream dest = new ByteArrayOutputStream();
+        long num = ByteRangeUtil.copy(source, 100L, rs, dest);
+        Assert.assertEquals(110L, num);
+        
+        byte[] expected = new byte[110];
+        System.arraycopy(data, 110, expected, 0, 10);
+        System.arraycopy(data, 200, expected, 10, 100);
+        Assert.assertArrayEquals(expected, dest.toByteArray());
+        
+        // source too short
+        source = new ByteArrayInputStream(Arrays.copyOfRange(data, 100, 250));
+        dest = new ByteArrayOutputStream();
+        try {
+            ByteRangeUtil.copy(source, 100L, rs, dest);
+            Assert.fail("expected ReadException");
+        } catch (ReadException expected) {
+            log.info("expected: " + expected);
+        }
+    }
+}
@@ -73,21 +73,37 @@ import ca.nrc.cadc.db.ConnectionConfig;
 import ca.nrc.cadc.db.DBConfig;
 import ca.nrc.cadc.db.DBUtil;
 import ca.nrc.cadc.util.FileUtil;
+import ca.nrc.cadc.util.HexUtil;
 import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.vos.Protocol;
+import ca.nrc.cadc.vos.VOS;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.security.auth.Subject;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -100,6 +116,7 @@ import org.opencadc.inventory.StorageLocationEvent;
 import org.opencadc.inventory.db.ArtifactDAO;
 import org.opencadc.inventory.db.SQLGenerator;
 import org.opencadc.inventory.db.StorageLocationEventDAO;
+import org.opencadc.inventory.storage.PutTransaction;
 import org.opencadc.inventory.storage.StorageMetadata;
 import org.opencadc.inventory.storage.fs.OpaqueFileSystemStorageAdapter;
 
@@ -273,6 +290,94 @@ public class FileSyncJobTest {
         log.info("testValidJob - DONE");
     }
 
+    @Test
+    public void testResumeParallelSegments() throws Exception {
+        final String testDir = TEST_ROOT + File.separator + "testResumeParallelSegments";
+        long prev = FileSyncJob.SEGMENT_SIZE_PREF;
+        HttpServer server = null;
+        try {
+            createTestDirectory(testDir);
+            final OpaqueFileSystemStorageAdapter sa = new OpaqueFileSystemStorageAdapter(new File(testDir), 1);
+            
+            final long segmentSize = 128 * 1024L;
+            FileSyncJob.SEGMENT_SIZE_PREF = segmentSize;
+            final byte[] content = new byte[(int) (5 * segmentSize + 1234)]; // 6 segments
+            new Random().nextBytes(content);
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            URI checksum = URI.create("md5:" + HexUtil.toHex(md.digest(content)));
+            
+            // local server that serves range requests and truncates the 4th segment once
+            final Map<Long, AtomicInteger> requests = new ConcurrentHashMap<>();
+            final AtomicBoolean failed = new AtomicBoolean(false);
+            final long failStart = 3 * segmentSize;
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.setExecutor(Executors.newFixedThreadPool(4));
+            server.createContext("/data", (HttpExchange ex) -> {
+                String range = ex.getRequestHeaders().getFirst("range");
+                String[] ss = range.substring("bytes=".length()).split("-");
+                long start = Long.parseLong(ss[0]);
+                long end = Long.parseLong(ss[1]);
+                int len = (int) (end - start + 1);
+                requests.computeIfAbsent(start, k -> new AtomicInteger()).incrementAndGet();
+                ex.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+                ex.sendResponseHeaders(206, len);
+                OutputStream out = ex.getResponseBody();
+                try {
+                    if (start == failStart && failed.compareAndSet(false, true)) {
+                        out.write(content, (int) start, len / 2);
+                        out.flush();
+                        throw new IOException("test: truncated segment " + range);
+                    }
+                    out.write(content, (int) start, len);
+                } finally {
+                    ex.close();
+                }
+            });
+            server.start();
+            
+            Artifact a = new Artifact(URI.create("cadc:TEST/testResumeParallelSegments"), checksum, new Date(), (long) content.length);
+            Protocol p = new Protocol(VOS.PROTOCOL_HTTP_GET);
+            p.setEndpoint("http://localhost:" + server.getAddress().getPort() + "/data/testResumeParallelSegments");
+            
+            SyncProgress progress = new SyncProgress();
+            FileSyncJob fsj = new FileSyncJob(a, new DownloadURLResolver(new URI(TEST_RESOURCE_ID)),
+                new TransferScheduler(0, 0L, 0L), sa, dao, anonSubject, progress, 3);
+            
+            // first attempt fails part way
+            List<Protocol> urls = new ArrayList<>();
+            urls.add(p);
+            StorageMetadata sm = fsj.syncArtifactTxn(a, urls);
+            Assert.assertNull(sm);
+            Assert.assertEquals("url kept", 1, urls.size());
+            String txnID = progress.getTransactionID(a.getID());
+            Assert.assertNotNull("resumable transaction", txnID);
+            PutTransaction pt = sa.getTransactionStatus(txnID);
+            Assert.assertEquals("stored before failed segment", failStart, pt.storageMetadata.getContentLength().longValue());
+            
+            // second attempt resumes
+            sm = fsj.syncArtifactTxn(a, urls);
+            Assert.assertNotNull(sm);
+            Assert.assertEquals(checksum, sm.getContentChecksum());
+            Assert.assertEquals(content.length, sm.getContentLength().longValue());
+            Assert.assertNull(progress.getTransactionID(a.getID()));
+            
+            // segments before the failure were only downloaded once
+            for (long start = 0L; start < failStart; start += segmentSize) {
+                Assert.assertEquals("requests for segment at " + start, 1, requests.get(start).get());
+            }
+            Assert.assertEquals("requests for failed segment", 2, requests.get(failStart).get());
+            
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            sa.get(sm.getStorageLocation(), bos);
+            Assert.assertArrayEquals(content, bos.toByteArray());
+        } finally {
+            FileSyncJob.SEGMENT_SIZE_PREF = prev;
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+    }
+    
     @Test
     public void testResourceNotFoundException() {
         final String testDir = TEST_ROOT + File.separator + "ResourceNotFoundException";
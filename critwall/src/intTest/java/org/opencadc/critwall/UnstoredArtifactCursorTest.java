@@ -0,0 +1,356 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import ca.nrc.cadc.db.ConnectionConfig;
+import ca.nrc.cadc.db.DBConfig;
+import ca.nrc.cadc.db.DBUtil;
+import ca.nrc.cadc.io.ResourceIterator;
+import ca.nrc.cadc.util.BucketSelector;
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencadc.inventory.Artifact;
+import org.opencadc.inventory.InventoryUtil;
+import org.opencadc.inventory.StorageLocation;
+import org.opencadc.inventory.db.ArtifactDAO;
+import org.opencadc.inventory.db.HarvestStateDAO;
+import org.opencadc.inventory.db.SQLGenerator;
+import org.opencadc.inventory.db.version.InitDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ *
+ * @author agent
+ */
+public class UnstoredArtifactCursorTest {
+    private static final Logger log = Logger.getLogger(UnstoredArtifactCursorTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.inventory", Level.INFO);
+        Log4jInit.setLevel("org.opencadc.critwall", Level.INFO);
+    }
+    
+    private static final URI RESOURCE_ID = URI.create("ivo://opencadc.org/raven");
+    
+    private final ArtifactDAO dao = new ArtifactDAO();
+    private final ArtifactDAO remoteDAO = new ArtifactDAO(false);
+    
+    public UnstoredArtifactCursorTest() throws Exception {
+        DBConfig dbrc = new DBConfig();
+        ConnectionConfig cc = dbrc.getConnectionConfig(TestUtil.SERVER, TestUtil.DATABASE);
+        DBUtil.createJNDIDataSource("jdbc/UnstoredArtifactCursorTest", cc);
+
+        Map<String, Object> daoConfig = new TreeMap<>();
+        daoConfig.put(SQLGenerator.class.getName(), SQLGenerator.class);
+        daoConfig.put("jndiDataSourceName", "jdbc/UnstoredArtifactCursorTest");
+        daoConfig.put("database", TestUtil.DATABASE);
+        daoConfig.put("schema", TestUtil.SCHEMA);
+        dao.setConfig(daoConfig);
+        remoteDAO.setConfig(daoConfig);
+        
+        DataSource ds = DBUtil.findJNDIDataSource("jdbc/UnstoredArtifactCursorTest");
+        InitDatabase init = new InitDatabase(ds, TestUtil.DATABASE, TestUtil.SCHEMA);
+        init.doInit();
+    }
+    
+    @Before
+    public void cleanup() throws Exception {
+        DataSource ds = DBUtil.findJNDIDataSource("jdbc/UnstoredArtifactCursorTest");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.execute("TRUNCATE TABLE " + TestUtil.SCHEMA + ".Artifact");
+        jdbc.execute("TRUNCATE TABLE " + TestUtil.SCHEMA + ".HarvestState");
+    }
+    
+    private List<Artifact> insert(String prefix, int num, boolean stored) throws Exception {
+        List<Artifact> ret = new ArrayList<>();
+        for (int i = 0; i < num; i++) {
+            Artifact a = new Artifact(URI.create("cadc:TEST/" + prefix + "-" + i), 
+                URI.create("md5:d41d8cd98f00b204e9800998ecf8427e"), new Date(), 666L);
+            if (stored) {
+                a.storageLocation = new StorageLocation(URI.create("foo:" + a.getID()));
+            }
+            dao.put(a);
+            ret.add(a);
+            Thread.sleep(2L);
+        }
+        return ret;
+    }
+    
+    private List<Artifact> drain(UnstoredArtifactCursor cursor, boolean full) throws Exception {
+        List<Artifact> ret = new ArrayList<>();
+        try (ResourceIterator<Artifact> iter = cursor.iterator(full)) {
+            while (iter.hasNext()) {
+                ret.add(iter.next());
+            }
+        }
+        cursor.commit();
+        return ret;
+    }
+    
+    private Set<UUID> getIDs(List<Artifact> artifacts) {
+        Set<UUID> ret = new TreeSet<>();
+        for (Artifact a : artifacts) {
+            ret.add(a.getID());
+        }
+        return ret;
+    }
+    
+    @Test
+    public void testIncremental() {
+        try {
+            SyncProgress progress = new SyncProgress();
+            UnstoredArtifactCursor cursor = new UnstoredArtifactCursor(dao, RESOURCE_ID, new BucketSelector("0-f"), progress);
+            Assert.assertNull(cursor.getHighWaterMark());
+            
+            insert("stored", 5, true);
+            List<Artifact> first = insert("first", 10, false);
+            
+            List<Artifact> found = drain(cursor, false);
+            Assert.assertEquals(first.size(), found.size());
+            Assert.assertEquals(getIDs(first), getIDs(found));
+            for (Artifact a : found) {
+                progress.setQueued(a);
+            }
+            Date hwm = cursor.getHighWaterMark();
+            Assert.assertEquals(first.get(first.size() - 1).getLastModified(), hwm);
+            
+            // queued artifacts are skipped
+            Assert.assertTrue(drain(cursor, false).isEmpty());
+            
+            // new rows
+            List<Artifact> second = insert("second", 5, false);
+            found = drain(cursor, false);
+            Assert.assertEquals(second.size(), found.size());
+            Assert.assertEquals(getIDs(second), getIDs(found));
+            Assert.assertTrue(cursor.getHighWaterMark().after(hwm));
+            
+            // completed artifacts are eligible again (if still unstored)
+            for (Artifact a : first) {
+                progress.setDone(a.getID());
+            }
+            found = drain(cursor, false);
+            Assert.assertEquals(first.size() + second.size(), found.size());
+            
+            // high-water mark is persisted
+            hwm = cursor.getHighWaterMark();
+            UnstoredArtifactCursor restart = new UnstoredArtifactCursor(dao, RESOURCE_ID, new BucketSelector("0-f"), new SyncProgress());
+            Assert.assertEquals(hwm, restart.getHighWaterMark());
+            
+            // different buckets: separate high-water mark
+            UnstoredArtifactCursor other = new UnstoredArtifactCursor(dao, RESOURCE_ID, new BucketSelector("0-7"), new SyncProgress());
+            Assert.assertNull(other.getHighWaterMark());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testBucketsAndRetries() {
+        try {
+            BucketSelector selector = new BucketSelector("0-7");
+            HarvestStateDAO stateDAO = new HarvestStateDAO(dao);
+            String stateName = UnstoredArtifactCursor.getStateName(selector);
+            SyncProgress progress = new SyncProgress(stateDAO, RESOURCE_ID, stateName);
+            UnstoredArtifactCursor cursor = new UnstoredArtifactCursor(dao, RESOURCE_ID, selector, progress);
+            List<Artifact> all = insert("file", 40, false);
+            
+            List<Artifact> found = drain(cursor, false);
+            int expected = 0;
+            for (Artifact a : all) {
+                if (a.getBucket().charAt(0) <= '7') {
+                    expected++;
+                }
+            }
+            Assert.assertEquals(expected, found.size());
+            for (Artifact a : found) {
+                Assert.assertTrue("bucket " + a.getBucket(), a.getBucket().charAt(0) <= '7');
+            }
+            
+            // failed artifacts wait in the retry table
+            Artifact failed = found.get(0);
+            progress.setQueued(failed);
+            progress.setFailed(failed.getID());
+            Assert.assertTrue(progress.isPending(failed.getID()));
+            Assert.assertTrue(progress.getRetries(System.currentTimeMillis()).isEmpty());
+            Assert.assertEquals(1, progress.getRetries(System.currentTimeMillis() + SyncProgress.RETRY_MIN_DELAY).size());
+            
+            // full scan ignores the high-water mark but still skips pending
+            found = drain(cursor, true);
+            Assert.assertEquals(expected - 1, found.size());
+            
+            // retry table is not persisted: the full scan after a restart finds the failed artifact
+            SyncProgress restart = new SyncProgress(stateDAO, RESOURCE_ID, stateName);
+            Assert.assertFalse(restart.isPending(failed.getID()));
+            Assert.assertEquals(0, restart.getNumRetries());
+            Assert.assertEquals("only the high-water mark", 1, stateDAO.list(stateName, RESOURCE_ID).size());
+            UnstoredArtifactCursor restartCursor = new UnstoredArtifactCursor(dao, RESOURCE_ID, selector, restart);
+            found = drain(restartCursor, true);
+            Assert.assertEquals(expected, found.size());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testLateWork() {
+        try {
+            Assert.assertTrue("full scan interval", FileSync.FULL_SCAN_INTERVAL <= 5 * 60 * 1000L);
+            
+            SyncProgress progress = new SyncProgress();
+            UnstoredArtifactCursor cursor = new UnstoredArtifactCursor(dao, RESOURCE_ID, new BucketSelector("0-f"), progress);
+            
+            // stored artifact from a remote site: keeps the remote lastModified
+            Date old = new Date(System.currentTimeMillis() - 10 * UnstoredArtifactCursor.LOOKBACK_TIME_MS);
+            Artifact late = new Artifact(URI.create("cadc:TEST/late"), 
+                URI.create("md5:d41d8cd98f00b204e9800998ecf8427e"), new Date(), 666L);
+            late.storageLocation = new StorageLocation(URI.create("foo:" + late.getID()));
+            InventoryUtil.assignLastModified(late, old);
+            remoteDAO.put(late);
+            
+            List<Artifact> first = insert("first", 5, false);
+            List<Artifact> found = drain(cursor, false);
+            Assert.assertEquals(getIDs(first), getIDs(found));
+            Date hwm = cursor.getHighWaterMark();
+            Assert.assertNotNull(hwm);
+            
+            // file-validate clears the storageLocation behind the high-water mark
+            Artifact cur = dao.get(late.getID());
+            dao.setStorageLocation(cur, null);
+            cur = dao.get(late.getID());
+            Assert.assertNull(cur.storageLocation);
+            Assert.assertEquals(old, cur.getLastModified());
+            Assert.assertTrue(cur.getLastModified().getTime() < hwm.getTime() - UnstoredArtifactCursor.LOOKBACK_TIME_MS);
+            
+            // not new work for the incremental query
+            found = drain(cursor, false);
+            Assert.assertFalse(getIDs(found).contains(late.getID()));
+            
+            // found by the full scan
+            found = drain(cursor, true);
+            Assert.assertTrue(getIDs(found).contains(late.getID()));
+            Assert.assertEquals(first.size() + 1, found.size());
+            Assert.assertEquals(hwm, cursor.getHighWaterMark());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testStateName() {
+        try {
+            String all = UnstoredArtifactCursor.getStateName(new BucketSelector("0-f"));
+            String range = UnstoredArtifactCursor.getStateName(new BucketSelector("0-5"));
+            Assert.assertNotEquals(all, range);
+            Assert.assertEquals(range, UnstoredArtifactCursor.getStateName(new BucketSelector("0-5")));
+            
+            // same first and last bucket
+            String list = UnstoredArtifactCursor.getStateName(new TreeSet<>(Arrays.asList("0", "5")));
+            log.info("state names: " + all + " " + range + " " + list);
+            Assert.assertNotEquals(range, list);
+            
+            // long bucket prefixes: transaction state names still fit in HarvestState.name
+            TreeSet<String> buckets = new TreeSet<>();
+            for (int i = 0; i < 256; i++) {
+                buckets.add(String.format("%06x", i));
+            }
+            String longer = UnstoredArtifactCursor.getStateName(buckets);
+            buckets.remove(buckets.last());
+            String shorter = UnstoredArtifactCursor.getStateName(buckets);
+            Assert.assertNotEquals(longer, shorter);
+            for (String name : new String[] { all, range, list, longer, shorter }) {
+                Assert.assertTrue(name, name.length() <= UnstoredArtifactCursor.MAX_STATE_NAME_LENGTH);
+                String txnState = name + "/" + UUID.randomUUID();
+                Assert.assertTrue(txnState, txnState.length() <= 64);
+            }
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import ca.nrc.cadc.auth.AuthMethod;
+import ca.nrc.cadc.auth.AuthenticationUtil;
+import ca.nrc.cadc.net.FileContent;
+import ca.nrc.cadc.net.HttpPost;
+import ca.nrc.cadc.reg.Standards;
+import ca.nrc.cadc.reg.client.RegistryClient;
+import ca.nrc.cadc.vos.Direction;
+import ca.nrc.cadc.vos.Protocol;
+import ca.nrc.cadc.vos.Transfer;
+import ca.nrc.cadc.vos.TransferReader;
+import ca.nrc.cadc.vos.TransferWriter;
+import ca.nrc.cadc.vos.VOS;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.security.auth.Subject;
+import org.apache.log4j.Logger;
+import org.opencadc.inventory.InventoryUtil;
+
+/**
+ * Resolve download URLs for artifacts via the global locator service. A batch of 
+ * artifacts can be resolved in a single bulk negotiation before the sync jobs are
+ * queued; the resulting (pre-authorized) URLs are cached for a short time and 
+ * consumed by the jobs. Artifacts that were not resolved in a batch are negotiated 
+ * individually. Bulk negotiation is only disabled if the locator service rejects
+ * requests with more than one target; other failures only affect the current batch.
+ * 
+ * @author agent
+ */
+public class DownloadURLResolver {
+    private static final Logger log = Logger.getLogger(DownloadURLResolver.class);
+
+    static final String BULK_CONTENT_TYPE = "text/tab-separated-values";
+    
+    // error message from a locator service that only accepts a single target
+    static final String SINGLE_TARGET_MSG = "expected 1 target";
+    
+    // pre-auth URLs in the cache are only used for a limited time
+    static final long DEFAULT_URL_TTL = 5 * 60 * 1000L; // 5 min
+    
+    private final URI locatorService;
+    private final long urlTTL;
+    private final Map<URI, CachedURLs> cache = new ConcurrentHashMap<>();
+    
+    // locator service URL by auth method
+    private final Map<AuthMethod, URL> serviceURLs = new ConcurrentHashMap<>();
+    
+    private boolean bulkSupported = true;
+    
+    /**
+     * Constructor.
+     * 
+     * @param locatorServiceID locator service to use
+     */
+    public DownloadURLResolver(URI locatorServiceID) {
+        this(locatorServiceID, DEFAULT_URL_TTL);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param locatorServiceID locator service to use
+     * @param urlTTL time (milliseconds) that resolved URLs are kept for use by a job
+     */
+    public DownloadURLResolver(URI locatorServiceID, long urlTTL) {
+        InventoryUtil.assertNotNull(DownloadURLResolver.class, "locatorServiceID", locatorServiceID);
+        this.locatorService = locatorServiceID;
+        this.urlTTL = urlTTL;
+    }
+    
+    private static class CachedURLs {
+        List<Protocol> protocols;
+        long expires;
+        
+        CachedURLs(List<Protocol> protocols, long expires) {
+            this.protocols = protocols;
+            this.expires = expires;
+        }
+    }
+    
+    /**
+     * Resolve download URLs for a batch of artifacts in a single negotiation with 
+     * the locator service using the credentials of the current subject. Failure of
+     * the bulk negotiation is not fatal: unresolved artifacts will be negotiated 
+     * individually.
+     * 
+     * @param artifactURIs artifacts that will be synced soon
+     * @return number of artifacts with resolved URLs
+     */
+    public int resolve(List<URI> artifactURIs) {
+        pruneCache();
+        if (artifactURIs.isEmpty() || !bulkSupported) {
+            return 0;
+        }
+        
+        long start = System.currentTimeMillis();
+        try {
+            Map<URI, List<Protocol>> resolved = negotiate(artifactURIs);
+            long expires = System.currentTimeMillis() + urlTTL;
+            int num = 0;
+            for (Map.Entry<URI, List<Protocol>> me : resolved.entrySet()) {
+                if (!me.getValue().isEmpty()) {
+                    cache.put(me.getKey(), new CachedURLs(me.getValue(), expires));
+                    num++;
+                }
+            }
+            long dt = System.currentTimeMillis() - start;
+            log.info("DownloadURLResolver.BULK num=" + artifactURIs.size() + " resolved=" + num + " dt=" + dt);
+            return num;
+        } catch (IllegalArgumentException ex) {
+            if (isSingleTargetOnly(ex, artifactURIs.size())) {
+                log.warn("bulk transfer negotiation not supported by " + locatorService + " -- disabled: " + ex);
+                bulkSupported = false;
+            } else {
+                // rejected this batch: the artifacts are negotiated individually
+                log.warn("bulk transfer negotiation rejected: " + ex);
+            }
+        } catch (Exception ex) {
+            log.warn("bulk transfer negotiation failed: " + ex);
+        }
+        return 0;
+    }
+    
+    /**
+     * Get download URLs for an artifact. URLs resolved in a previous batch are used
+     * (once) if they have not expired; otherwise the locator service is called for 
+     * this artifact.
+     * 
+     * @param artifactURI artifact to download
+     * @return list of URLs, possibly empty
+     * @throws Exception failure to negotiate transfer
+     */
+    public List<Protocol> getDownloadURLs(URI artifactURI) throws Exception {
+        CachedURLs cached = cache.remove(artifactURI);
+        if (cached != null && cached.expires > System.currentTimeMillis()) {
+            log.debug("cached URLs: " + artifactURI + " " + cached.protocols.size());
+            return new ArrayList<>(cached.protocols);
+        }
+        List<URI> targets = new ArrayList<>(1);
+        targets.add(artifactURI);
+        List<Protocol> ret = negotiate(targets).get(artifactURI);
+        if (ret == null) {
+            return new ArrayList<>();
+        }
+        return ret;
+    }
+    
+    // locator service rejected a request because it had more than one target
+    static boolean isSingleTargetOnly(IllegalArgumentException ex, int numTargets) {
+        return numTargets > 1 && ex.getMessage() != null && ex.getMessage().contains(SINGLE_TARGET_MSG);
+    }
+    
+    // package access for test code
+    boolean isBulkSupported() {
+        return bulkSupported;
+    }
+    
+    // package access for test code
+    int getCacheSize() {
+        return cache.size();
+    }
+    
+    private void pruneCache() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<URI, CachedURLs>> i = cache.entrySet().iterator();
+        while (i.hasNext()) {
+            if (i.next().getValue().expires <= now) {
+                i.remove();
+            }
+        }
+    }
+
+    private Map<URI, List<Protocol>> negotiate(List<URI> targets) throws Exception {
+        Subject subject = AuthenticationUtil.getCurrentSubject();
+        AuthMethod am = AuthenticationUtil.getAuthMethodFromCredentials(subject);
+        URL transferURL = serviceURLs.get(am);
+        if (transferURL == null) {
+            transferURL = getTransferURL(am);
+            if (transferURL == null) {
+                throw new RuntimeException("locator service not found: " + locatorService);
+            }
+            serviceURLs.put(am, transferURL);
+        }
+        log.debug("transferURL: " + transferURL);
+        
+        // request all protocols that can be used
+        Transfer transfer = new Transfer(targets.get(0), Direction.pullFromVoSpace);
+        transfer.getTargets().addAll(targets.subList(1, targets.size()));
+        transfer.version = VOS.VOSPACE_21;
+        transfer.getProtocols().add(new Protocol(VOS.PROTOCOL_HTTPS_GET));
+        transfer.getProtocols().add(new Protocol(VOS.PROTOCOL_HTTP_GET));
+        if (!AuthMethod.ANON.equals(am)) {
+            Protocol httpsAuth = new Protocol(VOS.PROTOCOL_HTTPS_GET);
+            httpsAuth.setSecurityMethod(Standards.getSecurityMethod(am));
+            transfer.getProtocols().add(httpsAuth);
+        }
+        
+        TransferWriter writer = new TransferWriter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(transfer, out);
+        FileContent content = new FileContent(out.toByteArray(), "text/xml");
+        log.debug("transfer request to be posted: " + transfer);
+
+        HttpPost post = new HttpPost(transferURL, content, true);
+        post.setConnectionTimeout(6000); // ms
+        post.setReadTimeout(60000);      // ms
+        post.prepare();
+        log.debug("post prepare done");
+
+        Map<URI, List<Protocol>> ret = new LinkedHashMap<>();
+        for (URI t : targets) {
+            ret.put(t, new ArrayList<>());
+        }
+        String contentType = post.getContentType();
+        if (contentType != null && contentType.startsWith(BULK_CONTENT_TYPE)) {
+            readProtocols(post.getInputStream(), ret);
+        } else {
+            TransferReader reader = new TransferReader();
+            Transfer t = reader.read(post.getInputStream(), null);
+            ret.put(t.getTargets().get(0), t.getProtocols());
+        }
+        return ret;
+    }
+    
+    /**
+     * Find the transfer negotiation endpoint of the locator service.
+     * 
+     * @param am authentication method
+     * @return service URL or null if not found
+     * @throws IOException failure to read service capabilities
+     */
+    protected URL getTransferURL(AuthMethod am) throws IOException {
+        RegistryClient regClient = new RegistryClient();
+        URL ret = regClient.getServiceURL(locatorService, Standards.SI_LOCATE, am);
+        if (ret == null) {
+            ret = regClient.getServiceURL(locatorService, Standards.VOSPACE_SYNC_21, am);
+        }
+        return ret;
+    }
+    
+    // read bulk negotiation response: target \t protocol \t securityMethod \t endpoint
+    static void readProtocols(InputStream istream, Map<URI, List<Protocol>> protocols) throws IOException {
+        BufferedReader r = new BufferedReader(new InputStreamReader(istream, "UTF-8"));
+        String line = r.readLine();
+        while (line != null) {
+            String[] tokens = line.split("\t", -1);
+            if (tokens.length == 4) {
+                URI target = URI.create(tokens[0]);
+                Protocol p = new Protocol(tokens[1]);
+                if (!tokens[2].isEmpty()) {
+                    p.setSecurityMethod(URI.create(tokens[2]));
+                }
+                p.setEndpoint(tokens[3]);
+                List<Protocol> plist = protocols.get(target);
+                if (plist == null) {
+                    plist = new ArrayList<>();
+                    protocols.put(target, plist);
+                }
+                plist.add(p);
+            } else if (!line.isEmpty()) {
+                log.debug("skip invalid line: " + line);
+            }
+            line = r.readLine();
+        }
+    }
+}
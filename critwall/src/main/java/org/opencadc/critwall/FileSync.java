@@ -78,10 +78,14 @@ import ca.nrc.cadc.vosi.Availability;
 import ca.nrc.cadc.vosi.AvailabilityClient;
 import java.io.File;
 import java.net.URI;
+import java.nio.file.Paths;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import javax.naming.NamingException;
@@ -91,6 +95,7 @@ import org.apache.log4j.Logger;
 import org.opencadc.inventory.Artifact;
 import org.opencadc.inventory.InventoryUtil;
 import org.opencadc.inventory.db.ArtifactDAO;
+import org.opencadc.inventory.db.HarvestStateDAO;
 import org.opencadc.inventory.db.version.InitDatabase;
 import org.opencadc.inventory.storage.StorageAdapter;
 
@@ -99,6 +104,19 @@ public class FileSync implements Runnable {
     private static final Logger log = Logger.getLogger(FileSync.class);
 
     private static final int MAX_THREADS = 16;
+    
+    // number of artifacts to resolve download URLs for in a single locator call
+    static final int URL_BATCH_SIZE = 100;
+    
+    // idle time between queries for new work
+    private static final long MIN_IDLE = 1000L;
+    private static final long MAX_IDLE = 30 * 1000L;
+    
+    // interval between scans of all unstored artifacts: these catch artifacts that become unstored
+    // behind the high-water mark (metadata-sync keeps the remote lastModified, file-validate clears
+    // storageLocation without a new lastModified, jobs commit out of order) and failed artifacts
+    // from before a restart; same as the rescan interval before the incremental cursor
+    static final long FULL_SCAN_INTERVAL = 5 * 60 * 1000L;
 
     // The number of hours that the validity checker for the current Subject will request ahead to see if the Subject's
     // X500 certificate is about to expire.  This will also be used to update to schedule updates to the Subject's
@@ -110,11 +128,16 @@ public class FileSync implements Runnable {
     private final ArtifactDAO artifactDAO;
     private final ArtifactDAO jobArtifactDAO;
     private final URI locatorService;
-    private final BucketSelector selector;
+    private final DownloadURLResolver urlResolver;
+    private final UnstoredArtifactCursor cursor;
     private final int nthreads;
+    private final int segmentThreads;
+    private final SyncProgress progress;
     private final StorageAdapter storageAdapter;
     private final ThreadedRunnableExecutor threadPool;
-    private final LinkedBlockingQueue<Runnable> jobQueue;
+    private final SyncJobQueue jobQueue;
+    private TransferScheduler scheduler = new TransferScheduler(0, 0L, 0L);
+    private SegmentSpool spool;
 
     // test usage only
     int testRunLoops = 0; // default: forever
@@ -131,6 +154,22 @@ public class FileSync implements Runnable {
      */
     public FileSync(Map<String, Object> daoConfig, ConnectionConfig connectionConfig, StorageAdapter
         localStorage, URI locatorServiceID, BucketSelector selector, int nthreads) {
+        this(daoConfig, connectionConfig, localStorage, locatorServiceID, selector, nthreads, 1);
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param daoConfig        config map to pass to cadc-inventory-db DAO classes
+     * @param connectionConfig ConnectionConfig object to use for creating jndiDataSource
+     * @param localStorage     adapter to put to local storage
+     * @param locatorServiceID identifier for the remote query service (locator)
+     * @param selector         selector implementation
+     * @param nthreads         number of threads in download thread pool
+     * @param segmentThreads   max number of concurrent segment downloads per file
+     */
+    public FileSync(Map<String, Object> daoConfig, ConnectionConfig connectionConfig, StorageAdapter
+        localStorage, URI locatorServiceID, BucketSelector selector, int nthreads, int segmentThreads) {
 
         InventoryUtil.assertNotNull(FileSync.class, "daoConfig", daoConfig);
         InventoryUtil.assertNotNull(FileSync.class, "connectionConfig", connectionConfig);
@@ -141,10 +180,15 @@ public class FileSync implements Runnable {
         if (nthreads <= 0 || nthreads > MAX_THREADS) {
             throw new IllegalArgumentException("invalid config: nthreads must be in [1," + MAX_THREADS + "], found: " + nthreads);
         }
+        if (segmentThreads <= 0 || segmentThreads > MAX_THREADS) {
+            throw new IllegalArgumentException("invalid config: segmentThreads must be in [1," + MAX_THREADS + "], found: " + segmentThreads);
+        }
 
         this.locatorService = locatorServiceID;
-        this.selector = selector;
+        this.urlResolver = new DownloadURLResolver(locatorServiceID);
         this.nthreads = nthreads;
+        this.segmentThreads = segmentThreads;
+        this.spool = new SegmentSpool(Paths.get(System.getProperty("java.io.tmpdir")), 0L, nthreads * segmentThreads);
 
         // For managing the artifact iterator FileSync loops over
         try {
@@ -178,6 +222,10 @@ public class FileSync implements Runnable {
             } catch (Exception ex) {
                 throw new IllegalStateException("check/init database failed", ex);
             }
+            
+            String stateName = UnstoredArtifactCursor.getStateName(selector);
+            this.progress = new SyncProgress(new HarvestStateDAO(jobArtifactDAO), locatorServiceID, stateName);
+            this.cursor = new UnstoredArtifactCursor(artifactDAO, locatorServiceID, selector, progress);
 
         } catch (NamingException ne) {
             throw new IllegalStateException("unable to access database: " + daoConfig.get("database"), ne);
@@ -186,8 +234,9 @@ public class FileSync implements Runnable {
         // jobQueue is the queue used in this producer/consumer implementation.
         // producer: FileSync uses jobQueue.put(); blocks if queue is full
         // consumer: ThreadPool uses jobQueue.take(); blocks if queue is empty
+        // jobs are taken in priority order so the queue holds at least one batch
 
-        this.jobQueue = new LinkedBlockingQueue<>(this.nthreads * 2);
+        this.jobQueue = new SyncJobQueue(Math.max(this.nthreads * 2, URL_BATCH_SIZE));
         this.threadPool = new ThreadedRunnableExecutor(this.jobQueue, this.nthreads);
 
         this.storageAdapter = localStorage;
@@ -195,6 +244,28 @@ public class FileSync implements Runnable {
         log.debug("FileSync ctor done");
     }
 
+    /**
+     * Set the per-site download limits. The default scheduler does not limit downloads.
+     * 
+     * @param scheduler transfer scheduler shared by all jobs
+     */
+    public void setTransferScheduler(TransferScheduler scheduler) {
+        InventoryUtil.assertNotNull(FileSync.class, "scheduler", scheduler);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Set the spool directory and size for concurrent segment downloads. The default is the 
+     * temporary directory (java.io.tmpdir) with no size limit.
+     * 
+     * @param dir spool directory
+     * @param maxSize max total size of spooled segments, 0 for no limit
+     */
+    public void setSegmentSpool(File dir, long maxSize) {
+        InventoryUtil.assertNotNull(FileSync.class, "dir", dir);
+        this.spool = new SegmentSpool(dir.toPath(), maxSize, nthreads * segmentThreads);
+    }
+
     // start a Scheduler thread to renew the subject periodically.
     public static void scheduleSubjectUpdates(final Subject subject, final File certificateFile) {
         log.debug("START: scheduleSubjectUpdates");
@@ -222,16 +293,63 @@ public class FileSync implements Runnable {
         doit(subject);
     }
 
+    // abort transactions from a previous run that can no longer be resumed because the 
+    // artifact was deleted or has been stored; returns the artifacts with a resumable transaction
+    private List<Artifact> abortOrphanTransactions() {
+        List<Artifact> ret = new ArrayList<>();
+        for (Map.Entry<UUID, String> me : progress.getTransactions().entrySet()) {
+            Artifact a = jobArtifactDAO.get(me.getKey());
+            if (a != null && a.storageLocation == null) {
+                log.info("FileSync.RESUMABLE Artifact.id=" + me.getKey() + " txn=" + me.getValue());
+                ret.add(a);
+                continue;
+            }
+            String txnID = progress.remove(me.getKey());
+            try {
+                storageAdapter.abortTransaction(txnID);
+                log.info("FileSync.ABORT Artifact.id=" + me.getKey() + " txn=" + txnID);
+            } catch (IllegalArgumentException ex) {
+                log.debug("transaction no longer exists: " + txnID);
+            } catch (Exception ex) {
+                log.warn("FileSync.ABORT Artifact.id=" + me.getKey() + " txn=" + txnID + " failed: " + ex);
+            }
+        }
+        return ret;
+    }
+
+    // artifacts that are due for retry; those that were deleted or stored since the
+    // last attempt are removed from the retry table
+    private List<Artifact> getRetries(long now) {
+        List<Artifact> ret = new ArrayList<>();
+        for (UUID id : progress.getRetries(now)) {
+            Artifact a = jobArtifactDAO.get(id);
+            if (a != null && a.storageLocation == null) {
+                ret.add(a);
+            } else {
+                log.debug("FileSync.RETRY Artifact.id=" + id + " no longer unstored");
+                progress.setDone(id);
+            }
+        }
+        return ret;
+    }
+
     // package access for test code
     void doit(final Subject currentUser) {
-        // poll time while watching job queue to empty
+        // poll time while waiting for the locator or watching job queue to empty (test mode)
         long poll = 30 * 1000L; // 30 sec
+        long maxIdle = MAX_IDLE;
         if (testRunLoops > 0) {
             poll = 100L;
+            maxIdle = 100L;
         }
-        // idle time from when jobs finish until next query
-        long idle = 10 * poll;
-
+        // idle time between queries: reset when work is found, doubles when there is none
+        long idle = MIN_IDLE;
+        long lastFullScan = 0L; // start with a full scan
+        
+        log.info("FileSync: " + spool);
+        spool.cleanup();
+        List<Artifact> resumable = abortOrphanTransactions();
+        
         boolean ok = true;
         long loopCount = 0;
         while (ok) {
@@ -247,56 +365,52 @@ public class FileSync implements Runnable {
                 loopCount++;
 
                 long startQ = System.currentTimeMillis();
+                boolean full = (startQ - lastFullScan >= FULL_SCAN_INTERVAL);
+                log.debug("FileSync.QUERY START full=" + full + " hwm=" + cursor.getHighWaterMark());
                 long num = 0L;
-                log.info("FileSync.QUERY START");
-                Iterator<String> bi = selector.getBucketIterator();
-                while (bi.hasNext()) {
-                    String bucket = bi.next();
-                    log.debug("FileSync.QUERY bucket=" + bucket);
-                    try (final ResourceIterator<Artifact> unstoredArtifacts = artifactDAO.unstoredIterator(bucket)) {
-                        while (unstoredArtifacts.hasNext()) {
-                            // TODO:  handle errors from this more sanely after they
-                            // are available from the cadc-inventory-db API
-                            Artifact curArtifact = unstoredArtifacts.next();
-                            log.debug("create job: " + curArtifact.getURI());
-                            FileSyncJob fsj = new FileSyncJob(curArtifact, this.locatorService,
-                                                              this.storageAdapter, this.jobArtifactDAO, currentUser);
-
-                            jobQueue.put(fsj); // blocks when queue capacity is reached
-                            log.info("FileSync.CREATE: Artifact.id=" + curArtifact.getID()
-                                    + " Artifact.uri=" + curArtifact.getURI());
-                            num++;
-                        }
-                    } catch (Exception qex) {
-                        // TODO:  handle errors from this more sanely after they
-                        // are available from the cadc-inventory-db API
-                        throw qex;
-                    }
-
+                if (!resumable.isEmpty()) {
+                    // queue before the cursor so incomplete transactions are resumed first
+                    num += queueJobs(resumable.iterator(), currentUser);
+                    resumable.clear();
+                }
+                try (final ResourceIterator<Artifact> unstoredArtifacts = cursor.iterator(full)) {
+                    // TODO:  handle errors from this more sanely after they
+                    // are available from the cadc-inventory-db API
+                    num += queueJobs(unstoredArtifacts, currentUser);
                 }
+                cursor.commit();
+                if (full) {
+                    lastFullScan = startQ;
+                }
+                
+                List<Artifact> retries = getRetries(System.currentTimeMillis());
+                long numRetry = queueJobs(retries.iterator(), currentUser);
+                
                 long dtQ = System.currentTimeMillis() - startQ;
-                log.info("FileSync.QUERY END dt=" + dtQ + " num=" + num);
+                if (num > 0 || numRetry > 0 || full) {
+                    log.info("FileSync.QUERY END dt=" + dtQ + " full=" + full + " num=" + num + " retry=" + numRetry 
+                        + " pending=" + progress.getNumRetries());
+                    idle = MIN_IDLE;
+                } else {
+                    log.debug("FileSync.QUERY END dt=" + dtQ + " num=0");
+                    idle = Math.min(2 * idle, maxIdle);
+                }
 
-                boolean waiting = true;
-                while (waiting) {
-                    if (jobQueue.isEmpty()) {
-                        // look more closely at state of thread pool
-                        if (threadPool.getAllThreadsIdle()) {
+                if (testRunLoops > 0) {
+                    boolean waiting = true;
+                    while (waiting) {
+                        if (jobQueue.isEmpty() && threadPool.getAllThreadsIdle()) {
                             log.debug("queue empty; jobs complete");
                             waiting = false;
                         } else {
                             log.info("FileSync.POLL dt=" + poll);
                             Thread.sleep(poll);
                         }
-                    } else {
-                        log.info("FileSync.POLL dt=" + poll);
-                        Thread.sleep(poll);
                     }
-
-                }
-                if (testRunLoops > 0 && loopCount >= testRunLoops) {
-                    log.warn("TEST MODE: testRunLoops=" + testRunLoops + " ... terminating!");
-                    ok = false;
+                    if (loopCount >= testRunLoops) {
+                        log.warn("TEST MODE: testRunLoops=" + testRunLoops + " ... terminating!");
+                        ok = false;
+                    }
                 }
             //} catch (TransientException ex) {
             //    log.error("transient error - continuing", ex);
@@ -306,7 +420,7 @@ public class FileSync implements Runnable {
             }
             if (ok) {
                 try {
-                    log.info("FileSync.IDLE dt=" + idle);
+                    log.debug("FileSync.IDLE dt=" + idle);
                     Thread.sleep(idle);
                 } catch (InterruptedException ex) {
                     ok = false;
@@ -318,4 +432,44 @@ public class FileSync implements Runnable {
         }
         this.threadPool.terminate();
     }
+    
+    // create and queue jobs in batches: blocks when queue capacity is reached
+    private long queueJobs(Iterator<Artifact> artifacts, Subject currentUser) throws InterruptedException {
+        long num = 0L;
+        List<Artifact> batch = new ArrayList<>(URL_BATCH_SIZE);
+        while (artifacts.hasNext()) {
+            batch.add(artifacts.next());
+            if (batch.size() == URL_BATCH_SIZE || !artifacts.hasNext()) {
+                resolveURLs(currentUser, batch);
+                for (Artifact curArtifact : batch) {
+                    log.debug("create job: " + curArtifact.getURI());
+                    FileSyncJob fsj = new FileSyncJob(curArtifact, this.urlResolver, this.scheduler,
+                                                      this.storageAdapter, this.jobArtifactDAO, currentUser,
+                                                      this.progress, this.segmentThreads, this.spool);
+                    progress.setQueued(curArtifact);
+                    jobQueue.put(fsj); // blocks when queue capacity is reached
+                    log.info("FileSync.CREATE: Artifact.id=" + curArtifact.getID()
+                            + " Artifact.uri=" + curArtifact.getURI());
+                    num++;
+                }
+                batch.clear();
+            }
+        }
+        return num;
+    }
+    
+    // resolve download URLs for a batch of artifacts before the jobs are queued
+    private void resolveURLs(Subject subject, List<Artifact> batch) {
+        Subject currentSubject = new Subject();
+        // Also synchronized in scheduleSubjectUpdates
+        synchronized (subject) {
+            currentSubject.getPrincipals().addAll(subject.getPrincipals());
+            currentSubject.getPublicCredentials().addAll(subject.getPublicCredentials());
+        }
+        final List<URI> uris = new ArrayList<>(batch.size());
+        for (Artifact a : batch) {
+            uris.add(a.getURI());
+        }
+        Subject.doAs(currentSubject, (PrivilegedAction<Integer>) () -> urlResolver.resolve(uris));
+    }
 }
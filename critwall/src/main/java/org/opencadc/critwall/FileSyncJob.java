@@ -73,36 +73,41 @@ import ca.nrc.cadc.auth.NotAuthenticatedException;
 import ca.nrc.cadc.auth.RunnableAction;
 import ca.nrc.cadc.db.TransactionManager;
 import ca.nrc.cadc.io.ByteLimitExceededException;
+import ca.nrc.cadc.io.ReadException;
 import ca.nrc.cadc.io.WriteException;
-import ca.nrc.cadc.net.FileContent;
 import ca.nrc.cadc.net.HttpGet;
-import ca.nrc.cadc.net.HttpPost;
 import ca.nrc.cadc.net.PreconditionFailedException;
 import ca.nrc.cadc.net.RangeNotSatisfiableException;
 import ca.nrc.cadc.net.ResourceAlreadyExistsException;
 import ca.nrc.cadc.net.ResourceNotFoundException;
 import ca.nrc.cadc.net.TransientException;
 import ca.nrc.cadc.reg.Standards;
-import ca.nrc.cadc.reg.client.RegistryClient;
-import ca.nrc.cadc.vos.Direction;
 import ca.nrc.cadc.vos.Protocol;
-import ca.nrc.cadc.vos.Transfer;
-import ca.nrc.cadc.vos.TransferParsingException;
-import ca.nrc.cadc.vos.TransferReader;
-import ca.nrc.cadc.vos.TransferWriter;
-import ca.nrc.cadc.vos.VOS;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.AccessControlException;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.security.auth.Subject;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.Artifact;
@@ -124,21 +129,30 @@ import org.opencadc.inventory.storage.StorageMetadata;
  * 
  * @author pdowler
  */
-public class FileSyncJob implements Runnable {
+public class FileSyncJob implements SyncJobQueue.Job {
     private static final Logger log = Logger.getLogger(FileSyncJob.class);
 
     private static final long[] RETRY_DELAY = new long[] { 6000L, 12000L };
     // adjustable by test code
     static long SEGMENT_SIZE_PREF = 2 * 1024L * 1024L * 1024L; // 2 GiB
+    
+    private static final AtomicLong SEQUENCE = new AtomicLong();
 
     private int syncArtifactAttempts = 0; // total count of attempted download
     
     private final ArtifactDAO artifactDAO;
     private final UUID artifactID;
-    private final URI locatorService;
+    private final DownloadURLResolver urlResolver;
+    private final TransferScheduler scheduler;
     private final StorageAdapter storageAdapter;
     private final Subject subject;
     private final Subject anonSubject = AuthenticationUtil.getAnonSubject();
+    private final SyncProgress progress;
+    private final int segmentThreads;
+    private final SegmentSpool spool;
+    private final long contentLength;
+    private final long queued = System.currentTimeMillis();
+    private final long sequence = SEQUENCE.incrementAndGet();
     
     private String auth;
     private long byteTransferTime;
@@ -155,23 +169,88 @@ public class FileSyncJob implements Runnable {
      * @param subject caller with credentials for downloads
      */
     public FileSyncJob(Artifact artifact, URI locatorServiceID, StorageAdapter storageAdapter, ArtifactDAO artifactDAO, Subject subject) {
+        this(artifact, new DownloadURLResolver(locatorServiceID), new TransferScheduler(0, 0L, 0L), storageAdapter, artifactDAO, subject, 
+            new SyncProgress(), 1);
+    }
+    
+    /**
+     * Construct a job to sync the specified artifact. Segments of a large file are downloaded
+     * concurrently using up to segmentThreads range requests and appended to the storage 
+     * transaction in order. Open transactions are recorded in the progress tracker so a 
+     * failed sync can be resumed by a later job. Downloads are limited by the scheduler.
+     * 
+     * @param artifact artifact to sync
+     * @param urlResolver resolver for download URLs
+     * @param scheduler per-site download limits
+     * @param storageAdapter back end storage
+     * @param artifactDAO database persistence
+     * @param subject caller with credentials for downloads
+     * @param progress tracker for resumable transactions
+     * @param segmentThreads max number of concurrent segment downloads
+     */
+    public FileSyncJob(Artifact artifact, DownloadURLResolver urlResolver, TransferScheduler scheduler, StorageAdapter storageAdapter, 
+            ArtifactDAO artifactDAO, Subject subject, SyncProgress progress, int segmentThreads) {
+        this(artifact, urlResolver, scheduler, storageAdapter, artifactDAO, subject, progress, segmentThreads,
+            new SegmentSpool(Paths.get(System.getProperty("java.io.tmpdir")), 0L, segmentThreads));
+    }
+    
+    /**
+     * Construct a job to sync the specified artifact. Segments of a large file are downloaded
+     * concurrently using up to segmentThreads range requests into the spool and appended to 
+     * the storage transaction in order. Open transactions are recorded in the progress tracker 
+     * so a failed sync can be resumed by a later job. Downloads are limited by the scheduler.
+     * 
+     * @param artifact artifact to sync
+     * @param urlResolver resolver for download URLs
+     * @param scheduler per-site download limits
+     * @param storageAdapter back end storage
+     * @param artifactDAO database persistence
+     * @param subject caller with credentials for downloads
+     * @param progress tracker for resumable transactions
+     * @param segmentThreads max number of concurrent segment downloads
+     * @param spool temporary space for concurrent segment downloads
+     */
+    public FileSyncJob(Artifact artifact, DownloadURLResolver urlResolver, TransferScheduler scheduler, StorageAdapter storageAdapter, 
+            ArtifactDAO artifactDAO, Subject subject, SyncProgress progress, int segmentThreads, SegmentSpool spool) {
         InventoryUtil.assertNotNull(FileSyncJob.class, "artifact", artifact);
-        InventoryUtil.assertNotNull(FileSyncJob.class, "locatorServiceID", locatorServiceID);
+        InventoryUtil.assertNotNull(FileSyncJob.class, "urlResolver", urlResolver);
+        InventoryUtil.assertNotNull(FileSyncJob.class, "scheduler", scheduler);
         InventoryUtil.assertNotNull(FileSyncJob.class, "storageAdapter", storageAdapter);
         InventoryUtil.assertNotNull(FileSyncJob.class, "artifactDAO", artifactDAO);
+        InventoryUtil.assertNotNull(FileSyncJob.class, "progress", progress);
+        InventoryUtil.assertNotNull(FileSyncJob.class, "spool", spool);
+        if (segmentThreads < 1) {
+            throw new IllegalArgumentException("invalid segmentThreads: " + segmentThreads);
+        }
 
         this.artifactID = artifact.getID();
-        this.locatorService = locatorServiceID;
+        this.urlResolver = urlResolver;
+        this.scheduler = scheduler;
         this.storageAdapter = storageAdapter;
 
         this.artifactDAO = artifactDAO;
         this.subject = subject;
+        this.progress = progress;
+        this.segmentThreads = segmentThreads;
+        this.spool = spool;
         
+        this.contentLength = artifact.getContentLength();
         this.artifactLabel = "Artifact.id=" + artifactID + " Artifact.uri=" + artifact.getURI();
         this.byteTransferTime = 0;
         this.auth = "";
     }
 
+    @Override
+    public long getPriority(long now) {
+        // jobs are created when they are queued
+        return TransferScheduler.getPriority(contentLength, now - queued);
+    }
+
+    @Override
+    public long getSequence() {
+        return sequence;
+    }
+
     @Override
     public void run() {
         Subject currentSubject = new Subject();
@@ -194,6 +273,7 @@ public class FileSyncJob implements Runnable {
         log.info("FileSyncJob.START " + artifactLabel);
         long start = System.currentTimeMillis();
         boolean success = false;
+        boolean retry = true; // false: nothing to sync (now)
         String msg = "";
         
         try {
@@ -202,11 +282,15 @@ public class FileSyncJob implements Runnable {
             if (artifact == null) {
                 success = false;
                 msg = "reason=obsolete-artifact";
+                retry = false;
+                abortResumableTransaction();
                 return;
             }
             if  (artifact.storageLocation != null) {
                 success = false;
                 msg = "reason=artifact-already-synced";
+                retry = false;
+                abortResumableTransaction();
                 return;
             }
             
@@ -214,12 +298,13 @@ public class FileSyncJob implements Runnable {
 
             List<Protocol> urlList;
             try {
-                urlList = getDownloadURLs(this.locatorService, artifact.getURI());
+                urlList = urlResolver.getDownloadURLs(artifact.getURI());
                 if (urlList.isEmpty()) {
                     success = false;
                     msg = "reason=no-transfer-urls";
                     return;
                 }
+                scheduler.prioritize(urlList);
             } catch (Exception ex) {
                 log.debug("transfer negotiation failed: " + artifactLabel, ex);
                 success = false;
@@ -234,16 +319,22 @@ public class FileSyncJob implements Runnable {
                     if (curArtifact == null) {
                         success = false;
                         msg = "reason=obsolete-artifact";
+                        retry = false;
+                        abortResumableTransaction();
                         return;
                     }
                     if  (artifact.storageLocation != null) {
                         success = false;
                         msg = "reason=artifact-already-synced";
+                        retry = false;
+                        abortResumableTransaction();
                         return;
                     }
                     if (!curArtifact.getURI().equals(artifact.getURI())) {
                         success = false;
                         msg = "reason=artifact-change-since-job-started";
+                        retry = false;
+                        abortResumableTransaction();
                         return;
                     }
                     
@@ -274,6 +365,7 @@ public class FileSyncJob implements Runnable {
                                 // newly written object is obsolete
                                 success = false;
                                 msg = "reason=change-since-job-started";
+                                retry = false;
                                 obsLoc = new ObsoleteStorageLocation(storageMeta.getStorageLocation());
                                 locDAO.put(obsLoc);
                             } else {
@@ -358,6 +450,11 @@ public class FileSyncJob implements Runnable {
                 msg = "reason=" + ex.getClass().getName() + " " + ex.getMessage();
             }
         } finally {
+            if (success || !retry) {
+                progress.setDone(artifactID);
+            } else {
+                progress.setFailed(artifactID);
+            }
             long dt = System.currentTimeMillis() - start;
             long overheadTime = dt - byteTransferTime;
             StringBuilder sb = new StringBuilder();
@@ -375,54 +472,6 @@ public class FileSyncJob implements Runnable {
         }
     }
 
-    // Use transfer negotiation at resource URI to get list of download URLs for the artifact.
-    private List<Protocol> getDownloadURLs(URI resource, URI artifact)
-        throws IOException, InterruptedException, 
-               ResourceAlreadyExistsException, ResourceNotFoundException,
-               TransientException, TransferParsingException {
-
-        RegistryClient regClient = new RegistryClient();
-        Subject subject = AuthenticationUtil.getCurrentSubject();
-        AuthMethod am = AuthenticationUtil.getAuthMethodFromCredentials(subject);
-        log.debug("resource id: " + resource);
-        URL transferURL = regClient.getServiceURL(resource, Standards.SI_LOCATE, am);
-        if (transferURL == null) {
-            transferURL = regClient.getServiceURL(resource, Standards.VOSPACE_SYNC_21, am);
-        }
-        log.debug("certURL: " + transferURL);
-
-        // request all protocols that can be used
-        List<Protocol> protocolList = new ArrayList<>();
-        protocolList.add(new Protocol(VOS.PROTOCOL_HTTPS_GET));
-        protocolList.add(new Protocol(VOS.PROTOCOL_HTTP_GET));
-        if (!AuthMethod.ANON.equals(am)) {
-            Protocol httpsAuth = new Protocol(VOS.PROTOCOL_HTTPS_GET);
-            httpsAuth.setSecurityMethod(Standards.getSecurityMethod(am));
-            protocolList.add(httpsAuth);
-        }
-
-        Transfer transfer = new Transfer(artifact, Direction.pullFromVoSpace);
-        transfer.version = VOS.VOSPACE_21;
-        transfer.getProtocols().addAll(protocolList);
-
-        TransferWriter writer = new TransferWriter();
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        writer.write(transfer, out);
-        FileContent content = new FileContent(out.toByteArray(), "text/xml");
-        log.debug("transfer request to be posted: " + transfer);
-
-        log.debug("artifact path: " + artifact.getPath());
-        HttpPost post = new HttpPost(transferURL, content, true);
-        post.setConnectionTimeout(6000); // ms
-        post.setReadTimeout(60000);      // ms
-        post.prepare();
-        log.debug("post prepare done");
-
-        TransferReader reader = new TransferReader();
-        Transfer t = reader.read(post.getInputStream(), null);
-        return t.getProtocols();
-    }
-
     // no longer used but kept for reference: see syncArtifactTxn
     private StorageMetadata syncArtifact(Artifact a, List<Protocol> urls) throws Exception {
         StorageMetadata storageMeta = null;
@@ -510,10 +559,32 @@ public class FileSyncJob implements Runnable {
         }
     }
     
+    // a server that responds to a range request with the complete file
+    static class RangeNotSupportedException extends Exception {
+        RangeNotSupportedException(String msg) {
+            super("range request not supported: " + msg);
+        }
+    }
+    
+    // single segment plan for a complete download
+    static List<PutSegment> getSegmentPlan(Artifact a) {
+        PutSegment s = new PutSegment();
+        s.start = 0L;
+        s.end = a.getContentLength() - 1;
+        s.contentLength = a.getContentLength();
+        List<PutSegment> segs = new ArrayList<>();
+        segs.add(s);
+        return segs;
+    }
+    
     static List<PutSegment> getSegmentPlan(Artifact a, PutTransaction pt) {
+        return getSegmentPlan(a, pt, SEGMENT_SIZE_PREF);
+    }
+    
+    static List<PutSegment> getSegmentPlan(Artifact a, PutTransaction pt, long segmentSizePref) {
         List<FileSyncJob.PutSegment> segs = new ArrayList<>();
         
-        long segmentSize = Math.min(SEGMENT_SIZE_PREF, a.getContentLength()); // client preference
+        long segmentSize = Math.min(segmentSizePref, a.getContentLength()); // client preference
         if (pt.getMinSegmentSize() != null) {
             segmentSize = Math.max(segmentSize, pt.getMinSegmentSize());
         }
@@ -542,8 +613,83 @@ public class FileSyncJob implements Runnable {
         return segs;
     }
     
-    private StorageMetadata syncArtifactTxn(Artifact a, List<Protocol> urls) throws Exception {
-        Iterator<Protocol> urlIterator = urls.iterator();
+    // find the index of the first segment that still has to be downloaded given the number
+    // of bytes already stored in the transaction; -1 if storedBytes is not on a segment boundary
+    static int getResumeIndex(List<PutSegment> segs, long storedBytes) {
+        if (storedBytes == 0L) {
+            return 0;
+        }
+        for (int i = 0; i < segs.size(); i++) {
+            PutSegment s = segs.get(i);
+            if (s.end + 1 == storedBytes) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+    
+    // resume a previously started transaction for this artifact if possible
+    private PutTransaction resumeTransaction(Artifact a) throws StorageEngageException, TransientException {
+        String txnID = progress.getTransactionID(a.getID());
+        if (txnID == null) {
+            return null;
+        }
+        try {
+            PutTransaction pt = storageAdapter.getTransactionStatus(txnID);
+            long stored = getStoredBytes(pt);
+            List<PutSegment> segs = getSegmentPlan(a, pt, getSegmentSizePref());
+            int first = getResumeIndex(segs, stored);
+            if (segs.size() > 1 && first >= 0) {
+                log.info("FileSyncJob.RESUME " + artifactLabel + " txn=" + txnID + " bytes=" + stored 
+                    + " segments=" + first + "/" + segs.size());
+                return pt;
+            }
+            log.warn("FileSyncJob.RESUME " + artifactLabel + " txn=" + txnID + " bytes=" + stored 
+                + " cannot resume -- restarting");
+        } catch (IllegalArgumentException ex) {
+            log.debug("transaction no longer exists: " + txnID, ex);
+            progress.remove(a.getID());
+            return null;
+        }
+        abortResumableTransaction();
+        return null;
+    }
+    
+    // concurrent segment downloads are spooled: segment size limited by the spool
+    private long getSegmentSizePref() {
+        if (segmentThreads > 1) {
+            return spool.getMaxSegmentSize();
+        }
+        return SEGMENT_SIZE_PREF;
+    }
+    
+    private static long getStoredBytes(PutTransaction pt) {
+        if (pt.storageMetadata == null || !pt.storageMetadata.isValid()) {
+            return 0L;
+        }
+        return pt.storageMetadata.getContentLength();
+    }
+    
+    // abort the open transaction for this artifact (if any) and forget it
+    private void abortResumableTransaction() {
+        String txnID = progress.remove(artifactID);
+        if (txnID != null) {
+            try {
+                log.debug("abort resumable transaction: " + txnID);
+                storageAdapter.abortTransaction(txnID);
+            } catch (IllegalArgumentException ignore) {
+                log.debug("transaction already aborted: " + txnID);
+            } catch (Exception ex) {
+                log.error("failed to abort transaction " + txnID + " for " + artifactLabel, ex);
+            }
+        }
+    }
+    
+    // package access for test code
+    StorageMetadata syncArtifactTxn(Artifact a, List<Protocol> urls) throws Exception {
+        // URLs that ignored a range request: retried once with a complete download
+        final Set<URL> noRange = new HashSet<>();
+        ListIterator<Protocol> urlIterator = urls.listIterator();
         while (urlIterator.hasNext()) {
             Protocol p = urlIterator.next();
             URL u = new URL(p.getEndpoint());
@@ -555,78 +701,128 @@ public class FileSyncJob implements Runnable {
             }
 
             String txnID = null;
+            boolean resumable = false; // txn with some completed segments is kept for next attempt
             boolean postPrepare = false;
+            long transferTime = 0;
             try {
                 syncArtifactAttempts++;
                 
                 // figure out txn params
-                PutTransaction pt = storageAdapter.startTransaction(a.getURI(), a.getContentLength());
+                PutTransaction pt = resumeTransaction(a);
+                if (pt == null) {
+                    pt = storageAdapter.startTransaction(a.getURI(), a.getContentLength());
+                }
                 txnID = pt.getID();
-                List<PutSegment> segs = FileSyncJob.getSegmentPlan(a, pt);
+                List<PutSegment> segs = FileSyncJob.getSegmentPlan(a, pt, getSegmentSizePref());
+                if (noRange.contains(u)) {
+                    segs = getSegmentPlan(a);
+                }
                 if (segs.size() == 1) {
                     storageAdapter.abortTransaction(pt.getID());
+                    progress.remove(a.getID());
                     txnID = null;
+                    
                     // proceed without txn
-                }
-                
-                long transferTime = 0;
-                for (PutSegment seg : segs) {
+                    // when there is only one segment, pt==null but the seg.contentLength is correct
+                    PutSegment seg = segs.get(0);
                     log.debug("get: " + seg);
-                    postPrepare = false;
-                    HttpGet get = new HttpGet(u, true);
-                    get.setConnectionTimeout(6000); // ms
-                    get.setReadTimeout(60000);      // ms
-                    if (txnID != null) {
-                        get.setRequestProperty("range", seg.getRangeHeaderVal());
-                    }
+                    try (TransferScheduler.Slot slot = scheduler.start(u)) {
+                        HttpGet get = prepareSegment(p, u, logURL, a, seg, false);
+                        postPrepare = true;
 
-                    if (p.getSecurityMethod() == null || p.getSecurityMethod().equals(Standards.getSecurityMethod(AuthMethod.ANON))) {
-                        log.debug("download: " + u + " as " + anonSubject);
-                        doPrepareAnon(get);
-                    } else {
-                        log.debug("download: " + u + " as " + AuthenticationUtil.getCurrentSubject());
-                        get.prepare();
-                    }
-                    postPrepare = true;
-                    if (txnID != null && get.getResponseCode() != 206) {
-                        // TODO have to fall back to complete download somehow
-                        throw new RuntimeException("OOPS: " + logURL + " auth=" + auth + "] does not support range requests");
-                    }
+                        NewArtifact na = new NewArtifact(a.getURI());
+                        na.contentChecksum = a.getContentChecksum();
+                        na.contentLength = a.getContentLength();
 
-                    // when there is only one segment, pt==null but the seg.contentLength is correct
-                    verifyMetadata(a, get, seg);
+                        long startPut = System.currentTimeMillis();
+                        StorageMetadata storageMeta = this.storageAdapter.put(na, slot.wrap(get.getInputStream()), null);
+                        byteTransferTime = System.currentTimeMillis() - startPut;
+                        log.debug("put ok: " + storageMeta);
+                        return storageMeta;
+                    }
+                }
+                
+                progress.setTransactionID(a.getID(), txnID);
+                resumable = true;
+                int first = getResumeIndex(segs, getStoredBytes(pt));
+                List<PutSegment> remaining = segs.subList(first, segs.size());
+                
+                if (segmentThreads == 1 || remaining.size() <= 1) {
+                    for (PutSegment seg : remaining) {
+                        log.debug("get: " + seg);
+                        postPrepare = false;
+                        try (TransferScheduler.Slot slot = scheduler.start(u)) {
+                            HttpGet get = prepareSegment(p, u, logURL, a, seg, true);
+                            postPrepare = true;
 
-                    NewArtifact na = new NewArtifact(a.getURI());
-                    na.contentChecksum = a.getContentChecksum();
-                    na.contentLength = a.getContentLength();
-                    if (txnID != null) {
-                        na.contentLength = seg.contentLength;
+                            // accumulate time spent on actual byte transfer
+                            long startPut = System.currentTimeMillis();
+                            InputStream istream = slot.wrap(get.getInputStream());
+                            StorageMetadata storageMeta = this.storageAdapter.put(getSegmentArtifact(a, seg), istream, txnID);
+                            transferTime = transferTime + System.currentTimeMillis() - startPut;
+                            log.debug("put ok: " + seg + " " + storageMeta);
+                        }
                     }
-                    
-                    // accumulate time spent on actual byte transfer
-                    long startPut = System.currentTimeMillis();
-                    StorageMetadata storageMeta = this.storageAdapter.put(na, get.getInputStream(), txnID);
-                    transferTime = transferTime + System.currentTimeMillis() - startPut;
-                    log.debug("put ok: " + storageMeta);
-                    
-                    if (txnID == null) {
-                        byteTransferTime = transferTime;
-                        return storageMeta;
+                } else {
+                    // download up to segmentThreads segments ahead of the (ordered) append to the transaction
+                    final Subject caller = AuthenticationUtil.getCurrentSubject();
+                    final Path spoolDir = spool.createDirectory(a.getID());
+                    final ExecutorService downloads = Executors.newFixedThreadPool(Math.min(segmentThreads, remaining.size()));
+                    final LinkedList<Future<Path>> pending = new LinkedList<>();
+                    final Iterator<PutSegment> nextDownload = remaining.iterator();
+                    int spooled = 0; // segments held in the spool by this job
+                    try {
+                        for (PutSegment seg : remaining) {
+                            while (pending.size() < segmentThreads && nextDownload.hasNext()) {
+                                final PutSegment ds = nextDownload.next();
+                                spool.acquire();
+                                spooled++;
+                                pending.add(downloads.submit(() -> Subject.doAs(caller, 
+                                    (PrivilegedExceptionAction<Path>) () -> downloadSegment(p, u, logURL, a, ds, spoolDir))));
+                            }
+                            postPrepare = false;
+                            Path segFile = waitForSegment(pending.removeFirst());
+                            postPrepare = true;
+                            
+                            long startPut = System.currentTimeMillis();
+                            try (InputStream istream = Files.newInputStream(segFile)) {
+                                StorageMetadata storageMeta = this.storageAdapter.put(getSegmentArtifact(a, seg), istream, txnID);
+                                log.debug("put ok: " + seg + " " + storageMeta);
+                            } finally {
+                                Files.deleteIfExists(segFile);
+                                spool.release(1);
+                                spooled--;
+                            }
+                            transferTime = transferTime + System.currentTimeMillis() - startPut;
+                        }
+                    } finally {
+                        for (Future<Path> f : pending) {
+                            f.cancel(true);
+                        }
+                        downloads.shutdownNow();
+                        spool.delete(spoolDir);
+                        spool.release(spooled);
                     }
-                    // TODO: verify partial put, maybe revert and try chunk again?
                 }
                 
                 PutTransaction status = storageAdapter.getTransactionStatus(txnID);
-                verifyMetadata(a, status.storageMetadata);
+                try {
+                    verifyMetadata(a, status.storageMetadata);
+                } catch (PreconditionFailedException ex) {
+                    // stored bytes are wrong: do not resume
+                    resumable = false;
+                    throw ex;
+                }
 
                 log.debug("committing " + txnID);
                 StorageMetadata ret = storageAdapter.commitTransaction(txnID);
+                progress.remove(a.getID());
                 txnID = null;
-                byteTransferTime = transferTime;
                 return ret;
             } catch (ByteLimitExceededException | StorageEngageException | WriteException ex) {
                 // IOException will capture this if not explicitly caught and rethrown
                 log.error("FileSyncJob.FAIL " + artifactLabel + " reason=" + ex);
+                resumable = false;
                 throw ex;
             } catch (MalformedURLException | ResourceNotFoundException | ResourceAlreadyExistsException
                      | PreconditionFailedException | RangeNotSatisfiableException 
@@ -635,6 +831,20 @@ public class FileSyncJob implements Runnable {
                 log.warn("FileSyncJob.ERROR " + artifactLabel + " remove=" + logURL + " auth=" + auth + " reason=" + ex);
                 fails.add(ex);
                 urlIterator.remove();
+            } catch (InterruptedException ex) {
+                // waiting for a download slot: keep txn for resume
+                throw ex;
+            } catch (RangeNotSupportedException ex) {
+                // segments stored so far cannot be completed from this URL: discard them and
+                // retry the same URL once with a complete download
+                log.warn("FileSyncJob.ERROR " + artifactLabel + " retry=" + logURL + " auth=" + auth + " reason=" + ex);
+                resumable = false;
+                if (noRange.add(u)) {
+                    urlIterator.previous();
+                } else {
+                    fails.add(ex);
+                    urlIterator.remove();
+                }
             } catch (IOException | TransientException ex) {
                 // includes ReadException
                 // - prepare or put throwing this error
@@ -651,16 +861,21 @@ public class FileSyncJob implements Runnable {
                 } else {
                     // StorageAdapter.put internal fail: abort
                     log.warn("FileSyncJob.FAIL " + artifactLabel + " reason=" + ex);
+                    resumable = false;
                     throw ex;
                 }
             } finally {
-                if (txnID != null) {
-                    // not comitted at end of try { }
+                byteTransferTime += transferTime;
+                if (txnID != null && !resumable) {
+                    // not comitted at end of try { } and not resumable
+                    progress.remove(a.getID());
                     try {
                         storageAdapter.abortTransaction(txnID);
                     } catch (IllegalArgumentException ignore) {
                         // txn already aborted by StorageAdapter
                     }
+                } else if (txnID != null) {
+                    log.info("FileSyncJob.INCOMPLETE " + artifactLabel + " txn=" + txnID + " -- resumable");
                 }
             }
         }
@@ -668,6 +883,80 @@ public class FileSyncJob implements Runnable {
         return null;
     }
     
+    private NewArtifact getSegmentArtifact(Artifact a, PutSegment seg) {
+        NewArtifact na = new NewArtifact(a.getURI());
+        na.contentChecksum = a.getContentChecksum();
+        na.contentLength = seg.contentLength;
+        return na;
+    }
+    
+    // prepare a download of one segment and verify response metadata
+    private HttpGet prepareSegment(Protocol p, URL u, String logURL, Artifact a, PutSegment seg, boolean range) throws Exception {
+        HttpGet get = new HttpGet(u, true);
+        get.setConnectionTimeout(6000); // ms
+        get.setReadTimeout(60000);      // ms
+        if (range) {
+            get.setRequestProperty("range", seg.getRangeHeaderVal());
+        }
+
+        if (p.getSecurityMethod() == null || p.getSecurityMethod().equals(Standards.getSecurityMethod(AuthMethod.ANON))) {
+            log.debug("download: " + u + " as " + anonSubject);
+            doPrepareAnon(get);
+        } else {
+            log.debug("download: " + u + " as " + AuthenticationUtil.getCurrentSubject());
+            get.prepare();
+        }
+        if (range && get.getResponseCode() != 206) {
+            try {
+                get.getInputStream().close();
+            } catch (IOException ignore) {
+                log.debug("failed to close unused response: " + ignore);
+            }
+            throw new RangeNotSupportedException(logURL + " auth=" + auth + " response=" + get.getResponseCode());
+        }
+        verifyMetadata(a, get, seg);
+        return get;
+    }
+    
+    // download one segment to a spool file
+    private Path downloadSegment(Protocol p, URL u, String logURL, Artifact a, PutSegment seg, Path spoolDir) throws Exception {
+        log.debug("get: " + seg);
+        try (TransferScheduler.Slot slot = scheduler.start(u)) {
+            HttpGet get = prepareSegment(p, u, logURL, a, seg, true);
+            return spoolSegment(slot.wrap(get.getInputStream()), seg, spoolDir);
+        }
+    }
+    
+    private Path spoolSegment(InputStream download, PutSegment seg, Path spoolDir) throws Exception {
+        Path spool = Files.createTempFile(spoolDir, "segment-" + seg.start + "-", ".tmp");
+        try (InputStream istream = download) {
+            long num = Files.copy(istream, spool, StandardCopyOption.REPLACE_EXISTING);
+            if (num != seg.contentLength) {
+                throw new ReadException("incomplete segment " + seg + " received: " + num);
+            }
+            log.debug("download ok: " + seg);
+            return spool;
+        } catch (Exception ex) {
+            Files.deleteIfExists(spool);
+            throw ex;
+        }
+    }
+    
+    private Path waitForSegment(Future<Path> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof PrivilegedActionException) {
+                throw ((PrivilegedActionException) cause).getException();
+            }
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new RuntimeException("segment download failed", cause);
+        }
+    }
+    
     private void doPrepareAnon(final HttpGet get) throws Exception {
         try {
             Subject.doAs(anonSubject, (PrivilegedExceptionAction<Void>) () -> {
@@ -74,6 +74,7 @@ import ca.nrc.cadc.util.MultiValuedProperties;
 import ca.nrc.cadc.util.PropertiesReader;
 import ca.nrc.cadc.util.StringUtil;
 
+import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Map;
@@ -99,6 +100,12 @@ public class Main {
     private static final String DB_PASSWORD_CONFIG_KEY = CONFIG_PREFIX + ".inventory.password";
     private static final String BUCKETSEL_CONFIG_KEY = CONFIG_PREFIX + ".buckets";
     private static final String NTHREADS_CONFIG_KEY = CONFIG_PREFIX + ".threads";
+    private static final String SEGMENT_THREADS_CONFIG_KEY = CONFIG_PREFIX + ".segmentThreads";
+    private static final String SPOOL_DIR_CONFIG_KEY = CONFIG_PREFIX + ".spoolDir";
+    private static final String SPOOL_SIZE_CONFIG_KEY = CONFIG_PREFIX + ".spoolSize";
+    private static final String SITE_THREADS_CONFIG_KEY = CONFIG_PREFIX + ".siteThreads";
+    private static final String SITE_BANDWIDTH_CONFIG_KEY = CONFIG_PREFIX + ".siteBandwidth";
+    private static final String BANDWIDTH_CONFIG_KEY = CONFIG_PREFIX + ".bandwidth";
     private static final String LOCATOR_SERVICE_CONFIG_KEY = CONFIG_PREFIX + ".locatorService";
     private static final String LOGGING_CONFIG_KEY = CONFIG_PREFIX + ".logging";
 
@@ -218,6 +225,50 @@ public class Main {
             int nthreads = Integer.parseInt(nthreadStr);
             log.debug("nthreads: " + nthreads);
 
+            // optional
+            int segmentThreads = 1;
+            String segmentThreadStr = props.getFirstPropertyValue(SEGMENT_THREADS_CONFIG_KEY);
+            if (StringUtil.hasLength(segmentThreadStr)) {
+                segmentThreads = Integer.parseInt(segmentThreadStr);
+            }
+            log.debug("segmentThreads: " + segmentThreads);
+            
+            File spoolDir = new File(System.getProperty("java.io.tmpdir"));
+            String spoolDirStr = props.getFirstPropertyValue(SPOOL_DIR_CONFIG_KEY);
+            if (StringUtil.hasLength(spoolDirStr)) {
+                spoolDir = new File(spoolDirStr);
+            }
+            if (!spoolDir.isDirectory() && !spoolDir.mkdirs()) {
+                throw new IllegalStateException("invalid " + SPOOL_DIR_CONFIG_KEY + ": " + spoolDir + " is not a directory");
+            }
+            if (!spoolDir.canWrite()) {
+                throw new IllegalStateException("invalid " + SPOOL_DIR_CONFIG_KEY + ": " + spoolDir + " is not writable");
+            }
+            long spoolSize = 0L;
+            String spoolSizeStr = props.getFirstPropertyValue(SPOOL_SIZE_CONFIG_KEY);
+            if (StringUtil.hasLength(spoolSizeStr)) {
+                spoolSize = Long.parseLong(spoolSizeStr);
+            }
+            log.debug("spool: " + spoolDir + " " + spoolSize);
+            
+            int siteThreads = 0;
+            String siteThreadStr = props.getFirstPropertyValue(SITE_THREADS_CONFIG_KEY);
+            if (StringUtil.hasLength(siteThreadStr)) {
+                siteThreads = Integer.parseInt(siteThreadStr);
+            }
+            long siteBandwidth = 0L;
+            String siteBandwidthStr = props.getFirstPropertyValue(SITE_BANDWIDTH_CONFIG_KEY);
+            if (StringUtil.hasLength(siteBandwidthStr)) {
+                siteBandwidth = Long.parseLong(siteBandwidthStr);
+            }
+            long bandwidth = 0L;
+            String bandwidthStr = props.getFirstPropertyValue(BANDWIDTH_CONFIG_KEY);
+            if (StringUtil.hasLength(bandwidthStr)) {
+                bandwidth = Long.parseLong(bandwidthStr);
+            }
+            TransferScheduler scheduler = new TransferScheduler(siteThreads, siteBandwidth, bandwidth);
+            log.debug("scheduler: " + scheduler);
+
             BucketSelector bucketSel = new BucketSelector(bucketSelectorPrefix);
             log.debug("bucket selector: " + bucketSel);
 
@@ -227,7 +278,9 @@ public class Main {
                 "org.postgresql.Driver",
                 dbUrl);
 
-            FileSync doit = new FileSync(daoConfig, cc, localStorage, locatorService, bucketSel, nthreads);
+            FileSync doit = new FileSync(daoConfig, cc, localStorage, locatorService, bucketSel, nthreads, segmentThreads);
+            doit.setTransferScheduler(scheduler);
+            doit.setSegmentSpool(spoolDir, spoolSize);
             doit.run();
         } catch (Throwable unexpected) {
             log.error("failure", unexpected);
@@ -0,0 +1,215 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import org.apache.log4j.Logger;
+
+/**
+ * Temporary space for segments that are downloaded concurrently (segmentThreads &gt; 1) and
+ * then appended to the storage transaction in order. Each job spools into its own directory
+ * named critwall-{Artifact.id}-* below the spool directory. The total spool is bounded by a
+ * number of segments (download threads x segmentThreads) and optionally by a size: the 
+ * preferred segment size for spooled downloads is the size divided by the number of segments.
+ * Instances are shared by all FileSyncJob(s) created by a FileSync and are thread-safe.
+ * 
+ * @author agent
+ */
+public class SegmentSpool {
+    private static final Logger log = Logger.getLogger(SegmentSpool.class);
+
+    static final String DIR_PREFIX = "critwall-";
+    
+    private final Path dir;
+    private final int maxSegments;
+    private final long maxSegmentSize;
+    private final Semaphore segments;
+    
+    /**
+     * Constructor.
+     * 
+     * @param dir spool directory
+     * @param maxSize max total size of spooled segments, 0 for no limit
+     * @param maxSegments max number of spooled segments
+     */
+    public SegmentSpool(Path dir, long maxSize, int maxSegments) {
+        if (dir == null) {
+            throw new IllegalArgumentException("invalid spool directory: null");
+        }
+        if (maxSize < 0L) {
+            throw new IllegalArgumentException("invalid spool size: " + maxSize);
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("invalid spool segments: " + maxSegments);
+        }
+        this.dir = dir;
+        this.maxSegments = maxSegments;
+        if (maxSize > 0L) {
+            this.maxSegmentSize = Math.max(1L, maxSize / maxSegments);
+        } else {
+            this.maxSegmentSize = FileSyncJob.SEGMENT_SIZE_PREF;
+        }
+        this.segments = new Semaphore(maxSegments, true);
+    }
+    
+    public Path getDirectory() {
+        return dir;
+    }
+    
+    /**
+     * Get the preferred segment size for downloads that are spooled.
+     * 
+     * @return max segment size in bytes
+     */
+    public long getMaxSegmentSize() {
+        return Math.min(maxSegmentSize, FileSyncJob.SEGMENT_SIZE_PREF);
+    }
+    
+    /**
+     * Delete spool directories left behind by a previous process. This must be called
+     * before any jobs are started.
+     */
+    public void cleanup() {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        int num = 0;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, DIR_PREFIX + "*")) {
+            for (Path p : ds) {
+                if (Files.isDirectory(p)) {
+                    delete(p);
+                    num++;
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("failed to list segment spool: " + dir + " reason=" + ex);
+        }
+        log.info("SegmentSpool: " + dir + " deleted stale spool directories: " + num);
+    }
+    
+    /**
+     * Create a spool directory for one job.
+     * 
+     * @param artifactID artifact to download
+     * @return new empty directory
+     * @throws IOException if the directory could not be created
+     */
+    public Path createDirectory(UUID artifactID) throws IOException {
+        Files.createDirectories(dir);
+        return Files.createTempDirectory(dir, DIR_PREFIX + artifactID + "-");
+    }
+    
+    /**
+     * Delete a spool directory for one job and any remaining segments.
+     * 
+     * @param jobDir directory from createDirectory
+     */
+    public void delete(Path jobDir) {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(jobDir)) {
+            for (Path f : ds) {
+                Files.deleteIfExists(f);
+            }
+            Files.deleteIfExists(jobDir);
+        } catch (IOException ex) {
+            log.warn("failed to cleanup segment spool: " + jobDir + " reason=" + ex);
+        }
+    }
+    
+    /**
+     * Wait for space for one more spooled segment.
+     * 
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        segments.acquire();
+    }
+    
+    /**
+     * Release space for spooled segments.
+     * 
+     * @param num number of segments
+     */
+    public void release(int num) {
+        if (num > 0) {
+            segments.release(num);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return SegmentSpool.class.getSimpleName() + "[" + dir + "," + maxSegments + "," + getMaxSegmentSize() + "]";
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded job queue that hands out jobs (FileSyncJob) in priority order (see 
+ * TransferScheduler.getPriority). The priority of a job changes while it waits, so 
+ * jobs are ranked when they are taken rather than when they are added. put() blocks 
+ * while the queue is full; jobs with equal priority are taken in the order they were added.
+ * 
+ * @author agent
+ */
+class SyncJobQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+    private final int capacity;
+    private final List<Runnable> jobs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    
+    /**
+     * A queued job with a priority (lower values first) and a sequence number 
+     * (order of creation).
+     */
+    interface Job extends Runnable {
+        /**
+         * @param now current time (milliseconds)
+         * @return priority of the job at the specified time
+         */
+        long getPriority(long now);
+        
+        long getSequence();
+    }
+    
+    SyncJobQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.jobs = new ArrayList<>(capacity);
+    }
+
+    @Override
+    public void put(Runnable r) {
+        checkNotNull(r);
+        lock.lock();
+        try {
+            while (jobs.size() >= capacity) {
+                notFull.awaitUninterruptibly();
+            }
+            enqueue(r);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable r) {
+        checkNotNull(r);
+        lock.lock();
+        try {
+            if (jobs.size() >= capacity) {
+                return false;
+            }
+            enqueue(r);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable r, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(r);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (jobs.size() >= capacity) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(r);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (jobs.isEmpty()) {
+                notEmpty.await();
+            }
+            return removeAt(next());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            if (jobs.isEmpty()) {
+                return null;
+            }
+            return removeAt(next());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (jobs.isEmpty()) {
+                if (nanos <= 0L) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return removeAt(next());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            if (jobs.isEmpty()) {
+                return null;
+            }
+            return jobs.get(next());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            int i = jobs.indexOf(o);
+            if (i < 0) {
+                return false;
+            }
+            removeAt(i);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return jobs.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - jobs.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException("cannot drain to self");
+        }
+        lock.lock();
+        try {
+            int num = 0;
+            while (num < maxElements && !jobs.isEmpty()) {
+                c.add(removeAt(next()));
+                num++;
+            }
+            return num;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return iterator over a snapshot of the queued jobs (in no particular order)
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            return new ArrayList<>(jobs).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // caller holds lock
+    private void enqueue(Runnable r) {
+        jobs.add(r);
+        notEmpty.signal();
+    }
+    
+    // caller holds lock
+    private Runnable removeAt(int i) {
+        Runnable ret = jobs.remove(i);
+        notFull.signal();
+        return ret;
+    }
+    
+    // caller holds lock: index of the job with the lowest current priority
+    private int next() {
+        long now = System.currentTimeMillis();
+        int ret = 0;
+        long bestPriority = getPriority(jobs.get(0), now);
+        long bestSequence = getSequence(jobs.get(0));
+        for (int i = 1; i < jobs.size(); i++) {
+            Runnable r = jobs.get(i);
+            long p = getPriority(r, now);
+            long s = getSequence(r);
+            if (p < bestPriority || (p == bestPriority && s < bestSequence)) {
+                ret = i;
+                bestPriority = p;
+                bestSequence = s;
+            }
+        }
+        return ret;
+    }
+    
+    private static long getPriority(Runnable r, long now) {
+        if (r instanceof Job) {
+            return ((Job) r).getPriority(now);
+        }
+        return Long.MAX_VALUE;
+    }
+    
+    private static long getSequence(Runnable r) {
+        if (r instanceof Job) {
+            return ((Job) r).getSequence();
+        }
+        return 0L;
+    }
+    
+    private static void checkNotNull(Runnable r) {
+        if (r == null) {
+            throw new NullPointerException("null job");
+        }
+    }
+}
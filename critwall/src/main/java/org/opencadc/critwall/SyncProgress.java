@@ -0,0 +1,318 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.log4j.Logger;
+import org.opencadc.inventory.Artifact;
+import org.opencadc.inventory.db.HarvestState;
+import org.opencadc.inventory.db.HarvestStateDAO;
+
+/**
+ * Tracks the open storage transaction for each artifact with a partially completed
+ * segmented download. The bytes already written are held by the StorageAdapter in the
+ * PutTransaction, so a later FileSyncJob for the same artifact can ask the adapter for
+ * the transaction status and resume from the last committed segment. Open transactions
+ * are persisted in the inventory database (one HarvestState per transaction with 
+ * name={prefix}/{transactionID} and curID={Artifact.id}) so they can be resumed or 
+ * aborted after a restart.
+ * 
+ * <p>Also tracks artifacts with a queued (or running) job and the retry table of failed
+ * artifacts: a failed artifact is retried after a delay equal to the time since its first
+ * failure (from RETRY_MIN_DELAY up to RETRY_MAX_DELAY) so the delay doubles with each attempt.
+ * The retry table is only kept in memory: after a restart, failed artifacts are found again 
+ * by the full scan of unstored artifacts. Instances are shared by all FileSyncJob(s) created 
+ * by a FileSync and are thread-safe.
+ * 
+ * @author agent
+ */
+public class SyncProgress {
+    private static final Logger log = Logger.getLogger(SyncProgress.class);
+
+    static final long RETRY_MIN_DELAY = 60 * 1000L; // 1 min
+    static final long RETRY_MAX_DELAY = 6 * 3600 * 1000L; // 6 hours
+    
+    private final HarvestStateDAO stateDAO;
+    private final URI resourceID;
+    private final String namePrefix;
+    
+    private final Map<UUID, String> transactions = new ConcurrentHashMap<>();
+    private final Map<UUID, HarvestState> transactionStates = new ConcurrentHashMap<>();
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Retry> retries = new ConcurrentHashMap<>();
+    
+    private static class Retry {
+        final long firstFailure;
+        final long nextAttempt;
+        
+        Retry(long firstFailure, long nextAttempt) {
+            this.firstFailure = firstFailure;
+            this.nextAttempt = nextAttempt;
+        }
+    }
+    
+    /**
+     * Constructor for a SyncProgress that is not persisted.
+     */
+    public SyncProgress() { 
+        this.stateDAO = null;
+        this.resourceID = null;
+        this.namePrefix = null;
+    }
+    
+    /**
+     * Constructor. The open transactions persisted by a previous instance with the same 
+     * resourceID and name are loaded (see getTransactions).
+     * 
+     * @param stateDAO DAO to persist open transactions
+     * @param resourceID identifier of the source (locator) service
+     * @param name name of the sync state (distinct for each set of buckets)
+     */
+    public SyncProgress(HarvestStateDAO stateDAO, URI resourceID, String name) {
+        this.stateDAO = stateDAO;
+        this.resourceID = resourceID;
+        this.namePrefix = name + "/";
+        for (HarvestState hs : stateDAO.list(namePrefix, resourceID)) {
+            String txnID = hs.getName().substring(namePrefix.length());
+            if (hs.curID == null) {
+                log.warn("SyncProgress: ignoring invalid state " + hs);
+                continue;
+            }
+            transactions.put(hs.curID, txnID);
+            transactionStates.put(hs.curID, hs);
+        }
+        log.info("SyncProgress: " + name + " open transactions: " + transactions.size());
+    }
+    
+    /**
+     * Get all open transactions.
+     * 
+     * @return map of artifactID to transactionID
+     */
+    public Map<UUID, String> getTransactions() {
+        return new HashMap<>(transactions);
+    }
+    
+    /**
+     * Get the open transaction for the specified artifact.
+     * 
+     * @param artifactID artifact identifier
+     * @return transactionID or null if there is no resumable transaction
+     */
+    public String getTransactionID(UUID artifactID) {
+        return transactions.get(artifactID);
+    }
+    
+    /**
+     * Record the open transaction for the specified artifact.
+     * 
+     * @param artifactID artifact identifier
+     * @param transactionID storage transaction identifier
+     */
+    public void setTransactionID(UUID artifactID, String transactionID) {
+        String prev = transactions.put(artifactID, transactionID);
+        if (transactionID.equals(prev)) {
+            return;
+        }
+        if (prev != null) {
+            log.warn("SyncProgress: replaced transaction " + prev + " with " + transactionID + " for Artifact.id=" + artifactID);
+        }
+        if (stateDAO != null) {
+            deleteState(artifactID);
+            HarvestState hs = new HarvestState(namePrefix + transactionID, resourceID);
+            hs.curID = artifactID;
+            try {
+                stateDAO.put(hs);
+                transactionStates.put(artifactID, hs);
+            } catch (RuntimeException ex) {
+                // transaction is still usable by this process but cannot be resumed after restart
+                log.warn("SyncProgress: failed to persist " + hs + " for Artifact.id=" + artifactID + " reason=" + ex);
+            }
+        }
+    }
+    
+    /**
+     * Forget the transaction for the specified artifact (committed or aborted).
+     * 
+     * @param artifactID artifact identifier
+     * @return the removed transactionID or null
+     */
+    public String remove(UUID artifactID) {
+        String ret = transactions.remove(artifactID);
+        deleteState(artifactID);
+        return ret;
+    }
+    
+    private void deleteState(UUID artifactID) {
+        HarvestState hs = transactionStates.remove(artifactID);
+        if (hs != null) {
+            try {
+                stateDAO.delete(hs.getID());
+            } catch (RuntimeException ex) {
+                // stale state is cleaned up at startup: transaction no longer exists
+                log.warn("SyncProgress: failed to delete " + hs + " for Artifact.id=" + artifactID + " reason=" + ex);
+            }
+        }
+    }
+    
+    public int size() {
+        return transactions.size();
+    }
+    
+    /**
+     * Check if an artifact has a queued job or is waiting for retry.
+     * 
+     * @param artifactID artifact identifier
+     * @return true if a new job should not be created for the artifact
+     */
+    public boolean isPending(UUID artifactID) {
+        return queued.contains(artifactID) || retries.containsKey(artifactID);
+    }
+    
+    /**
+     * Record that a job for the artifact was queued.
+     * 
+     * @param artifact the artifact
+     */
+    public void setQueued(Artifact artifact) {
+        queued.add(artifact.getID());
+    }
+    
+    /**
+     * Record that the job for the artifact succeeded or that there is nothing to sync.
+     * 
+     * @param artifactID artifact identifier
+     */
+    public void setDone(UUID artifactID) {
+        queued.remove(artifactID);
+        retries.remove(artifactID);
+    }
+    
+    /**
+     * Record that the job for the artifact failed: schedule a retry.
+     * 
+     * @param artifactID artifact identifier
+     */
+    public void setFailed(UUID artifactID) {
+        setFailed(artifactID, System.currentTimeMillis());
+    }
+    
+    // package access for test code
+    void setFailed(UUID artifactID, long now) {
+        if (!queued.remove(artifactID)) {
+            // job not queued by FileSync
+            return;
+        }
+        Retry prev = retries.get(artifactID);
+        if (prev != null) {
+            long delay = getRetryDelay(now - prev.firstFailure);
+            retries.put(artifactID, new Retry(prev.firstFailure, now + delay));
+            log.debug("SyncProgress: retry Artifact.id=" + artifactID + " delay=" + delay);
+            return;
+        }
+        retries.put(artifactID, new Retry(now, now + RETRY_MIN_DELAY));
+        log.debug("SyncProgress: retry Artifact.id=" + artifactID + " delay=" + RETRY_MIN_DELAY);
+    }
+    
+    /**
+     * Get artifacts that are due for retry. The returned artifacts stay in the retry 
+     * table (with the time of the first failure) until the caller queues a new job 
+     * that succeeds or calls setDone.
+     * 
+     * @param now current time
+     * @return IDs of artifacts to retry
+     */
+    public List<UUID> getRetries(long now) {
+        List<UUID> ret = new ArrayList<>();
+        for (Map.Entry<UUID, Retry> me : retries.entrySet()) {
+            if (me.getValue().nextAttempt <= now && !queued.contains(me.getKey())) {
+                ret.add(me.getKey());
+            }
+        }
+        return ret;
+    }
+    
+    public int getNumRetries() {
+        return retries.size();
+    }
+    
+    // delay before the next attempt: the time since the first failure
+    static long getRetryDelay(long sinceFirstFailure) {
+        return Math.min(Math.max(RETRY_MIN_DELAY, sinceFirstFailure), RETRY_MAX_DELAY);
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import ca.nrc.cadc.vos.Protocol;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.log4j.Logger;
+
+/**
+ * Limits downloads by source site (host): number of concurrent downloads and bytes
+ * per second from each site, and aggregate bytes per second into local storage. Also
+ * computes the queue priority of a file sync job so small files are not stuck behind
+ * large ones. Instances are shared by all FileSyncJob(s) created by a FileSync and are
+ * thread-safe. A limit of 0 means unlimited.
+ * 
+ * @author agent
+ */
+public class TransferScheduler {
+    private static final Logger log = Logger.getLogger(TransferScheduler.class);
+
+    // time waiting in the job queue that raises priority by one size class
+    static final long PRIORITY_AGE_STEP = 60 * 1000L; // 1 min
+    
+    private final int maxSiteTransfers;
+    private final long maxSiteBytesPerSec;
+    private final RateLimiter destination;
+    
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+    
+    /**
+     * Constructor.
+     * 
+     * @param maxSiteTransfers max concurrent downloads from a single site
+     * @param maxSiteBytesPerSec max bytes per second from a single site
+     * @param maxBytesPerSec max aggregate bytes per second into local storage
+     */
+    public TransferScheduler(int maxSiteTransfers, long maxSiteBytesPerSec, long maxBytesPerSec) {
+        if (maxSiteTransfers < 0 || maxSiteBytesPerSec < 0L || maxBytesPerSec < 0L) {
+            throw new IllegalArgumentException("invalid config: transfer limits must be >= 0");
+        }
+        this.maxSiteTransfers = maxSiteTransfers;
+        this.maxSiteBytesPerSec = maxSiteBytesPerSec;
+        this.destination = new RateLimiter(maxBytesPerSec);
+    }
+
+    @Override
+    public String toString() {
+        return TransferScheduler.class.getSimpleName() + "[siteTransfers=" + maxSiteTransfers 
+            + ",siteBytesPerSec=" + maxSiteBytesPerSec + ",bytesPerSec=" + destination.bytesPerSec + "]";
+    }
+    
+    /**
+     * Compute the priority of a file: lower values are synced first. Files are grouped
+     * into size classes (powers of 2) and the class is lowered for each PRIORITY_AGE_STEP
+     * the job has been waiting in the queue so large files are not postponed indefinitely.
+     * 
+     * @param contentLength file size
+     * @param ageMillis time since the job was queued
+     * @return priority (0 is highest)
+     */
+    public static long getPriority(long contentLength, long ageMillis) {
+        long sizeClass = 64 - Long.numberOfLeadingZeros(Math.max(0L, contentLength));
+        long boost = Math.max(0L, ageMillis) / PRIORITY_AGE_STEP;
+        return Math.max(0L, sizeClass - boost);
+    }
+    
+    /**
+     * Reorder URLs so those from sites with free download slots come first. The sort
+     * is stable so the locator preference is kept for sites with equal load.
+     * 
+     * @param urls list of URLs to modify
+     */
+    public void prioritize(List<Protocol> urls) {
+        if (maxSiteTransfers == 0 || urls.size() < 2) {
+            return;
+        }
+        Collections.sort(urls, Comparator.comparingInt((Protocol p) -> {
+            Site s = sites.get(getSiteName(p.getEndpoint()));
+            if (s == null || s.active < maxSiteTransfers) {
+                return 0;
+            }
+            return 1;
+        }));
+    }
+    
+    /**
+     * Start a download: blocks until the source site has a free download slot. The 
+     * returned slot must be closed when the download is complete.
+     * 
+     * @param url download URL
+     * @return slot to throttle the download
+     * @throws InterruptedException if interrupted while waiting for a slot
+     */
+    public Slot start(URL url) throws InterruptedException {
+        String name = getSiteName(url);
+        Site s = sites.computeIfAbsent(name, k -> new Site(k, maxSiteBytesPerSec));
+        synchronized (s) {
+            while (maxSiteTransfers > 0 && s.active >= maxSiteTransfers) {
+                log.debug("TransferScheduler.WAIT " + name + " active=" + s.active);
+                s.wait();
+            }
+            s.active++;
+        }
+        return new Slot(s);
+    }
+    
+    // package access for test code
+    int getActiveTransfers(String site) {
+        Site s = sites.get(site);
+        if (s == null) {
+            return 0;
+        }
+        synchronized (s) {
+            return s.active;
+        }
+    }
+    
+    static String getSiteName(URL url) {
+        if (url.getPort() > 0) {
+            return url.getHost() + ":" + url.getPort();
+        }
+        return url.getHost();
+    }
+    
+    private static String getSiteName(String endpoint) {
+        try {
+            return getSiteName(new URL(endpoint));
+        } catch (MalformedURLException ex) {
+            return endpoint;
+        }
+    }
+    
+    /**
+     * A download in progress from one site.
+     */
+    public class Slot implements AutoCloseable {
+        private final Site site;
+        private boolean closed = false;
+        
+        private Slot(Site site) {
+            this.site = site;
+        }
+        
+        /**
+         * Wrap the download stream so reads are limited to the site and local storage 
+         * bandwidth.
+         * 
+         * @param istream download stream
+         * @return throttled stream
+         */
+        public InputStream wrap(InputStream istream) {
+            if (site.limiter.bytesPerSec == 0L && destination.bytesPerSec == 0L) {
+                return istream;
+            }
+            return new ThrottledInputStream(istream, site.limiter, destination);
+        }
+
+        @Override
+        public void close() {
+            synchronized (site) {
+                if (!closed) {
+                    closed = true;
+                    site.active--;
+                    site.notifyAll();
+                }
+            }
+        }
+    }
+    
+    private static class Site {
+        final String name;
+        final RateLimiter limiter;
+        volatile int active = 0;
+        
+        Site(String name, long bytesPerSec) {
+            this.name = name;
+            this.limiter = new RateLimiter(bytesPerSec);
+        }
+    }
+    
+    // shared byte budget: each read reserves transfer time at the configured rate
+    static class RateLimiter {
+        final long bytesPerSec;
+        private long next = 0L; // nanos
+        
+        RateLimiter(long bytesPerSec) {
+            this.bytesPerSec = bytesPerSec;
+        }
+        
+        // returns time in milliseconds the caller has to wait before using the bytes
+        synchronized long reserve(long num) {
+            if (bytesPerSec == 0L) {
+                return 0L;
+            }
+            long now = System.nanoTime();
+            if (next < now) {
+                next = now;
+            }
+            long wait = next - now;
+            next += num * 1000000000L / bytesPerSec;
+            return wait / 1000000L;
+        }
+    }
+    
+    private static class ThrottledInputStream extends FilterInputStream {
+        private final RateLimiter[] limiters;
+        
+        ThrottledInputStream(InputStream istream, RateLimiter... limiters) {
+            super(istream);
+            this.limiters = limiters;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int ret = super.read();
+            if (ret != -1) {
+                throttle(1);
+            }
+            return ret;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int ret = super.read(b, off, len);
+            if (ret > 0) {
+                throttle(ret);
+            }
+            return ret;
+        }
+        
+        private void throttle(int num) throws IOException {
+            long wait = 0L;
+            for (RateLimiter r : limiters) {
+                wait = Math.max(wait, r.reserve(num));
+            }
+            if (wait > 0L) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException("interrupted while throttling download");
+                }
+            }
+        }
+    }
+}
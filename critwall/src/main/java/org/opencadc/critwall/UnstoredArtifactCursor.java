@@ -0,0 +1,294 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import ca.nrc.cadc.io.ResourceIterator;
+import ca.nrc.cadc.util.BucketSelector;
+import ca.nrc.cadc.util.HexUtil;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import org.apache.log4j.Logger;
+import org.opencadc.inventory.Artifact;
+import org.opencadc.inventory.db.ArtifactDAO;
+import org.opencadc.inventory.db.HarvestState;
+import org.opencadc.inventory.db.HarvestStateDAO;
+
+/**
+ * Incremental discovery of artifacts to sync. The cursor iterates over the unstored artifacts
+ * in each selected bucket (uriBucket prefix) in lastModified order (a_unstored_index) starting 
+ * from a persisted high-water mark and skips artifacts that are pending in the SyncProgress
+ * (queued or waiting for retry). The high-water mark is advanced by commit() to the newest
+ * artifact read but not past the time the iteration started, since buckets are queried one
+ * after the other; each iteration looks back a short time before the high-water mark to catch
+ * rows committed out of lastModified order.
+ * 
+ * @author agent
+ */
+public class UnstoredArtifactCursor {
+    private static final Logger log = Logger.getLogger(UnstoredArtifactCursor.class);
+
+    static final long LOOKBACK_TIME_MS = 60 * 1000L;
+    
+    // HarvestState.name is varchar(64) and SyncProgress appends "/" + transactionID (a UUID)
+    static final int MAX_STATE_NAME_LENGTH = 64 - 37;
+    
+    private final ArtifactDAO artifactDAO;
+    private final HarvestStateDAO harvestStateDAO;
+    private final SyncProgress progress;
+    private final TreeSet<String> buckets = new TreeSet<>();
+    private final HarvestState harvestState;
+    
+    // start of the current iteration and newest artifact read by it
+    private Date curStart;
+    private Date curLastModified;
+    
+    /**
+     * Constructor.
+     * 
+     * @param artifactDAO local inventory
+     * @param resourceID identifier of the source (locator) service
+     * @param selector buckets to sync
+     * @param progress tracker for pending artifacts
+     */
+    public UnstoredArtifactCursor(ArtifactDAO artifactDAO, URI resourceID, BucketSelector selector, SyncProgress progress) {
+        this.artifactDAO = artifactDAO;
+        this.harvestStateDAO = new HarvestStateDAO(artifactDAO);
+        this.progress = progress;
+        
+        Iterator<String> bi = selector.getBucketIterator();
+        while (bi.hasNext()) {
+            buckets.add(bi.next());
+        }
+        
+        // the high-water mark is only valid for the configured buckets
+        this.harvestState = harvestStateDAO.get(getStateName(buckets), resourceID);
+        log.info("UnstoredArtifactCursor: " + harvestState + " curLastModified=" + harvestState.curLastModified);
+    }
+    
+    /**
+     * Get the name of the persistent sync state for the selected buckets. The name
+     * includes the complete list of buckets or, if that is too long, a hash of the list
+     * so that different selections never share state.
+     * 
+     * @param selector buckets to sync
+     * @return state name
+     */
+    static String getStateName(BucketSelector selector) {
+        TreeSet<String> buckets = new TreeSet<>();
+        Iterator<String> bi = selector.getBucketIterator();
+        while (bi.hasNext()) {
+            buckets.add(bi.next());
+        }
+        return getStateName(buckets);
+    }
+    
+    // package access for test code
+    static String getStateName(TreeSet<String> buckets) {
+        String name = FileSync.class.getSimpleName();
+        if (buckets.isEmpty()) {
+            return name;
+        }
+        String list = String.join(",", buckets);
+        if (name.length() + 1 + list.length() <= MAX_STATE_NAME_LENGTH) {
+            return name + ":" + list;
+        }
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(list.getBytes(StandardCharsets.UTF_8));
+            String hex = HexUtil.toHex(hash);
+            return name + ":" + hex.substring(0, MAX_STATE_NAME_LENGTH - name.length() - 1);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("BUG: failed to create SHA-256 MessageDigest", ex);
+        }
+    }
+    
+    public Date getHighWaterMark() {
+        return harvestState.curLastModified;
+    }
+    
+    /**
+     * Iterate over new work since the high-water mark or over all unstored artifacts.
+     * 
+     * @param full true to ignore the high-water mark
+     * @return iterator over unstored artifacts in lastModified order
+     */
+    public ResourceIterator<Artifact> iterator(boolean full) {
+        Date start = null;
+        if (!full && harvestState.curLastModified != null) {
+            start = new Date(harvestState.curLastModified.getTime() - LOOKBACK_TIME_MS);
+        }
+        this.curStart = new Date();
+        this.curLastModified = null;
+        List<String> prefixes = new ArrayList<>(buckets);
+        if (prefixes.isEmpty()) {
+            prefixes.add(null);
+        }
+        return new CursorIterator(prefixes.iterator(), start);
+    }
+    
+    /**
+     * Persist the high-water mark at the last artifact read by the iterator. This should
+     * be called after the iteration is complete.
+     */
+    public void commit() {
+        if (curLastModified == null) {
+            return;
+        }
+        // rows added to a bucket after it was queried are newer than curStart
+        Date hwm = curLastModified;
+        if (hwm.after(curStart)) {
+            hwm = curStart;
+        }
+        if (harvestState.curLastModified == null || hwm.after(harvestState.curLastModified)) {
+            harvestState.curLastModified = hwm;
+            harvestStateDAO.put(harvestState);
+            log.debug("UnstoredArtifactCursor.commit: " + hwm);
+        }
+    }
+    
+    // iterate over the selected buckets in turn
+    private class CursorIterator implements ResourceIterator<Artifact> {
+        private final Iterator<String> prefixes;
+        private final Date start;
+        private ResourceIterator<Artifact> iter;
+        private Artifact next;
+        
+        CursorIterator(Iterator<String> prefixes, Date start) {
+            this.prefixes = prefixes;
+            this.start = start;
+            advance();
+        }
+        
+        private void advance() {
+            next = null;
+            while (next == null) {
+                if (iter == null || !iter.hasNext()) {
+                    closeCurrent();
+                    if (!prefixes.hasNext()) {
+                        return;
+                    }
+                    this.iter = artifactDAO.unstoredIterator(prefixes.next(), start);
+                    continue;
+                }
+                Artifact a = iter.next();
+                if (curLastModified == null || a.getLastModified().after(curLastModified)) {
+                    curLastModified = a.getLastModified();
+                }
+                if (!progress.isPending(a.getID())) {
+                    next = a;
+                }
+            }
+        }
+        
+        private void closeCurrent() {
+            if (iter != null) {
+                try {
+                    iter.close();
+                } catch (IOException ex) {
+                    log.debug("failed to close iterator: " + ex);
+                }
+                iter = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Artifact next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Artifact ret = next;
+            advance();
+            return ret;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (iter != null) {
+                iter.close();
+                iter = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import ca.nrc.cadc.auth.AuthMethod;
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.vos.Protocol;
+import ca.nrc.cadc.vos.Transfer;
+import ca.nrc.cadc.vos.TransferReader;
+import ca.nrc.cadc.vos.VOS;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class DownloadURLResolverTest {
+    private static final Logger log = Logger.getLogger(DownloadURLResolverTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.critwall", Level.INFO);
+    }
+    
+    private HttpServer server;
+    private String baseURL;
+    private final AtomicInteger numBulk = new AtomicInteger();
+    private final AtomicInteger numSingle = new AtomicInteger();
+    
+    public DownloadURLResolverTest() { 
+    }
+    
+    // stand-in locator: one static URL per target except for not-found targets
+    @Before
+    public void startLocator() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        baseURL = "http://localhost:" + server.getAddress().getPort();
+        server.createContext("/locate", exchange -> {
+            try {
+                TransferReader tr = new TransferReader();
+                Transfer t = tr.read(exchange.getRequestBody(), null);
+                if (t.getTargets().size() > 1) {
+                    numBulk.incrementAndGet();
+                } else {
+                    numSingle.incrementAndGet();
+                }
+                StringBuilder sb = new StringBuilder();
+                for (URI target : t.getTargets()) {
+                    if (!target.getSchemeSpecificPart().contains("not-found")) {
+                        sb.append(target.toASCIIString()).append("\t").append(VOS.PROTOCOL_HTTP_GET).append("\t\t")
+                            .append(baseURL).append("/files/").append(target.getSchemeSpecificPart()).append("\n");
+                    }
+                }
+                byte[] buf = sb.toString().getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", DownloadURLResolver.BULK_CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, buf.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(buf);
+                }
+            } catch (Exception ex) {
+                log.error("stand-in locator failed", ex);
+                exchange.sendResponseHeaders(500, -1);
+            }
+            exchange.close();
+        });
+        server.createContext("/single", exchange -> {
+            // locator without bulk negotiation support
+            numBulk.incrementAndGet();
+            sendError(exchange, "expected 1 target URI, found: 4");
+        });
+        server.createContext("/reject", exchange -> {
+            // locator that rejects something else in the request
+            numBulk.incrementAndGet();
+            sendError(exchange, "invalid target URI: cadc:TEST/file-0");
+        });
+        server.start();
+    }
+    
+    private void sendError(HttpExchange exchange, String msg) throws IOException {
+        byte[] buf = msg.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(400, buf.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(buf);
+        }
+        exchange.close();
+    }
+    
+    @After
+    public void stopLocator() {
+        server.stop(0);
+    }
+    
+    private class TestResolver extends DownloadURLResolver {
+        private final String path;
+        
+        TestResolver(String path, long urlTTL) {
+            super(URI.create("ivo://opencadc.org/raven"), urlTTL);
+            this.path = path;
+        }
+
+        @Override
+        protected URL getTransferURL(AuthMethod am) {
+            try {
+                return new URL(baseURL + path);
+            } catch (Exception ex) {
+                throw new RuntimeException("BUG: " + ex);
+            }
+        }
+    }
+    
+    private List<URI> getTargets(int num) {
+        List<URI> ret = new ArrayList<>();
+        for (int i = 0; i < num; i++) {
+            ret.add(URI.create("cadc:TEST/file-" + i));
+        }
+        ret.add(URI.create("cadc:TEST/not-found"));
+        return ret;
+    }
+    
+    @Test
+    public void testBatchResolve() {
+        try {
+            DownloadURLResolver res = new TestResolver("/locate", DownloadURLResolver.DEFAULT_URL_TTL);
+            List<URI> targets = getTargets(10);
+            
+            int num = res.resolve(targets);
+            Assert.assertEquals("resolved", 10, num);
+            Assert.assertEquals("cached", 10, res.getCacheSize());
+            Assert.assertEquals("bulk calls", 1, numBulk.get());
+            
+            for (int i = 0; i < 10; i++) {
+                URI uri = targets.get(i);
+                List<Protocol> urls = res.getDownloadURLs(uri);
+                Assert.assertEquals(1, urls.size());
+                Protocol p = urls.get(0);
+                Assert.assertEquals(VOS.PROTOCOL_HTTP_GET, p.getUri());
+                Assert.assertNull(p.getSecurityMethod());
+                Assert.assertEquals(baseURL + "/files/" + uri.getSchemeSpecificPart(), p.getEndpoint());
+            }
+            Assert.assertEquals("cache consumed", 0, res.getCacheSize());
+            Assert.assertEquals("single calls", 0, numSingle.get());
+            
+            // not resolved in batch: individual negotiation
+            List<Protocol> urls = res.getDownloadURLs(URI.create("cadc:TEST/not-found"));
+            Assert.assertTrue(urls.isEmpty());
+            Assert.assertEquals("single calls", 1, numSingle.get());
+            
+            // cached URLs are only used once
+            urls = res.getDownloadURLs(targets.get(0));
+            Assert.assertEquals(1, urls.size());
+            Assert.assertEquals("single calls", 2, numSingle.get());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testExpiredURLs() {
+        try {
+            DownloadURLResolver res = new TestResolver("/locate", 0L);
+            List<URI> targets = getTargets(3);
+            res.resolve(targets);
+            
+            List<Protocol> urls = res.getDownloadURLs(targets.get(0));
+            Assert.assertEquals(1, urls.size());
+            Assert.assertEquals("single calls", 1, numSingle.get());
+            
+            // expired entries are dropped at the next batch
+            res.resolve(new ArrayList<>());
+            Assert.assertEquals("cached", 0, res.getCacheSize());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testBulkNotSupported() {
+        try {
+            DownloadURLResolver res = new TestResolver("/single", DownloadURLResolver.DEFAULT_URL_TTL);
+            List<URI> targets = getTargets(3);
+            
+            Assert.assertEquals(0, res.resolve(targets));
+            Assert.assertEquals("bulk calls", 1, numBulk.get());
+            
+            // disabled after rejection
+            Assert.assertFalse(res.isBulkSupported());
+            Assert.assertEquals(0, res.resolve(targets));
+            Assert.assertEquals("bulk calls", 1, numBulk.get());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testBatchRejected() {
+        try {
+            DownloadURLResolver res = new TestResolver("/reject", DownloadURLResolver.DEFAULT_URL_TTL);
+            List<URI> targets = getTargets(3);
+            
+            Assert.assertEquals(0, res.resolve(targets));
+            Assert.assertEquals("bulk calls", 1, numBulk.get());
+            
+            // only this batch falls back to individual negotiation
+            Assert.assertTrue(res.isBulkSupported());
+            Assert.assertEquals(0, res.resolve(targets));
+            Assert.assertEquals("bulk calls", 2, numBulk.get());
+            
+            // single target rejected: not a reason to disable bulk negotiation
+            IllegalArgumentException ex = new IllegalArgumentException("expected 1 target URI, found: 2");
+            Assert.assertFalse(DownloadURLResolver.isSingleTargetOnly(ex, 1));
+            Assert.assertTrue(DownloadURLResolver.isSingleTargetOnly(ex, 2));
+            Assert.assertFalse(DownloadURLResolver.isSingleTargetOnly(new IllegalArgumentException(), 2));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testReadProtocols() {
+        try {
+            String doc = "cadc:TEST/a\t" + VOS.PROTOCOL_HTTPS_GET + "\tivo://ivoa.net/sso#tls-with-certificate\thttps://a.example.net/minoc/files/TEST/a\n"
+                + "cadc:TEST/a\t" + VOS.PROTOCOL_HTTPS_GET + "\t\thttps://b.example.net/minoc/files/token/TEST/a\n"
+                + "invalid line\n"
+                + "\n"
+                + "cadc:TEST/b\t" + VOS.PROTOCOL_HTTP_GET + "\t\thttp://b.example.net/minoc/files/token/TEST/b\n";
+            Map<URI, List<Protocol>> protos = new LinkedHashMap<>();
+            DownloadURLResolver.readProtocols(new ByteArrayInputStream(doc.getBytes("UTF-8")), protos);
+            Assert.assertEquals(2, protos.size());
+            List<Protocol> a = protos.get(URI.create("cadc:TEST/a"));
+            Assert.assertEquals(2, a.size());
+            Assert.assertEquals(URI.create("ivo://ivoa.net/sso#tls-with-certificate"), a.get(0).getSecurityMethod());
+            Assert.assertEquals("https://a.example.net/minoc/files/TEST/a", a.get(0).getEndpoint());
+            Assert.assertNull(a.get(1).getSecurityMethod());
+            List<Protocol> b = protos.get(URI.create("cadc:TEST/b"));
+            Assert.assertEquals(1, b.size());
+            Assert.assertEquals(VOS.PROTOCOL_HTTP_GET, b.get(0).getUri());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+}
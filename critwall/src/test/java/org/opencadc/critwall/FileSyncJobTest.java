@@ -129,11 +129,39 @@ public class FileSyncJobTest {
                 log.info("txn: " + pt + " DONE");
             }
             
+            // complete download
+            List<FileSyncJob.PutSegment> whole = FileSyncJob.getSegmentPlan(a);
+            Assert.assertEquals("num segments", 1, whole.size());
+            Assert.assertEquals(0L, whole.get(0).start);
+            Assert.assertEquals(a.getContentLength() - 1, whole.get(0).end);
+            Assert.assertEquals(a.getContentLength().longValue(), whole.get(0).contentLength);
+            
+        } catch (Exception unexpected) {
+            log.error("unexpected exception: " + unexpected);
+            Assert.fail("unexpected exception");
+        }
+    }
+    
+    @Test
+    public void testResumeIndex() {
+        try {
+            Artifact a = new Artifact(URI.create("cadc:TEST/foo"), 
+                new URI("md5:646d3c548ffb98244a0fc52b60556082"), new Date(), 1008000L);
+            PutTransaction pt = new PutTransaction("limit-mid", 256 * 1024L, 256 * 1024L);
+            List<FileSyncJob.PutSegment> segs = FileSyncJob.getSegmentPlan(a, pt);
+            Assert.assertEquals("num segments", 4, segs.size());
+            
+            Assert.assertEquals(0, FileSyncJob.getResumeIndex(segs, 0L));
+            for (int i = 0; i < segs.size(); i++) {
+                FileSyncJob.PutSegment s = segs.get(i);
+                Assert.assertEquals("after " + s, i + 1, FileSyncJob.getResumeIndex(segs, s.end + 1));
+                Assert.assertEquals("inside " + s, -1, FileSyncJob.getResumeIndex(segs, s.end));
+            }
+            Assert.assertEquals(segs.size(), FileSyncJob.getResumeIndex(segs, a.getContentLength()));
         } catch (Exception unexpected) {
             log.error("unexpected exception: " + unexpected);
             Assert.fail("unexpected exception");
         }
     }
     
-
 }
@@ -0,0 +1,166 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class SegmentSpoolTest {
+    private static final Logger log = Logger.getLogger(SegmentSpoolTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.critwall", Level.INFO);
+    }
+    
+    public SegmentSpoolTest() { 
+    }
+    
+    @Test
+    public void testSegmentSize() {
+        Path dir = new File("build/tmp/spool-unit-tests").toPath();
+        SegmentSpool unlimited = new SegmentSpool(dir, 0L, 8);
+        Assert.assertEquals(FileSyncJob.SEGMENT_SIZE_PREF, unlimited.getMaxSegmentSize());
+        
+        SegmentSpool limited = new SegmentSpool(dir, 8 * 1024L * 1024L, 8);
+        Assert.assertEquals(1024L * 1024L, limited.getMaxSegmentSize());
+        
+        SegmentSpool large = new SegmentSpool(dir, 1024 * FileSyncJob.SEGMENT_SIZE_PREF, 8);
+        Assert.assertEquals(FileSyncJob.SEGMENT_SIZE_PREF, large.getMaxSegmentSize());
+        
+        try {
+            SegmentSpool s = new SegmentSpool(dir, 0L, 0);
+            Assert.fail("expected IllegalArgumentException, got: " + s);
+        } catch (IllegalArgumentException expected) {
+            log.info("expected: " + expected);
+        }
+    }
+    
+    @Test
+    public void testCleanup() {
+        try {
+            Path dir = new File("build/tmp/spool-unit-tests").toPath();
+            Files.createDirectories(dir);
+            SegmentSpool spool = new SegmentSpool(dir, 0L, 2);
+            
+            Path stale = spool.createDirectory(UUID.randomUUID());
+            Files.createTempFile(stale, "segment-0-", ".tmp");
+            Path other = Files.createTempDirectory(dir, "other-");
+            
+            spool.cleanup();
+            Assert.assertFalse("stale spool deleted", Files.exists(stale));
+            Assert.assertTrue("other directory kept", Files.exists(other));
+            Files.delete(other);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testSegmentLimit() {
+        try {
+            Path dir = new File("build/tmp/spool-unit-tests").toPath();
+            SegmentSpool spool = new SegmentSpool(dir, 0L, 2);
+            spool.acquire();
+            spool.acquire();
+            
+            Thread t = new Thread(() -> {
+                try {
+                    spool.acquire();
+                } catch (InterruptedException ex) {
+                    log.debug("interrupted");
+                }
+            });
+            t.start();
+            t.join(200L);
+            Assert.assertTrue("waiting for space", t.isAlive());
+            
+            spool.release(1);
+            t.join(2000L);
+            Assert.assertFalse("acquired", t.isAlive());
+            spool.release(2);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.inventory.Artifact;
+
+/**
+ *
+ * @author agent
+ */
+public class SyncProgressTest {
+    private static final Logger log = Logger.getLogger(SyncProgressTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.critwall", Level.INFO);
+    }
+    
+    public SyncProgressTest() { 
+    }
+    
+    @Test
+    public void testRetryDelay() {
+        Assert.assertEquals(SyncProgress.RETRY_MIN_DELAY, SyncProgress.getRetryDelay(0L));
+        Assert.assertEquals(SyncProgress.RETRY_MIN_DELAY, SyncProgress.getRetryDelay(SyncProgress.RETRY_MIN_DELAY));
+        Assert.assertEquals(3 * SyncProgress.RETRY_MIN_DELAY, SyncProgress.getRetryDelay(3 * SyncProgress.RETRY_MIN_DELAY));
+        Assert.assertEquals(SyncProgress.RETRY_MAX_DELAY, SyncProgress.getRetryDelay(2 * SyncProgress.RETRY_MAX_DELAY));
+        Assert.assertEquals(SyncProgress.RETRY_MAX_DELAY, SyncProgress.getRetryDelay(Long.MAX_VALUE));
+    }
+    
+    @Test
+    public void testRetryTable() {
+        try {
+            SyncProgress sp = new SyncProgress();
+            Artifact a = new Artifact(URI.create("cadc:TEST/foo"), 
+                new URI("md5:646d3c548ffb98244a0fc52b60556082"), new Date(), 1024L);
+            Assert.assertFalse(sp.isPending(a.getID()));
+            
+            // not queued by FileSync: ignored
+            sp.setFailed(a.getID());
+            Assert.assertFalse(sp.isPending(a.getID()));
+            
+            final long now = System.currentTimeMillis();
+            sp.setQueued(a);
+            Assert.assertTrue(sp.isPending(a.getID()));
+            sp.setFailed(a.getID(), now);
+            Assert.assertTrue(sp.isPending(a.getID()));
+            Assert.assertEquals(1, sp.getNumRetries());
+            
+            Assert.assertTrue(sp.getRetries(now).isEmpty());
+            List<UUID> due = sp.getRetries(now + SyncProgress.RETRY_MIN_DELAY);
+            Assert.assertEquals(1, due.size());
+            Assert.assertEquals(a.getID(), due.get(0));
+            
+            // retries fail at the scheduled time: delay doubles
+            long t = now + SyncProgress.RETRY_MIN_DELAY;
+            for (int i = 0; i < 4; i++) {
+                sp.setQueued(a);
+                Assert.assertTrue("queued not returned", sp.getRetries(t).isEmpty());
+                sp.setFailed(a.getID(), t);
+                long elapsed = t - now;
+                Assert.assertTrue(sp.getRetries(t + elapsed - 1L).isEmpty());
+                Assert.assertEquals(1, sp.getRetries(t + elapsed).size());
+                t = t + elapsed;
+            }
+            Assert.assertEquals(1, sp.getNumRetries());
+            
+            // success clears the retry
+            sp.setQueued(a);
+            sp.setDone(a.getID());
+            Assert.assertFalse(sp.isPending(a.getID()));
+            Assert.assertEquals(0, sp.getNumRetries());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+}
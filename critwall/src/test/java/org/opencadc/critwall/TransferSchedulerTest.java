@@ -0,0 +1,368 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.critwall;
+
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.vos.Protocol;
+import ca.nrc.cadc.vos.VOS;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class TransferSchedulerTest {
+    private static final Logger log = Logger.getLogger(TransferSchedulerTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.critwall", Level.INFO);
+    }
+    
+    private static final AtomicLong SEQ = new AtomicLong();
+    
+    public TransferSchedulerTest() { 
+    }
+    
+    // stand-in for FileSyncJob: simulates a download of the specified duration
+    private static class TestJob implements SyncJobQueue.Job {
+        final String name;
+        final long priority;
+        final long seq = SEQ.incrementAndGet();
+        final TransferScheduler scheduler;
+        final URL url;
+        final long duration;
+        final Map<String, AtomicInteger> active;
+        final Map<String, AtomicInteger> maxActive;
+        
+        TestJob(String name, long priority) {
+            this(name, priority, null, null, 0L, null, null);
+        }
+        
+        TestJob(String name, long priority, TransferScheduler scheduler, URL url, long duration,
+                Map<String, AtomicInteger> active, Map<String, AtomicInteger> maxActive) {
+            this.name = name;
+            this.priority = priority;
+            this.scheduler = scheduler;
+            this.url = url;
+            this.duration = duration;
+            this.active = active;
+            this.maxActive = maxActive;
+        }
+
+        @Override
+        public long getPriority(long now) {
+            return priority;
+        }
+
+        @Override
+        public long getSequence() {
+            return seq;
+        }
+
+        @Override
+        public void run() {
+            String site = TransferScheduler.getSiteName(url);
+            try (TransferScheduler.Slot slot = scheduler.start(url)) {
+                int cur = active.get(site).incrementAndGet();
+                maxActive.get(site).accumulateAndGet(cur, Math::max);
+                Thread.sleep(duration);
+                active.get(site).decrementAndGet();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException("interrupted", ex);
+            }
+        }
+    }
+    
+    @Test
+    public void testPriority() {
+        try {
+            long small = TransferScheduler.getPriority(1024L, 0L);
+            long large = TransferScheduler.getPriority(1024L * 1024L * 1024L, 0L);
+            Assert.assertEquals(11L, small);
+            Assert.assertEquals(31L, large);
+            Assert.assertEquals(0L, TransferScheduler.getPriority(0L, 0L));
+            
+            // waiting raises priority
+            long age = 20 * TransferScheduler.PRIORITY_AGE_STEP;
+            Assert.assertEquals(11L, TransferScheduler.getPriority(1024L * 1024L * 1024L, age));
+            Assert.assertEquals(0L, TransferScheduler.getPriority(1024L, age));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testQueueOrder() {
+        try {
+            final SyncJobQueue q = new SyncJobQueue(4);
+            q.put(new TestJob("large", 30L));
+            q.put(new TestJob("small-1", 10L));
+            q.put(new TestJob("medium", 20L));
+            q.put(new TestJob("small-2", 10L));
+            Assert.assertEquals(0, q.remainingCapacity());
+            
+            // producer blocks while full
+            Thread producer = new Thread(() -> q.put(new TestJob("tiny", 1L)));
+            producer.start();
+            producer.join(200L);
+            Assert.assertTrue("producer blocked", producer.isAlive());
+            Assert.assertEquals(4, q.size());
+            
+            Assert.assertEquals("small-1", ((TestJob) q.take()).name);
+            producer.join(2000L);
+            Assert.assertFalse("producer done", producer.isAlive());
+            
+            String[] expected = new String[] { "tiny", "small-2", "medium", "large" };
+            for (String e : expected) {
+                Assert.assertEquals(e, ((TestJob) q.take()).name);
+            }
+            Assert.assertTrue(q.isEmpty());
+            Assert.assertEquals(4, q.remainingCapacity());
+            Assert.assertNull(q.poll(10L, TimeUnit.MILLISECONDS));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testQueueAging() {
+        try {
+            // ranked when taken: a large job that has waited long enough goes before a new small one
+            final long now = System.currentTimeMillis();
+            final SyncJobQueue q = new SyncJobQueue(4);
+            q.put(new AgingJob("small", 1024L, now));
+            q.put(new AgingJob("large-new", 1024L * 1024L * 1024L, now));
+            q.put(new AgingJob("large-old", 1024L * 1024L * 1024L, now - 25 * TransferScheduler.PRIORITY_AGE_STEP));
+            
+            String[] expected = new String[] { "large-old", "small", "large-new" };
+            for (String e : expected) {
+                Assert.assertEquals(e, ((AgingJob) q.take()).name);
+            }
+            Assert.assertTrue(q.isEmpty());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    // priority from size and time in the queue, like FileSyncJob
+    private static class AgingJob implements SyncJobQueue.Job {
+        final String name;
+        final long contentLength;
+        final long queued;
+        final long seq = SEQ.incrementAndGet();
+        
+        AgingJob(String name, long contentLength, long queued) {
+            this.name = name;
+            this.contentLength = contentLength;
+            this.queued = queued;
+        }
+
+        @Override
+        public long getPriority(long now) {
+            return TransferScheduler.getPriority(contentLength, now - queued);
+        }
+
+        @Override
+        public long getSequence() {
+            return seq;
+        }
+
+        @Override
+        public void run() {
+            // not run
+        }
+    }
+    
+    @Test
+    public void testSiteConcurrency() {
+        try {
+            TransferScheduler ts = new TransferScheduler(2, 0L, 0L);
+            URL site1 = new URL("https://site1.example.net/minoc/files/TEST/a");
+            URL site2 = new URL("https://site2.example.net:8443/minoc/files/TEST/b");
+            Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+            Map<String, AtomicInteger> maxActive = new ConcurrentHashMap<>();
+            for (URL u : new URL[] { site1, site2 }) {
+                active.put(TransferScheduler.getSiteName(u), new AtomicInteger());
+                maxActive.put(TransferScheduler.getSiteName(u), new AtomicInteger());
+            }
+            
+            // 8 workers: 6 downloads from site1 and 2 from site2
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            List<Future<?>> jobs = new ArrayList<>();
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < 8; i++) {
+                URL u = site1;
+                if (i % 4 == 3) {
+                    u = site2;
+                }
+                jobs.add(pool.submit(new TestJob("job-" + i, 0L, ts, u, 100L, active, maxActive)));
+            }
+            for (Future<?> f : jobs) {
+                f.get();
+            }
+            long dt = System.currentTimeMillis() - start;
+            pool.shutdown();
+            log.info("site1: " + maxActive.get("site1.example.net") + " site2: " + maxActive.get("site2.example.net:8443") + " dt=" + dt);
+            
+            Assert.assertEquals(2, maxActive.get("site1.example.net").get());
+            Assert.assertEquals(2, maxActive.get("site2.example.net:8443").get());
+            Assert.assertTrue("site1 downloads serialized in 3 rounds: " + dt, dt >= 300L);
+            Assert.assertEquals(0, ts.getActiveTransfers("site1.example.net"));
+            Assert.assertEquals(0, ts.getActiveTransfers("site2.example.net:8443"));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testPrioritizeURLs() {
+        try {
+            TransferScheduler ts = new TransferScheduler(1, 0L, 0L);
+            URL busy = new URL("https://busy.example.net/minoc/files/TEST/a");
+            URL idle = new URL("https://idle.example.net/minoc/files/TEST/a");
+            List<Protocol> urls = new ArrayList<>();
+            for (URL u : new URL[] { busy, idle }) {
+                Protocol p = new Protocol(VOS.PROTOCOL_HTTPS_GET);
+                p.setEndpoint(u.toExternalForm());
+                urls.add(p);
+            }
+            
+            ts.prioritize(urls);
+            Assert.assertEquals(busy.toExternalForm(), urls.get(0).getEndpoint());
+            
+            try (TransferScheduler.Slot slot = ts.start(busy)) {
+                Assert.assertEquals(1, ts.getActiveTransfers("busy.example.net"));
+                ts.prioritize(urls);
+                Assert.assertEquals(idle.toExternalForm(), urls.get(0).getEndpoint());
+                Assert.assertEquals(busy.toExternalForm(), urls.get(1).getEndpoint());
+            }
+            Assert.assertEquals(0, ts.getActiveTransfers("busy.example.net"));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testBandwidth() {
+        try {
+            // 64 KiB at 128 KiB/sec from one site: at least 0.5 sec
+            TransferScheduler ts = new TransferScheduler(0, 128 * 1024L, 0L);
+            URL u = new URL("https://site1.example.net/minoc/files/TEST/a");
+            byte[] data = new byte[64 * 1024];
+            byte[] buf = new byte[4096];
+            long start = System.currentTimeMillis();
+            long num = 0L;
+            try (TransferScheduler.Slot slot = ts.start(u); 
+                InputStream istream = slot.wrap(new ByteArrayInputStream(data))) {
+                int n = istream.read(buf);
+                while (n != -1) {
+                    num += n;
+                    n = istream.read(buf);
+                }
+            }
+            long dt = System.currentTimeMillis() - start;
+            log.info("read " + num + " bytes in " + dt + "ms");
+            Assert.assertEquals(data.length, num);
+            Assert.assertTrue("throttled: " + dt, dt >= 400L);
+            
+            // no limits: stream is not wrapped
+            TransferScheduler unlimited = new TransferScheduler(0, 0L, 0L);
+            try (TransferScheduler.Slot slot = unlimited.start(u)) {
+                InputStream istream = new ByteArrayInputStream(data);
+                Assert.assertSame(istream, slot.wrap(istream));
+            }
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+}
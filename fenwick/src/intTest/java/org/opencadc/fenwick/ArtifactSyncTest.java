@@ -68,16 +68,25 @@
 package org.opencadc.fenwick;
 
 import ca.nrc.cadc.date.DateUtil;
+import ca.nrc.cadc.db.DBUtil;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.util.Log4jInit;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.security.PrivilegedExceptionAction;
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 import javax.security.auth.Subject;
 import org.apache.log4j.Level;
@@ -86,9 +95,11 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.opencadc.inventory.Artifact;
+import org.opencadc.inventory.InventoryUtil;
 import org.opencadc.inventory.SiteLocation;
 import org.opencadc.inventory.StorageLocation;
 import org.opencadc.inventory.StorageSite;
+import org.opencadc.inventory.db.ArtifactDAO;
 import org.opencadc.inventory.db.HarvestState;
 import org.opencadc.inventory.util.AllArtifacts;
 import org.opencadc.inventory.util.IncludeArtifacts;
@@ -445,4 +456,73 @@ public class ArtifactSyncTest {
         
         log.info("testCollisionsInSite - DONE");
     }
+
+    @Test
+    public void testParallelApply() throws Exception {
+        log.info("testParallelApply - START");
+        
+        // pooled DataSource for the worker threads
+        final String dsname = "jdbc/ArtifactSyncTest-pool";
+        DBUtil.PoolConfig pc = new DBUtil.PoolConfig(inventoryEnvironment.connectionConfig, 5, 20000L, "select 123");
+        DBUtil.createJNDIDataSource(dsname, pc);
+        Map<String, Object> config = new TreeMap<>();
+        config.putAll(inventoryEnvironment.daoConfig);
+        config.put("jndiDataSourceName", dsname);
+        ArtifactDAO pooledDAO = new ArtifactDAO(false);
+        pooledDAO.setConfig(config);
+        
+        // canned remote result stream in lastModified order
+        final List<Artifact> remote = new ArrayList<>();
+        long t = System.currentTimeMillis() - 3600 * 1000L;
+        for (int i = 0; i < 200; i++) {
+            Artifact a = new Artifact(URI.create("cadc:TEST/parallel-" + i), TestUtil.getRandomMD5(), new Date(t), 1024L);
+            InventoryUtil.assignLastModified(a, new Date(t + i));
+            InventoryUtil.assignMetaChecksum(a, a.computeMetaChecksum(MessageDigest.getInstance("MD5")));
+            remote.add(a);
+        }
+        
+        final ArtifactSync testSubject = new ArtifactSync(pooledDAO, 
+                TestUtil.LUSKAN_URI, 6, 6, new AllArtifacts(), null, 4) {
+            @Override
+            ResourceIterator<Artifact> getEventStream(Date start, Date end) {
+                final Iterator<Artifact> iter = remote.iterator();
+                return new ResourceIterator<Artifact>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public Artifact next() {
+                        return iter.next();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        // no-op
+                    }
+                };
+            }
+        };
+        
+        Subject.doAs(this.testUser, (PrivilegedExceptionAction<Object>) () -> {
+            testSubject.doit();
+            return null;
+        });
+        
+        for (Artifact expected : remote) {
+            Artifact actual = inventoryEnvironment.artifactDAO.get(expected.getID());
+            Assert.assertNotNull("synced: " + expected.getURI(), actual);
+            Assert.assertEquals(expected.getMetaChecksum(), actual.getMetaChecksum());
+            Assert.assertEquals(expected.getLastModified(), actual.getLastModified());
+        }
+        
+        // harvest state advanced to the last artifact
+        Artifact last = remote.get(remote.size() - 1);
+        HarvestState hs = inventoryEnvironment.harvestStateDAO.get(Artifact.class.getSimpleName(), TestUtil.LUSKAN_URI);
+        Assert.assertEquals(last.getID(), hs.curID);
+        Assert.assertEquals(last.getLastModified(), hs.curLastModified);
+        
+        log.info("testParallelApply - DONE");
+    }
 }
@@ -79,7 +79,13 @@ import java.net.URI;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.Artifact;
 import org.opencadc.inventory.DeletedArtifactEvent;
@@ -101,15 +107,39 @@ public class ArtifactSync extends AbstractSync {
 
     private static final Logger log = Logger.getLogger(ArtifactSync.class);
 
+    private static final int WORKER_QUEUE_SIZE = 1000;
+    
     private final StorageSite storageSite;
     private final TapClient<Artifact> tapClient;
     private final String includeClause;
+    private final int threads;
 
     public ArtifactSync(ArtifactDAO artifactDAO, URI resourceID, 
             int querySleepInterval, int maxRetryInterval, 
             ArtifactSelector selector, StorageSite storageSite) {
+        this(artifactDAO, resourceID, querySleepInterval, maxRetryInterval, selector, storageSite, 1);
+    }
+    
+    /**
+     * Constructor.
+     * 
+     * @param artifactDAO DAO with a DataSource that supports threads + 1 connections
+     * @param resourceID remote query service
+     * @param querySleepInterval sleep between queries
+     * @param maxRetryInterval max sleep before retry after failure
+     * @param selector artifact selector
+     * @param storageSite remote storage site (trackSiteLocations) or null
+     * @param threads number of threads that apply harvested artifacts
+     */
+    public ArtifactSync(ArtifactDAO artifactDAO, URI resourceID, 
+            int querySleepInterval, int maxRetryInterval, 
+            ArtifactSelector selector, StorageSite storageSite, int threads) {
         super(artifactDAO, resourceID, querySleepInterval, maxRetryInterval);
+        if (threads < 1) {
+            throw new IllegalArgumentException("invalid config: threads must be > 0, found: " + threads);
+        }
         this.storageSite = storageSite;
+        this.threads = threads;
         try {
             this.tapClient = new TapClient<>(resourceID);
             tapClient.setConnectionTimeout(12000); // 12 sec
@@ -130,17 +160,11 @@ public class ArtifactSync extends AbstractSync {
         this.storageSite = null;
         this.tapClient = null;
         this.includeClause = includeClause;
+        this.threads = 1;
     }
     
     @Override
     void doit() throws ResourceNotFoundException, IOException, IllegalStateException, TransientException, InterruptedException {
-        final MessageDigest messageDigest;
-        try {
-            messageDigest = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("BUG: failed to get instance of MD5", e);
-        }
-
         final SiteLocation remoteSiteLocation = (storageSite == null ? null : new SiteLocation(storageSite.getID()));
         
         final HarvestState harvestState = this.harvestStateDAO.get(Artifact.class.getSimpleName(), resourceID);
@@ -163,13 +187,29 @@ public class ArtifactSync extends AbstractSync {
         String end = df.format(now);
         log.info("Artifact.QUERY start=" + start + " end=" + end);
         
-        final TransactionManager transactionManager = artifactDAO.getTransactionManager();
-        final DeletedArtifactEventDAO daeDAO = new DeletedArtifactEventDAO(artifactDAO);
+        // pipeline: this thread reads the remote query result and dispatches each artifact to a 
+        // worker selected by uriBucket so all changes to a single Artifact.uri are applied in order
+        // by one thread; the HarvestState is only advanced past artifacts that all workers have
+        // committed (see HarvestCheckpoint)
+        final HarvestCheckpoint checkpoint = new HarvestCheckpoint();
+        final AtomicReference<RuntimeException> workerFail = new AtomicReference<>();
+        final List<ArtifactWorker> workers = new ArrayList<>();
+        final List<Thread> workerThreads = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            ArtifactWorker w = new ArtifactWorker(remoteSiteLocation, checkpoint, workerFail);
+            workers.add(w);
+            Thread t = new Thread(w);
+            t.setName(Thread.currentThread().getName() + "-worker-" + i);
+            t.setDaemon(true);
+            t.start();
+            workerThreads.add(t);
+        }
         
+        long lastCheckpoint = -1L;
         boolean first = true;
         long t1 = System.currentTimeMillis();
         try (final ResourceIterator<Artifact> artifactResourceIterator = getEventStream(startTime, now)) {
-            while (artifactResourceIterator.hasNext()) {
+            while (artifactResourceIterator.hasNext() && workerFail.get() == null) {
                 final Artifact artifact = artifactResourceIterator.next();
                 if (first) {
                     long dt = System.currentTimeMillis() - t1;
@@ -184,119 +224,225 @@ public class ArtifactSync extends AbstractSync {
                     }
                 }
 
-                log.debug("START: Process Artifact " + artifact.getID() + " " + artifact.getURI());
-
-                final URI computedChecksum = artifact.computeMetaChecksum(messageDigest);
-                if (!artifact.getMetaChecksum().equals(computedChecksum)) {
-                    throw new IllegalStateException("checksum mismatch: " + artifact.getID() + " " + artifact.getURI()
-                            + " provided=" + artifact.getMetaChecksum() + " actual=" + computedChecksum);
+                // addSiteLocation may modify lastModified so capture real value here
+                long seq = checkpoint.add(artifact.getLastModified(), artifact.getID());
+                ArtifactWorker w = workers.get(getWorkerIndex(artifact, threads));
+                while (!w.offer(new HarvestedArtifact(seq, artifact)) && workerFail.get() == null) {
+                    lastCheckpoint = updateHarvestState(harvestState, checkpoint, lastCheckpoint);
                 }
-
-                // check if the artifact already deleted (sync from stale site)
-                DeletedArtifactEvent ev = daeDAO.get(artifact.getID());
-                if (ev != null) {
-                    log.info("ArtifactSync.skipArtifact id=" + artifact.getID() 
-                            + " uri=" + artifact.getURI() + " lastModified=" + df.format(artifact.getLastModified())
-                            + " reason=DeletedArtifactEvent");
-                    continue;
+                lastCheckpoint = updateHarvestState(harvestState, checkpoint, lastCheckpoint);
+                logSummary(Artifact.class);
+            }
+        } finally {
+            for (ArtifactWorker w : workers) {
+                w.finish();
+            }
+            for (Thread t : workerThreads) {
+                t.join();
+            }
+            updateHarvestState(harvestState, checkpoint, lastCheckpoint);
+            harvestStateDAO.flushBufferedState();
+            logSummary(Artifact.class, true);
+        }
+        
+        RuntimeException fail = workerFail.get();
+        if (fail != null) {
+            log.error("ArtifactSync.FAIL pending=" + checkpoint.getPendingCount());
+            throw fail;
+        }
+    }
+    
+    // select the worker for an artifact by uriBucket
+    static int getWorkerIndex(Artifact artifact, int numWorkers) {
+        int b = Integer.parseInt(artifact.getBucket(), 16);
+        return b % numWorkers;
+    }
+    
+    // checkpointer: advance the HarvestState to the last committed position; only called by the
+    // reader thread so the buffered HarvestStateDAO is not used concurrently
+    private long updateHarvestState(HarvestState harvestState, HarvestCheckpoint checkpoint, long lastCheckpoint) {
+        HarvestCheckpoint.Position p = checkpoint.getCommitted();
+        if (p != null && p.seq > lastCheckpoint) {
+            harvestState.curLastModified = p.lastModified;
+            harvestState.curID = p.id;
+            harvestStateDAO.put(harvestState);
+            return p.seq;
+        }
+        return lastCheckpoint;
+    }
+    
+    private static class HarvestedArtifact {
+        final long seq;
+        final Artifact artifact;
+        
+        HarvestedArtifact(long seq, Artifact artifact) {
+            this.seq = seq;
+            this.artifact = artifact;
+        }
+    }
+    
+    // apply stage: each worker applies artifacts from its own queue in order
+    private class ArtifactWorker implements Runnable {
+        private final BlockingQueue<HarvestedArtifact> queue = new ArrayBlockingQueue<>(WORKER_QUEUE_SIZE);
+        private final SiteLocation remoteSiteLocation;
+        private final HarvestCheckpoint checkpoint;
+        private final AtomicReference<RuntimeException> fail;
+        private final DateFormat df = DateUtil.getDateFormat(DateUtil.IVOA_DATE_FORMAT, DateUtil.UTC);
+        private volatile boolean finished = false;
+        
+        ArtifactWorker(SiteLocation remoteSiteLocation, HarvestCheckpoint checkpoint, AtomicReference<RuntimeException> fail) {
+            this.remoteSiteLocation = remoteSiteLocation;
+            this.checkpoint = checkpoint;
+            this.fail = fail;
+        }
+        
+        // offer with a short wait so the caller can checkpoint while the queue is full
+        boolean offer(HarvestedArtifact ha) throws InterruptedException {
+            return queue.offer(ha, 1L, TimeUnit.SECONDS);
+        }
+        
+        // no more input: drain the queue and exit
+        void finish() {
+            this.finished = true;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                final MessageDigest messageDigest;
+                try {
+                    messageDigest = MessageDigest.getInstance("MD5");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new RuntimeException("BUG: failed to get instance of MD5", e);
                 }
-                        
-                Artifact collidingArtifact = artifactDAO.get(artifact.getURI());
-                if (collidingArtifact != null && collidingArtifact.getID().equals(artifact.getID())) {
-                    // same ID: not a collision
-                    collidingArtifact = null;
+                final TransactionManager transactionManager = artifactDAO.getTransactionManager();
+                final DeletedArtifactEventDAO daeDAO = new DeletedArtifactEventDAO(artifactDAO);
+            
+                while (fail.get() == null) {
+                    HarvestedArtifact ha = queue.poll(100L, TimeUnit.MILLISECONDS);
+                    if (ha == null) {
+                        if (finished) {
+                            return;
+                        }
+                    } else {
+                        apply(ha.artifact, messageDigest, transactionManager, daeDAO);
+                        checkpoint.done(ha.seq);
+                    }
                 }
+            } catch (InterruptedException ex) {
+                fail.compareAndSet(null, new RuntimeException("interrupted", ex));
+            } catch (RuntimeException ex) {
+                log.error("ArtifactSync.FAIL " + Thread.currentThread().getName() + " reason: " + ex);
+                fail.compareAndSet(null, ex);
+            } catch (Error ex) {
+                // set fail so the reader does not wait forever on this worker
+                log.error("ArtifactSync.FAIL " + Thread.currentThread().getName() + " reason: " + ex);
+                fail.compareAndSet(null, new RuntimeException("worker failed: " + ex, ex));
+                throw ex;
+            }
+        }
+        
+        private void apply(Artifact artifact, MessageDigest messageDigest, 
+                TransactionManager transactionManager, DeletedArtifactEventDAO daeDAO) {
+            log.debug("START: Process Artifact " + artifact.getID() + " " + artifact.getURI());
 
-                try {
-                    transactionManager.startTransaction();
+            final URI computedChecksum = artifact.computeMetaChecksum(messageDigest);
+            if (!artifact.getMetaChecksum().equals(computedChecksum)) {
+                throw new IllegalStateException("checksum mismatch: " + artifact.getID() + " " + artifact.getURI()
+                        + " provided=" + artifact.getMetaChecksum() + " actual=" + computedChecksum);
+            }
 
-                    // since Artifact.id and Artifact.uri are both unique keys, there is only ever one "current artifact"
-                    // it normally has the same ID but may be the colliding artifact
-                    Artifact currentArtifact = null;
-                    if (collidingArtifact == null) {
-                        currentArtifact = artifactDAO.lock(artifact);
-                    } else {
-                        currentArtifact = artifactDAO.lock(collidingArtifact);
-                    }
+            // check if the artifact already deleted (sync from stale site)
+            DeletedArtifactEvent ev = daeDAO.get(artifact.getID());
+            if (ev != null) {
+                log.info("ArtifactSync.skipArtifact id=" + artifact.getID() 
+                        + " uri=" + artifact.getURI() + " lastModified=" + df.format(artifact.getLastModified())
+                        + " reason=DeletedArtifactEvent");
+                return;
+            }
 
-                    boolean continueWithPut = true;
-                    if (collidingArtifact != null && currentArtifact != null) {
-                        // resolve collision
-                        if (isRemoteWinner(currentArtifact, artifact, (remoteSiteLocation != null))) {
-                            DeletedArtifactEvent dae = new DeletedArtifactEvent(currentArtifact.getID());
-                            log.info("ArtifactSync.createDeletedArtifactEvent id=" + dae.getID()
-                                    + " uri=" + currentArtifact.getURI()
-                                    + " reason=resolve-collision");
-                            daeDAO.put(new DeletedArtifactEvent(currentArtifact.getID()));
-                            log.info("ArtifactSync.deleteArtifact id=" + currentArtifact.getID()
-                                    + " uri=" + currentArtifact.getURI()
-                                    + " contentLastModified=" + df.format(currentArtifact.getContentLastModified())
-                                    + " reason=resolve-collision");
-                            artifactDAO.delete(currentArtifact.getID());
-                            currentArtifact = null;
-                        } else {
-                            log.info("ArtifactSync.skipArtifact id=" + artifact.getID() 
-                                    + " uri=" + artifact.getURI() 
-                                    + " contentLastModified=" + df.format(currentArtifact.getContentLastModified())
-                                    + " reason=uri-collision");
-                            continueWithPut = false;
-                        }
-                    }
+            Artifact collidingArtifact = artifactDAO.get(artifact.getURI());
+            if (collidingArtifact != null && collidingArtifact.getID().equals(artifact.getID())) {
+                // same ID: not a collision
+                collidingArtifact = null;
+            }
 
-                    // addSiteLocation may modify lastModified so capture real value here
-                    final Date harvestedLastModified = artifact.getLastModified();
-                    
-                    if (continueWithPut) {
-                        // merge existing non-entity state
-                        if (currentArtifact != null) {
-                            if (remoteSiteLocation != null) {
-                                // trackSiteLocations: keep SiteLocation(s)
-                                artifact.siteLocations.addAll(currentArtifact.siteLocations);
-                            } else {
-                                // storage site: keep StorageLocation
-                                artifact.storageLocation = currentArtifact.storageLocation;
-                            }
-                        }
+            try {
+                transactionManager.startTransaction();
 
-                        log.info("ArtifactSync.putArtifact id=" + artifact.getID() 
+                // since Artifact.id and Artifact.uri are both unique keys, there is only ever one "current artifact"
+                // it normally has the same ID but may be the colliding artifact
+                Artifact currentArtifact = null;
+                if (collidingArtifact == null) {
+                    currentArtifact = artifactDAO.lock(artifact);
+                } else {
+                    currentArtifact = artifactDAO.lock(collidingArtifact);
+                }
+
+                boolean continueWithPut = true;
+                if (collidingArtifact != null && currentArtifact != null) {
+                    // resolve collision
+                    if (isRemoteWinner(currentArtifact, artifact, (remoteSiteLocation != null))) {
+                        DeletedArtifactEvent dae = new DeletedArtifactEvent(currentArtifact.getID());
+                        log.info("ArtifactSync.createDeletedArtifactEvent id=" + dae.getID()
+                                + " uri=" + currentArtifact.getURI()
+                                + " reason=resolve-collision");
+                        daeDAO.put(new DeletedArtifactEvent(currentArtifact.getID()));
+                        log.info("ArtifactSync.deleteArtifact id=" + currentArtifact.getID()
+                                + " uri=" + currentArtifact.getURI()
+                                + " contentLastModified=" + df.format(currentArtifact.getContentLastModified())
+                                + " reason=resolve-collision");
+                        artifactDAO.delete(currentArtifact.getID());
+                        currentArtifact = null;
+                    } else {
+                        log.info("ArtifactSync.skipArtifact id=" + artifact.getID() 
                                 + " uri=" + artifact.getURI() 
-                                + " lastModified=" + df.format(artifact.getLastModified()));
-                        artifactDAO.put(artifact);
+                                + " contentLastModified=" + df.format(currentArtifact.getContentLastModified())
+                                + " reason=uri-collision");
+                        continueWithPut = false;
+                    }
+                }
+
+                if (continueWithPut) {
+                    // merge existing non-entity state
+                    if (currentArtifact != null) {
                         if (remoteSiteLocation != null) {
-                            // explicit so addSiteLocation can force lastModified update in global
-                            artifactDAO.addSiteLocation(artifact, remoteSiteLocation);
+                            // trackSiteLocations: keep SiteLocation(s)
+                            artifact.siteLocations.addAll(currentArtifact.siteLocations);
+                        } else {
+                            // storage site: keep StorageLocation
+                            artifact.storageLocation = currentArtifact.storageLocation;
                         }
                     }
-                    
-                    transactionManager.commitTransaction();
-                    
-                    // update state outside transaction because experimental maintenance enabled
-                    harvestState.curLastModified = harvestedLastModified;
-                    harvestState.curID = artifact.getID();
-                    harvestStateDAO.put(harvestState);
-                    
-                    log.debug("END: Process Artifact " + artifact.getID() + " " + artifact.getURI());
-                } catch (Exception exception) {
-                    if (transactionManager.isOpen()) {
-                        log.error("Exception in transaction.  Rolling back...");
-                        transactionManager.rollbackTransaction();
-                        log.error("Rollback: OK");
-                    }
 
-                    throw exception;
-                } finally {
-                    if (transactionManager.isOpen()) {
-                        log.error("BUG: transaction open in finally. Rolling back...");
-                        transactionManager.rollbackTransaction();
-                        log.error("Rollback: OK");
-                        throw new RuntimeException("BUG: transaction open in finally");
+                    log.info("ArtifactSync.putArtifact id=" + artifact.getID() 
+                            + " uri=" + artifact.getURI() 
+                            + " lastModified=" + df.format(artifact.getLastModified()));
+                    artifactDAO.put(artifact);
+                    if (remoteSiteLocation != null) {
+                        // explicit so addSiteLocation can force lastModified update in global
+                        artifactDAO.addSiteLocation(artifact, remoteSiteLocation);
                     }
                 }
-                logSummary(Artifact.class);
+
+                transactionManager.commitTransaction();
+                log.debug("END: Process Artifact " + artifact.getID() + " " + artifact.getURI());
+            } catch (Exception exception) {
+                if (transactionManager.isOpen()) {
+                    log.error("Exception in transaction.  Rolling back...");
+                    transactionManager.rollbackTransaction();
+                    log.error("Rollback: OK");
+                }
+
+                throw exception;
+            } finally {
+                if (transactionManager.isOpen()) {
+                    log.error("BUG: transaction open in finally. Rolling back...");
+                    transactionManager.rollbackTransaction();
+                    log.error("Rollback: OK");
+                    throw new RuntimeException("BUG: transaction open in finally");
+                }
             }
-        } finally {
-            harvestStateDAO.flushBufferedState();
-            logSummary(Artifact.class, true);
         }
     }
     
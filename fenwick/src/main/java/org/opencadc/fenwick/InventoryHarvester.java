@@ -109,6 +109,7 @@ public class InventoryHarvester implements Runnable {
     private final ArtifactSelector selector;
     private final boolean trackSiteLocations;
     private final int maxRetryInterval;
+    private final int artifactSyncThreads;
     
     /**
      * Constructor.
@@ -119,9 +120,11 @@ public class InventoryHarvester implements Runnable {
      * @param selector           selector implementation
      * @param trackSiteLocations Whether to track the remote storage site and add it to the Artifact being processed.
      * @param maxRetryInterval   max interval in seconds to sleep after an error during processing.
+     * @param artifactSyncThreads number of threads that apply harvested artifacts
      */
     public InventoryHarvester(Map<String, Object> daoConfig, ConnectionConfig connectionConfig,
-            URI resourceID, ArtifactSelector selector, boolean trackSiteLocations, int maxRetryInterval) {
+            URI resourceID, ArtifactSelector selector, boolean trackSiteLocations, int maxRetryInterval,
+            int artifactSyncThreads) {
         InventoryUtil.assertNotNull(InventoryHarvester.class, "daoConfig", daoConfig);
         InventoryUtil.assertNotNull(InventoryHarvester.class, "connectionConfig", connectionConfig);
         InventoryUtil.assertNotNull(InventoryHarvester.class, "resourceID", resourceID);
@@ -130,6 +133,7 @@ public class InventoryHarvester implements Runnable {
         this.selector = selector;
         this.trackSiteLocations = trackSiteLocations;
         this.maxRetryInterval = maxRetryInterval;
+        this.artifactSyncThreads = artifactSyncThreads;
         
         try {
             RegistryClient rc = new RegistryClient();
@@ -144,7 +148,7 @@ public class InventoryHarvester implements Runnable {
         }
         
         try {
-            // connection 1: storage-site + artifact-sync
+            // connection 1: storage-site
             Map<String,Object> dconf = new TreeMap<>();
             String dsname = "jdbc/inventory";
             DBUtil.createJNDIDataSource(dsname, connectionConfig);
@@ -152,7 +156,16 @@ public class InventoryHarvester implements Runnable {
             dconf.put("jndiDataSourceName", dsname);
             this.storageSiteDAO = new StorageSiteDAO(false);
             storageSiteDAO.setConfig(dconf);
-            this.artifactDAO = new ArtifactDAO(storageSiteDAO);
+            
+            // connection pool: artifact-sync workers + harvest state
+            dconf = new TreeMap<>();
+            dsname = "jdbc/ArtifactSync";
+            DBUtil.PoolConfig pc = new DBUtil.PoolConfig(connectionConfig, artifactSyncThreads + 1, 20000L, "select 123");
+            DBUtil.createJNDIDataSource(dsname, pc);
+            dconf.putAll(daoConfig);
+            dconf.put("jndiDataSourceName", dsname);
+            this.artifactDAO = new ArtifactDAO(false);
+            artifactDAO.setConfig(dconf);
             
             String database = (String) dconf.get("database");
             String schema = (String) dconf.get("schema");
@@ -225,7 +238,8 @@ public class InventoryHarvester implements Runnable {
             // sleep a bit to allow deleted event threads to init state on first run before harvesting artifacts
             Thread.sleep(6000L);
             
-            AbstractSync r2 = new ArtifactSync(artifactDAO, resourceID, SYNC_SLEEP, maxRetryInterval, selector, storageSite);
+            AbstractSync r2 = new ArtifactSync(artifactDAO, resourceID, SYNC_SLEEP, maxRetryInterval, selector, storageSite,
+                    artifactSyncThreads);
             tasks.add(r2);
             threads.add(createThread("artifact-thread", r2));
 
@@ -105,6 +105,7 @@ public class Main {
     private static final String TRACK_SITE_LOCATIONS_CONFIG_KEY = CONFIG_PREFIX + ".trackSiteLocations";
     private static final String ARTIFACT_SELECTOR_CONFIG_KEY = CONFIG_PREFIX + ".artifactSelector";
     private static final String MAX_RETRY_INTERVAL_CONFIG_KEY = CONFIG_PREFIX + ".maxRetryInterval";
+    private static final String ARTIFACT_SYNC_THREADS_CONFIG_KEY = CONFIG_PREFIX + ".artifactSyncThreads";
 
 
     // Used to verify configuration items.  See the README for descriptions.
@@ -182,9 +183,15 @@ public class Main {
             final String configuredMaxRetryInterval = props.getFirstPropertyValue(MAX_RETRY_INTERVAL_CONFIG_KEY);
             final int maxRetryInterval = Integer.parseInt(configuredMaxRetryInterval);
 
+            // optional
+            int artifactSyncThreads = 1;
+            final String configuredArtifactSyncThreads = props.getFirstPropertyValue(ARTIFACT_SYNC_THREADS_CONFIG_KEY);
+            if (StringUtil.hasText(configuredArtifactSyncThreads)) {
+                artifactSyncThreads = Integer.parseInt(configuredArtifactSyncThreads);
+            }
 
             final InventoryHarvester doit = new InventoryHarvester(daoConfig, cc, 
-                    resourceID, selector, trackSiteLocations, maxRetryInterval);
+                    resourceID, selector, trackSiteLocations, maxRetryInterval, artifactSyncThreads);
             doit.run();
         } catch (Throwable unexpected) {
             log.fatal("Unexpected failure", unexpected);
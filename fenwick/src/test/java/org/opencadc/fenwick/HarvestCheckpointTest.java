@@ -0,0 +1,155 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.fenwick;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.util.Date;
+import java.util.UUID;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class HarvestCheckpointTest {
+    private static final Logger log = Logger.getLogger(HarvestCheckpointTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.fenwick", Level.INFO);
+    }
+    
+    public HarvestCheckpointTest() { 
+    }
+    
+    @Test
+    public void testInOrder() {
+        HarvestCheckpoint cp = new HarvestCheckpoint();
+        Assert.assertNull(cp.getCommitted());
+        
+        long t = System.currentTimeMillis();
+        UUID id1 = UUID.randomUUID();
+        UUID id2 = UUID.randomUUID();
+        long s1 = cp.add(new Date(t), id1);
+        long s2 = cp.add(new Date(t + 1), id2);
+        Assert.assertNull(cp.getCommitted());
+        
+        cp.done(s1);
+        Assert.assertEquals(id1, cp.getCommitted().id);
+        cp.done(s2);
+        Assert.assertEquals(id2, cp.getCommitted().id);
+        Assert.assertEquals(new Date(t + 1), cp.getCommitted().lastModified);
+        Assert.assertEquals(0, cp.getPendingCount());
+    }
+    
+    @Test
+    public void testOutOfOrder() {
+        HarvestCheckpoint cp = new HarvestCheckpoint();
+        long t = System.currentTimeMillis();
+        UUID[] ids = new UUID[5];
+        long[] seqs = new long[5];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID();
+            seqs[i] = cp.add(new Date(t + i), ids[i]);
+        }
+        
+        // later entities done first: cannot advance
+        cp.done(seqs[4]);
+        cp.done(seqs[2]);
+        Assert.assertNull(cp.getCommitted());
+        
+        cp.done(seqs[0]);
+        Assert.assertEquals(ids[0], cp.getCommitted().id);
+        
+        // fills the gap: advance past 2
+        cp.done(seqs[1]);
+        Assert.assertEquals(ids[2], cp.getCommitted().id);
+        Assert.assertEquals(2, cp.getPendingCount()); // 3 pending, 4 done
+        
+        cp.done(seqs[3]);
+        Assert.assertEquals(ids[4], cp.getCommitted().id);
+        Assert.assertEquals(0, cp.getPendingCount());
+    }
+    
+    @Test
+    public void testDuplicateDone() {
+        HarvestCheckpoint cp = new HarvestCheckpoint();
+        long s1 = cp.add(new Date(), UUID.randomUUID());
+        cp.done(s1);
+        try {
+            cp.done(s1);
+            Assert.fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            log.info("caught expected: " + expected);
+        }
+    }
+}
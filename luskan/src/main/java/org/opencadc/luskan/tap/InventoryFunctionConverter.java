@@ -75,17 +75,27 @@ import java.util.List;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.arithmetic.Addition;
+import net.sf.jsqlparser.expression.operators.arithmetic.Multiplication;
 import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 import org.apache.log4j.Logger;
 
 /**
- * Class to change a num_copies() function to cardinality(inventory.Artifact.siteLocations).
+ * Class to change a num_copies() function to cardinality(inventory.Artifact.siteLocations)
+ * and a meta_digest() function to the order-independent aggregate of
+ * inventory.Artifact.metaChecksum used by ArtifactDAO.getBucketDigest: the first 56 bits
+ * of md5(metaChecksum) as a non-negative integer, summed and reduced mod 2^63-1.
  */
 public class InventoryFunctionConverter extends ExpressionNavigator {
     private static final Logger log = Logger.getLogger(InventoryFunctionConverter.class);
 
+    // number of md5 bytes in the per-row hash: 7 bytes keeps the sum of many rows exact in numeric
+    private static final int HASH_BYTES = 7;
+    private static final String DIGEST_MODULUS = Long.toString(Long.MAX_VALUE);
+
     protected List<Table> fromTables;
 
     public InventoryFunctionConverter() {
@@ -100,44 +110,18 @@ public class InventoryFunctionConverter extends ExpressionNavigator {
     public void visit(Function function) {
         log.debug("visit(function) " + function);
         if (function.getName().equalsIgnoreCase("num_copies")) {
-
-            if (this.fromTables == null || this.fromTables.size() == 0) {
-                throw new IllegalArgumentException("num_copies() requires inventory.Artifact table in FROM statement, "
-                                                       + "no tables found");
-            }
-
-            List<Table> artifactTables = new ArrayList<>();
-            for (Table fromTable : this.fromTables) {
-                if (fromTable.getWholeTableName().equalsIgnoreCase("inventory.Artifact")) {
-                    artifactTables.add(fromTable);
-                    log.debug("found fromTable: ");
-                }
-            }
-            if (artifactTables.size() == 0) {
-                throw new IllegalArgumentException("num_copies() requires inventory.Artifact table in FROM statement, "
-                                                       + "table not found");
-            }
-            if (artifactTables.size() > 1) {
-                throw new IllegalArgumentException("num_copies() requires single inventory.Artifact table "
-                                                       + "in FROM statement, multiple tables found");
-            }
-
-            Table artifactTable = artifactTables.get(0);
-
-            Column column = new Column();
-            column.setColumnName("siteLocations");
-            if (artifactTable.getAlias() != null) {
-                column.setTable(new Table(null, artifactTable.getAlias()));
-            } else {
-                column.setTable(artifactTable);
-            }
-
-            List<Expression> expressions = new ArrayList<>();
-            expressions.add(column);
-            ExpressionList parameters = new ExpressionList();
-            parameters.setExpressions(expressions);
+            Table artifactTable = getArtifactTable("num_copies()");
             function.setName("cardinality");
-            function.setParameters(parameters);
+            function.setParameters(toParameters(getColumn(artifactTable, "siteLocations")));
+        }
+        if (function.getName().equalsIgnoreCase("meta_digest")) {
+            // order-independent aggregate of metaChecksum values: must match ArtifactDAO.getBucketDigest
+            Table artifactTable = getArtifactTable("meta_digest()");
+            Function sum = new Function();
+            sum.setName("sum");
+            sum.setParameters(toParameters(getMetaHash(getColumn(artifactTable, "metaChecksum"))));
+            function.setName("mod");
+            function.setParameters(toParameters(sum, new LongValue(DIGEST_MODULUS)));
         }
         if (function.getName().equalsIgnoreCase("row_counter")) {
             List<Expression> expressions = new ArrayList<>();
@@ -148,5 +132,84 @@ public class InventoryFunctionConverter extends ExpressionNavigator {
             function.setParameters(parameters);
         }
     }
+    
+    private Table getArtifactTable(String func) {
+        if (this.fromTables == null || this.fromTables.size() == 0) {
+            throw new IllegalArgumentException(func + " requires inventory.Artifact table in FROM statement, "
+                                                   + "no tables found");
+        }
+
+        List<Table> artifactTables = new ArrayList<>();
+        for (Table fromTable : this.fromTables) {
+            if (fromTable.getWholeTableName().equalsIgnoreCase("inventory.Artifact")) {
+                artifactTables.add(fromTable);
+                log.debug("found fromTable: ");
+            }
+        }
+        if (artifactTables.size() == 0) {
+            throw new IllegalArgumentException(func + " requires inventory.Artifact table in FROM statement, "
+                                                   + "table not found");
+        }
+        if (artifactTables.size() > 1) {
+            throw new IllegalArgumentException(func + " requires single inventory.Artifact table "
+                                                   + "in FROM statement, multiple tables found");
+        }
+        return artifactTables.get(0);
+    }
+    
+    private Column getColumn(Table artifactTable, String name) {
+        Column column = new Column();
+        column.setColumnName(name);
+        if (artifactTable.getAlias() != null) {
+            column.setTable(new Table(null, artifactTable.getAlias()));
+        } else {
+            column.setTable(artifactTable);
+        }
+        return column;
+    }
+    
+    // get_byte(decode(md5(col), 'hex'), 0) * 2^48 + ... + get_byte(decode(md5(col), 'hex'), 6)
+    private Expression getMetaHash(Column metaChecksum) {
+        Expression ret = null;
+        for (int i = 0; i < HASH_BYTES; i++) {
+            Function md5 = new Function();
+            md5.setName("md5");
+            md5.setParameters(toParameters(metaChecksum));
+            Function decode = new Function();
+            decode.setName("decode");
+            decode.setParameters(toParameters(md5, new StringValue("'hex'")));
+            Function getByte = new Function();
+            getByte.setName("get_byte");
+            getByte.setParameters(toParameters(decode, new LongValue(Integer.toString(i))));
+
+            Expression term = getByte;
+            int shift = 8 * (HASH_BYTES - 1 - i);
+            if (shift > 0) {
+                Multiplication m = new Multiplication();
+                m.setLeftExpression(getByte);
+                m.setRightExpression(new LongValue(Long.toString(1L << shift)));
+                term = m;
+            }
+            if (ret == null) {
+                ret = term;
+            } else {
+                Addition a = new Addition();
+                a.setLeftExpression(ret);
+                a.setRightExpression(term);
+                ret = a;
+            }
+        }
+        return ret;
+    }
+
+    private ExpressionList toParameters(Expression... args) {
+        List<Expression> expressions = new ArrayList<>();
+        for (Expression e : args) {
+            expressions.add(e);
+        }
+        ExpressionList parameters = new ExpressionList();
+        parameters.setExpressions(expressions);
+        return parameters;
+    }
 
 }
@@ -93,6 +93,7 @@ public class TapSchemaDAOImpl  extends TapSchemaDAO {
         ret.add(new FunctionDesc("num_copies", TapDataType.INTEGER));
         ret.add(new FunctionDesc("date", TapDataType.TIMESTAMP));
         ret.add(new FunctionDesc("row_counter", TapDataType.LONG));
+        ret.add(new FunctionDesc("meta_digest", TapDataType.LONG));
         
         return ret;
     }
@@ -129,6 +129,28 @@ public class InventoryFunctionConverterTest {
         doTest(query, expected, "cardinality(a.siteLocations)");
     }
 
+    @Test
+    public void testMetaDigest() {
+        String query = "select count(*), meta_digest() from inventory.Artifact";
+        String digest = getMetaDigest("inventory.Artifact.metaChecksum");
+        String expected = "select count(*), " + digest + " from inventory.Artifact";
+        doTest(query, expected, digest);
+    }
+
+    @Test
+    public void testMetaDigestWithAlias() {
+        String query = "select count(*), meta_digest() from inventory.Artifact as a";
+        String digest = getMetaDigest("a.metaChecksum");
+        String expected = "select count(*), " + digest + " from inventory.Artifact as a";
+        doTest(query, expected, digest);
+    }
+
+    @Test
+    public void testMetaDigestNoInventoryArtifactTable() {
+        String query = "select meta_digest() from DeletedArtifactEvent";
+        doTestFailure(query);
+    }
+
     @Test
     public void testNoFromTables() {
         String query = "select num_copies()";
@@ -153,6 +175,13 @@ public class InventoryFunctionConverterTest {
         doTestFailure(query);
     }
 
+    private String getMetaDigest(String column) {
+        String b = "get_byte(decode(md5(" + column + "), 'hex'), ";
+        return "mod(sum(" + b + "0) * 281474976710656 + " + b + "1) * 1099511627776 + "
+            + b + "2) * 4294967296 + " + b + "3) * 16777216 + " + b + "4) * 65536 + "
+            + b + "5) * 256 + " + b + "6)), 9223372036854775807)";
+    }
+
     private void doTest(final String query, final String origFunction, String expectedFunction) {
         try {
             TestUtil.job.getParameterList().clear();
@@ -139,6 +139,10 @@ public class TestUtil {
         // num_copies()
         FunctionDesc numCopies = new FunctionDesc("num_copies", TapDataType.INTEGER);
         tapSchema.getFunctionDescs().add(numCopies);
+        
+        // meta_digest()
+        FunctionDesc metaDigest = new FunctionDesc("meta_digest", TapDataType.LONG);
+        tapSchema.getFunctionDescs().add(metaDigest);
 
         return tapSchema;
     }
@@ -78,7 +78,6 @@ import ca.nrc.cadc.rest.SyncInput;
 import ca.nrc.cadc.rest.Version;
 import ca.nrc.cadc.util.MultiValuedProperties;
 import ca.nrc.cadc.util.PropertiesReader;
-import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -94,15 +93,14 @@ import javax.security.auth.Subject;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.Artifact;
 import org.opencadc.inventory.InventoryUtil;
-import org.opencadc.inventory.Namespace;
 import org.opencadc.inventory.db.ArtifactDAO;
 import org.opencadc.inventory.db.SQLGenerator;
+import org.opencadc.inventory.server.CachedPermissionsCheck;
 import org.opencadc.inventory.storage.StorageAdapter;
 import org.opencadc.permissions.Grant;
 import org.opencadc.permissions.ReadGrant;
 import org.opencadc.permissions.TokenTool;
 import org.opencadc.permissions.WriteGrant;
-import org.opencadc.permissions.client.PermissionsCheck;
 
 /**
  * Abstract class for performing tasks all action classes have in common,
@@ -135,13 +133,14 @@ public abstract class ArtifactAction extends RestAction {
     
     // immutable state set in constructor
     protected final MultiValuedProperties config;
-    protected final File publicKey;
     protected final List<URI> readGrantServices = new ArrayList<>();
     protected final List<URI> writeGrantServices = new ArrayList<>();
     
     // lazy init
     protected ArtifactDAO artifactDAO;
     protected StorageAdapter storageAdapter;
+    protected ObsoleteStorageLocationReaper reaper;
+    private ResourcePool resourcePool;
     
     private final boolean authenticateOnly;
 
@@ -152,7 +151,6 @@ public abstract class ArtifactAction extends RestAction {
         this.artifactDAO = null;
         this.storageAdapter = null;
         this.authenticateOnly = false;
-        this.publicKey = null;
     }
 
     protected ArtifactAction() {
@@ -196,13 +194,6 @@ public abstract class ArtifactAction extends RestAction {
         } else {
             authenticateOnly = false;
         }
-
-        String pubkeyFileName = config.getFirstPropertyValue(MinocInitAction.PUBKEYFILE_KEY);
-        if (pubkeyFileName != null) {
-            this.publicKey = new File(System.getProperty("user.home") + "/config/" + pubkeyFileName);
-        } else {
-            this.publicKey = null; // no pre-auth
-        }
     }
 
     @Override
@@ -258,10 +249,10 @@ public abstract class ArtifactAction extends RestAction {
         // do authorization (with token or subject)
         Subject subject = AuthenticationUtil.getCurrentSubject();
         if (authToken != null) {
-            if (publicKey == null) {
+            TokenTool tk = getResourcePool().getTokenTool();
+            if (tk == null) {
                 throw new IllegalArgumentException("unexpected pre-auth token in URL");
             }
-            TokenTool tk = new TokenTool(publicKey);
             String tokenUser;
             if (allowReadWithWriteGrant && ReadGrant.class.isAssignableFrom(grantClass)) {
                 // treat a WriteGrant as also granting read permission
@@ -291,7 +282,8 @@ public abstract class ArtifactAction extends RestAction {
         logInfo.setSubject(subject);
         logInfo.setResource(artifactURI);
         logInfo.setPath(syncInput.getContextPath() + syncInput.getComponentPath());
-        PermissionsCheck permissionsCheck = new PermissionsCheck(artifactURI, authenticateOnly, logInfo);
+        CachedPermissionsCheck permissionsCheck = new CachedPermissionsCheck(artifactURI, authenticateOnly, logInfo, 
+                getResourcePool().getGrantCache());
         // TODO: allowReadWithWriteGrant could be implemented here, but grant services are probably configured
         // that way already so it's complexity that probably won't allow/enable any actions
         if (ReadGrant.class.isAssignableFrom(grantClass)) {
@@ -311,18 +303,28 @@ public abstract class ArtifactAction extends RestAction {
 
     protected void initDAO() {
         if (artifactDAO == null) {
-            Map<String, Object> configMap = MinocInitAction.getDaoConfig(config);
-            this.artifactDAO = new ArtifactDAO();
-            artifactDAO.setConfig(configMap); // connectivity tested
+            this.artifactDAO = getResourcePool().getArtifactDAO();
         }
     }
     
     protected void initStorageAdapter() {
         if (storageAdapter == null) {
-            this.storageAdapter = InventoryUtil.loadPlugin(config.getFirstPropertyValue(MinocInitAction.SA_KEY));
-            List<Namespace> rec = MinocInitAction.getRecoverableNamespaces(config);
-            storageAdapter.setRecoverableNamespaces(rec);
+            this.storageAdapter = getResourcePool().getStorageAdapter();
+        }
+    }
+    
+    protected void initReaper() {
+        if (reaper == null) {
+            this.reaper = getResourcePool().getReaper();
+        }
+    }
+    
+    // shared resources created by MinocInitAction
+    private ResourcePool getResourcePool() {
+        if (resourcePool == null) {
+            this.resourcePool = MinocInitAction.getResourcePool(appName);
         }
+        return resourcePool;
     }
 
     /**
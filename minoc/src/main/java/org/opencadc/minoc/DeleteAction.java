@@ -101,7 +101,7 @@ public class DeleteAction extends ArtifactAction {
         checkWritable();
         initAndAuthorize(WriteGrant.class);
         initDAO();
-        initStorageAdapter();
+        initReaper();
     }
 
     /**
@@ -153,13 +153,10 @@ public class DeleteAction extends ArtifactAction {
             
             syncOutput.setCode(204); // no content
             
-            // this block could be passed off to a thread so request completes
             if (dsl != null) {
-                log.debug("deleting from storage...");
-                storageAdapter.delete(existing.storageLocation);
-                log.debug("delete from storage: OK");
-                // obsolete tracker record no longer needed
-                locDAO.delete(dsl.getID());
+                // committed: the reaper deletes from storage and removes the tracker record
+                reaper.submit(dsl);
+                log.debug("submitted to reaper: " + dsl.getLocation());
             }
         } catch (Exception e) {
             log.error("failed to delete " + artifactURI, e);
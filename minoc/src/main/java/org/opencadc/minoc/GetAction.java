@@ -82,6 +82,7 @@ import ca.nrc.cadc.util.CaseInsensitiveStringComparator;
 import ca.nrc.cadc.util.StringUtil;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -89,6 +90,7 @@ import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.UUID;
 import org.apache.log4j.Logger;
 import org.opencadc.fits.FitsOperations;
 import org.opencadc.fits.NoOverlapException;
@@ -116,6 +118,10 @@ public class GetAction extends ArtifactAction {
     private static final String CONTENT_DISPOSITION = "content-disposition";
     private static final String CONTENT_RANGE = "content-range";
     private static final String CONTENT_LENGTH = "content-length";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    
+    // limit on number of intervals in a Range header
+    static final int MAX_RANGES = 64;
     private static final String[] FITS_CONTENT_TYPES = new String[] {
         "application/fits", "image/fits"
     };
@@ -186,9 +192,13 @@ public class GetAction extends ArtifactAction {
             }
             
             // partial get
-            ByteRange byteRange = getByteRange(range, artifact.getContentLength());
-            if (byteRange != null) {
-                bcos = doByteRangeRequest(artifact, byteRange);
+            SortedSet<ByteRange> byteRanges = parseRange(range, artifact.getContentLength());
+            if (byteRanges.size() == 1) {
+                bcos = doByteRangeRequest(artifact, byteRanges.first());
+                return;
+            }
+            if (byteRanges.size() > 1) {
+                bcos = doMultiByteRangeRequest(artifact, byteRanges);
                 return;
             }
             
@@ -202,7 +212,7 @@ public class GetAction extends ArtifactAction {
             tmp.storageBucket = artifact.storageLocation.storageBucket;
             tmp.expectedContentChecksum = artifact.getContentChecksum();
             
-            storageAdapter.get(tmp, bcos);
+            getContent(tmp, bcos, null);
             
         } catch (RangeNotSatisfiableException e) {
             log.debug("Invalid Range - offset greater then the content length:" + range);
@@ -246,10 +256,69 @@ public class GetAction extends ArtifactAction {
         syncOutput.setHeader(CONTENT_LENGTH, byteRange.getLength());
 
         ByteCountOutputStream bcos = new ByteCountOutputStream(syncOutput.getOutputStream());
-        storageAdapter.get(artifact.storageLocation, bcos, byteRange);
+        getContent(artifact.storageLocation, bcos, byteRange);
+        return bcos;
+    }
+    
+    private ByteCountOutputStream doMultiByteRangeRequest(Artifact artifact, SortedSet<ByteRange> byteRanges) 
+            throws InterruptedException, IOException, ResourceNotFoundException, 
+                ReadException, WriteException, StorageEngageException, TransientException {
+        String contentType = artifact.contentType;
+        if (contentType == null) {
+            contentType = DEFAULT_CONTENT_TYPE;
+        }
+        String boundary = UUID.randomUUID().toString();
+        // framing only: the response length is needed before the output is opened
+        MultipartByteRangesOutputStream framing = new MultipartByteRangesOutputStream(null, boundary, contentType, 
+                byteRanges, artifact.getContentLength());
+        
+        HeadAction.setHeaders(artifact, syncOutput);
+        syncOutput.setCode(206);
+        // override content type and length
+        syncOutput.setHeader(HttpTransfer.CONTENT_TYPE, framing.getContentType());
+        syncOutput.setHeader(CONTENT_LENGTH, framing.getContentLength());
+        
+        // open the output after all headers are set
+        ByteCountOutputStream bcos = new ByteCountOutputStream(syncOutput.getOutputStream());
+        MultipartByteRangesOutputStream mpos = new MultipartByteRangesOutputStream(bcos, boundary, contentType, 
+                byteRanges, artifact.getContentLength());
+        try {
+            storageAdapter.get(artifact.storageLocation, mpos, byteRanges);
+        } catch (UnsupportedOperationException ex) {
+            log.debug("multiple byte ranges not supported: " + storageAdapter.getClass().getName());
+            for (ByteRange r : byteRanges) {
+                getContent(artifact.storageLocation, mpos, r);
+            }
+        }
+        if (!mpos.isComplete()) {
+            throw new ReadException("storage returned incomplete content for " + byteRanges.size() + " byte ranges");
+        }
+        try {
+            mpos.finish();
+        } catch (IOException ex) {
+            throw new WriteException("failed to write multipart/byteranges delimiter", ex);
+        }
         return bcos;
     }
     
+    // use the channel-aware get so adapters can avoid copying through user-space buffers
+    // and fall back to the stream methods if the adapter does not support it
+    private void getContent(StorageLocation loc, OutputStream out, ByteRange byteRange)
+            throws InterruptedException, ResourceNotFoundException, 
+                ReadException, WriteException, StorageEngageException, TransientException {
+        try {
+            storageAdapter.get(loc, Channels.newChannel(out), byteRange);
+            return;
+        } catch (UnsupportedOperationException ex) {
+            log.debug("channel get not supported: " + storageAdapter.getClass().getName());
+        }
+        if (byteRange == null) {
+            storageAdapter.get(loc, out);
+        } else {
+            storageAdapter.get(loc, out, byteRange);
+        }
+    }
+    
     private ByteCountOutputStream doOperation(FitsOperations fitsOperations, SodaCutout sodaCutout)
             throws NoOverlapException, ReadException, IOException {
         
@@ -481,18 +550,8 @@ public class GetAction extends ArtifactAction {
         }
     }
 
-    private ByteRange getByteRange(String range, long contentLength) throws RangeNotSatisfiableException {
-        SortedSet<ByteRange> ranges = parseRange(range, contentLength);
-        if (ranges.isEmpty()) {
-            return null;
-        }
-        if (ranges.size() == 1) {
-            return ranges.first();
-        }
-        throw new RangeNotSatisfiableException("multiple ranges in request not supported");
-    }
-    
-    // parse the complete HTTP range spec
+    // parse the complete HTTP range spec: unsatisfiable ranges are dropped and
+    // overlapping or adjacent ranges are coalesced (RFC 7233 section 4.1)
     SortedSet<ByteRange> parseRange(String range, long contentLength) throws RangeNotSatisfiableException {
         SortedSet<ByteRange> result = new TreeSet<ByteRange>();
         if (range == null) {
@@ -503,38 +562,64 @@ public class GetAction extends ArtifactAction {
             log.debug("Ignore Range with invalid unit (only bytes supported): " + range);
             return result;
         }
-        String[] ranges = sanitizedRange.replace("bytes=", "").split(",");
-        if (ranges.length > 1) {
-            log.debug("Ignore multiple Ranges (only one supported): " + range);
+        String[] specs = sanitizedRange.replace("bytes=", "").split(",");
+        if (specs.length > MAX_RANGES) {
+            log.debug("Ignore Range with more than " + MAX_RANGES + " intervals: " + range);
             return result;
         }
-        String[] interval = ranges[0].split("-");
-        if ((interval.length == 0) || (interval.length > 2)) {
-            log.debug("Ignore Range with invalid interval: " + range);
-            return result;
-        }
-        try {
-            String s =  (interval[0].length() == 0 ? "0" : interval[0]);
-            Long start = Long.parseLong(s);
-            if (start > contentLength - 1) {
-                throw new RangeNotSatisfiableException("Offset greater than size of file");
-            }
-            long end = contentLength - 1;
-            if (interval.length == 2) {
-                end = Long.parseLong(interval[1]);
-            }
-            if (end < start) {
+        List<ByteRange> ranges = new ArrayList<>();
+        boolean unsatisfiable = false;
+        for (String spec : specs) {
+            String[] interval = spec.split("-");
+            if (spec.isEmpty() || (interval.length == 0) || (interval.length > 2)) {
                 log.debug("Ignore Range with invalid interval: " + range);
                 return result;
             }
-            if (end >= contentLength - 1) {
-                end = contentLength - 1;
+            try {
+                String s =  (interval[0].length() == 0 ? "0" : interval[0]);
+                long start = Long.parseLong(s);
+                if (start > contentLength - 1) {
+                    unsatisfiable = true;
+                    continue;
+                }
+                long end = contentLength - 1;
+                if (interval.length == 2) {
+                    end = Long.parseLong(interval[1]);
+                }
+                if (end < start) {
+                    log.debug("Ignore Range with invalid interval: " + range);
+                    return result;
+                }
+                if (end >= contentLength - 1) {
+                    end = contentLength - 1;
+                }
+                ranges.add(new ByteRange(start, end - start + 1));
+            } catch (NumberFormatException e) {
+                log.debug("Ignore illegal range value in: " + range);
+                return result;
+            }
+        }
+        if (ranges.isEmpty()) {
+            if (unsatisfiable) {
+                throw new RangeNotSatisfiableException("Offset greater than size of file");
             }
-            result.add(new ByteRange(start, end - start + 1));
             return result;
-        } catch (NumberFormatException e) {
-            log.debug("Ignore illegal range value in: " + range);
         }
+        
+        ranges.sort((lhs, rhs) -> Long.compare(lhs.getOffset(), rhs.getOffset()));
+        ByteRange cur = null;
+        for (ByteRange r : ranges) {
+            if (cur == null) {
+                cur = r;
+            } else if (r.getOffset() <= cur.getOffset() + cur.getLength()) {
+                long end = Math.max(cur.getOffset() + cur.getLength(), r.getOffset() + r.getLength());
+                cur = new ByteRange(cur.getOffset(), end - cur.getOffset());
+            } else {
+                result.add(cur);
+                cur = r;
+            }
+        }
+        result.add(cur);
         return result;
     }
 }
@@ -79,9 +79,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import javax.sql.DataSource;
 import org.apache.log4j.Logger;
-import org.opencadc.inventory.InventoryUtil;
 import org.opencadc.inventory.Namespace;
 import org.opencadc.inventory.StorageSite;
 import org.opencadc.inventory.db.SQLGenerator;
@@ -97,9 +99,10 @@ public class MinocInitAction extends InitAction {
     private static final Logger log = Logger.getLogger(MinocInitAction.class);
     
     static final String JNDI_DATASOURCE = "jdbc/inventory"; // context.xml
+    static final String JNDI_RESOURCE_POOL_NAME = ".resourcePool";
     
     // config keys
-    private static final String MINOC_KEY = "org.opencadc.minoc";
+    static final String MINOC_KEY = "org.opencadc.minoc";
     static final String RESOURCE_ID_KEY = MINOC_KEY + ".resourceID";
     
     static final String SQLGEN_KEY = SQLGenerator.class.getName();
@@ -121,6 +124,8 @@ public class MinocInitAction extends InitAction {
     MultiValuedProperties props;
     private URI resourceID;
     private Map<String,Object> daoConfig;
+    private String resourcePoolKey;
+    private ResourcePool resourcePool;
 
     public MinocInitAction() { 
         super();
@@ -131,7 +136,15 @@ public class MinocInitAction extends InitAction {
         initConfig();
         initDatabase();
         initStorageSite();
-        initStorageAdapter();
+        initResourcePool();
+    }
+    
+    @Override
+    public void doShutdown() {
+        if (resourcePool != null) {
+            resourcePool.getReaper().stop();
+        }
+        unbindResourcePool();
     }
     
     /**
@@ -343,14 +356,51 @@ public class MinocInitAction extends InitAction {
         log.info("initStorageSite: " + self + " OK");
     }
     
-    private void initStorageAdapter() {
-        log.info("initStorageAdapter: START");
-        StorageAdapter storageAdapter = InventoryUtil.loadPlugin(props.getFirstPropertyValue(MinocInitAction.SA_KEY));
-        List<Namespace> rec = MinocInitAction.getRecoverableNamespaces(props);
-        for (Namespace ns : rec) {
-            log.info("initStorageAdapter: recoverableNamespace  = " + ns.getNamespace());
+    private void initResourcePool() {
+        log.info("initResourcePool: START");
+        this.resourcePoolKey = appName + JNDI_RESOURCE_POOL_NAME;
+        ResourcePool pool = new ResourcePool(props);
+        try {
+            Context ctx = new InitialContext();
+            try {
+                ctx.unbind(resourcePoolKey);
+            } catch (NamingException ignore) {
+                log.debug("unbind previous " + resourcePoolKey + " failed: " + ignore);
+            }
+            ctx.bind(resourcePoolKey, pool);
+        } catch (NamingException ex) {
+            throw new IllegalStateException("unable to bind " + resourcePoolKey + " to initial context: " + ex.getMessage(), ex);
+        }
+        this.resourcePool = pool;
+        pool.getReaper().start();
+        log.info("initResourcePool: " + resourcePoolKey + " OK");
+    }
+    
+    private void unbindResourcePool() {
+        if (resourcePoolKey != null) {
+            try {
+                Context ctx = new InitialContext();
+                ctx.unbind(resourcePoolKey);
+            } catch (NamingException ex) {
+                log.debug("unable to unbind " + resourcePoolKey + " - " + ex.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Find the ResourcePool created in init.
+     * 
+     * @param appName webapp name
+     * @return the shared resource pool
+     * @throws IllegalStateException if not found
+     */
+    static ResourcePool getResourcePool(String appName) {
+        String key = appName + JNDI_RESOURCE_POOL_NAME;
+        try {
+            Context ctx = new InitialContext();
+            return (ResourcePool) ctx.lookup(key);
+        } catch (NamingException ex) {
+            throw new IllegalStateException("JNDI lookup error: " + key, ex);
         }
-        storageAdapter.setRecoverableNamespaces(rec);
-        log.info("initStorageAdapter: " + storageAdapter.getClass().getName() + " OK");
     }
 }
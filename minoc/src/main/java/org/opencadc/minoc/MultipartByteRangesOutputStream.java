@@ -0,0 +1,208 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.minoc;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import org.apache.log4j.Logger;
+import org.opencadc.inventory.storage.ByteRange;
+
+/**
+ * Output stream that frames the content of multiple byte ranges as a multipart/byteranges
+ * (RFC 7233) response body. The bytes written to this stream must be the content of each
+ * range in order with no separators; the part headers are inserted at the range boundaries.
+ * 
+ * @author agent
+ */
+class MultipartByteRangesOutputStream extends FilterOutputStream {
+    private static final Logger log = Logger.getLogger(MultipartByteRangesOutputStream.class);
+
+    private static final String CRLF = "\r\n";
+    
+    private final String boundary;
+    private final List<byte[]> partHeaders = new ArrayList<>();
+    private final byte[] closeDelimiter;
+    private final long contentLength;
+    
+    private final Iterator<ByteRange> rangeIter;
+    private final Iterator<byte[]> headerIter;
+    private long remaining = 0L;
+    
+    /**
+     * Constructor.
+     * 
+     * @param out the output stream
+     * @param boundary multipart boundary string
+     * @param contentType content type of the complete object
+     * @param byteRanges the byte ranges
+     * @param totalLength length of the complete object
+     */
+    MultipartByteRangesOutputStream(OutputStream out, String boundary, String contentType, 
+            SortedSet<ByteRange> byteRanges, long totalLength) {
+        super(out);
+        this.boundary = boundary;
+        long len = 0L;
+        boolean first = true;
+        for (ByteRange r : byteRanges) {
+            long lastByte = r.getOffset() + r.getLength() - 1L;
+            StringBuilder sb = new StringBuilder();
+            if (!first) {
+                sb.append(CRLF);
+            }
+            sb.append("--").append(boundary).append(CRLF);
+            sb.append("Content-Type: ").append(contentType).append(CRLF);
+            sb.append("Content-Range: bytes ").append(r.getOffset()).append("-").append(lastByte);
+            sb.append("/").append(totalLength).append(CRLF);
+            sb.append(CRLF);
+            byte[] hdr = sb.toString().getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(hdr);
+            len += hdr.length + r.getLength();
+            first = false;
+        }
+        this.closeDelimiter = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        len += closeDelimiter.length;
+        this.contentLength = len;
+        this.rangeIter = byteRanges.iterator();
+        this.headerIter = partHeaders.iterator();
+    }
+
+    /**
+     * @return the complete multipart/byteranges content type with boundary
+     */
+    String getContentType() {
+        return "multipart/byteranges; boundary=" + boundary;
+    }
+    
+    /**
+     * @return length of the complete response body
+     */
+    long getContentLength() {
+        return contentLength;
+    }
+    
+    /**
+     * @return true if the content of all byte ranges has been written
+     */
+    boolean isComplete() {
+        return remaining == 0L && !rangeIter.hasNext();
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        nextPart();
+        out.write(b);
+        remaining--;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        while (len > 0) {
+            nextPart();
+            int num = (int) Math.min(len, remaining);
+            out.write(bytes, off, num);
+            off += num;
+            len -= num;
+            remaining -= num;
+        }
+    }
+    
+    /**
+     * Write the closing delimiter. This does not close the underlying stream.
+     * 
+     * @throws IOException if writing failed
+     */
+    void finish() throws IOException {
+        if (!isComplete()) {
+            throw new IllegalStateException("BUG: finish called before all byte ranges were written");
+        }
+        out.write(closeDelimiter);
+        out.flush();
+    }
+    
+    private void nextPart() throws IOException {
+        if (remaining > 0L) {
+            return;
+        }
+        if (!rangeIter.hasNext()) {
+            throw new IOException("BUG: content beyond the last byte range");
+        }
+        ByteRange r = rangeIter.next();
+        log.debug("start part: " + r);
+        out.write(headerIter.next());
+        remaining = r.getLength();
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.minoc;
+
+import ca.nrc.cadc.net.ResourceNotFoundException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+import org.opencadc.inventory.ObsoleteStorageLocation;
+import org.opencadc.inventory.db.ObsoleteStorageLocationDAO;
+import org.opencadc.inventory.storage.StorageAdapter;
+
+/**
+ * Background removal of obsolete stored objects. PutAction and DeleteAction record an
+ * ObsoleteStorageLocation in the same transaction that replaces or removes the artifact
+ * and then submit it here instead of deleting from storage in the request thread. The
+ * ObsoleteStorageLocation table is the durable queue: submitted locations are only a hint
+ * to process them promptly and the reaper periodically sweeps the table so that locations
+ * left behind by a restart, a dropped hint, or a failed storage delete are eventually removed.
+ * A sweep pages through the table in (lastModified, id) order, so locations where the storage
+ * delete fails are left behind the cursor and retried in the next sweep; any number of persistent
+ * failures neither keeps the sweep busy nor hides the locations after them.
+ * 
+ * @author agent
+ */
+class ObsoleteStorageLocationReaper implements Runnable {
+    private static final Logger log = Logger.getLogger(ObsoleteStorageLocationReaper.class);
+
+    static final int DEFAULT_BATCH_SIZE = 100;
+    static final long DEFAULT_SWEEP_INTERVAL = 60 * 1000L; // 1 min
+    
+    private static final int MAX_PENDING = 10000;
+    private static final long STOP_TIMEOUT = 10 * 1000L;
+    
+    private final ObsoleteStorageLocationDAO locDAO;
+    private final StorageAdapter storageAdapter;
+    private final int batchSize;
+    private final long sweepInterval;
+    private final LinkedBlockingQueue<ObsoleteStorageLocation> pending = new LinkedBlockingQueue<>(MAX_PENDING);
+    
+    // position of the current sweep: last location listed, null at the start of a sweep
+    private ObsoleteStorageLocation sweepCursor;
+    private int numFailed = 0;
+    
+    private Thread thread;
+    
+    /**
+     * Constructor.
+     * 
+     * @param locDAO DAO for obsolete storage locations
+     * @param storageAdapter storage to delete obsolete objects from
+     * @param batchSize max number of locations to process in one pass
+     * @param sweepInterval time (milliseconds) between sweeps of the database when idle
+     */
+    ObsoleteStorageLocationReaper(ObsoleteStorageLocationDAO locDAO, StorageAdapter storageAdapter, 
+            int batchSize, long sweepInterval) {
+        this.locDAO = locDAO;
+        this.storageAdapter = storageAdapter;
+        this.batchSize = batchSize;
+        this.sweepInterval = sweepInterval;
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("invalid batchSize: " + batchSize);
+        }
+    }
+    
+    synchronized void start() {
+        if (thread == null) {
+            this.thread = new Thread(this, "minoc-reaper");
+            thread.setDaemon(true);
+            thread.start();
+            log.info("ObsoleteStorageLocationReaper: started");
+        }
+    }
+    
+    synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(STOP_TIMEOUT);
+            } catch (InterruptedException ex) {
+                log.debug("interrupted while waiting for reaper to stop");
+            }
+            this.thread = null;
+            log.info("ObsoleteStorageLocationReaper: stopped");
+        }
+    }
+    
+    /**
+     * Submit a committed obsolete storage location for prompt removal. This never blocks;
+     * if the queue is full the location will be found by a later sweep.
+     * 
+     * @param osl the obsolete storage location
+     */
+    void submit(ObsoleteStorageLocation osl) {
+        if (!pending.offer(osl)) {
+            log.debug("reaper queue full, deferred to sweep: " + osl.getLocation());
+        }
+    }
+    
+    // package access for tests
+    int getPendingCount() {
+        return pending.size();
+    }
+    
+    @Override
+    public void run() {
+        long nextSweep = 0L; // sweep on startup to catch leftovers
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long now = System.currentTimeMillis();
+                Map<UUID, ObsoleteStorageLocation> batch = new LinkedHashMap<>();
+                try {
+                    if (now >= nextSweep) {
+                        List<ObsoleteStorageLocation> page = locDAO.list(batchSize, sweepCursor);
+                        for (ObsoleteStorageLocation o : page) {
+                            batch.put(o.getID(), o);
+                        }
+                        if (page.size() < batchSize) {
+                            // reached the end of the table: failed locations are retried in the next sweep
+                            nextSweep = endSweep(now);
+                        } else {
+                            sweepCursor = page.get(page.size() - 1);
+                        }
+                    } else {
+                        ObsoleteStorageLocation first = pending.poll(nextSweep - now, TimeUnit.MILLISECONDS);
+                        if (first != null) {
+                            List<ObsoleteStorageLocation> hints = new ArrayList<>();
+                            hints.add(first);
+                            pending.drainTo(hints, batchSize - 1);
+                            for (ObsoleteStorageLocation o : hints) {
+                                batch.put(o.getID(), o);
+                            }
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        reap(batch.values());
+                    }
+                } catch (RuntimeException ex) {
+                    // most likely database: anything not done will be found by the next sweep
+                    log.error("ObsoleteStorageLocationReaper: batch failed", ex);
+                    nextSweep = endSweep(now);
+                    Thread.sleep(sweepInterval);
+                }
+            }
+        } catch (InterruptedException ex) {
+            log.debug("ObsoleteStorageLocationReaper: interrupted");
+        }
+    }
+    
+    // end the current sweep: the next one starts from the oldest location
+    private long endSweep(long now) {
+        if (numFailed > 0) {
+            log.warn("ObsoleteStorageLocationReaper: " + numFailed + " failed deletes deferred to next sweep");
+            numFailed = 0;
+        }
+        sweepCursor = null;
+        return now + sweepInterval;
+    }
+    
+    /**
+     * Delete a batch of obsolete stored objects and the corresponding ObsoleteStorageLocation.
+     * Locations that no longer exist in the database have already been handled (or were
+     * re-used by a subsequent put) and are skipped. A stored object that is already gone is
+     * not an error. A location where the storage delete fails is left in the database to be
+     * retried by the next sweep.
+     * 
+     * @param batch locations to delete
+     * @return number of locations removed
+     * @throws InterruptedException if the thread is interrupted
+     */
+    int reap(Iterable<ObsoleteStorageLocation> batch) throws InterruptedException {
+        int num = 0;
+        long t = System.currentTimeMillis();
+        for (ObsoleteStorageLocation o : batch) {
+            ObsoleteStorageLocation cur = locDAO.get(o.getID());
+            if (cur == null) {
+                log.debug("skip: " + o.getLocation() + " no longer obsolete");
+                continue;
+            }
+            try {
+                storageAdapter.delete(cur.getLocation());
+                log.debug("deleted from storage: " + cur.getLocation());
+            } catch (ResourceNotFoundException ex) {
+                log.debug("not found in storage: " + cur.getLocation());
+            } catch (InterruptedException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                log.warn("failed to delete from storage: " + cur.getLocation() + " cause: " + ex);
+                numFailed++;
+                continue;
+            }
+            // obsolete tracker record no longer needed
+            locDAO.delete(cur.getID());
+            num++;
+        }
+        long dt = System.currentTimeMillis() - t;
+        if (num > 0) {
+            log.info("ObsoleteStorageLocationReaper: removed " + num + " obsolete objects duration=" + dt + "ms");
+        }
+        return num;
+    }
+}
@@ -126,6 +126,7 @@ public class PutAction extends ArtifactAction {
         initAndAuthorize(WriteGrant.class);
         initDAO();
         initStorageAdapter();
+        initReaper();
     }
 
     @Override
@@ -333,15 +334,10 @@ public class PutAction extends ArtifactAction {
             
             super.logInfo.setBytes(artifact.getContentLength());
             
-            // this block could be passed off to a thread so request completes??
             if (newOSL != null) {
-                log.debug("deleting from storage...");
-                storageAdapter.delete(newOSL.getLocation());
-                profiler.checkpoint("storageAdapter.delete.ok");
-                log.debug("delete from storage: OK");
-                // obsolete tracker record no longer needed
-                locDAO.delete(newOSL.getID());
-                profiler.checkpoint("locDAO.delete.ok");
+                // committed: the reaper deletes from storage and removes the tracker record
+                reaper.submit(newOSL);
+                log.debug("submitted to reaper: " + newOSL.getLocation());
             }
             
             long dt = System.currentTimeMillis() - startTime;
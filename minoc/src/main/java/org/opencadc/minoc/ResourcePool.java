@@ -0,0 +1,159 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.minoc;
+
+import ca.nrc.cadc.util.MultiValuedProperties;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import org.opencadc.inventory.InventoryUtil;
+import org.opencadc.inventory.Namespace;
+import org.opencadc.inventory.db.ArtifactDAO;
+import org.opencadc.inventory.db.ObsoleteStorageLocationDAO;
+import org.opencadc.inventory.server.GrantCache;
+import org.opencadc.inventory.storage.StorageAdapter;
+import org.opencadc.permissions.TokenTool;
+
+/**
+ * Per-webapp resources shared by all requests. This is created once by MinocInitAction,
+ * bound in JNDI, and used by ArtifactAction to avoid re-creating the DAO (connectivity test),
+ * the StorageAdapter plugin (possibly with a remote login), and the TokenTool (public key 
+ * parsing) in every request. The GrantCache keeps permission check results across 
+ * requests. The ObsoleteStorageLocationReaper removes replaced and deleted objects from
+ * storage in the background; it is started and stopped by MinocInitAction. All contained
+ * objects are safe for concurrent use.
+ * 
+ * @author agent
+ */
+class ResourcePool {
+    private static final Logger log = Logger.getLogger(ResourcePool.class);
+
+    private final ArtifactDAO artifactDAO;
+    private final StorageAdapter storageAdapter;
+    private final TokenTool tokenTool;
+    private final GrantCache grantCache;
+    private final ObsoleteStorageLocationReaper reaper;
+    
+    ResourcePool(MultiValuedProperties props) {
+        Map<String, Object> daoConfig = MinocInitAction.getDaoConfig(props);
+        this.artifactDAO = new ArtifactDAO();
+        artifactDAO.setConfig(daoConfig); // connectivity tested
+        log.info("ResourcePool: ArtifactDAO OK");
+        
+        this.storageAdapter = InventoryUtil.loadPlugin(props.getFirstPropertyValue(MinocInitAction.SA_KEY));
+        List<Namespace> rec = MinocInitAction.getRecoverableNamespaces(props);
+        for (Namespace ns : rec) {
+            log.info("ResourcePool: recoverableNamespace = " + ns.getNamespace());
+        }
+        storageAdapter.setRecoverableNamespaces(rec);
+        log.info("ResourcePool: " + storageAdapter.getClass().getName() + " OK");
+        
+        String pubkeyFileName = props.getFirstPropertyValue(MinocInitAction.PUBKEYFILE_KEY);
+        if (pubkeyFileName != null) {
+            File publicKey = new File(System.getProperty("user.home") + "/config/" + pubkeyFileName);
+            this.tokenTool = new TokenTool(publicKey);
+            log.info("ResourcePool: TokenTool " + publicKey.getName() + " OK");
+        } else {
+            this.tokenTool = null; // no pre-auth
+        }
+        
+        this.grantCache = GrantCache.getInstance(props, MinocInitAction.MINOC_KEY);
+        log.info("ResourcePool: GrantCache OK");
+        
+        this.reaper = new ObsoleteStorageLocationReaper(new ObsoleteStorageLocationDAO(artifactDAO), storageAdapter,
+                ObsoleteStorageLocationReaper.DEFAULT_BATCH_SIZE, ObsoleteStorageLocationReaper.DEFAULT_SWEEP_INTERVAL);
+        log.info("ResourcePool: ObsoleteStorageLocationReaper OK");
+    }
+    
+    ArtifactDAO getArtifactDAO() {
+        return artifactDAO;
+    }
+    
+    StorageAdapter getStorageAdapter() {
+        return storageAdapter;
+    }
+    
+    /**
+     * @return TokenTool to validate pre-auth tokens or null if not configured
+     */
+    TokenTool getTokenTool() {
+        return tokenTool;
+    }
+    
+    GrantCache getGrantCache() {
+        return grantCache;
+    }
+    
+    ObsoleteStorageLocationReaper getReaper() {
+        return reaper;
+    }
+}
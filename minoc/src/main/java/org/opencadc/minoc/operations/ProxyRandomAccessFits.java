@@ -68,11 +68,10 @@
 package org.opencadc.minoc.operations;
 
 import java.io.ByteArrayOutputStream;
-import java.io.FileDescriptor;
 import java.io.IOException;
-import java.nio.channels.FileChannel;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import nom.tam.util.RandomAccessDataObject;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.StorageLocation;
@@ -81,30 +80,66 @@ import org.opencadc.inventory.storage.StorageAdapter;
 
 /**
  * This class supports random read-only access to FITS files using the
- * nom-tam FITS library.
+ * nom-tam FITS library. Bytes are read from the storage adapter in aligned blocks
+ * and kept in a small LRU cache so the many small reads made while parsing headers 
+ * and extracting cutouts turn into a few larger byte range requests. When misses are 
+ * sequential, additional blocks are read ahead (doubling up to a limit).
  * 
  * @author pdowler
  */
 public class ProxyRandomAccessFits implements RandomAccessDataObject {
     private static final Logger log = Logger.getLogger(ProxyRandomAccessFits.class);
 
+    static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    static final int DEFAULT_MAX_BLOCKS = 64;
+    static final int DEFAULT_MAX_READ_AHEAD = 16;
+    
     private final StorageAdapter adapter;
     private final StorageLocation sloc;
     private final long contentLength;
     
+    private final int blockSize;
+    private final int maxReadAhead;
+    private final Map<Long,byte[]> cache;
+    
     private long curpos = 0L;
     private long markpos = -1L;
     
+    // read-ahead state
+    private long nextBlock = -1L;
+    private int readAhead = 0;
+    
+    // number of storage adapter requests
+    private int numRequests = 0;
     
     public ProxyRandomAccessFits(StorageAdapter adapter, StorageLocation sloc, long contentLength) {
+        this(adapter, sloc, contentLength, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_BLOCKS, DEFAULT_MAX_READ_AHEAD);
+    }
+    
+    ProxyRandomAccessFits(StorageAdapter adapter, StorageLocation sloc, long contentLength, 
+            int blockSize, int maxBlocks, int maxReadAhead) {
+        if (blockSize <= 0 || maxBlocks <= 0 || maxReadAhead < 0) {
+            throw new IllegalArgumentException("invalid cache config: blockSize=" + blockSize 
+                    + " maxBlocks=" + maxBlocks + " maxReadAhead=" + maxReadAhead);
+        }
         this.adapter = adapter;
         this.sloc = sloc;
         this.contentLength = contentLength;
+        this.blockSize = blockSize;
+        this.maxReadAhead = maxReadAhead;
+        this.cache = new LinkedHashMap<Long,byte[]>(2 * maxBlocks, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long,byte[]> eldest) {
+                return size() > maxBlocks;
+            }
+        };
     }
 
     @Override
     public void close() throws IOException {
         this.curpos = -1L;
+        cache.clear();
+        log.debug("close: " + sloc + " storage requests: " + numRequests);
     }
 
     @Override
@@ -125,9 +160,19 @@ public class ProxyRandomAccessFits implements RandomAccessDataObject {
         return curpos;
     }
 
+    // number of requests made to the storage adapter
+    int getNumRequests() {
+        return numRequests;
+    }
+    
     @Override
     public int read() throws IOException {
-        throw new UnsupportedOperationException();
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        if (n == -1) {
+            return -1;
+        }
+        return b[0] & 0xff;
     }
 
     @Override
@@ -140,27 +185,100 @@ public class ProxyRandomAccessFits implements RandomAccessDataObject {
         if (curpos == -1L) {
             throw new IOException("closed");
         }
-        try {
-            long avail = Math.min(len, contentLength - curpos); 
-            if (avail == 0) {
-                return -1;
+        long avail = Math.min(len, contentLength - curpos); 
+        if (avail <= 0) {
+            return -1;
+        }
+        int num = (int) avail;
+        long firstBlock = curpos / blockSize;
+        long lastBlock = (curpos + num - 1) / blockSize;
+        byte[][] blocks = getBlocks(firstBlock, lastBlock);
+        
+        int ret = 0;
+        while (ret < num) {
+            long pos = curpos + ret;
+            byte[] block = blocks[(int) (pos / blockSize - firstBlock)];
+            int boff = (int) (pos % blockSize);
+            int n = Math.min(num - ret, block.length - boff);
+            System.arraycopy(block, boff, bytes, off + ret, n);
+            ret += n;
+        }
+        curpos += ret;
+        //log.debug("ProxyRandomAccess.read(" + off + "," + len + " read " + ret + " (new curpos:" + curpos + ")");
+        return ret;
+    }
+    
+    // get the blocks from cache or storage: each run of missing blocks is one request
+    private byte[][] getBlocks(long firstBlock, long lastBlock) throws IOException {
+        byte[][] ret = new byte[(int) (lastBlock - firstBlock + 1)][];
+        long b = firstBlock;
+        while (b <= lastBlock) {
+            byte[] block = cache.get(b);
+            if (block != null) {
+                ret[(int) (b - firstBlock)] = block;
+                b++;
+                continue;
+            }
+            long end = b;
+            while (end < lastBlock && !cache.containsKey(end + 1)) {
+                end++;
+            }
+            
+            // adapt read-ahead: grow when misses are sequential, reset on random access
+            if (b == nextBlock) {
+                readAhead = Math.min(Math.max(1, 2 * readAhead), maxReadAhead);
+            } else {
+                readAhead = 0;
             }
-            ByteRange range = new ByteRange(curpos, avail);
-            ByteArrayOutputStream bos = new ByteArrayOutputStream(len);
+            long fetchEnd = end;
+            if (end == lastBlock) {
+                long maxBlock = (contentLength - 1) / blockSize;
+                long limit = Math.min(end + readAhead, maxBlock);
+                while (fetchEnd < limit && !cache.containsKey(fetchEnd + 1)) {
+                    fetchEnd++;
+                }
+            }
+            
+            byte[][] fetched = fetchBlocks(b, fetchEnd);
+            for (int i = 0; i < fetched.length; i++) {
+                long fb = b + i;
+                cache.put(fb, fetched[i]);
+                if (fb <= end) {
+                    ret[(int) (fb - firstBlock)] = fetched[i];
+                }
+            }
+            nextBlock = fetchEnd + 1;
+            b = end + 1;
+        }
+        return ret;
+    }
+    
+    private byte[][] fetchBlocks(long firstBlock, long lastBlock) throws IOException {
+        long start = firstBlock * blockSize;
+        long end = Math.min((lastBlock + 1) * blockSize, contentLength);
+        ByteRange range = new ByteRange(start, end - start);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream((int) range.getLength());
+        try {
+            numRequests++;
+            log.debug("fetch: " + sloc + " " + range);
             adapter.get(sloc, bos, range);
-            byte[] result = bos.toByteArray();
-
-            int ret = bos.size();
-            System.arraycopy(result, 0, bytes, off, ret);
-            curpos += ret;
-            //log.debug("ProxyRandomAccess.read(" + off + "," + len + " read " + ret + " (new curpos:" + curpos + ")");
-            return ret;
         } catch (UnsupportedOperationException ex) {
             // storage adapter doesn't support byte ranges
             throw ex;
         } catch (Exception ex) {
             throw new IOException("read failed", ex);
         }
+        if (bos.size() != range.getLength()) {
+            throw new IOException("read failed: " + range + " returned " + bos.size() + " bytes");
+        }
+        byte[] result = bos.toByteArray();
+        byte[][] ret = new byte[(int) (lastBlock - firstBlock + 1)][];
+        for (int i = 0; i < ret.length; i++) {
+            int boff = i * blockSize;
+            int blen = Math.min(blockSize, result.length - boff);
+            ret[i] = Arrays.copyOfRange(result, boff, boff + blen);
+        }
+        return ret;
     }
 
     @Override
@@ -70,8 +70,12 @@ package org.opencadc.minoc;
 import ca.nrc.cadc.net.RangeNotSatisfiableException;
 import ca.nrc.cadc.rest.SyncInput;
 import ca.nrc.cadc.util.Log4jInit;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.SortedSet;
+import java.util.TreeSet;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
@@ -132,7 +136,6 @@ public class GetActionTest {
         assertIgnoredRange("nobyteunit=2-4", 10);
         assertIgnoredRange("bytes 2-4", 10);
         assertIgnoredRange("2 - 4", 10);
-        assertIgnoredRange("bytes=2-4,6-8", 10);
         assertIgnoredRange("bytes=9-7", 10);
         assertIgnoredRange("bytes=2:4", 10);
 
@@ -143,4 +146,101 @@ public class GetActionTest {
             action.parseRange("bytes=30-", 20); });
     }
     
+    @Test
+    public void testParseMultipleRanges() throws Exception {
+        GetAction action = new GetAction(false);
+        
+        SortedSet<ByteRange> ranges = action.parseRange("bytes=2-4,6-8", 10);
+        Assert.assertEquals(2, ranges.size());
+        Assert.assertEquals(new ByteRange(2, 3), ranges.first());
+        Assert.assertEquals(new ByteRange(6, 3), ranges.last());
+        
+        // sorted
+        ranges = action.parseRange("bytes=60-69, 0-9, 30-39", 100);
+        Assert.assertEquals(3, ranges.size());
+        Assert.assertEquals(new ByteRange(0, 10), ranges.first());
+        Assert.assertEquals(new ByteRange(60, 10), ranges.last());
+        
+        // overlapping and adjacent are coalesced
+        ranges = action.parseRange("bytes=0-9,5-19", 100);
+        Assert.assertEquals(1, ranges.size());
+        Assert.assertEquals(new ByteRange(0, 20), ranges.first());
+        ranges = action.parseRange("bytes=0-9,10-19,40-49", 100);
+        Assert.assertEquals(2, ranges.size());
+        Assert.assertEquals(new ByteRange(0, 20), ranges.first());
+        Assert.assertEquals(new ByteRange(40, 10), ranges.last());
+        
+        // unsatisfiable dropped
+        ranges = action.parseRange("bytes=2-4,30-40", 20);
+        Assert.assertEquals(1, ranges.size());
+        Assert.assertEquals(new ByteRange(2, 3), ranges.first());
+        Assert.assertThrows(RangeNotSatisfiableException.class, () -> {
+            action.parseRange("bytes=30-,40-50", 20); });
+        
+        // any invalid interval: ignore the header
+        assertIgnoredRange("bytes=2-4,8-6", 10);
+        assertIgnoredRange("bytes=2-4,x-6", 10);
+        assertIgnoredRange("bytes=2-4,,6-8", 10);
+        
+        // too many intervals
+        StringBuilder sb = new StringBuilder("bytes=");
+        for (int i = 0; i <= GetAction.MAX_RANGES; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(2 * i).append("-").append(2 * i);
+        }
+        assertIgnoredRange(sb.toString(), 1000);
+    }
+    
+    @Test
+    public void testMultipartByteRangesOutputStream() throws Exception {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        SortedSet<ByteRange> ranges = new TreeSet<>();
+        ranges.add(new ByteRange(10, 5));
+        ranges.add(new ByteRange(50, 20));
+        
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        MultipartByteRangesOutputStream mpos = new MultipartByteRangesOutputStream(bos, "BOUNDARY", 
+                "application/fits", ranges, data.length);
+        Assert.assertEquals("multipart/byteranges; boundary=BOUNDARY", mpos.getContentType());
+        
+        // write range content in arbitrary chunks
+        mpos.write(data, 10, 3);
+        Assert.assertFalse(mpos.isComplete());
+        mpos.write(data, 13, 2);
+        mpos.write(data[50]);
+        mpos.write(data, 51, 19);
+        Assert.assertTrue(mpos.isComplete());
+        mpos.finish();
+        
+        byte[] actual = bos.toByteArray();
+        Assert.assertEquals(mpos.getContentLength(), actual.length);
+        
+        String body = new String(actual, StandardCharsets.ISO_8859_1);
+        log.info("multipart body:\n" + body);
+        Assert.assertTrue(body.startsWith("--BOUNDARY\r\n"));
+        Assert.assertTrue(body.contains("Content-Type: application/fits\r\n"));
+        Assert.assertTrue(body.contains("Content-Range: bytes 10-14/100\r\n\r\n"));
+        Assert.assertTrue(body.contains("\r\n--BOUNDARY\r\n"));
+        Assert.assertTrue(body.contains("Content-Range: bytes 50-69/100\r\n\r\n"));
+        Assert.assertTrue(body.endsWith("\r\n--BOUNDARY--\r\n"));
+        
+        String part1 = new String(Arrays.copyOfRange(data, 10, 15), StandardCharsets.ISO_8859_1);
+        String part2 = new String(Arrays.copyOfRange(data, 50, 70), StandardCharsets.ISO_8859_1);
+        Assert.assertTrue(body.contains("\r\n\r\n" + part1 + "\r\n--BOUNDARY"));
+        Assert.assertTrue(body.contains("\r\n\r\n" + part2 + "\r\n--BOUNDARY--"));
+        
+        // content beyond last range
+        try {
+            mpos.write(data[0]);
+            Assert.fail("expected IOException");
+        } catch (IOException expected) {
+            log.info("caught expected: " + expected);
+        }
+    }
+    
 }
\ No newline at end of file
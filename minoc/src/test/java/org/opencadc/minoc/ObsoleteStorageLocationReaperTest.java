@@ -0,0 +1,393 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.minoc;
+
+import ca.nrc.cadc.net.ResourceNotFoundException;
+import ca.nrc.cadc.net.TransientException;
+import ca.nrc.cadc.util.Log4jInit;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.inventory.InventoryUtil;
+import org.opencadc.inventory.ObsoleteStorageLocation;
+import org.opencadc.inventory.StorageLocation;
+import org.opencadc.inventory.db.ObsoleteStorageLocationDAO;
+import org.opencadc.inventory.storage.NewArtifact;
+import org.opencadc.inventory.storage.StorageEngageException;
+import org.opencadc.inventory.storage.StorageMetadata;
+import org.opencadc.inventory.storage.fs.OpaqueFileSystemStorageAdapter;
+
+/**
+ *
+ * @author agent
+ */
+public class ObsoleteStorageLocationReaperTest {
+    private static final Logger log = Logger.getLogger(ObsoleteStorageLocationReaperTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.minoc", Level.INFO);
+    }
+    
+    private final OpaqueFileSystemStorageAdapter adapter;
+    
+    public ObsoleteStorageLocationReaperTest() throws Exception {
+        File root = new File("build/tmp/reaper-unit-tests");
+        root.mkdirs();
+        this.adapter = new OpaqueFileSystemStorageAdapter(root, 1);
+    }
+    
+    // in-memory table so the test does not need a database
+    private static class TestDAO extends ObsoleteStorageLocationDAO {
+        final Map<UUID, ObsoleteStorageLocation> rows = new TreeMap<>();
+        final Comparator<ObsoleteStorageLocation> order = Comparator
+                .comparing(ObsoleteStorageLocation::getLastModified)
+                .thenComparing(ObsoleteStorageLocation::getID);
+        long nextTimestamp = System.currentTimeMillis();
+        int numList = 0;
+        
+        @Override
+        public synchronized ObsoleteStorageLocation get(UUID id) {
+            return rows.get(id);
+        }
+
+        @Override
+        public synchronized List<ObsoleteStorageLocation> list(int maxRecords, ObsoleteStorageLocation after) {
+            numList++;
+            List<ObsoleteStorageLocation> sorted = new ArrayList<>(rows.values());
+            sorted.sort(order);
+            List<ObsoleteStorageLocation> ret = new ArrayList<>();
+            Iterator<ObsoleteStorageLocation> i = sorted.iterator();
+            while (i.hasNext() && ret.size() < maxRecords) {
+                ObsoleteStorageLocation o = i.next();
+                if (after == null || order.compare(o, after) > 0) {
+                    ret.add(o);
+                }
+            }
+            return ret;
+        }
+
+        @Override
+        public synchronized void delete(UUID id) {
+            rows.remove(id);
+        }
+        
+        synchronized void add(ObsoleteStorageLocation osl) {
+            // distinct timestamps in insert order, like the database
+            InventoryUtil.assignLastModified(osl, new Date(nextTimestamp++));
+            rows.put(osl.getID(), osl);
+        }
+        
+        synchronized int size() {
+            return rows.size();
+        }
+        
+        synchronized int getListCount() {
+            return numList;
+        }
+    }
+    
+    private StorageLocation store(String data) throws Exception {
+        NewArtifact na = new NewArtifact(URI.create("cadc:TEST/reaper-" + UUID.randomUUID()));
+        StorageMetadata sm = adapter.put(na, new ByteArrayInputStream(data.getBytes()), null);
+        return sm.getStorageLocation();
+    }
+    
+    private boolean exists(StorageLocation loc) throws Exception {
+        Iterator<StorageMetadata> i = adapter.iterator(loc.storageBucket);
+        while (i.hasNext()) {
+            if (loc.equals(i.next().getStorageLocation())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void waitForEmpty(TestDAO dao) throws Exception {
+        long timeout = System.currentTimeMillis() + 10000L;
+        while (dao.size() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(20L);
+        }
+    }
+    
+    @Test
+    public void testReap() {
+        try {
+            TestDAO dao = new TestDAO();
+            ObsoleteStorageLocationReaper reaper = new ObsoleteStorageLocationReaper(dao, adapter, 2, 600 * 1000L);
+            
+            List<ObsoleteStorageLocation> osls = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                StorageLocation loc = store("obsolete content " + i);
+                Assert.assertTrue(exists(loc));
+                ObsoleteStorageLocation osl = new ObsoleteStorageLocation(loc);
+                dao.add(osl);
+                osls.add(osl);
+            }
+            // already gone from storage
+            StorageLocation goneLoc = new StorageLocation(URI.create("uuid:" + UUID.randomUUID()));
+            goneLoc.storageBucket = "0";
+            ObsoleteStorageLocation gone = new ObsoleteStorageLocation(goneLoc);
+            dao.add(gone);
+            osls.add(gone);
+            
+            int num = reaper.reap(osls);
+            Assert.assertEquals(osls.size(), num);
+            Assert.assertEquals(0, dao.size());
+            for (ObsoleteStorageLocation osl : osls) {
+                Assert.assertFalse(exists(osl.getLocation()));
+            }
+            
+            // no longer in database: skipped
+            num = reaper.reap(osls);
+            Assert.assertEquals(0, num);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testSubmit() {
+        ObsoleteStorageLocationReaper reaper = null;
+        try {
+            TestDAO dao = new TestDAO();
+            // long sweep interval: only the startup sweep and submitted hints are processed
+            reaper = new ObsoleteStorageLocationReaper(dao, adapter, 10, 600 * 1000L);
+            reaper.start();
+            Thread.sleep(100L); // startup sweep of empty table
+            
+            List<ObsoleteStorageLocation> osls = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                osls.add(new ObsoleteStorageLocation(store("replaced content " + i)));
+            }
+            long t = System.currentTimeMillis();
+            for (ObsoleteStorageLocation osl : osls) {
+                dao.add(osl);
+                reaper.submit(osl);
+            }
+            long dt = System.currentTimeMillis() - t;
+            log.info("submit: " + osls.size() + " " + dt + "ms");
+            
+            waitForEmpty(dao);
+            Assert.assertEquals(0, dao.size());
+            for (ObsoleteStorageLocation osl : osls) {
+                Assert.assertFalse(exists(osl.getLocation()));
+            }
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        } finally {
+            if (reaper != null) {
+                reaper.stop();
+            }
+        }
+    }
+    
+    @Test
+    public void testSweep() {
+        ObsoleteStorageLocationReaper reaper = null;
+        try {
+            // left behind by a previous instance: found by the startup sweep in batches
+            TestDAO dao = new TestDAO();
+            List<ObsoleteStorageLocation> osls = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                ObsoleteStorageLocation osl = new ObsoleteStorageLocation(store("leftover content " + i));
+                dao.add(osl);
+                osls.add(osl);
+            }
+            
+            reaper = new ObsoleteStorageLocationReaper(dao, adapter, 2, 600 * 1000L);
+            reaper.start();
+            
+            waitForEmpty(dao);
+            Assert.assertEquals(0, dao.size());
+            Assert.assertEquals(0, reaper.getPendingCount());
+            for (ObsoleteStorageLocation osl : osls) {
+                Assert.assertFalse(exists(osl.getLocation()));
+            }
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        } finally {
+            if (reaper != null) {
+                reaper.stop();
+            }
+        }
+    }
+    
+    @Test
+    public void testSweepFailedDelete() {
+        ObsoleteStorageLocationReaper reaper = null;
+        try {
+            File root = new File("build/tmp/reaper-unit-tests");
+            OpaqueFileSystemStorageAdapter failing = new OpaqueFileSystemStorageAdapter(root, 1) {
+                @Override
+                public void delete(StorageLocation loc) throws TransientException {
+                    throw new TransientException("simulated storage failure");
+                }
+            };
+            TestDAO dao = new TestDAO();
+            for (int i = 0; i < 5; i++) {
+                dao.add(new ObsoleteStorageLocation(store("undeletable content " + i)));
+            }
+            
+            // full batches that cannot be deleted: the sweep must back off instead of spinning
+            reaper = new ObsoleteStorageLocationReaper(dao, failing, 2, 600 * 1000L);
+            reaper.start();
+            Thread.sleep(500L);
+            
+            Assert.assertEquals(5, dao.size());
+            log.info("list calls: " + dao.getListCount());
+            // one pass over the table: ceil(5/2) pages
+            Assert.assertTrue("list calls: " + dao.getListCount(), dao.getListCount() <= 3);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        } finally {
+            if (reaper != null) {
+                reaper.stop();
+            }
+        }
+    }
+    
+    @Test
+    public void testSweepPastFailedDeletes() {
+        ObsoleteStorageLocationReaper reaper = null;
+        try {
+            final Set<StorageLocation> undeletable = new HashSet<>();
+            File root = new File("build/tmp/reaper-unit-tests");
+            OpaqueFileSystemStorageAdapter failing = new OpaqueFileSystemStorageAdapter(root, 1) {
+                @Override
+                public void delete(StorageLocation loc) 
+                        throws ResourceNotFoundException, IOException, InterruptedException, 
+                            StorageEngageException, TransientException {
+                    if (undeletable.contains(loc)) {
+                        throw new TransientException("simulated storage failure");
+                    }
+                    super.delete(loc);
+                }
+            };
+            
+            // more persistent failures than batchSize before the locations that can be deleted
+            final int batchSize = 2;
+            TestDAO dao = new TestDAO();
+            for (int i = 0; i < 3 * batchSize; i++) {
+                ObsoleteStorageLocation osl = new ObsoleteStorageLocation(store("undeletable content " + i));
+                undeletable.add(osl.getLocation());
+                dao.add(osl);
+            }
+            List<ObsoleteStorageLocation> osls = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                ObsoleteStorageLocation osl = new ObsoleteStorageLocation(store("leftover content " + i));
+                dao.add(osl);
+                osls.add(osl);
+            }
+            
+            reaper = new ObsoleteStorageLocationReaper(dao, failing, batchSize, 600 * 1000L);
+            reaper.start();
+            
+            long timeout = System.currentTimeMillis() + 10000L;
+            while (dao.size() > undeletable.size() && System.currentTimeMillis() < timeout) {
+                Thread.sleep(20L);
+            }
+            Assert.assertEquals(undeletable.size(), dao.size());
+            for (ObsoleteStorageLocation osl : osls) {
+                Assert.assertFalse(exists(osl.getLocation()));
+            }
+            Thread.sleep(200L);
+            log.info("list calls: " + dao.getListCount());
+            // one pass over the table: 5 pages including the last partial one
+            Assert.assertTrue("list calls: " + dao.getListCount(), dao.getListCount() <= 5);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        } finally {
+            if (reaper != null) {
+                reaper.stop();
+            }
+        }
+    }
+}
@@ -70,10 +70,20 @@ package org.opencadc.minoc.operations;
 import ca.nrc.cadc.util.FileUtil;
 import ca.nrc.cadc.util.Log4jInit;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 
 import nom.tam.fits.Header;
 import nom.tam.fits.HeaderCard;
@@ -87,6 +97,8 @@ import org.opencadc.inventory.storage.NewArtifact;
 import org.opencadc.inventory.storage.StorageAdapter;
 import org.opencadc.inventory.storage.StorageMetadata;
 import org.opencadc.inventory.storage.fs.OpaqueFileSystemStorageAdapter;
+import org.opencadc.soda.SodaParamValidator;
+import org.opencadc.soda.server.Cutout;
 
 /**
  * Test ProxyRandomAccessFits wrapper using filesystem storage adapter for the back end.
@@ -176,4 +188,132 @@ public class ProxyRandomAccessFitsTest {
             Assert.fail("unexpected exception: " + unexpected);
         }
     }
+    @Test
+    public void testRandomReads() {
+        try {
+            File testFile = FileUtil.getFileFromResource("sample-mef.fits", ProxyRandomAccessFitsTest.class);
+            byte[] expected = Files.readAllBytes(testFile.toPath());
+            CountingAdapter ca = new CountingAdapter(new OpaqueFileSystemStorageAdapter(getRootDir(), 1));
+            StorageMetadata sm = putTestFile(ca.getAdapter(), testFile);
+            
+            // small blocks and cache to exercise eviction and read-ahead
+            ProxyRandomAccessFits in = new ProxyRandomAccessFits(ca.getAdapter(), sm.getStorageLocation(), 
+                    testFile.length(), 1000, 4, 4);
+            Random rnd = new Random(1234L);
+            for (int i = 0; i < 200; i++) {
+                long pos = (long) rnd.nextInt(expected.length);
+                int len = 1 + rnd.nextInt(5000);
+                in.seek(pos);
+                byte[] buf = new byte[len];
+                int num = in.read(buf, 0, len);
+                Assert.assertEquals(Math.min(len, expected.length - pos), num);
+                for (int j = 0; j < num; j++) {
+                    Assert.assertEquals("byte at " + (pos + j), expected[(int) pos + j], buf[j]);
+                }
+            }
+            
+            // sequential single byte reads
+            in.seek(0L);
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals(expected[i] & 0xff, in.read());
+            }
+            Assert.assertEquals(-1, in.read());
+            Assert.assertEquals(ca.getNumGets(), in.getNumRequests());
+            in.close();
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    @Test
+    public void testCutoutRequests() {
+        try {
+            File testFile = FileUtil.getFileFromResource("sample-mef.fits", ProxyRandomAccessFitsTest.class);
+            CountingAdapter ca = new CountingAdapter(new OpaqueFileSystemStorageAdapter(getRootDir(), 1));
+            StorageMetadata sm = putTestFile(ca.getAdapter(), testFile);
+            
+            final Map<String, List<String>> params = new TreeMap<>();
+            params.put(SodaParamValidator.SUB, Arrays.asList("[2][10:60,20:80]", "[3][*,1:10]"));
+            final Cutout cutout = new Cutout();
+            cutout.pixelCutouts = new SodaParamValidator().validateSUB(params);
+            
+            // one FITS block at a time with no reuse: approximately one request per read
+            ProxyRandomAccessFits in = new ProxyRandomAccessFits(ca.getAdapter(), sm.getStorageLocation(), 
+                    testFile.length(), 2880, 1, 0);
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            new FitsOperations(in).cutoutToStream(cutout, expected);
+            final int uncachedRequests = ca.getNumGets();
+            
+            ca.reset();
+            in = new ProxyRandomAccessFits(ca.getAdapter(), sm.getStorageLocation(), testFile.length());
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            new FitsOperations(in).cutoutToStream(cutout, actual);
+            final int cachedRequests = ca.getNumGets();
+            log.info("cutout storage requests: uncached=" + uncachedRequests + " cached=" + cachedRequests);
+            
+            Assert.assertTrue(expected.size() > 0);
+            Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+            Assert.assertEquals(cachedRequests, in.getNumRequests());
+            Assert.assertTrue("fewer requests", cachedRequests < uncachedRequests);
+            // default block size: sample file is at most 4 blocks
+            Assert.assertTrue("at most one request per block", cachedRequests <= 4);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+    
+    private File getRootDir() {
+        File rootDir = new File("build/tmp/saroot");
+        if (!rootDir.exists()) {
+            rootDir.mkdirs();
+        }
+        return rootDir;
+    }
+    
+    private StorageMetadata putTestFile(StorageAdapter sa, File testFile) throws Exception {
+        NewArtifact na = new NewArtifact(URI.create("cadc:TEST/" + testFile.getName()));
+        na.contentLength = testFile.length();
+        try (FileInputStream fis = new FileInputStream(testFile)) {
+            return sa.put(na, fis, null);
+        }
+    }
+    
+    // count calls to StorageAdapter get methods
+    private static class CountingAdapter implements InvocationHandler {
+        private final StorageAdapter impl;
+        private final StorageAdapter proxy;
+        private int numGets = 0;
+        
+        CountingAdapter(StorageAdapter impl) {
+            this.impl = impl;
+            this.proxy = (StorageAdapter) Proxy.newProxyInstance(StorageAdapter.class.getClassLoader(), 
+                    new Class[] { StorageAdapter.class }, this);
+        }
+        
+        StorageAdapter getAdapter() {
+            return proxy;
+        }
+        
+        int getNumGets() {
+            return numGets;
+        }
+        
+        void reset() {
+            numGets = 0;
+        }
+        
+        @Override
+        public Object invoke(Object o, Method method, Object[] args) throws Throwable {
+            if ("get".equals(method.getName())) {
+                numGets++;
+            }
+            try {
+                return method.invoke(impl, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
 }
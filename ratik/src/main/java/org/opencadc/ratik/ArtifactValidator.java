@@ -71,13 +71,18 @@ package org.opencadc.ratik;
 
 import ca.nrc.cadc.date.DateUtil;
 import ca.nrc.cadc.db.TransactionManager;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.net.ResourceNotFoundException;
 import ca.nrc.cadc.net.TransientException;
 import java.io.IOException;
 import java.net.URI;
 import java.text.DateFormat;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.Artifact;
@@ -113,6 +118,15 @@ public class ArtifactValidator {
     private final TransactionManager transactionManager;
     
     private final DateFormat df = DateUtil.getDateFormat(DateUtil.IVOA_DATE_FORMAT, DateUtil.UTC);
+    
+    // max number of ids in a single remote prefetch query
+    static final int PREFETCH_BATCH_SIZE = 100;
+    
+    // remote lookups from the most recent prefetch: an id in prefetchedIDs without
+    // an entry in the map was not found in the remote
+    private final Set<UUID> prefetchedIDs = new HashSet<>();
+    private final Map<UUID, DeletedArtifactEvent> remoteDeletedArtifactEvents = new HashMap<>();
+    private final Map<UUID, ArtifactQueryResult> remoteArtifactQueryResults = new HashMap<>();
 
     /**
      * Constructor
@@ -130,6 +144,16 @@ public class ArtifactValidator {
         this.deletedArtifactEventDAO = new DeletedArtifactEventDAO(this.artifactDAO);
         this.deletedStorageLocationEventDAO = new DeletedStorageLocationEventDAO(this.artifactDAO);
     }
+    
+    // Package access constructor for unit testing.
+    ArtifactValidator(URI resourceID, ArtifactSelector artifactSelector) {
+        this.artifactDAO = null;
+        this.resourceID = resourceID;
+        this.artifactSelector = artifactSelector;
+        this.transactionManager = null;
+        this.deletedArtifactEventDAO = null;
+        this.deletedStorageLocationEventDAO = null;
+    }
 
     /**
      * Must be called before validate(...).
@@ -145,6 +169,66 @@ public class ArtifactValidator {
         this.remoteSite = remoteSite;
     }
     
+    /**
+     * Prefetch the remote state needed to validate local artifacts that were not found 
+     * in the remote query. This replaces the results of any previous prefetch and uses one 
+     * remote query per PREFETCH_BATCH_SIZE ids (per table) instead of one query per artifact 
+     * during validate(...). Artifacts that were not included in the most recent prefetch 
+     * are still looked up individually.
+     * 
+     * @param ids local artifact IDs that are about to be validated
+     * @throws InterruptedException         Thread interrupted.
+     * @throws IOException                  For unreadable configuration files.
+     * @throws ResourceNotFoundException    For any missing required configuration that is missing.
+     * @throws TransientException           Temporary failure of TAP service: same call could work in future.
+     */
+    public void prefetchRemote(List<UUID> ids)
+        throws InterruptedException, IOException, ResourceNotFoundException, TransientException {
+        prefetchedIDs.clear();
+        remoteDeletedArtifactEvents.clear();
+        remoteArtifactQueryResults.clear();
+        
+        for (int i = 0; i < ids.size(); i += PREFETCH_BATCH_SIZE) {
+            List<UUID> batch = ids.subList(i, Math.min(i + PREFETCH_BATCH_SIZE, ids.size()));
+            String idList = toIdList(batch);
+            
+            String query = String.format("%s WHERE id IN (%s)", DeletedArtifactEventRowMapper.BASE_QUERY, idList);
+            try (ResourceIterator<DeletedArtifactEvent> iter = queryRemote(query, new DeletedArtifactEventRowMapper())) {
+                while (iter.hasNext()) {
+                    DeletedArtifactEvent dae = iter.next();
+                    remoteDeletedArtifactEvents.put(dae.getID(), dae);
+                }
+            }
+            
+            if (this.artifactSelector.getConstraint() != null) {
+                // only used to check explanation0 in validateLocal
+                query = String.format("%s, num_copies() %s WHERE id IN (%s)", 
+                    ArtifactRowMapper.SELECT, ArtifactRowMapper.FROM, idList);
+                try (ResourceIterator<ArtifactQueryResult> iter = queryRemote(query, new ArtifactQueryResultRowMapper())) {
+                    while (iter.hasNext()) {
+                        ArtifactQueryResult aqr = iter.next();
+                        remoteArtifactQueryResults.put(aqr.artifact.getID(), aqr);
+                    }
+                }
+            }
+            prefetchedIDs.addAll(batch);
+        }
+        log.debug("prefetchRemote: ids=" + prefetchedIDs.size() 
+            + " DeletedArtifactEvent=" + remoteDeletedArtifactEvents.size()
+            + " Artifact=" + remoteArtifactQueryResults.size());
+    }
+    
+    private String toIdList(List<UUID> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (UUID id : ids) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append("'").append(id).append("'");
+        }
+        return sb.toString();
+    }
+    
     /**
      * Validate the local and remote Artifacts.
      *
@@ -700,6 +784,9 @@ public class ArtifactValidator {
      */
     ArtifactQueryResult getRemoteArtifactQueryResult(UUID id)
         throws InterruptedException, IOException, ResourceNotFoundException, TransientException {
+        if (prefetchedIDs.contains(id)) {
+            return remoteArtifactQueryResults.get(id);
+        }
 
         final TapClient<ArtifactQueryResult> tapClient = new TapClient<>(this.resourceID);
         final String query = String.format("%s, num_copies() %s WHERE id = '%s'",  ArtifactRowMapper.SELECT,  ArtifactRowMapper.FROM, id);
@@ -717,6 +804,9 @@ public class ArtifactValidator {
 
     DeletedArtifactEvent getRemoteDeletedArtifactEvent(UUID id)
         throws InterruptedException, IOException, ResourceNotFoundException, TransientException {
+        if (prefetchedIDs.contains(id)) {
+            return remoteDeletedArtifactEvents.get(id);
+        }
 
         final TapClient<DeletedArtifactEvent> tapClient = new TapClient<>(this.resourceID);
         final String query = String.format("%s WHERE id = '%s'", DeletedArtifactEventRowMapper.BASE_QUERY, id);
@@ -732,27 +822,22 @@ public class ArtifactValidator {
         }
     }
 
-    /*
-    // no longer used in validateLocal(Artifact)
-    DeletedStorageLocationEvent getRemoteDeletedStorageLocationEvent(UUID id)
+    /**
+     * Execute a multi-row remote query. Useful for overriding in tests.
+     */
+    <T> ResourceIterator<T> queryRemote(String query, TapRowMapper<T> mapper)
         throws InterruptedException, IOException, ResourceNotFoundException, TransientException {
-
-        final TapClient<DeletedStorageLocationEvent> tapClient = new TapClient<>(this.resourceID);
-        final String query = String.format("%s WHERE id = '%s'", DeletedStorageLocationEventRowMapper.BASE_QUERY, id);
+        final TapClient<T> tapClient = new TapClient<>(this.resourceID);
         log.debug("\nExecuting query '" + query + "'\n");
-        DeletedStorageLocationEventRowMapper mapper = new DeletedStorageLocationEventRowMapper();
-        
-        int n = 0;
         try {
-            return tapClient.queryForObject(query, mapper);
+            return tapClient.query(query, mapper);
         } catch (TransientException ex) {
-            log.error("failed getRemote DeletedStorageLocationEvent.id=" + id + " retryIn=2sec cause=" + ex);
+            log.error("failed remote prefetch query retryIn=2sec cause=" + ex);
             Thread.sleep(2000L);
-            return tapClient.queryForObject(query, mapper);
+            return tapClient.query(query, mapper);
         }
     }
-    */
-    
+
     private void logNoAction(Artifact artifact, String message) {
         log.info(String.format("no action %s %s, reason: %s", artifact.getID(), artifact.getURI(), message));
     }
@@ -90,11 +90,18 @@ import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.naming.NamingException;
 import javax.security.auth.Subject;
@@ -105,6 +112,7 @@ import org.opencadc.inventory.Artifact;
 import org.opencadc.inventory.InventoryUtil;
 import org.opencadc.inventory.StorageSite;
 import org.opencadc.inventory.db.ArtifactDAO;
+import org.opencadc.inventory.db.BucketDigest;
 import org.opencadc.inventory.db.StorageSiteDAO;
 import org.opencadc.inventory.db.version.InitDatabase;
 import org.opencadc.inventory.query.ArtifactRowMapper;
@@ -120,16 +128,28 @@ public class InventoryValidator implements Runnable {
 
     public static final String CERTIFICATE_FILE_LOCATION = System.getProperty("user.home") + "/.ssl/cadcproxy.pem";
 
+    // number of times a bucket is attempted before it is counted as failed
+    static final int MAX_BUCKET_ATTEMPTS = 3;
+
     private final ArtifactDAO artifactDAO;
+    private final ArtifactDAO txnDAO;
     private final URI resourceID;
     
     private final boolean trackSiteLocations;
     private final ArtifactSelector artifactSelector;
     private final BucketSelector bucketSelector;
-    private final ArtifactValidator artifactValidator;
-    private final MessageDigest messageDigest;
+    private final int nthreads;
+
+    // ArtifactValidator is not thread safe: one per worker thread
+    private final ThreadLocal<ArtifactValidator> artifactValidator = new ThreadLocal<ArtifactValidator>() {
+        @Override
+        protected ArtifactValidator initialValue() {
+            return createArtifactValidator();
+        }
+    };
 
     private boolean enableRowCounterFeature = false;
+    private boolean enableBucketDigestFeature = false;
     private StorageSite remoteSite;
     
     // package access so tests can reduce this
@@ -145,6 +165,7 @@ public class InventoryValidator implements Runnable {
     
     private int numValidBuckets = 0;
     private int numFailedBuckets = 0;
+    private int numSkippedBuckets = 0;
     
     /**
      * Constructor.
@@ -159,24 +180,57 @@ public class InventoryValidator implements Runnable {
     public InventoryValidator(ConnectionConfig connectionConfig, Map<String, Object> daoConfig, 
             URI resourceID, ArtifactSelector artifactSelector,
             BucketSelector bucketSelector, boolean trackSiteLocations) {
+        this(connectionConfig, daoConfig, resourceID, artifactSelector, bucketSelector, trackSiteLocations, 1);
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param connectionConfig   database connection config
+     * @param daoConfig          config map to pass to cadc-inventory-db DAO classes
+     * @param resourceID         identifier for the remote query service
+     * @param artifactSelector   artifact selector implementation
+     * @param bucketSelector     uri buckets
+     * @param trackSiteLocations local site type
+     * @param nthreads           number of buckets to validate concurrently
+     */
+    public InventoryValidator(ConnectionConfig connectionConfig, Map<String, Object> daoConfig, 
+            URI resourceID, ArtifactSelector artifactSelector,
+            BucketSelector bucketSelector, boolean trackSiteLocations, int nthreads) {
         InventoryUtil.assertNotNull(InventoryValidator.class, "connectionConfig", connectionConfig);
         InventoryUtil.assertNotNull(InventoryValidator.class, "daoConfig", daoConfig);
         InventoryUtil.assertNotNull(InventoryValidator.class, "resourceID", resourceID);
         InventoryUtil.assertNotNull(InventoryValidator.class, "artifactSelector", artifactSelector);
+        if (nthreads < 1) {
+            throw new IllegalArgumentException("invalid nthreads: " + nthreads + " must be > 0");
+        }
+        this.nthreads = nthreads;
 
         // copy config
         Map<String,Object> txnConfig = new TreeMap<>();
         txnConfig.putAll(daoConfig);
         
         try {
-            DBUtil.createJNDIDataSource("jdbc/inventory", connectionConfig);
+            if (nthreads > 1) {
+                // each worker uses one connection for the local iterator
+                DBUtil.PoolConfig pc = new DBUtil.PoolConfig(connectionConfig, nthreads, 20000L, "select 123");
+                DBUtil.createJNDIDataSource("jdbc/inventory", pc);
+            } else {
+                DBUtil.createJNDIDataSource("jdbc/inventory", connectionConfig);
+            }
         } catch (NamingException ne) {
             throw new IllegalStateException(String.format("Unable to access database: %s", connectionConfig.getURL()), ne);
         }
         daoConfig.put("jndiDataSourceName", "jdbc/inventory");
         
         try {
-            DBUtil.createJNDIDataSource("jdbc/inventory-txn", connectionConfig);
+            if (nthreads > 1) {
+                // each worker uses one connection for transactions
+                DBUtil.PoolConfig pc = new DBUtil.PoolConfig(connectionConfig, nthreads, 20000L, "select 123");
+                DBUtil.createJNDIDataSource("jdbc/inventory-txn", pc);
+            } else {
+                DBUtil.createJNDIDataSource("jdbc/inventory-txn", connectionConfig);
+            }
         } catch (NamingException ne) {
             throw new IllegalStateException(String.format("Unable to access database: %s", connectionConfig.getURL()), ne);
         }
@@ -213,32 +267,40 @@ public class InventoryValidator implements Runnable {
             throw new IllegalArgumentException("invalid config", ex);
         }
 
-        ArtifactDAO txnDAO = new ArtifactDAO(false);
+        this.txnDAO = new ArtifactDAO(false);
         txnDAO.setConfig(txnConfig);
-        this.artifactValidator = new ArtifactValidator(txnDAO, resourceID, this.artifactSelector);
-
-        try {
-            this.messageDigest = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException("error creating MessageDigest with MD5 algorithm", e);
-        }
     }
 
     // Package access constructor for unit testing.
     InventoryValidator() {
+        this(1);
+    }
+    
+    // Package access constructor for unit testing.
+    InventoryValidator(int nthreads) {
         this.artifactDAO = null;
+        this.txnDAO = null;
         this.resourceID = null;
         this.trackSiteLocations = false;
         this.artifactSelector = null;
         this.bucketSelector = null;
-        this.artifactValidator = null;
-        this.messageDigest = null;
+        this.nthreads = nthreads;
     }
 
     public void setEnableRowCounterFeature(boolean enableRowCounterFeature) {
         this.enableRowCounterFeature = enableRowCounterFeature;
     }
 
+    /**
+     * Compare local and remote bucket digests and only iterate buckets where they differ.
+     * Requires the remote query service to support the meta_digest() function.
+     * 
+     * @param enableBucketDigestFeature true to skip buckets with matching digests
+     */
+    public void setEnableBucketDigestFeature(boolean enableBucketDigestFeature) {
+        this.enableBucketDigestFeature = enableBucketDigestFeature;
+    }
+
     @Override 
     public void run() {
         try {
@@ -274,7 +336,6 @@ public class InventoryValidator implements Runnable {
                         + "not found in local database -- cannot validate unsynced site");
                 }
                 this.remoteSite = ss;
-                artifactValidator.setRemoteSite(remoteSite);
             } catch (ResourceNotFoundException ex) {
                 throw new IllegalArgumentException("query service not found: " + resourceID, ex);
             } catch (TransientException | IOException | InterruptedException ex) {
@@ -282,7 +343,6 @@ public class InventoryValidator implements Runnable {
             }
         } else {
             this.remoteSite = null;
-            artifactValidator.setRemoteSite(null);
         }
         
         
@@ -316,49 +376,98 @@ public class InventoryValidator implements Runnable {
         if (buckets.isEmpty()) {
             iterateBucket(null);
         } else {
-            Iterator<String> bucketIterator = buckets.iterator();
-            while (bucketIterator.hasNext()) {
-                String bucket = bucketIterator.next();
-                log.info(InventoryValidator.class.getSimpleName() + ".START bucket=" + bucket);
-                int retries = 0;
-                boolean done = false;
-                while (!done && retries < 3) {
-                    long nloc = numLocalArtifacts;
-                    long nrem = numRemoteArtifacts;
-                    long nmatch = numMatchedArtifacts;
-                    try {
-                        iterateBucket(bucket);
-                        log.info(InventoryValidator.class.getSimpleName() + ".END bucket=" + bucket);
-                        numValidBuckets++;
-                        done = true;
-                    } catch (IOException | TransientException ex) {
-                        log.error(InventoryValidator.class.getSimpleName() + ".FAIL bucket=" + bucket, ex);
-                        numFailedBuckets++;
-                        retries++;
-                    } catch (IllegalArgumentException ex) {
-                        log.error(InventoryValidator.class.getSimpleName() + ".FAIL bucket=" + bucket, ex);
-                        numFailedBuckets++;
-                        throw ex;
-                    } catch (RuntimeException ex) {
-                        // TODO: probably not a great idea to retry on these...
-                        log.error(InventoryValidator.class.getSimpleName() + ".FAIL bucket=" + bucket, ex);
-                        numFailedBuckets++;
-                        retries++;
-                    } catch (Exception ex) {
-                        log.error(InventoryValidator.class.getSimpleName() + ".FAIL bucket=" + bucket, ex);
-                        numFailedBuckets++;
-                        throw ex;
-                    } finally {
-                        if (!done) {
-                            // revert count changes from this failed bucket
-                            numLocalArtifacts = nloc;
-                            numRemoteArtifacts = nrem;
-                            numMatchedArtifacts = nmatch;
-                        }
+            validateBuckets(buckets);
+        }
+    }
+
+    /**
+     * Validate the specified buckets using a pool of worker threads. Each worker validates one 
+     * bucket at a time with its own local iterator and remote query. A bucket that fails with 
+     * a (probably) transient error is put back on the queue behind the remaining buckets and 
+     * attempted again, up to MAX_BUCKET_ATTEMPTS times.
+     * 
+     * @param buckets list of uri bucket prefixes
+     * @throws ResourceNotFoundException remote query service not found
+     * @throws InterruptedException      thread interrupted
+     */
+    void validateBuckets(List<String> buckets) throws ResourceNotFoundException, InterruptedException {
+        log.info(InventoryValidator.class.getSimpleName() + ".validateBuckets num=" + buckets.size() 
+            + " threads=" + nthreads);
+        ExecutorService pool = Executors.newFixedThreadPool(nthreads);
+        CompletionService<String> completed = new ExecutorCompletionService<>(pool);
+        Map<Future<String>, String> pending = new HashMap<>();
+        Map<String, Integer> attempts = new HashMap<>();
+        try {
+            for (String b : buckets) {
+                submit(completed, pending, attempts, b);
+            }
+            while (!pending.isEmpty()) {
+                Future<String> f = completed.take();
+                String bucket = pending.remove(f);
+                try {
+                    f.get();
+                    incBucketCount(true);
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    log.error(InventoryValidator.class.getSimpleName() + ".FAIL bucket=" + bucket, cause);
+                    if (!isRetryable(cause)) {
+                        incBucketCount(false);
+                        throwCause(cause);
+                    }
+                    if (attempts.get(bucket) < MAX_BUCKET_ATTEMPTS) {
+                        log.info(InventoryValidator.class.getSimpleName() + ".RETRY bucket=" + bucket
+                            + " attempt=" + (attempts.get(bucket) + 1));
+                        submit(completed, pending, attempts, bucket);
+                    } else {
+                        // only the last attempt counts as a failed bucket
+                        incBucketCount(false);
+                        log.error(InventoryValidator.class.getSimpleName() + ".GIVE-UP bucket=" + bucket 
+                            + " attempts=" + attempts.get(bucket));
                     }
                 }
             }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private void submit(CompletionService<String> completed, Map<Future<String>, String> pending, 
+            Map<String, Integer> attempts, String bucket) {
+        Integer n = attempts.get(bucket);
+        attempts.put(bucket, n == null ? 1 : n + 1);
+        Future<String> f = completed.submit(() -> {
+            log.info(InventoryValidator.class.getSimpleName() + ".START bucket=" + bucket);
+            iterateBucket(bucket);
+            log.info(InventoryValidator.class.getSimpleName() + ".END bucket=" + bucket);
+            return bucket;
+        });
+        pending.put(f, bucket);
+    }
+    
+    // same policy as the old sequential loop: retry on IO and runtime failures except bad config
+    private boolean isRetryable(Throwable cause) {
+        if (cause instanceof IllegalArgumentException) {
+            return false;
         }
+        return cause instanceof IOException 
+            || cause instanceof TransientException 
+            || cause instanceof RuntimeException;
+    }
+    
+    private void throwCause(Throwable cause) throws ResourceNotFoundException, InterruptedException {
+        if (cause instanceof ResourceNotFoundException) {
+            throw (ResourceNotFoundException) cause;
+        }
+        if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new RuntimeException("bucket validation failed", cause);
     }
 
     /**
@@ -375,8 +484,31 @@ public class InventoryValidator implements Runnable {
         throws ResourceNotFoundException, IOException, IllegalStateException, TransientException,
                InterruptedException {
         log.debug("processing bucket: " + bucket);
-        // set this before query
-        artifactValidator.setRaceConditionStart(new Date(System.currentTimeMillis() - raceConditionDelta));
+        ArtifactValidator av = artifactValidator.get();
+        if (av != null) {
+            av.setRemoteSite(remoteSite);
+            // set this before query
+            av.setRaceConditionStart(new Date(System.currentTimeMillis() - raceConditionDelta));
+        }
+        if (enableBucketDigestFeature && bucket != null) {
+            BucketDigest localDigest = getLocalDigest(bucket);
+            BucketDigest remoteDigest = getRemoteDigest(bucket);
+            if (localDigest.equals(remoteDigest)) {
+                log.info(InventoryValidator.class.getSimpleName() + ".SKIP bucket=" + bucket 
+                    + " reason=digest-match num=" + localDigest.getNumArtifacts());
+                long n = localDigest.getNumArtifacts();
+                addArtifactCounts(n, n, n);
+                incSkippedBuckets();
+                return;
+            }
+            log.debug("digest mismatch: local=" + localDigest + " remote=" + remoteDigest);
+        }
+        final MessageDigest messageDigest = createMessageDigest();
+        long nloc = 0L;
+        long nrem = 0L;
+        long nmatch = 0L;
+        // pairs are validated in order, one batch at a time, so remote lookups can be prefetched
+        final List<Artifact[]> batch = new ArrayList<>();
         logSummary(true, true);
         try (final ResourceIterator<Artifact> localIterator = getLocalIterator(bucket);
             final ResourceIterator<Artifact> remoteIterator = getRemoteIterator(bucket)) {
@@ -398,7 +530,7 @@ public class InventoryValidator implements Runnable {
                 }
 
                 if (remote != null) {
-                    final URI computedChecksum = remote.computeMetaChecksum(this.messageDigest);
+                    final URI computedChecksum = remote.computeMetaChecksum(messageDigest);
                     if (!remote.getMetaChecksum().equals(computedChecksum)) {
                         throw new IllegalStateException(
                             "remote checksum mismatch: " + remote.getID() + " " + remote.getURI() + " provided="
@@ -412,16 +544,21 @@ public class InventoryValidator implements Runnable {
                 int order = orderArtifacts(local, remote);
                 switch (order)  {
                     case -1:
-                        validate(local, null);
+                        batch.add(new Artifact[] {local, null});
+                        nloc++;
                         local = null;
                         break;
                     case 0:
-                        validate(local, remote);
+                        batch.add(new Artifact[] {local, remote});
+                        nloc++;
+                        nrem++;
+                        nmatch++;
                         local = null;
                         remote = null;
                         break;
                     case 1:
-                        validate(null, remote);
+                        batch.add(new Artifact[] {null, remote});
+                        nrem++;
                         remote = null;
                         break;
                     default:
@@ -429,11 +566,48 @@ public class InventoryValidator implements Runnable {
                                                        order, local, remote);
                         throw new IllegalStateException(message);
                 }
+                if (batch.size() >= ArtifactValidator.PREFETCH_BATCH_SIZE) {
+                    validateBatch(batch);
+                }
             }
+            validateBatch(batch);
         } catch (IOException ex) {
             //log.error("Error closing iterator", ex);
             throw new RuntimeException("error while closing ResourceIterator(s)", ex);
         }
+        // only count completed buckets so a failed attempt does not inflate the totals
+        addArtifactCounts(nloc, nrem, nmatch);
+    }
+
+    private void validateBatch(List<Artifact[]> batch)
+        throws InterruptedException, ResourceNotFoundException, TransientException, IOException {
+        List<UUID> ids = new ArrayList<>();
+        for (Artifact[] pair : batch) {
+            if (pair[1] == null) {
+                ids.add(pair[0].getID());
+            }
+        }
+        if (!ids.isEmpty()) {
+            prefetchRemote(ids);
+        }
+        for (Artifact[] pair : batch) {
+            validate(pair[0], pair[1]);
+        }
+        batch.clear();
+    }
+    
+    /**
+     * Prefetch remote state for local artifacts not found in the remote query.
+     * Useful for overriding in tests.
+     * 
+     * @param ids local artifact IDs
+     */
+    void prefetchRemote(List<UUID> ids)
+        throws InterruptedException, ResourceNotFoundException, TransientException, IOException {
+        ArtifactValidator av = artifactValidator.get();
+        if (av != null) {
+            av.prefetchRemote(ids);
+        }
     }
 
     /**
@@ -445,22 +619,47 @@ public class InventoryValidator implements Runnable {
     void validate(Artifact local, Artifact remote)
         throws InterruptedException, ResourceNotFoundException, TransientException, IOException {
         log.debug(String.format("validating:\n local - %s\nremote - %s", local, remote));
-        if (local != null) {
-            numLocalArtifacts++;
-        }
-        if (remote != null) {
-            numRemoteArtifacts++;
-        }
-        if (local != null && remote != null) {
-            numMatchedArtifacts++;
-        }
-        artifactValidator.validate(local, remote);
+        artifactValidator.get().validate(local, remote);
         
         logSummary(false, true);
         
     }
     
-    private void logSummary(boolean force, boolean next) {
+    private ArtifactValidator createArtifactValidator() {
+        if (txnDAO == null) {
+            // unit test
+            return null;
+        }
+        return new ArtifactValidator(txnDAO, resourceID, artifactSelector);
+    }
+    
+    private MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("error creating MessageDigest with MD5 algorithm", e);
+        }
+    }
+    
+    private synchronized void addArtifactCounts(long nloc, long nrem, long nmatch) {
+        numLocalArtifacts += nloc;
+        numRemoteArtifacts += nrem;
+        numMatchedArtifacts += nmatch;
+    }
+    
+    private synchronized void incBucketCount(boolean valid) {
+        if (valid) {
+            numValidBuckets++;
+        } else {
+            numFailedBuckets++;
+        }
+    }
+    
+    private synchronized void incSkippedBuckets() {
+        numSkippedBuckets++;
+    }
+    
+    private synchronized void logSummary(boolean force, boolean next) {
         long sec = System.currentTimeMillis() / 1000L;
         long dt = (sec - lastSummary);
         if (!force && dt < summaryLogInterval) {
@@ -475,6 +674,9 @@ public class InventoryValidator implements Runnable {
         sb.append(" numMatched=").append(numMatchedArtifacts);
         sb.append(" numValidBuckets=").append(numValidBuckets);
         sb.append(" numFailedBuckets=").append(numFailedBuckets);
+        if (enableBucketDigestFeature) {
+            sb.append(" numSkippedBuckets=").append(numSkippedBuckets);
+        }
         
         if (next) {
             sb.append(" nextSummaryIn=").append(summaryLogInterval).append("sec");
@@ -601,6 +803,50 @@ public class InventoryValidator implements Runnable {
         throw tex;
     }
     
+    /**
+     * Get the digest of local artifacts in the bucket: same artifacts as getLocalIterator(bucket).
+     * 
+     * @param bucket The bucket prefix.
+     * @return digest of local artifacts
+     */
+    BucketDigest getLocalDigest(final String bucket) {
+        UUID remoteSiteID = null;
+        if (this.remoteSite != null) {
+            remoteSiteID = this.remoteSite.getID();
+        }
+        return artifactDAO.getBucketDigest(remoteSiteID, bucket);
+    }
+    
+    /**
+     * Get the digest of remote artifacts in the bucket: same artifacts as getRemoteIterator(bucket).
+     * 
+     * @param bucket The bucket prefix.
+     * @return digest of remote artifacts
+     */
+    BucketDigest getRemoteDigest(final String bucket)
+        throws ResourceNotFoundException, IOException, TransientException, InterruptedException {
+        final TapClient<BucketDigest> tapClient = new TapClient<>(this.resourceID);
+        final StringBuilder query = new StringBuilder("SELECT count(*), meta_digest() ");
+        query.append(ArtifactRowMapper.FROM);
+        appendRemoteConstraints(query, bucket);
+        log.debug(InventoryValidator.class.getSimpleName() + ".remoteDigest bucket=" + bucket 
+                + " query: \n'" + query + "\n");
+        
+        TapRowMapper<BucketDigest> mapper = (List<Object> row) -> {
+            Number num = (Number) row.get(0);
+            Number digest = (Number) row.get(1);
+            // sum is null when there are no rows
+            return new BucketDigest(bucket, num == null ? 0L : num.longValue(), digest == null ? 0L : digest.longValue());
+        };
+        try {
+            return tapClient.queryForObject(query.toString(), mapper);
+        } catch (TransientException ex) {
+            log.error("failed remote digest query bucket=" + bucket + " retryIn=2sec cause=" + ex);
+            Thread.sleep(2000L);
+            return tapClient.queryForObject(query.toString(), mapper);
+        }
+    }
+    
     private class CountingArtifactRowMapper extends ArtifactRowMapper {
         private long cur = 0L;
         
@@ -630,7 +876,12 @@ public class InventoryValidator implements Runnable {
         } else {
             query.append(ArtifactRowMapper.BASE_QUERY);
         }
-
+        appendRemoteConstraints(query, bucket);
+        query.append(" ORDER BY uri ASC");
+        return query.toString();
+    }
+    
+    private void appendRemoteConstraints(StringBuilder query, String bucket) {
         if (StringUtil.hasText(this.artifactSelector.getConstraint())) {
             if (query.indexOf("WHERE") < 0) {
                 query.append(" WHERE ");
@@ -649,9 +900,6 @@ public class InventoryValidator implements Runnable {
             query.append("(uriBucket LIKE '").append(bucket.trim()).append("%')");
             log.debug("where clause: " + query.toString());
         }
-
-        query.append(" ORDER BY uri ASC");
-        return query.toString();
     }
 
     /**
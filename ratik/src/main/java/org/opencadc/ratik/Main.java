@@ -72,6 +72,7 @@ import ca.nrc.cadc.util.BucketSelector;
 import ca.nrc.cadc.util.Log4jInit;
 import ca.nrc.cadc.util.MultiValuedProperties;
 import ca.nrc.cadc.util.PropertiesReader;
+import ca.nrc.cadc.util.StringUtil;
 
 import java.net.URI;
 import java.util.Arrays;
@@ -106,8 +107,10 @@ public class Main {
     private static final String URI_BUCKETS_CONFIG_KEY = CONFIG_PREFIX + ".buckets";
     private static final String TRACK_SITE_LOCATIONS_CONFIG_KEY = CONFIG_PREFIX + ".trackSiteLocations";
     private static final String ARTIFACT_SELECTOR_CONFIG_KEY = CONFIG_PREFIX + ".artifactSelector";
+    private static final String THREADS_CONFIG_KEY = CONFIG_PREFIX + ".threads";
     
     private static final String ROW_COUNT_FEATURE_CONFIG_KEY = CONFIG_PREFIX + ".enableRowCounterFeature";
+    private static final String BUCKET_DIGEST_FEATURE_CONFIG_KEY = CONFIG_PREFIX + ".enableBucketDigestFeature";
 
     // Used to verify configuration items.  See the README for descriptions.
     private static final String[] MANDATORY_PROPERTY_KEYS = {
@@ -181,12 +184,30 @@ public class Main {
             final String configuredTrackSiteLocations = props.getFirstPropertyValue(TRACK_SITE_LOCATIONS_CONFIG_KEY);
             final boolean trackSiteLocations = Boolean.parseBoolean(configuredTrackSiteLocations);
 
-            final InventoryValidator doit =
-                new InventoryValidator(cc, daoConfig, resourceID, artifactSelector, bucketSelector, trackSiteLocations);
+            int nthreads = 1;
+            final String configuredThreads = props.getFirstPropertyValue(THREADS_CONFIG_KEY);
+            if (StringUtil.hasText(configuredThreads)) {
+                try {
+                    nthreads = Integer.parseInt(configuredThreads.trim());
+                } catch (NumberFormatException ex) {
+                    throw new IllegalStateException("invalid config: " + THREADS_CONFIG_KEY + "=" + configuredThreads);
+                }
+                if (nthreads < 1) {
+                    throw new IllegalStateException("invalid config: " + THREADS_CONFIG_KEY + "=" + configuredThreads
+                        + " must be > 0");
+                }
+            }
+
+            final InventoryValidator doit = new InventoryValidator(cc, daoConfig, resourceID, artifactSelector, 
+                bucketSelector, trackSiteLocations, nthreads);
             
             String rcs = props.getFirstPropertyValue(ROW_COUNT_FEATURE_CONFIG_KEY);
             boolean enableRowCountFeature = Boolean.parseBoolean(rcs);
             doit.setEnableRowCounterFeature(enableRowCountFeature);
+            
+            String bds = props.getFirstPropertyValue(BUCKET_DIGEST_FEATURE_CONFIG_KEY);
+            boolean enableBucketDigestFeature = Boolean.parseBoolean(bds);
+            doit.setEnableBucketDigestFeature(enableBucketDigestFeature);
 
             doit.run();
         } catch (Throwable unexpected) {
@@ -0,0 +1,220 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.ratik;
+
+import ca.nrc.cadc.date.DateUtil;
+import ca.nrc.cadc.io.ResourceIterator;
+import ca.nrc.cadc.util.Log4jInit;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.inventory.DeletedArtifactEvent;
+import org.opencadc.inventory.util.AllArtifacts;
+import org.opencadc.tap.TapRowMapper;
+
+/**
+ *
+ * @author agent
+ */
+public class ArtifactValidatorTest {
+    private static final Logger log = Logger.getLogger(ArtifactValidatorTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.ratik", Level.INFO);
+    }
+    
+    private static final File CANNED_EVENTS = new File("src/test/resources/canned-deleted-artifact-events.tsv");
+    private static final Pattern ID_PATTERN = Pattern.compile("'([0-9a-f\\-]{36})'");
+
+    public ArtifactValidatorTest() { 
+    }
+    
+    @Test
+    public void testPrefetchRemote() throws Exception {
+        final List<List<Object>> table = readCannedEvents();
+        Assert.assertFalse("canned events", table.isEmpty());
+        
+        final List<String> queries = new ArrayList<>();
+        ArtifactValidator av = new ArtifactValidator(URI.create("ivo://opencadc.org/no-such-service"), new AllArtifacts()) {
+            // stand-in for the remote TAP service: select canned rows by id
+            @Override
+            <T> ResourceIterator<T> queryRemote(String query, TapRowMapper<T> mapper) {
+                queries.add(query);
+                Assert.assertTrue(query, query.contains("inventory.DeletedArtifactEvent"));
+                Set<UUID> ids = new HashSet<>();
+                Matcher m = ID_PATTERN.matcher(query);
+                while (m.find()) {
+                    ids.add(UUID.fromString(m.group(1)));
+                }
+                List<T> ret = new ArrayList<>();
+                for (List<Object> row : table) {
+                    if (ids.contains((UUID) row.get(0))) {
+                        ret.add(mapper.mapRow(row));
+                    }
+                }
+                return new ListIterator<>(ret);
+            }
+        };
+        
+        // every other canned event plus the same number of ids without an event
+        List<UUID> found = new ArrayList<>();
+        List<UUID> notFound = new ArrayList<>();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < table.size(); i += 2) {
+            UUID id = (UUID) table.get(i).get(0);
+            found.add(id);
+            ids.add(id);
+            UUID other = UUID.randomUUID();
+            notFound.add(other);
+            ids.add(other);
+        }
+        av.prefetchRemote(ids);
+        
+        int expectedQueries = (ids.size() + ArtifactValidator.PREFETCH_BATCH_SIZE - 1) / ArtifactValidator.PREFETCH_BATCH_SIZE;
+        Assert.assertEquals("one query per batch", expectedQueries, queries.size());
+        
+        for (int i = 0; i < table.size(); i += 2) {
+            List<Object> row = table.get(i);
+            DeletedArtifactEvent dae = av.getRemoteDeletedArtifactEvent((UUID) row.get(0));
+            Assert.assertNotNull("found: " + row.get(0), dae);
+            Assert.assertEquals("lastModified", row.get(1), dae.getLastModified());
+            Assert.assertEquals("metaChecksum", row.get(2), dae.getMetaChecksum());
+        }
+        for (UUID id : notFound) {
+            Assert.assertNull("not found: " + id, av.getRemoteDeletedArtifactEvent(id));
+        }
+        Assert.assertEquals("no per-artifact queries", expectedQueries, queries.size());
+        
+        // next prefetch replaces the previous results
+        queries.clear();
+        UUID id = (UUID) table.get(1).get(0);
+        List<UUID> next = new ArrayList<>();
+        next.add(id);
+        av.prefetchRemote(next);
+        Assert.assertEquals("one query", 1, queries.size());
+        Assert.assertNotNull("found: " + id, av.getRemoteDeletedArtifactEvent(id));
+        log.info("prefetch queries: " + expectedQueries + " for " + ids.size() + " ids");
+    }
+    
+    private List<List<Object>> readCannedEvents() throws Exception {
+        DateFormat df = DateUtil.getDateFormat(DateUtil.IVOA_DATE_FORMAT, DateUtil.UTC);
+        List<List<Object>> ret = new ArrayList<>();
+        for (String line : Files.readAllLines(CANNED_EVENTS.toPath())) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("\\t");
+            List<Object> row = new ArrayList<>();
+            row.add(UUID.fromString(tokens[0]));
+            row.add(df.parse(tokens[1]));
+            row.add(URI.create(tokens[2]));
+            ret.add(row);
+        }
+        return ret;
+    }
+    
+    private static class ListIterator<T> implements ResourceIterator<T> {
+        private final Iterator<T> iter;
+        
+        ListIterator(List<T> list) {
+            this.iter = list.iterator();
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return iter.next();
+        }
+    }
+}
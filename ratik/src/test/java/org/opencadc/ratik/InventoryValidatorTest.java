@@ -69,13 +69,46 @@
 
 package org.opencadc.ratik;
 
+import ca.nrc.cadc.io.ResourceIterator;
+import ca.nrc.cadc.net.TransientException;
+import ca.nrc.cadc.util.Log4jInit;
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 import org.opencadc.inventory.Artifact;
+import org.opencadc.inventory.InventoryUtil;
+import org.opencadc.inventory.db.BucketDigest;
 
 public class InventoryValidatorTest {
+    private static final Logger log = Logger.getLogger(InventoryValidatorTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.ratik", Level.INFO);
+    }
+    
+    private static final File CANNED_ARTIFACTS = new File("src/test/resources/canned-artifacts.tsv");
+    
+    private static final List<String> BUCKETS = new ArrayList<>();
+    
+    static {
+        for (char c : "0123456789abcdef".toCharArray()) {
+            BUCKETS.add(Character.toString(c));
+        }
+    }
 
     @Test
     public void testOrderArtifacts() throws Exception {
@@ -118,4 +151,209 @@ public class InventoryValidatorTest {
         Assert.assertEquals("local orders after remote, expect 1", 1, order);
     }
 
+
+    @Test
+    public void testConcurrentBuckets() throws Exception {
+        final List<Artifact> canned = readCannedArtifacts();
+        Assert.assertFalse("canned artifacts", canned.isEmpty());
+        
+        // local is missing every 5th, remote is missing every 7th
+        final List<Artifact> localArtifacts = new ArrayList<>();
+        final List<Artifact> remoteArtifacts = new ArrayList<>();
+        for (int i = 0; i < canned.size(); i++) {
+            if (i % 5 != 0) {
+                localArtifacts.add(canned.get(i));
+            }
+            if (i % 7 != 0) {
+                remoteArtifacts.add(canned.get(i));
+            }
+        }
+        
+        final Map<URI, String> validated = new ConcurrentHashMap<>();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        InventoryValidator testSubject = new InventoryValidator(4) {
+            @Override
+            ResourceIterator<Artifact> getLocalIterator(String bucket) {
+                return new ListIterator(localArtifacts, bucket);
+            }
+
+            @Override
+            ResourceIterator<Artifact> getRemoteIterator(String bucket) {
+                return new ListIterator(remoteArtifacts, bucket);
+            }
+
+            @Override
+            void validate(Artifact local, Artifact remote) throws InterruptedException {
+                threads.add(Thread.currentThread().getName());
+                URI uri = (local != null ? local.getURI() : remote.getURI());
+                String state = (local != null && remote != null ? "both" : (local != null ? "local" : "remote"));
+                String prev = validated.put(uri, state);
+                Assert.assertNull("validated once: " + uri, prev);
+                Thread.sleep(10L);
+            }
+        };
+        testSubject.validateBuckets(BUCKETS);
+        
+        log.info("validated: " + validated.size() + " threads: " + threads);
+        Assert.assertEquals("all artifacts validated", canned.size(), validated.size());
+        Assert.assertTrue("concurrent workers", threads.size() > 1);
+        for (int i = 0; i < canned.size(); i++) {
+            String expected = "both";
+            if (i % 5 == 0) {
+                expected = "remote";
+            } else if (i % 7 == 0) {
+                expected = "local";
+            }
+            Artifact a = canned.get(i);
+            Assert.assertEquals(a.getURI().toASCIIString(), expected, validated.get(a.getURI()));
+        }
+    }
+    
+    @Test
+    public void testBucketDigestSkip() throws Exception {
+        final Set<String> iterated = ConcurrentHashMap.newKeySet();
+        InventoryValidator testSubject = new InventoryValidator(2) {
+            @Override
+            BucketDigest getLocalDigest(String bucket) {
+                return new BucketDigest(bucket, 10L, 12345L);
+            }
+
+            @Override
+            BucketDigest getRemoteDigest(String bucket) {
+                if ("3".equals(bucket)) {
+                    return new BucketDigest(bucket, 10L, 54321L);
+                }
+                if ("7".equals(bucket)) {
+                    return new BucketDigest(bucket, 9L, 12345L);
+                }
+                return new BucketDigest(bucket, 10L, 12345L);
+            }
+
+            @Override
+            ResourceIterator<Artifact> getLocalIterator(String bucket) {
+                iterated.add(bucket);
+                return new ListIterator(new ArrayList<>(), bucket);
+            }
+
+            @Override
+            ResourceIterator<Artifact> getRemoteIterator(String bucket) {
+                return new ListIterator(new ArrayList<>(), bucket);
+            }
+        };
+        testSubject.setEnableBucketDigestFeature(true);
+        testSubject.validateBuckets(BUCKETS);
+        
+        log.info("iterated: " + iterated);
+        Assert.assertEquals("iterated", 2, iterated.size());
+        Assert.assertTrue("digest mismatch", iterated.contains("3"));
+        Assert.assertTrue("count mismatch", iterated.contains("7"));
+    }
+    
+    @Test
+    public void testRetryQueue() throws Exception {
+        final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        for (String b : BUCKETS) {
+            attempts.put(b, new AtomicInteger());
+        }
+        final List<String> order = new ArrayList<>();
+        // single worker so the queue order is deterministic
+        InventoryValidator testSubject = new InventoryValidator(1) {
+            @Override
+            void iterateBucket(String bucket) throws TransientException {
+                int n = attempts.get(bucket).incrementAndGet();
+                synchronized (order) {
+                    order.add(bucket);
+                }
+                if ("3".equals(bucket) && n == 1) {
+                    throw new TransientException("fail first attempt: " + bucket);
+                }
+                if ("7".equals(bucket)) {
+                    throw new RuntimeException("fail every attempt: " + bucket);
+                }
+            }
+        };
+        testSubject.validateBuckets(BUCKETS);
+        
+        log.info("order: " + order);
+        for (Map.Entry<String, AtomicInteger> me : attempts.entrySet()) {
+            String b = me.getKey();
+            int expected = 1;
+            if ("3".equals(b)) {
+                expected = 2;
+            } else if ("7".equals(b)) {
+                expected = InventoryValidator.MAX_BUCKET_ATTEMPTS;
+            }
+            Assert.assertEquals("attempts: " + b, expected, me.getValue().get());
+        }
+        // failed bucket goes to the back of the queue rather than being retried immediately
+        int retry = order.lastIndexOf("3");
+        Assert.assertTrue("retry after remaining buckets: " + order, retry > order.indexOf("f"));
+    }
+    
+    @Test
+    public void testAbortBuckets() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        InventoryValidator testSubject = new InventoryValidator(1) {
+            @Override
+            void iterateBucket(String bucket) {
+                count.incrementAndGet();
+                if ("1".equals(bucket)) {
+                    throw new IllegalArgumentException("invalid config: " + bucket);
+                }
+            }
+        };
+        try {
+            testSubject.validateBuckets(BUCKETS);
+            Assert.fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            log.info("caught expected: " + expected);
+        }
+        Assert.assertTrue("aborted remaining buckets", count.get() < BUCKETS.size());
+    }
+    
+    // stand-in for the remote query: canned rows from a file, in the same order as the remote query
+    private List<Artifact> readCannedArtifacts() throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        List<Artifact> ret = new ArrayList<>();
+        for (String line : Files.readAllLines(CANNED_ARTIFACTS.toPath())) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("\t");
+            Artifact a = new Artifact(URI.create(tokens[0]), URI.create(tokens[1]), new Date(), Long.parseLong(tokens[2]));
+            InventoryUtil.assignMetaChecksum(a, a.computeMetaChecksum(md));
+            ret.add(a);
+        }
+        ret.sort((a1, a2) -> a1.getURI().compareTo(a2.getURI()));
+        return ret;
+    }
+    
+    private static class ListIterator implements ResourceIterator<Artifact> {
+        private final Iterator<Artifact> iter;
+        
+        ListIterator(List<Artifact> artifacts, String bucket) {
+            List<Artifact> match = new ArrayList<>();
+            for (Artifact a : artifacts) {
+                if (a.getBucket().startsWith(bucket)) {
+                    match.add(a);
+                }
+            }
+            this.iter = match.iterator();
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        @Override
+        public Artifact next() {
+            return iter.next();
+        }
+    }
 }
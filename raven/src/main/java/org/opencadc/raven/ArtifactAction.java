@@ -75,10 +75,11 @@ import ca.nrc.cadc.rest.Version;
 import ca.nrc.cadc.util.MultiValuedProperties;
 import ca.nrc.cadc.vos.Direction;
 import ca.nrc.cadc.vos.Transfer;
-import ca.nrc.cadc.vosi.Availability;
 import java.io.File;
+import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -87,10 +88,12 @@ import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import org.apache.log4j.Logger;
+import org.opencadc.inventory.Namespace;
 import org.opencadc.inventory.db.ArtifactDAO;
+import org.opencadc.inventory.server.CachedPermissionsCheck;
+import org.opencadc.inventory.server.GrantCache;
 import org.opencadc.permissions.ReadGrant;
 import org.opencadc.permissions.WriteGrant;
-import org.opencadc.permissions.client.PermissionsCheck;
 
 /**
  * Abstract class for all that raven action classes have in common,
@@ -116,8 +119,11 @@ public abstract class ArtifactAction extends RestAction {
     protected StorageResolver storageResolver;
 
     protected final boolean authenticateOnly;
-    protected Map<URI, Availability> siteAvailabilities;
+    protected StorageSiteDirectory siteDirectory;
+    protected UnsyncedArtifactLocator unsyncedArtifactLocator;
+    protected GrantCache grantCache;
     protected Map<URI, StorageSiteRule> siteRules;
+    protected List<Namespace> bulkGrantNamespaces = new ArrayList<>();
 
     protected final boolean preventNotFound;
 
@@ -199,6 +205,7 @@ public abstract class ArtifactAction extends RestAction {
       
         // get the storage site rules
         this.siteRules = RavenInitAction.getStorageSiteRules(props);
+        this.bulkGrantNamespaces = RavenInitAction.getBulkGrantNamespaces(props);
         String pnf = props.getFirstPropertyValue(RavenInitAction.PREVENT_NOT_FOUND_KEY);
         if (pnf != null) {
             this.preventNotFound = Boolean.valueOf(pnf);
@@ -241,8 +248,19 @@ public abstract class ArtifactAction extends RestAction {
         }
         logInfo.setResource(artifactURI);
         logInfo.setPath(syncInput.getContextPath() + syncInput.getComponentPath());
-        PermissionsCheck permissionsCheck = new PermissionsCheck(this.artifactURI, this.authenticateOnly,
-                                                                 this.logInfo);
+        checkPermission(this.artifactURI, grantClass);
+    }
+
+    /**
+     * Check permission for an artifact.
+     * 
+     * @param uri artifact URI
+     * @param grantClass ReadGrant or WriteGrant
+     * @throws Exception if permission is denied or the check failed
+     */
+    protected void checkPermission(URI uri, Class grantClass) throws Exception {
+        CachedPermissionsCheck permissionsCheck = new CachedPermissionsCheck(uri, this.authenticateOnly,
+                                                                             this.logInfo, this.grantCache);
         if (ReadGrant.class.isAssignableFrom(grantClass)) {
             permissionsCheck.checkReadPermission(this.readGrantServices);
         } else if (WriteGrant.class.isAssignableFrom(grantClass)) {
@@ -258,27 +276,58 @@ public abstract class ArtifactAction extends RestAction {
      */
     abstract void parseRequest() throws Exception;
     
-    @SuppressWarnings("unchecked")
     void init() throws Exception {
         parseRequest();
         if (artifactURI == null) {
             throw new IllegalArgumentException("Missing artifact URI from path or request content");
         }
 
-        String siteAvailabilitiesKey = this.appName + RavenInitAction.JNDI_AVAILABILITY_NAME;
-        log.debug("siteAvailabilitiesKey: " + siteAvailabilitiesKey);
+        String siteDirectoryKey = this.appName + RavenInitAction.JNDI_SITE_DIRECTORY_NAME;
         try {
             Context initContext = new InitialContext();
-            this.siteAvailabilities = (Map<URI, Availability>) initContext.lookup(siteAvailabilitiesKey);
-            log.debug("found siteAvailabilities in JNDI: " + siteAvailabilitiesKey + " = " + siteAvailabilities);
-            for (Map.Entry<URI, Availability> me: siteAvailabilities.entrySet()) {
-                log.debug("found: " + me.getKey() + " = " + me.getValue());
-            }
+            this.siteDirectory = (StorageSiteDirectory) initContext.lookup(siteDirectoryKey);
+            log.debug("found siteDirectory in JNDI: " + siteDirectoryKey);
+        } catch (NamingException e) {
+            throw new IllegalStateException("JNDI lookup error", e);
+        }
+        
+        String grantCacheKey = this.appName + RavenInitAction.JNDI_GRANT_CACHE_NAME;
+        try {
+            Context initContext = new InitialContext();
+            this.grantCache = (GrantCache) initContext.lookup(grantCacheKey);
+            log.debug("found grantCache in JNDI: " + grantCacheKey);
+        } catch (NamingException e) {
+            throw new IllegalStateException("JNDI lookup error", e);
+        }
+        
+        String locatorKey = this.appName + RavenInitAction.JNDI_UNSYNCED_LOCATOR_NAME;
+        try {
+            Context initContext = new InitialContext();
+            this.unsyncedArtifactLocator = (UnsyncedArtifactLocator) initContext.lookup(locatorKey);
+            log.debug("found unsyncedArtifactLocator in JNDI: " + locatorKey);
         } catch (NamingException e) {
             throw new IllegalStateException("JNDI lookup error", e);
         }
     }
 
+    /**
+     * Get the IP address of the client.
+     * 
+     * @return client IP address or null if not known
+     */
+    InetAddress getClientIP() {
+        String ip = syncInput.getClientIP();
+        if (ip != null && ip.matches("[0-9a-fA-F:.]+")) {
+            try {
+                // literal address: no DNS lookup
+                return InetAddress.getByName(ip);
+            } catch (UnknownHostException ex) {
+                log.debug("invalid client IP: " + ip);
+            }
+        }
+        return null;
+    }
+
     @Override
     protected String getServerImpl() {
         // no null version checking because fail to build correctly can't get past basic testing
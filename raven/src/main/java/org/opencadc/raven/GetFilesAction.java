@@ -140,8 +140,10 @@ public class GetFilesAction extends FilesAction {
         transfer.getProtocols().add(proto);
 
         ProtocolsGenerator pg = new ProtocolsGenerator(this.artifactDAO, this.publicKeyFile, this.privateKeyFile,
-                                                       this.user, this.siteAvailabilities, this.siteRules,
-                                                       this.preventNotFound, this.storageResolver);
+                                                       this.user, this.siteDirectory, this.siteRules,
+                                                       this.preventNotFound, this.unsyncedArtifactLocator,
+                                                       this.storageResolver);
+        pg.setClientIP(getClientIP());
         List<Protocol> protos = pg.getProtocols(transfer);
         if (protos.isEmpty()) {
             throw new ResourceNotFoundException("not available: " + artifactURI);
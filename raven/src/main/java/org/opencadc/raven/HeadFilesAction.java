@@ -79,7 +79,6 @@ import java.net.URL;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.Artifact;
 import org.opencadc.inventory.InventoryUtil;
-import org.opencadc.inventory.db.StorageSiteDAO;
 import org.opencadc.permissions.ReadGrant;
 import org.opencadc.permissions.TokenTool;
 
@@ -112,15 +111,15 @@ public class HeadFilesAction extends FilesAction {
             if (this.preventNotFound) {
                 // check known storage sites
                 ProtocolsGenerator pg = new ProtocolsGenerator(this.artifactDAO, this.publicKeyFile, this.privateKeyFile,
-                        this.user, this.siteAvailabilities, this.siteRules, this.preventNotFound, this.storageResolver);
-                StorageSiteDAO storageSiteDAO = new StorageSiteDAO(artifactDAO);
+                        this.user, this.siteDirectory, this.siteRules, this.preventNotFound,
+                        this.unsyncedArtifactLocator, this.storageResolver);
                 Transfer transfer = new Transfer(artifactURI, Direction.pullFromVoSpace);
                 Protocol proto = new Protocol(VOS.PROTOCOL_HTTPS_GET);
                 proto.setSecurityMethod(Standards.SECURITY_METHOD_ANON);
                 transfer.getProtocols().add(proto);
                 TokenTool tk = new TokenTool(publicKeyFile, privateKeyFile);
                 String authToken = tk.generateToken(artifactURI, ReadGrant.class, user);
-                artifact = pg.getUnsyncedArtifact(artifactURI, transfer, storageSiteDAO.list(), authToken);
+                artifact = pg.getUnsyncedArtifact(artifactURI, transfer, siteDirectory.getSites(), authToken);
             }
         }
         
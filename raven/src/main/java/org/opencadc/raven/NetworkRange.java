@@ -0,0 +1,147 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.raven;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * IP network in CIDR notation (e.g. 192.168.0.0/16 or 2001:db8::/32).
+ *
+ * @author agent
+ */
+public class NetworkRange {
+
+    private final String cidr;
+    private final byte[] network;
+    private final int prefixLength;
+
+    /**
+     * @param cidr network address and prefix length
+     * @throws IllegalArgumentException if the value is not a valid CIDR network
+     */
+    public NetworkRange(String cidr) {
+        if (cidr == null) {
+            throw new IllegalArgumentException("invalid network: null");
+        }
+        String s = cidr.trim();
+        int i = s.indexOf('/');
+        if (i <= 0 || i == s.length() - 1) {
+            throw new IllegalArgumentException("invalid network: " + cidr + " reason: expected {address}/{prefix length}");
+        }
+        String addr = s.substring(0, i);
+        if (!addr.matches("[0-9a-fA-F:.]+")) {
+            // only literal addresses: never a DNS lookup
+            throw new IllegalArgumentException("invalid network: " + cidr + " reason: not an IP address");
+        }
+        try {
+            this.network = InetAddress.getByName(addr).getAddress();
+            this.prefixLength = Integer.parseInt(s.substring(i + 1));
+        } catch (UnknownHostException | NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid network: " + cidr + " reason: " + ex.getMessage(), ex);
+        }
+        if (prefixLength < 0 || prefixLength > 8 * network.length) {
+            throw new IllegalArgumentException("invalid network: " + cidr + " reason: prefix length out of range");
+        }
+        this.cidr = s;
+    }
+
+    /**
+     * Check if an address is in this network. Addresses of the other IP version are never
+     * in the network.
+     * 
+     * @param address IP address
+     * @return true if the address is in this network
+     */
+    public boolean contains(InetAddress address) {
+        if (address == null) {
+            return false;
+        }
+        byte[] a = address.getAddress();
+        if (a.length != network.length) {
+            return false;
+        }
+        int bits = prefixLength;
+        for (int i = 0; i < a.length && bits > 0; i++) {
+            int mask = (bits >= 8 ? 0xff : (0xff << (8 - bits)) & 0xff);
+            if ((a[i] & mask) != (network[i] & mask)) {
+                return false;
+            }
+            bits -= 8;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return cidr;
+    }
+}
@@ -71,17 +71,27 @@ import ca.nrc.cadc.net.ResourceNotFoundException;
 import ca.nrc.cadc.rest.InlineContentException;
 import ca.nrc.cadc.rest.InlineContentHandler;
 import ca.nrc.cadc.vos.Direction;
+import ca.nrc.cadc.vos.Protocol;
 import ca.nrc.cadc.vos.Transfer;
 import ca.nrc.cadc.vos.TransferReader;
 import ca.nrc.cadc.vos.TransferWriter;
 import ca.nrc.cadc.vos.VOS;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.InventoryUtil;
+import org.opencadc.inventory.Namespace;
+import org.opencadc.permissions.ReadGrant;
+import org.opencadc.permissions.WriteGrant;
 
 /**
  * Given a transfer request object return a transfer response object with all
@@ -100,6 +110,10 @@ public class PostAction extends ArtifactAction {
 
     private static final String INLINE_CONTENT_TAG = "inputstream";
     private static final String CONTENT_TYPE = "text/xml";
+    static final String BULK_CONTENT_TYPE = "text/tab-separated-values";
+    
+    // max number of targets in a single request
+    static final int MAX_TARGETS = 10000;
 
 
     /**
@@ -124,11 +138,13 @@ public class PostAction extends ArtifactAction {
             throw new IllegalArgumentException("direction not supported: " + transfer.getDirection());
         }
         List<URI> targets = transfer.getTargets();
-        if (targets.isEmpty() || targets.size() > 1) {
-            throw new IllegalArgumentException("expected 1 target URI, found: " + targets.size());
+        if (targets.isEmpty() || targets.size() > MAX_TARGETS) {
+            throw new IllegalArgumentException("expected 1 to " + MAX_TARGETS + " target URIs, found: " + targets.size());
+        }
+        for (URI u : targets) {
+            InventoryUtil.validateArtifactURI(PostAction.class, u);
         }
         artifactURI = targets.get(0);
-        InventoryUtil.validateArtifactURI(PostAction.class, artifactURI);
     }
 
     /**
@@ -158,10 +174,16 @@ public class PostAction extends ArtifactAction {
     @Override
     public void doAction() throws Exception {
         initAndAuthorize();
+        if (transfer.getTargets().size() > 1) {
+            doBulkAction();
+            return;
+        }
 
         ProtocolsGenerator pg = new ProtocolsGenerator(this.artifactDAO, this.publicKeyFile, this.privateKeyFile,
-                                                       this.user, this.siteAvailabilities, this.siteRules,
-                                                       this.preventNotFound, this.storageResolver);
+                                                       this.user, this.siteDirectory, this.siteRules,
+                                                       this.preventNotFound, this.unsyncedArtifactLocator,
+                                                       this.storageResolver);
+        pg.setClientIP(getClientIP());
         Transfer ret = new Transfer(artifactURI, transfer.getDirection());
         // TODO: change from pg.getProtocols(transfer) to pg.getResolvedTransfer(transfer)??
         ret.getProtocols().addAll(pg.getProtocols(transfer));
@@ -171,5 +193,78 @@ public class PostAction extends ArtifactAction {
         transferWriter.write(ret, syncOutput.getOutputStream());
     }
 
+    // transfer negotiation for multiple targets: one line per target and endpoint
+    private void doBulkAction() throws Exception {
+        Class grantClass = ReadGrant.class;
+        if (Direction.pushToVoSpace.equals(transfer.getDirection())) {
+            grantClass = WriteGrant.class;
+        }
+        // first target checked in initAndAuthorize; a permission check in a bulk grant 
+        // namespace applies to all targets in that namespace
+        List<URI> targets = transfer.getTargets();
+        Set<URI> checked = new HashSet<>();
+        Set<Namespace> checkedNamespaces = new HashSet<>();
+        checked.add(targets.get(0));
+        Namespace ns = getBulkGrantNamespace(targets.get(0));
+        if (ns != null) {
+            checkedNamespaces.add(ns);
+        }
+        for (int i = 1; i < targets.size(); i++) {
+            URI target = targets.get(i);
+            if (!checked.add(target)) {
+                continue;
+            }
+            ns = getBulkGrantNamespace(target);
+            if (ns != null && checkedNamespaces.contains(ns)) {
+                continue;
+            }
+            checkPermission(target, grantClass);
+            if (ns != null) {
+                checkedNamespaces.add(ns);
+            }
+        }
 
+        ProtocolsGenerator pg = new ProtocolsGenerator(this.artifactDAO, this.publicKeyFile, this.privateKeyFile,
+                                                       this.user, this.siteDirectory, this.siteRules,
+                                                       this.preventNotFound, this.unsyncedArtifactLocator,
+                                                       this.storageResolver);
+        pg.setClientIP(getClientIP());
+        Map<URI, List<Protocol>> protos = pg.getBulkProtocols(transfer);
+        
+        int num = 0;
+        syncOutput.setHeader("Content-Type", BULK_CONTENT_TYPE);
+        Writer w = new BufferedWriter(new OutputStreamWriter(syncOutput.getOutputStream(), "UTF-8"));
+        for (Map.Entry<URI, List<Protocol>> me : protos.entrySet()) {
+            for (Protocol p : me.getValue()) {
+                writeProtocol(w, me.getKey(), p);
+            }
+            if (!me.getValue().isEmpty()) {
+                num++;
+            }
+        }
+        w.flush();
+        logInfo.setMessage("bulk: " + num + "/" + targets.size() + " targets resolved");
+    }
+    
+    private Namespace getBulkGrantNamespace(URI target) {
+        for (Namespace ns : bulkGrantNamespaces) {
+            if (ns.matches(target)) {
+                return ns;
+            }
+        }
+        return null;
+    }
+    
+    static void writeProtocol(Writer w, URI target, Protocol p) throws IOException {
+        w.write(target.toASCIIString());
+        w.write('\t');
+        w.write(p.getUri());
+        w.write('\t');
+        if (p.getSecurityMethod() != null) {
+            w.write(p.getSecurityMethod().toASCIIString());
+        }
+        w.write('\t');
+        w.write(p.getEndpoint());
+        w.write('\n');
+    }
 }
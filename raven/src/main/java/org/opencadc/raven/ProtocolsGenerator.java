@@ -67,45 +67,44 @@
 
 package org.opencadc.raven;
 
+import ca.nrc.cadc.auth.AuthenticationUtil;
 import ca.nrc.cadc.cred.client.CredUtil;
 import ca.nrc.cadc.net.HttpGet;
 import ca.nrc.cadc.net.ResourceNotFoundException;
 import ca.nrc.cadc.net.StorageResolver;
-import ca.nrc.cadc.reg.Capabilities;
 import ca.nrc.cadc.reg.Capability;
 import ca.nrc.cadc.reg.Interface;
 import ca.nrc.cadc.reg.Standards;
-import ca.nrc.cadc.reg.client.RegistryClient;
 import ca.nrc.cadc.vos.Direction;
 import ca.nrc.cadc.vos.Protocol;
 import ca.nrc.cadc.vos.Transfer;
 import ca.nrc.cadc.vos.VOS;
-import ca.nrc.cadc.vosi.Availability;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import javax.security.auth.Subject;
 import org.apache.log4j.Logger;
 import org.opencadc.inventory.Artifact;
-import org.opencadc.inventory.InventoryUtil;
 import org.opencadc.inventory.Namespace;
 import org.opencadc.inventory.SiteLocation;
 import org.opencadc.inventory.StorageSite;
 import org.opencadc.inventory.db.ArtifactDAO;
 import org.opencadc.inventory.db.DeletedArtifactEventDAO;
-import org.opencadc.inventory.db.StorageSiteDAO;
 import org.opencadc.permissions.ReadGrant;
 import org.opencadc.permissions.TokenTool;
 import org.opencadc.permissions.WriteGrant;
@@ -120,13 +119,18 @@ public class ProtocolsGenerator {
     private static final Logger log = Logger.getLogger(ProtocolsGenerator.class);
 
     public static final String ARTIFACT_ID_HDR = "x-artifact-id";  // matches minoc.HeadAction.ARTIFACT_ID_HDR
+    
+    // max number of targets not found in the database that are checked at the sites in one bulk request
+    static final int MAX_BULK_PROBES = 100;
 
     private final ArtifactDAO artifactDAO;
     private final DeletedArtifactEventDAO deletedArtifactEventDAO;
     private final String user;
     private final File publicKeyFile;
     private final File privateKeyFile;
-    private final Map<URI, Availability> siteAvailabilities;
+    private final StorageSiteDirectory siteDirectory;
+    private final UnsyncedArtifactLocator unsyncedArtifactLocator;
+    private InetAddress clientIP;
     private final Map<URI, StorageSiteRule> siteRules;
     private final StorageResolver storageResolver;
     private final boolean preventNotFound;
@@ -136,16 +140,18 @@ public class ProtocolsGenerator {
 
 
     public ProtocolsGenerator(ArtifactDAO artifactDAO, File publicKeyFile, File privateKeyFile, String user,
-                              Map<URI, Availability> siteAvailabilities, Map<URI, StorageSiteRule> siteRules,
-                              boolean preventNotFound, StorageResolver storageResolver) {
+                              StorageSiteDirectory siteDirectory, Map<URI, StorageSiteRule> siteRules,
+                              boolean preventNotFound, UnsyncedArtifactLocator unsyncedArtifactLocator,
+                              StorageResolver storageResolver) {
         this.artifactDAO = artifactDAO;
         this.deletedArtifactEventDAO = new DeletedArtifactEventDAO(this.artifactDAO);
         this.user = user;
         this.publicKeyFile = publicKeyFile;
         this.privateKeyFile = privateKeyFile;
-        this.siteAvailabilities = siteAvailabilities;
+        this.siteDirectory = siteDirectory;
         this.siteRules = siteRules;
         this.preventNotFound = preventNotFound;
+        this.unsyncedArtifactLocator = unsyncedArtifactLocator;
         this.storageResolver = storageResolver;
     }
 
@@ -171,14 +177,118 @@ public class ProtocolsGenerator {
         return protos;
     }
 
+    /**
+     * Negotiate transfers for all targets of a transfer request. Artifacts are found with
+     * a batched lookup and the site list and site statistics are read once for all targets.
+     * With preventNotFound, at most MAX_BULK_PROBES targets that are not in the database are
+     * checked at the sites, concurrently and within the time limit of a single check.
+     * 
+     * @param transfer transfer request with one or more targets
+     * @return protocols for each target in request order; empty list for targets not found
+     * @throws IOException failure to generate protocols
+     */
+    Map<URI, List<Protocol>> getBulkProtocols(Transfer transfer) throws IOException {
+        TokenTool tk = null;
+        if (publicKeyFile != null && privateKeyFile != null) {
+            tk = new TokenTool(publicKeyFile, privateKeyFile);
+        }
+        final boolean pull = Direction.pullFromVoSpace.equals(transfer.getDirection());
+        final Set<StorageSite> sites = siteDirectory.getSites();
+        final Map<URI, SiteStats> siteStats = siteDirectory.getSiteStats();
+        
+        // distinct targets in request order
+        Map<URI, String> authTokens = new LinkedHashMap<>();
+        for (URI target : transfer.getTargets()) {
+            if (!authTokens.containsKey(target)) {
+                String authToken = null;
+                if (tk != null) {
+                    authToken = tk.generateToken(target, (pull ? ReadGrant.class : WriteGrant.class), user);
+                }
+                authTokens.put(target, authToken);
+            }
+        }
+        
+        Map<URI, Artifact> artifacts = null;
+        Map<URI, Artifact> unsynced = Collections.emptyMap();
+        if (pull) {
+            artifacts = artifactDAO.getAll(authTokens.keySet());
+            log.debug("bulk: found " + artifacts.size() + "/" + authTokens.size() + " artifacts");
+            if (preventNotFound) {
+                unsynced = getUnsyncedArtifacts(transfer, authTokens, artifacts, sites);
+            }
+        }
+        
+        Map<URI, List<Protocol>> ret = new LinkedHashMap<>();
+        for (Map.Entry<URI, String> me : authTokens.entrySet()) {
+            URI target = me.getKey();
+            String authToken = me.getValue();
+            try {
+                if (pull) {
+                    Artifact a = artifacts.get(target);
+                    if (a == null) {
+                        a = unsynced.get(target);
+                    }
+                    // sites already checked above
+                    ret.put(target, doPullFrom(target, a, transfer, authToken, sites, siteStats, false));
+                } else {
+                    ret.put(target, doPushTo(target, transfer, authToken, sites, siteStats));
+                }
+            } catch (ResourceNotFoundException ex) {
+                log.debug("bulk: " + ex.getMessage());
+                ret.put(target, new ArrayList<>());
+            }
+        }
+        return ret;
+    }
+    
+    // check the sites for targets that are not in the database: at most MAX_BULK_PROBES targets are
+    // checked and all checks run concurrently within a single time limit
+    private Map<URI, Artifact> getUnsyncedArtifacts(Transfer transfer, Map<URI, String> authTokens, 
+            Map<URI, Artifact> artifacts, Set<StorageSite> sites) {
+        Map<URI, List<Callable<Artifact>>> probes = new LinkedHashMap<>();
+        int skipped = 0;
+        for (Map.Entry<URI, String> me : authTokens.entrySet()) {
+            if (!artifacts.containsKey(me.getKey())) {
+                if (probes.size() < MAX_BULK_PROBES) {
+                    probes.put(me.getKey(), getUnsyncedArtifactProbes(me.getKey(), transfer, sites, me.getValue()));
+                } else {
+                    skipped++;
+                }
+            }
+        }
+        if (skipped > 0) {
+            log.debug("bulk: " + skipped + " targets not found and not checked at sites (limit: " + MAX_BULK_PROBES + ")");
+        }
+        if (probes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return unsyncedArtifactLocator.locateAll(probes);
+    }
+
+    /**
+     * Set the IP address of the client so sites near the client can be preferred.
+     * 
+     * @param clientIP client IP address, may be null
+     */
+    public void setClientIP(InetAddress clientIP) {
+        this.clientIP = clientIP;
+    }
+
     static void prioritizePullFromSites(List<StorageSite> storageSites) {
+        prioritizePullFromSites(storageSites, Collections.emptyMap(), null, Collections.emptyMap());
+    }
+
+    static void prioritizePullFromSites(List<StorageSite> storageSites, Map<URI, StorageSiteRule> siteRules,
+                                        InetAddress clientIP, Map<URI, SiteStats> siteStats) {
         // contains the algorithm for prioritizing storage sites to pull from.
         
         // was: prefer read/write sites to put less load on a read-only "seeder" site during migration
         //storageSites.sort((site1, site2) -> Boolean.compare(!site1.getAllowWrite(), !site2.getAllowWrite()));
         
-        // random
+        // random order of equally ranked sites
         Collections.shuffle(storageSites);
+        PrioritizingStorageSiteComparator comparator = new PrioritizingStorageSiteComparator(siteRules, null, clientIP, siteStats);
+        storageSites.sort(comparator::compareRank);
     }
 
     Artifact getRemoteArtifact(URL location, URI artifactURI) {
@@ -204,109 +314,130 @@ public class ProtocolsGenerator {
     }
 
     private Capability getFilesCapability(StorageSite storageSite) {
-        if (!isAvailable(storageSite.getResourceID())) {
+        if (!siteDirectory.isAvailable(storageSite.getResourceID())) {
             log.warn("storage site is offline: " + storageSite.getResourceID());
             return null;
         }
-        Capability filesCap = null;
-        try {
-            RegistryClient regClient = new RegistryClient();
-            Capabilities caps = regClient.getCapabilities(storageSite.getResourceID());
-            filesCap = caps.findCapability(Standards.SI_FILES);
-            if (filesCap == null) {
-                log.warn("service: " + storageSite.getResourceID() + " does not provide " + Standards.SI_FILES);
-            }
-        } catch (ResourceNotFoundException ex) {
-            log.warn("storage site not found: " + storageSite.getResourceID());
-        } catch (Exception ex) {
-            log.warn("storage site not responding (capabilities): " + storageSite.getResourceID(), ex);
+        Capability filesCap = siteDirectory.getFilesCapability(storageSite.getResourceID());
+        if (filesCap == null) {
+            log.warn("files capability not resolved for storage site: " + storageSite.getResourceID());
         }
         return filesCap;
     }
 
     Artifact getUnsyncedArtifact(URI artifactURI, Transfer transfer, Set<StorageSite> storageSites, String authToken) {
-        Artifact result = null;
+        return unsyncedArtifactLocator.locate(artifactURI, 
+                getUnsyncedArtifactProbes(artifactURI, transfer, storageSites, authToken));
+    }
+    
+    private List<Callable<Artifact>> getUnsyncedArtifactProbes(URI artifactURI, Transfer transfer, 
+            Set<StorageSite> storageSites, String authToken) {
+        Boolean certOK = null;
+        List<Callable<Artifact>> probes = new ArrayList<>();
         for (StorageSite storageSite : storageSites) {
+            if (!storageSite.getAllowRead()) {
+                continue;
+            }
             // check if site is currently offline
             Capability filesCap = getFilesCapability(storageSite);
             if (filesCap == null) {
                 log.warn("Capabilities not found for storage site " + storageSite.getResourceID());
                 continue;
             }
-            Iterator<Protocol> pi = transfer.getProtocols().iterator();
-            while (result == null && pi.hasNext()) {
-                Protocol proto = pi.next();
-
-                if (storageSite.getAllowRead()) {
-                    URI sec = proto.getSecurityMethod();
-                    if (sec == null) {
-                        sec = Standards.SECURITY_METHOD_ANON;
-                    } else if (Standards.SECURITY_METHOD_CERT.equals(sec)) {
+            List<URL> urls = new ArrayList<>();
+            for (Protocol proto : transfer.getProtocols()) {
+                URI sec = proto.getSecurityMethod();
+                if (sec == null) {
+                    sec = Standards.SECURITY_METHOD_ANON;
+                } else if (Standards.SECURITY_METHOD_CERT.equals(sec)) {
+                    if (certOK == null) {
                         try {
-                            if (!CredUtil.checkCredentials()) {
-                                // skip this protocol
-                                continue;
-                            }
+                            certOK = CredUtil.checkCredentials();
                         } catch (Exception e) {
                             log.debug("Failed to check user credentials", e);
-                            continue;
+                            certOK = false;
                         }
                     }
-                    Interface iface = filesCap.findInterface(sec);
-                    if (iface != null) {
-                        URL baseURL = iface.getAccessURL().getURL();
-                        log.debug("base url for site " + storageSite.getResourceID() + ": " + baseURL);
-                        StringBuilder sb = new StringBuilder();
-                        sb.append(baseURL.toExternalForm()).append("/");
-                        List<URL> urls = new ArrayList<URL>();
-                        try {
-                            if (authToken != null && Standards.SECURITY_METHOD_ANON.equals(sec)) {
-                                // add the pre-auth url
-                                URL pa = new URL(sb.toString() + "/" + authToken + "/" + artifactURI.toASCIIString());
-                                urls.add(pa);
-                            }
-                            urls.add(new URL(sb.append(artifactURI.toASCIIString()).toString()));
-                        } catch (MalformedURLException ex) {
-                            throw new RuntimeException("BUG: Malformed URL to the site", ex);
-                        }
-                        Iterator<URL> ui = urls.iterator();
-                        while (result == null && ui.hasNext()) {
-                            Artifact remoteArtifact = getRemoteArtifact(ui.next(), artifactURI);
-                            if (remoteArtifact == null) {
-                                continue;
-                            }
-                            if (deletedArtifactEventDAO.get(remoteArtifact.getID()) != null) {
-                                // the artifact was already deleted from global
-                                log.debug("Artifact " + artifactURI + " already deleted from global");
-                                continue;
-                            }
-                            remoteArtifact.siteLocations.add(new SiteLocation(storageSite.getID()));
-                            if (result != null && result.getID().equals(remoteArtifact.getID())) {
-                                result.siteLocations.addAll(remoteArtifact.siteLocations);
-                            } else if (result == null || InventoryUtil.isRemoteWinner(result, remoteArtifact)) {
-                                log.debug("Artifact " + artifactURI.toASCIIString() + " use copy from "
-                                        + storageSite.getResourceID());
-                                result = remoteArtifact;
-                            } // else: just retain current result
+                    if (!certOK) {
+                        // skip this protocol
+                        continue;
+                    }
+                }
+                Interface iface = filesCap.findInterface(sec);
+                if (iface != null) {
+                    URL baseURL = iface.getAccessURL().getURL();
+                    log.debug("base url for site " + storageSite.getResourceID() + ": " + baseURL);
+                    StringBuilder sb = new StringBuilder();
+                    sb.append(baseURL.toExternalForm()).append("/");
+                    try {
+                        if (authToken != null && Standards.SECURITY_METHOD_ANON.equals(sec)) {
+                            // add the pre-auth url
+                            URL pa = new URL(sb.toString() + "/" + authToken + "/" + artifactURI.toASCIIString());
+                            addURL(urls, pa);
                         }
+                        addURL(urls, new URL(sb.append(artifactURI.toASCIIString()).toString()));
+                    } catch (MalformedURLException ex) {
+                        throw new RuntimeException("BUG: Malformed URL to the site", ex);
                     }
                 }
             }
+            if (!urls.isEmpty()) {
+                // probes run in other threads: propagate the caller
+                final Subject subject = AuthenticationUtil.getCurrentSubject();
+                probes.add(() -> Subject.doAs(subject, (PrivilegedExceptionAction<Artifact>) () -> 
+                    getUnsyncedArtifact(artifactURI, storageSite, urls)));
+            }
+        }
+        return probes;
+    }
+
+    private Artifact getUnsyncedArtifact(URI artifactURI, StorageSite storageSite, List<URL> urls) {
+        for (URL u : urls) {
+            if (Thread.currentThread().isInterrupted()) {
+                // another site already has it
+                return null;
+            }
+            Artifact remoteArtifact = getRemoteArtifact(u, artifactURI);
+            if (remoteArtifact == null) {
+                continue;
+            }
+            if (deletedArtifactEventDAO.get(remoteArtifact.getID()) != null) {
+                // the artifact was already deleted from global
+                log.debug("Artifact " + artifactURI + " already deleted from global");
+                continue;
+            }
+            remoteArtifact.siteLocations.add(new SiteLocation(storageSite.getID()));
+            log.debug("Artifact " + artifactURI.toASCIIString() + " use copy from " + storageSite.getResourceID());
+            return remoteArtifact;
+        }
+        return null;
+    }
 
+    private static void addURL(List<URL> urls, URL u) {
+        // same URL may be produced by more than one protocol
+        for (URL e : urls) {
+            if (e.toExternalForm().equals(u.toExternalForm())) {
+                return;
+            }
         }
-        return result;
+        urls.add(u);
     }
 
     List<Protocol> doPullFrom(URI artifactURI, Transfer transfer, String authToken) throws ResourceNotFoundException, IOException {
-        StorageSiteDAO storageSiteDAO = new StorageSiteDAO(artifactDAO);
-        Set<StorageSite> sites = storageSiteDAO.list(); // this set could be cached
+        Artifact artifact = artifactDAO.get(artifactURI);
+        return doPullFrom(artifactURI, artifact, transfer, authToken, siteDirectory.getSites(), siteDirectory.getSiteStats(),
+                          this.preventNotFound);
+    }
+
+    private List<Protocol> doPullFrom(URI artifactURI, Artifact artifact, Transfer transfer, String authToken, 
+                                      Set<StorageSite> sites, Map<URI, SiteStats> siteStats, boolean checkSites)
+            throws ResourceNotFoundException, IOException {
 
         List<Protocol> protos = new ArrayList<>();
-        Artifact artifact = artifactDAO.get(artifactURI);
         // produce URLs to each of the copies for each of the protocols
         List<StorageSite> storageSites = new ArrayList<>();
         if (artifact == null) {
-            if (this.preventNotFound) {
+            if (checkSites) {
                 log.debug("Artifact " + artifactURI.toASCIIString() + " not found in global. Check sites.");
                 artifact = getUnsyncedArtifact(artifactURI, transfer, sites, authToken);
             }
@@ -314,12 +445,18 @@ public class ProtocolsGenerator {
 
         if (artifact != null) {
             for (SiteLocation site : artifact.siteLocations) {
-                StorageSite storageSite = getSite(sites, site.getSiteID());
-                storageSites.add(storageSite);
+                StorageSite storageSite = siteDirectory.getSite(site.getSiteID());
+                if (storageSite != null) {
+                    storageSites.add(storageSite);
+                } else {
+                    // added since the last directory refresh
+                    log.debug("storage site not in directory: " + site.getSiteID());
+                }
             }
         }
 
-        prioritizePullFromSites(storageSites);
+        prioritizePullFromSites(storageSites, siteRules, clientIP, siteStats);
+        StorageSite firstSite = null;
         for (StorageSite storageSite : storageSites) {
             Capability filesCap = getFilesCapability(storageSite);
             if (filesCap != null) {
@@ -347,6 +484,9 @@ public class ProtocolsGenerator {
                                 p.setEndpoint(sb.toString());
                                 protos.add(p);
                                 log.debug("added: " + p);
+                                if (firstSite == null) {
+                                    firstSite = storageSite;
+                                }
 
                                 // add a plain anon URL
                                 if (authToken != null && Standards.SECURITY_METHOD_ANON.equals(sec)) {
@@ -372,6 +512,10 @@ public class ProtocolsGenerator {
                 }
             }
         }
+        if (firstSite != null) {
+            // clients normally use the first URL
+            siteDirectory.recordRedirect(firstSite.getResourceID());
+        }
         if (storageResolver != null) {
             try {
                 URL externalURL = storageResolver.toURL(artifactURI);
@@ -404,7 +548,13 @@ public class ProtocolsGenerator {
 
     static SortedSet<StorageSite> prioritizePushToSites(Set<StorageSite> storageSites, URI artifactURI,
                                                         Map<URI, StorageSiteRule> siteRules) {
-        PrioritizingStorageSiteComparator comparator = new PrioritizingStorageSiteComparator(siteRules, artifactURI, null);
+        return prioritizePushToSites(storageSites, artifactURI, siteRules, null, Collections.emptyMap());
+    }
+
+    static SortedSet<StorageSite> prioritizePushToSites(Set<StorageSite> storageSites, URI artifactURI,
+                                                        Map<URI, StorageSiteRule> siteRules, InetAddress clientIP,
+                                                        Map<URI, SiteStats> siteStats) {
+        PrioritizingStorageSiteComparator comparator = new PrioritizingStorageSiteComparator(siteRules, artifactURI, clientIP, siteStats);
         TreeSet<StorageSite> orderedSet = new TreeSet<>(comparator);
         for (StorageSite storageSite : storageSites) {
             if (storageSite.getAllowWrite()) {
@@ -415,31 +565,25 @@ public class ProtocolsGenerator {
     }
 
     private List<Protocol> doPushTo(URI artifactURI, Transfer transfer, String authToken) throws IOException {
-        RegistryClient regClient = new RegistryClient();
-        StorageSiteDAO storageSiteDAO = new StorageSiteDAO(artifactDAO);
-        Set<StorageSite> storageSites = storageSiteDAO.list(); // this set could be cached
+        return doPushTo(artifactURI, transfer, authToken, siteDirectory.getSites(), siteDirectory.getSiteStats());
+    }
+
+    private List<Protocol> doPushTo(URI artifactURI, Transfer transfer, String authToken, 
+                                    Set<StorageSite> storageSites, Map<URI, SiteStats> siteStats) throws IOException {
+        if (unsyncedArtifactLocator != null) {
+            // about to be written: stop reporting not found
+            unsyncedArtifactLocator.clearNotFound(artifactURI);
+        }
 
         List<Protocol> protos = new ArrayList<>();
-        SortedSet<StorageSite> orderedSites = prioritizePushToSites(storageSites, artifactURI, this.siteRules);
+        SortedSet<StorageSite> orderedSites = prioritizePushToSites(storageSites, artifactURI, this.siteRules,
+                                                                     clientIP, siteStats);
+        StorageSite firstSite = null;
         // produce URLs for all writable sites
         for (StorageSite storageSite : orderedSites) {
-            // check if site is currently offline
-            if (!isAvailable(storageSite.getResourceID())) {
-                log.warn("storage site is offline: " + storageSite.getResourceID());
-                continue;
-            }
-
             //log.warn("PUT: " + storageSite);
-            Capability filesCap = null;
-            try {
-                Capabilities caps = regClient.getCapabilities(storageSite.getResourceID());
-                filesCap = caps.findCapability(Standards.SI_FILES);
-                if (filesCap == null) {
-                    log.warn("service: " + storageSite.getResourceID() + " does not provide " + Standards.SI_FILES);
-                }
-            } catch (ResourceNotFoundException ex) {
-                log.warn("failed to find service: " + storageSite.getResourceID());
-            }
+            // check if site is currently offline
+            Capability filesCap = getFilesCapability(storageSite);
             if (filesCap != null) {
                 for (Protocol proto : transfer.getProtocols()) {
                     //log.warn("PUT: " + storageSite + " proto: " + proto);
@@ -467,6 +611,9 @@ public class ProtocolsGenerator {
                                 p.setEndpoint(sb.toString());
                                 protos.add(p);
                                 log.debug("added: " + p);
+                                if (firstSite == null) {
+                                    firstSite = storageSite;
+                                }
 
                                 // no plain anon URL for put
                             } else {
@@ -481,16 +628,10 @@ public class ProtocolsGenerator {
                 }
             }
         }
-        return protos;
-    }
-
-    private StorageSite getSite(Set<StorageSite> sites, UUID id) {
-        for (StorageSite s : sites) {
-            if (s.getID().equals(id)) {
-                return s;
-            }
+        if (firstSite != null) {
+            siteDirectory.recordRedirect(firstSite.getResourceID());
         }
-        throw new IllegalStateException("BUG: could not find StorageSite with id=" +  id);
+        return protos;
     }
 
     private boolean protocolCompat(Protocol p, URL u) {
@@ -503,38 +644,65 @@ public class ProtocolsGenerator {
         return false;
     }
 
-    private boolean isAvailable(URI resourceID) {
-        Availability availability = siteAvailabilities.get(resourceID);
-        log.debug("checking availablity: " + resourceID + " " + availability);
-        if (availability != null && !availability.isAvailable()) {
-            return false;
-        }
-        return true;
-    }
-
     /**
      * Compare two StorageSite's. A site with a namespace matching the given Artifact URI
-     * is ordered higher than a site without a matching namespace. If two StorageSite's
-     * both have a matching namespace, or both do not have a matching namespace,
-     * they are ordered using StorageSite default ordering. The StorageSite's are ordered
-     * in descending order.
+     * is ordered higher than a site without a matching namespace. Next, a site with a 
+     * network (affinity rule) that contains the client IP address is ordered higher than
+     * a site without. Next, sites are ordered by a score computed from recent latency, error
+     * rate and redirects (lower first). Sites that are still equal are ordered using StorageSite
+     * default ordering. The StorageSite's are ordered in descending order.
      */
     static class PrioritizingStorageSiteComparator implements Comparator<StorageSite> {
 
+        // latency differences smaller than this are not significant (ms)
+        static final double LATENCY_RESOLUTION = 50.0;
+        // cost of a site that failed every recent check (ms)
+        static final double ERROR_COST = 10000.0;
+        // cost of each recent redirect to a site (ms)
+        static final double REDIRECT_COST = 20.0;
+
         private final Map<URI, StorageSiteRule> siteRules;
         private final URI artifactURI;
-        private InetAddress clientIP;
+        private final InetAddress clientIP;
+        private final Map<URI, SiteStats> siteStats;
 
         public PrioritizingStorageSiteComparator(Map<URI, StorageSiteRule> siteRules,
                                                  URI artifactURI, InetAddress clientIP) {
+            this(siteRules, artifactURI, clientIP, null);
+        }
+
+        /**
+         * @param siteRules site rules by resourceID
+         * @param artifactURI target artifact, null to ignore namespace rules
+         * @param clientIP client IP address, null to ignore network rules
+         * @param siteStats site statistics by resourceID, null to ignore
+         */
+        public PrioritizingStorageSiteComparator(Map<URI, StorageSiteRule> siteRules,
+                                                 URI artifactURI, InetAddress clientIP, Map<URI, SiteStats> siteStats) {
             this.siteRules = siteRules;
             this.artifactURI = artifactURI;
             this.clientIP = clientIP;
+            this.siteStats = (siteStats == null ? Collections.emptyMap() : siteStats);
         }
 
         @Override
         public int compare(StorageSite site1, StorageSite site2) {
+            int ret = compareRank(site1, site2);
+            if (ret != 0 || site1 == null || site2 == null) {
+                return ret;
+            }
+            // default: StorageSite order
+            return site1.compareTo(site2);
+        }
 
+        /**
+         * Compare the rank of two sites without the default order.
+         * 
+         * @param site1 first site
+         * @param site2 second site
+         * @return negative if site1 is preferred, positive if site2 is preferred, 0 if equal
+         */
+        int compareRank(StorageSite site1, StorageSite site2) {
             // nothing to compare so considered equal.
             if (site1 == null && site2 == null) {
                 return 0;
@@ -550,36 +718,65 @@ public class ProtocolsGenerator {
             StorageSiteRule rule1 = this.siteRules.get(site1.getResourceID());
             StorageSiteRule rule2 = this.siteRules.get(site2.getResourceID());
 
-            // check if a site has a namespace matching the ArtifactURI
-            boolean site1Match = false;
-            if (rule1 != null) {
-                for (Namespace ns : rule1.getNamespaces()) {
-                    if (ns.matches(this.artifactURI)) {
-                        site1Match = true;
-                        break;
-                    }
-                }
+            // give higher priority to the site with a namespace that matches the Artifact URI.
+            boolean site1Match = matchesNamespace(rule1);
+            boolean site2match = matchesNamespace(rule2);
+            if (site1Match && !site2match) {
+                return -1;
             }
+            if (!site1Match && site2match) {
+                return 1;
+            }
+            
+            // give higher priority to the site near the client
+            boolean site1Near = matchesNetwork(rule1);
+            boolean site2Near = matchesNetwork(rule2);
+            if (site1Near && !site2Near) {
+                return -1;
+            }
+            if (!site1Near && site2Near) {
+                return 1;
+            }
+            
+            return Double.compare(getScore(siteStats.get(site1.getResourceID())), 
+                                  getScore(siteStats.get(site2.getResourceID())));
+        }
 
-            boolean site2match = false;
-            if (rule2 != null) {
-                for (Namespace ns : rule2.getNamespaces()) {
+        /**
+         * Compute the cost of using a site: lower is better. Sites without statistics have
+         * score 0 so new sites are tried.
+         * 
+         * @param stats site statistics, may be null
+         * @return score
+         */
+        static double getScore(SiteStats stats) {
+            if (stats == null) {
+                return 0.0;
+            }
+            double latency = Math.floor(stats.getLatency() / LATENCY_RESOLUTION) * LATENCY_RESOLUTION;
+            return latency + ERROR_COST * stats.getErrorRate() + REDIRECT_COST * stats.getRecentRedirects();
+        }
+
+        private boolean matchesNamespace(StorageSiteRule rule) {
+            if (rule != null && artifactURI != null) {
+                for (Namespace ns : rule.getNamespaces()) {
                     if (ns.matches(this.artifactURI)) {
-                        site2match = true;
-                        break;
+                        return true;
                     }
                 }
             }
+            return false;
+        }
 
-            // give higher priority to the site with a namespace that matches the Artifact URI.
-            if (site1Match && !site2match) {
-                return -1;
-            }
-            if (!site1Match && site2match) {
-                return 1;
+        private boolean matchesNetwork(StorageSiteRule rule) {
+            if (rule != null && clientIP != null) {
+                for (NetworkRange nr : rule.getNetworks()) {
+                    if (nr.contains(clientIP)) {
+                        return true;
+                    }
+                }
             }
-            // default: StorageSite order
-            return site1.compareTo(site2);
+            return false;
         }
     }
 
@@ -78,11 +78,21 @@ import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.naming.Context;
 import javax.naming.InitialContext;
@@ -94,6 +104,7 @@ import org.opencadc.inventory.StorageSite;
 import org.opencadc.inventory.db.ArtifactDAO;
 import org.opencadc.inventory.db.SQLGenerator;
 import org.opencadc.inventory.db.StorageSiteDAO;
+import org.opencadc.inventory.server.GrantCache;
 
 /**
  *
@@ -107,7 +118,9 @@ public class RavenInitAction extends InitAction {
     private static final String RAVEN_CONSIST_KEY = "org.opencadc.raven.consistency";
 
     static final String JNDI_DATASOURCE = "jdbc/inventory"; // context.xml
-    static final String JNDI_AVAILABILITY_NAME = ".availabilities";
+    static final String JNDI_SITE_DIRECTORY_NAME = ".storageSiteDirectory";
+    static final String JNDI_GRANT_CACHE_NAME = ".grantCache";
+    static final String JNDI_UNSYNCED_LOCATOR_NAME = ".unsyncedArtifactLocator";
 
     static final String SCHEMA_KEY = RAVEN_KEY + ".inventory.schema";
 
@@ -118,15 +131,23 @@ public class RavenInitAction extends InitAction {
 
     static final String RESOLVER_ENTRY = "ca.nrc.cadc.net.StorageResolver";
     static final String PREVENT_NOT_FOUND_KEY = RAVEN_CONSIST_KEY + ".preventNotFound";
+    static final String NOT_FOUND_TTL_KEY = RAVEN_CONSIST_KEY + ".notFoundTTL";
+    static final long DEFAULT_NOT_FOUND_TTL = 10L; // seconds
+    static final long UNSYNCED_PROBE_TIMEOUT = 20L; // seconds
 
     static final String DEV_AUTH_ONLY_KEY = RAVEN_KEY + ".authenticateOnly";
+    static final String SITE_AFFINITY_KEY = RAVEN_KEY + ".siteAffinity";
+    static final String BULK_GRANT_NAMESPACE_KEY = RAVEN_KEY + ".bulkGrantNamespace";
 
     static final int AVAILABILITY_CHECK_TIMEOUT = 30; //secs
     static final int AVAILABILITY_FULL_CHECK_TIMEOUT = 300; //secs
+    static final int AVAILABILITY_PROBE_TIMEOUT = 20; //secs
 
     // set init initConfig, used by subsequent init methods
     MultiValuedProperties props;
-    private String siteAvailabilitiesKey;
+    private String siteDirectoryKey;
+    private String grantCacheKey;
+    private String unsyncedLocatorKey;
     private Thread availabilityCheck;
 
     public RavenInitAction() {
@@ -138,6 +159,8 @@ public class RavenInitAction extends InitAction {
         initConfig();
         initDAO();
         initGrantProviders();
+        initGrantCache();
+        initUnsyncedArtifactLocator();
         initKeys();
         initStorageSiteRules();
         initAvailabilityCheck();
@@ -146,6 +169,8 @@ public class RavenInitAction extends InitAction {
     @Override
     public void doShutdown() {
         terminate();
+        unbindGrantCache();
+        unbindUnsyncedArtifactLocator();
     }
     
     void initConfig() {
@@ -190,6 +215,72 @@ public class RavenInitAction extends InitAction {
         log.info("initGrantProviders: OK");
     }
     
+    void initGrantCache() {
+        log.info("initGrantCache: START");
+        GrantCache grantCache = GrantCache.getInstance(props, RAVEN_KEY);
+        this.grantCacheKey = appName + JNDI_GRANT_CACHE_NAME;
+        try {
+            Context ctx = new InitialContext();
+            try {
+                ctx.unbind(grantCacheKey);
+            } catch (NamingException ignore) {
+                log.debug("unbind previous GrantCache failed... ignoring");
+            }
+            ctx.bind(grantCacheKey, grantCache);
+            log.info("initGrantCache: created JNDI key: " + grantCacheKey);
+        } catch (NamingException ex) {
+            throw new IllegalStateException("unable to bind " + grantCacheKey + " to initial context", ex);
+        }
+        log.info("initGrantCache: OK");
+    }
+    
+    private void unbindGrantCache() {
+        if (grantCacheKey != null) {
+            try {
+                Context ctx = new InitialContext();
+                ctx.unbind(grantCacheKey);
+            } catch (NamingException ex) {
+                log.debug(String.format("unable to unbind %s - %s", grantCacheKey, ex.getMessage()));
+            }
+        }
+    }
+    
+    void initUnsyncedArtifactLocator() {
+        log.info("initUnsyncedArtifactLocator: START");
+        long ttl = getSeconds(props, NOT_FOUND_TTL_KEY, DEFAULT_NOT_FOUND_TTL);
+        UnsyncedArtifactLocator locator = new UnsyncedArtifactLocator(UnsyncedArtifactLocator.DEFAULT_MAX_THREADS,
+                UNSYNCED_PROBE_TIMEOUT * 1000L, UnsyncedArtifactLocator.DEFAULT_MAX_ENTRIES, ttl * 1000L);
+        this.unsyncedLocatorKey = appName + JNDI_UNSYNCED_LOCATOR_NAME;
+        try {
+            Context ctx = new InitialContext();
+            try {
+                UnsyncedArtifactLocator prev = (UnsyncedArtifactLocator) ctx.lookup(unsyncedLocatorKey);
+                prev.shutdown();
+                ctx.unbind(unsyncedLocatorKey);
+            } catch (NamingException ignore) {
+                log.debug("unbind previous UnsyncedArtifactLocator failed... ignoring");
+            }
+            ctx.bind(unsyncedLocatorKey, locator);
+            log.info("initUnsyncedArtifactLocator: created JNDI key: " + unsyncedLocatorKey);
+        } catch (NamingException ex) {
+            throw new IllegalStateException("unable to bind " + unsyncedLocatorKey + " to initial context", ex);
+        }
+        log.info("initUnsyncedArtifactLocator: OK");
+    }
+    
+    private void unbindUnsyncedArtifactLocator() {
+        if (unsyncedLocatorKey != null) {
+            try {
+                Context ctx = new InitialContext();
+                UnsyncedArtifactLocator locator = (UnsyncedArtifactLocator) ctx.lookup(unsyncedLocatorKey);
+                locator.shutdown();
+                ctx.unbind(unsyncedLocatorKey);
+            } catch (NamingException ex) {
+                log.debug(String.format("unable to unbind %s - %s", unsyncedLocatorKey, ex.getMessage()));
+            }
+        }
+    }
+    
     void initKeys() {
         log.info("initKeys: START");
         String pubkeyFileName = props.getFirstPropertyValue(RavenInitAction.PUBKEYFILE_KEY);
@@ -216,9 +307,23 @@ public class RavenInitAction extends InitAction {
         StorageSiteDAO storageSiteDAO = new StorageSiteDAO();
         storageSiteDAO.setConfig(getDaoConfig(props));
 
-        this.siteAvailabilitiesKey = this.appName + RavenInitAction.JNDI_AVAILABILITY_NAME;
+        this.siteDirectoryKey = this.appName + RavenInitAction.JNDI_SITE_DIRECTORY_NAME;
         terminate();
-        this.availabilityCheck = new Thread(new AvailabilityCheck(storageSiteDAO, this.siteAvailabilitiesKey));
+        StorageSiteDirectory siteDirectory = new StorageSiteDirectory(storageSiteDAO);
+        try {
+            Context initialContext = new InitialContext();
+            // check if key already bound, if so unbind
+            try {
+                initialContext.unbind(siteDirectoryKey);
+            } catch (NamingException ignore) {
+                // ignore
+            }
+            initialContext.bind(siteDirectoryKey, siteDirectory);
+        } catch (NamingException e) {
+            throw new IllegalStateException(String.format("unable to bind %s to initial context: %s",
+                                                          siteDirectoryKey, e.getMessage()), e);
+        }
+        this.availabilityCheck = new Thread(new AvailabilityCheck(siteDirectory, AVAILABILITY_PROBE_TIMEOUT * 1000L));
         this.availabilityCheck.setDaemon(true);
         this.availabilityCheck.start();
     }
@@ -238,9 +343,9 @@ public class RavenInitAction extends InitAction {
         }
         try {
             InitialContext initialContext = new InitialContext();
-            initialContext.unbind(this.siteAvailabilitiesKey);
+            initialContext.unbind(this.siteDirectoryKey);
         } catch (NamingException e) {
-            log.debug(String.format("unable to unbind %s - %s", this.siteAvailabilitiesKey, e.getMessage()));
+            log.debug(String.format("unable to unbind %s - %s", this.siteDirectoryKey, e.getMessage()));
         }
     }
 
@@ -316,6 +421,34 @@ public class RavenInitAction extends InitAction {
         }
     }
 
+    private static long getSeconds(MultiValuedProperties props, String key, long defaultValue) {
+        String s = props.getFirstPropertyValue(key);
+        if (s == null) {
+            return defaultValue;
+        }
+        try {
+            long ret = Long.parseLong(s);
+            if (ret >= 0L) {
+                return ret;
+            }
+        } catch (NumberFormatException ex) {
+            log.debug("invalid " + key + ": " + s);
+        }
+        throw new IllegalStateException("invalid config: " + key + "=" + s + " must be a non-negative integer (seconds)");
+    }
+    
+    static List<Namespace> getBulkGrantNamespaces(MultiValuedProperties props) {
+        List<Namespace> ret = new ArrayList<>();
+        for (String s : props.getProperty(BULK_GRANT_NAMESPACE_KEY)) {
+            try {
+                ret.add(new Namespace(s.trim()));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalStateException("invalid config: " + BULK_GRANT_NAMESPACE_KEY + "=" + s + " " + ex.getMessage());
+            }
+        }
+        return ret;
+    }
+    
     static Map<URI, StorageSiteRule> getStorageSiteRules(MultiValuedProperties props) {
         StringBuilder sb = new StringBuilder();
         Map<URI, StorageSiteRule> prefs = new HashMap<>();
@@ -367,89 +500,218 @@ public class RavenInitAction extends InitAction {
                 }
             }
         }
+
+        List<String> affinities = props.getProperty(SITE_AFFINITY_KEY);
+        for (String affinity : affinities) {
+
+            propName = affinity + ".resourceID";
+            URI resourceID = null;
+            List<String> property = props.getProperty(propName);
+            if (property.isEmpty()) {
+                sb.append(String.format("%s: missing or empty value\n", propName));
+            } else if (property.size() > 1) {
+                sb.append(String.format("%s: found multiple properties, expected one\n", propName));
+            } else if (!StringUtil.hasText(property.get(0))) {
+                sb.append(String.format("%s: property has no value\n", propName));
+            } else {
+                try {
+                    resourceID = new URI(property.get(0));
+                } catch (URISyntaxException e) {
+                    sb.append(String.format("%s: invalid uri\n", propName));
+                }
+            }
+
+            propName = affinity + ".network";
+            property = props.getProperty(propName);
+            List<NetworkRange> networks = new ArrayList<>();
+            if (property.isEmpty()) {
+                sb.append(String.format("%s: missing or empty value\n", propName));
+            } else {
+                for (String network : property) {
+                    try {
+                        networks.add(new NetworkRange(network));
+                    } catch (IllegalArgumentException e) {
+                        sb.append(String.format("%s: %s\n", propName, e.getMessage()));
+                    }
+                }
+            }
+            if (resourceID != null) {
+                StorageSiteRule rule = prefs.get(resourceID);
+                if (rule == null) {
+                    rule = new StorageSiteRule(new ArrayList<>());
+                    prefs.put(resourceID, rule);
+                }
+                rule.getNetworks().addAll(networks);
+            }
+        }
         if (sb.length() > 0) {
             throw new IllegalStateException(String.format("invalid storage site preference rules:\n%s", sb));
         }
         return prefs;
     }
 
-    private static class AvailabilityCheck implements Runnable {
-        private final StorageSiteDAO storageSiteDAO;
-        private final Map<URI, SiteState> siteStates;
-        private final Map<URI, Availability> siteAvailabilities;
-
-        public AvailabilityCheck(StorageSiteDAO storageSiteDAO, String siteAvailabilitiesKey) {
-            this.storageSiteDAO = storageSiteDAO;
-            this.siteStates = new HashMap<URI, SiteState>();
-            this.siteAvailabilities = new HashMap<URI, Availability>();
-
-            try {
-                Context initialContext = new InitialContext();
-                // check if key already bound, if so unbind
-                try {
-                    initialContext.unbind(siteAvailabilitiesKey);
-                } catch (NamingException ignore) {
-                    // ignore
-                }
-                initialContext.bind(siteAvailabilitiesKey, this.siteAvailabilities);
-            } catch (NamingException e) {
-                throw new IllegalStateException(String.format("unable to bind %s to initial context: %s",
-                                                              siteAvailabilitiesKey, e.getMessage()), e);
-            }
+    static class AvailabilityCheck implements Runnable {
+        private final StorageSiteDirectory siteDirectory;
+        private final long probeTimeout;
+        private final Map<URI, SiteState> siteStates = new HashMap<>();
+        // probes that did not complete within the timeout of a previous check
+        private final Map<URI, Future<Availability>> pending = new HashMap<>();
+        private final Map<URI, Long> responseTimes = new ConcurrentHashMap<>();
+        private final Map<URI, SiteStats> siteStats = new HashMap<>();
+        private final ExecutorService probes;
+
+        /**
+         * @param siteDirectory directory to get sites from and publish availability to
+         * @param probeTimeout max time to wait for each site (milliseconds)
+         */
+        AvailabilityCheck(StorageSiteDirectory siteDirectory, long probeTimeout) {
+            this.siteDirectory = siteDirectory;
+            this.probeTimeout = probeTimeout;
+            this.probes = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "AvailabilityProbe");
+                t.setDaemon(true);
+                return t;
+            });
         }
 
         @Override
         public void run() {
-            int lastSiteQuerySecs = 0;
-            while (true) {
-                Set<StorageSite> sites = storageSiteDAO.list();
-                if (lastSiteQuerySecs >= AVAILABILITY_FULL_CHECK_TIMEOUT) {
-                    sites = storageSiteDAO.list();
-                    lastSiteQuerySecs = 0;
-                } else {
-                    lastSiteQuerySecs += AVAILABILITY_CHECK_TIMEOUT;
-                }
-
-                for (StorageSite site: sites) {
-                    URI resourceID = site.getResourceID();
-                    log.debug("checking site: " + resourceID);
-                    SiteState siteState = this.siteStates.get(resourceID);
-                    if (siteState == null) {
-                        siteState = new SiteState(false, 0);
-                    }
-                    boolean minDetail = siteState.isMinDetail();
-                    Availability availability;
+            try {
+                int lastSiteQuerySecs = 0;
+                while (true) {
                     try {
-                        availability = getAvailability(resourceID, minDetail);
-                    } catch (Exception e) {
-                        availability = new Availability(false, e.getMessage());
-                        log.debug(String.format("availability check failed %s - %s", resourceID, e.getMessage()));
+                        if (lastSiteQuerySecs == 0) {
+                            siteDirectory.refresh();
+                        } else {
+                            siteDirectory.refreshSites();
+                        }
+                    } catch (Exception ex) {
+                        log.warn("storage site directory refresh failed: " + ex);
                     }
-                    final boolean prev = siteState.available;
-                    siteState.available = availability.isAvailable();
-                    this.siteStates.put(resourceID, siteState);
-                    this.siteAvailabilities.put(resourceID, availability);
-                    String message = String.format("availability check %s %s - %s", minDetail ? "MIN" : "FULL",
-                                                   resourceID, siteState.available ? "UP" : "DOWN");
-                    if (!siteState.available) {
-                        log.warn(message);
-                    } else if (prev != siteState.available) {
-                        log.info(message);
+                    if (lastSiteQuerySecs >= AVAILABILITY_FULL_CHECK_TIMEOUT) {
+                        lastSiteQuerySecs = 0;
                     } else {
-                        log.debug(message);
+                        lastSiteQuerySecs += AVAILABILITY_CHECK_TIMEOUT;
+                    }
+
+                    Set<StorageSite> sites;
+                    try {
+                        sites = siteDirectory.getSites();
+                    } catch (Exception ex) {
+                        log.warn("storage site directory not available: " + ex);
+                        sites = Collections.emptySet();
+                    }
+                    checkSites(sites);
+                    siteDirectory.rollRedirectWindow();
+
+                    try {
+                        log.debug(String.format("sleep availability checks for %d secs", AVAILABILITY_CHECK_TIMEOUT));
+                        Thread.sleep(AVAILABILITY_CHECK_TIMEOUT * 1000);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException("AvailabilityCheck thread interrupted during sleep");
                     }
                 }
+            } finally {
+                probes.shutdownNow();
+            }
+        }
+
+        /**
+         * Check all sites concurrently and publish the results to the directory as a single 
+         * snapshot. A site that does not respond within the probe timeout is considered 
+         * unavailable; that probe is not restarted until it completes so a hung site cannot 
+         * accumulate threads.
+         * 
+         * @param sites sites to check
+         */
+        void checkSites(Set<StorageSite> sites) {
+            final long start = System.currentTimeMillis();
+            Set<URI> current = new HashSet<>();
+            Map<URI, Boolean> details = new HashMap<>();
+            for (StorageSite site : sites) {
+                final URI resourceID = site.getResourceID();
+                current.add(resourceID);
+                if (pending.containsKey(resourceID)) {
+                    log.debug("availability check still running: " + resourceID);
+                    continue;
+                }
+                SiteState siteState = siteStates.get(resourceID);
+                if (siteState == null) {
+                    siteState = new SiteState(false, 0);
+                    siteStates.put(resourceID, siteState);
+                }
+                final boolean minDetail = siteState.isMinDetail();
+                details.put(resourceID, minDetail);
+                log.debug("checking site: " + resourceID);
+                pending.put(resourceID, probes.submit(() -> {
+                    long t = System.currentTimeMillis();
+                    try {
+                        return getAvailability(resourceID, minDetail);
+                    } finally {
+                        responseTimes.put(resourceID, System.currentTimeMillis() - t);
+                    }
+                }));
+            }
 
+            // forget removed sites
+            Iterator<Map.Entry<URI, Future<Availability>>> iter = pending.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<URI, Future<Availability>> me = iter.next();
+                if (!current.contains(me.getKey())) {
+                    me.getValue().cancel(true);
+                    iter.remove();
+                }
+            }
+            siteStates.keySet().retainAll(current);
+            siteStats.keySet().retainAll(current);
+
+            Map<URI, Availability> result = new HashMap<>();
+            for (URI resourceID : current) {
+                Future<Availability> f = pending.get(resourceID);
+                long remaining = Math.max(0L, start + probeTimeout - System.currentTimeMillis());
+                Availability availability;
+                long responseTime = probeTimeout;
                 try {
-                    log.debug(String.format("sleep availability checks for %d secs", AVAILABILITY_CHECK_TIMEOUT));
-                    Thread.sleep(AVAILABILITY_CHECK_TIMEOUT * 1000);
-                } catch (InterruptedException e) {
-                    throw new IllegalStateException("AvailabilityCheck thread interrupted during sleep");
+                    availability = f.get(remaining, TimeUnit.MILLISECONDS);
+                    pending.remove(resourceID);
+                    responseTime = responseTimes.getOrDefault(resourceID, probeTimeout);
+                } catch (TimeoutException ex) {
+                    availability = new Availability(false, "no response after " + probeTimeout + "ms");
+                    log.debug(String.format("availability check timeout %s", resourceID));
+                } catch (ExecutionException ex) {
+                    pending.remove(resourceID);
+                    responseTime = responseTimes.getOrDefault(resourceID, probeTimeout);
+                    Throwable cause = (ex.getCause() != null ? ex.getCause() : ex);
+                    availability = new Availability(false, cause.getMessage());
+                    log.debug(String.format("availability check failed %s - %s", resourceID, cause.getMessage()));
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException("AvailabilityCheck thread interrupted during check");
+                }
+                result.put(resourceID, availability);
+                siteStats.put(resourceID, SiteStats.update(siteStats.get(resourceID), responseTime, availability.isAvailable()));
+
+                SiteState siteState = siteStates.get(resourceID);
+                final boolean prev = siteState.available;
+                siteState.available = availability.isAvailable();
+                Boolean minDetail = details.get(resourceID);
+                String mode = (minDetail == null ? "PENDING" : (minDetail ? "MIN" : "FULL"));
+                String message = String.format("availability check %s %s - %s", mode,
+                                               resourceID, siteState.available ? "UP" : "DOWN");
+                if (!siteState.available) {
+                    log.warn(message);
+                } else if (prev != siteState.available) {
+                    log.info(message);
+                } else {
+                    log.debug(message);
                 }
             }
+            siteDirectory.setAvailabilities(result);
+            siteDirectory.setSiteStats(siteStats);
+            log.debug("availability check: " + current.size() + " sites in " + (System.currentTimeMillis() - start) + "ms");
         }
 
-        private Availability getAvailability(URI resourceID, boolean minDetail) {
+        // tests can override to avoid remote calls
+        Availability getAvailability(URI resourceID, boolean minDetail) {
             AvailabilityClient client = new AvailabilityClient(resourceID, minDetail);
             return client.getAvailability();
         }
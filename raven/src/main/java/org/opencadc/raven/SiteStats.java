@@ -0,0 +1,134 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.raven;
+
+/**
+ * Recent statistics of a storage site used to rank sites in transfer negotiation. The
+ * latency and error rate are smoothed over successive availability checks; the number
+ * of redirects is the count of transfers recently sent to the site by this raven.
+ *
+ * @author agent
+ */
+public class SiteStats {
+
+    // weight of the most recent availability check
+    static final double SMOOTHING = 0.3;
+
+    private final double latency;
+    private final double errorRate;
+    private final long recentRedirects;
+
+    /**
+     * @param latency response time (milliseconds)
+     * @param errorRate fraction of failed checks (0.0 to 1.0)
+     * @param recentRedirects number of recent redirects to the site
+     */
+    public SiteStats(double latency, double errorRate, long recentRedirects) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.recentRedirects = recentRedirects;
+    }
+
+    public double getLatency() {
+        return latency;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public long getRecentRedirects() {
+        return recentRedirects;
+    }
+
+    /**
+     * Add the result of an availability check.
+     * 
+     * @param prev previous stats or null
+     * @param responseTime response time of the check (milliseconds)
+     * @param ok true if the check succeeded
+     * @return new stats
+     */
+    public static SiteStats update(SiteStats prev, long responseTime, boolean ok) {
+        double err = (ok ? 0.0 : 1.0);
+        if (prev == null) {
+            return new SiteStats(responseTime, err, 0L);
+        }
+        double lat = SMOOTHING * responseTime + (1.0 - SMOOTHING) * prev.latency;
+        double rate = SMOOTHING * err + (1.0 - SMOOTHING) * prev.errorRate;
+        return new SiteStats(lat, rate, prev.recentRedirects);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SiteStats[latency=%.1f,errorRate=%.2f,recentRedirects=%d]", latency, errorRate, recentRedirects);
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.raven;
+
+import ca.nrc.cadc.net.ResourceNotFoundException;
+import ca.nrc.cadc.reg.Capabilities;
+import ca.nrc.cadc.reg.Capability;
+import ca.nrc.cadc.reg.Standards;
+import ca.nrc.cadc.reg.client.RegistryClient;
+import ca.nrc.cadc.vosi.Availability;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.opencadc.inventory.StorageSite;
+import org.opencadc.inventory.db.StorageSiteDAO;
+
+/**
+ * In-memory directory of storage sites shared by all raven requests. The directory holds
+ * the StorageSite list from the inventory database, the files capability of each site, and
+ * the most recent availability of each site. Requests only read the current snapshot; the
+ * content is refreshed by a background thread (see RavenInitAction) so transfer negotiation
+ * does not query the database or the registry for every site in every request.
+ *
+ * @author agent
+ */
+public class StorageSiteDirectory {
+    private static final Logger log = Logger.getLogger(StorageSiteDirectory.class);
+
+    private final StorageSiteDAO storageSiteDAO;
+    
+    // held only to swap in new state; never held during database or registry calls
+    private final Object refreshLock = new Object();
+    
+    // serializes on-demand loads by request threads so they do not all query at once
+    private final Object loadLock = new Object();
+    
+    // order of refreshes so a slow refresh cannot replace the result of a newer one
+    private final AtomicLong refreshSequence = new AtomicLong();
+    private long installedSequence = 0L;
+    
+    // min time between refreshes caused by unknown site IDs (ms)
+    static final long MIN_REFRESH_INTERVAL = 1000L;
+    private volatile long lastRefresh = 0L;
+
+    // immutable snapshots: replaced, never modified
+    private volatile Snapshot snapshot;
+    private volatile Map<URI, Availability> availabilities = Collections.emptyMap();
+    private volatile Map<URI, SiteStats> siteStats = Collections.emptyMap();
+    
+    // redirects in the current and previous window
+    private final Map<URI, AtomicLong> redirects = new ConcurrentHashMap<>();
+    private volatile Map<URI, Long> prevRedirects = Collections.emptyMap();
+
+    public StorageSiteDirectory(StorageSiteDAO storageSiteDAO) {
+        this.storageSiteDAO = storageSiteDAO;
+    }
+
+    /**
+     * Get the current set of storage sites. The directory is loaded on first use if the
+     * background refresh has not completed yet.
+     * 
+     * @return unmodifiable set of storage sites
+     */
+    public Set<StorageSite> getSites() {
+        return getSnapshot().sites;
+    }
+
+    /**
+     * Get a storage site by ID.
+     * 
+     * @param id storage site ID
+     * @return the storage site or null if not found
+     */
+    public StorageSite getSite(UUID id) {
+        StorageSite ret = getSnapshot().sitesByID.get(id);
+        if (ret == null && System.currentTimeMillis() - lastRefresh > MIN_REFRESH_INTERVAL) {
+            // site added since the last refresh
+            synchronized (loadLock) {
+                ret = snapshot.sitesByID.get(id);
+                if (ret == null && System.currentTimeMillis() - lastRefresh > MIN_REFRESH_INTERVAL) {
+                    log.debug("site not found: " + id + " -- refreshing");
+                    refreshSites();
+                    ret = snapshot.sitesByID.get(id);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get the files capability of a storage site.
+     * 
+     * @param resourceID storage site resourceID
+     * @return the files capability or null if it could not be resolved
+     */
+    public Capability getFilesCapability(URI resourceID) {
+        return getSnapshot().filesCapabilities.get(resourceID);
+    }
+
+    /**
+     * Get the most recent availability of a storage site.
+     * 
+     * @param resourceID storage site resourceID
+     * @return availability or null if the site has not been checked yet
+     */
+    public Availability getAvailability(URI resourceID) {
+        return availabilities.get(resourceID);
+    }
+
+    /**
+     * Check the most recent availability of a storage site. A site that has not been 
+     * checked yet is assumed to be available.
+     * 
+     * @param resourceID storage site resourceID
+     * @return false if the site was found to be unavailable, otherwise true
+     */
+    public boolean isAvailable(URI resourceID) {
+        Availability availability = availabilities.get(resourceID);
+        log.debug("checking availablity: " + resourceID + " " + availability);
+        return availability == null || availability.isAvailable();
+    }
+
+    /**
+     * Replace the availability of all storage sites. Readers see either the previous
+     * or the new set of availabilities, never a mix.
+     * 
+     * @param availabilities current availability by resourceID
+     */
+    public void setAvailabilities(Map<URI, Availability> availabilities) {
+        synchronized (refreshLock) {
+            this.availabilities = Collections.unmodifiableMap(new HashMap<>(availabilities));
+        }
+    }
+
+    /**
+     * Replace the availability statistics of all storage sites.
+     * 
+     * @param siteStats current statistics by resourceID
+     */
+    public void setSiteStats(Map<URI, SiteStats> siteStats) {
+        synchronized (refreshLock) {
+            this.siteStats = Collections.unmodifiableMap(new HashMap<>(siteStats));
+        }
+    }
+
+    /**
+     * Get the current statistics of all storage sites, including the number of recent 
+     * redirects. Sites without any statistics are not included.
+     * 
+     * @return statistics by resourceID
+     */
+    public Map<URI, SiteStats> getSiteStats() {
+        Map<URI, SiteStats> cur = siteStats;
+        Map<URI, SiteStats> ret = new HashMap<>();
+        for (StorageSite s : getSites()) {
+            URI resourceID = s.getResourceID();
+            SiteStats ss = cur.get(resourceID);
+            long num = getRecentRedirects(resourceID);
+            if (ss != null) {
+                ret.put(resourceID, new SiteStats(ss.getLatency(), ss.getErrorRate(), num));
+            } else if (num > 0L) {
+                ret.put(resourceID, new SiteStats(0.0, 0.0, num));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Record that a transfer was sent to a storage site.
+     * 
+     * @param resourceID storage site resourceID
+     */
+    public void recordRedirect(URI resourceID) {
+        redirects.computeIfAbsent(resourceID, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Start a new redirect counting window. Recent redirects are those in the current 
+     * and the previous window.
+     */
+    public void rollRedirectWindow() {
+        Map<URI, Long> prev = new HashMap<>();
+        for (Map.Entry<URI, AtomicLong> me : redirects.entrySet()) {
+            long num = me.getValue().getAndSet(0L);
+            if (num > 0L) {
+                prev.put(me.getKey(), num);
+            }
+        }
+        this.prevRedirects = Collections.unmodifiableMap(prev);
+    }
+
+    long getRecentRedirects(URI resourceID) {
+        long ret = 0L;
+        AtomicLong cur = redirects.get(resourceID);
+        if (cur != null) {
+            ret += cur.get();
+        }
+        Long prev = prevRedirects.get(resourceID);
+        if (prev != null) {
+            ret += prev;
+        }
+        return ret;
+    }
+
+    /**
+     * Reload the storage site list and resolve the files capability of every site.
+     */
+    public void refresh() {
+        refresh(true);
+    }
+
+    /**
+     * Reload the storage site list. The files capability is only resolved for new sites
+     * and sites where it could not be resolved previously.
+     */
+    public void refreshSites() {
+        refresh(false);
+    }
+
+    private void refresh(boolean full) {
+        // query the database and registry without holding the lock
+        final long seq = refreshSequence.incrementAndGet();
+        Snapshot cur = snapshot;
+        Set<StorageSite> sites = listSites();
+        Map<URI, Capability> caps = new HashMap<>();
+        for (StorageSite s : sites) {
+            Capability cap = null;
+            if (!full && cur != null) {
+                cap = cur.filesCapabilities.get(s.getResourceID());
+            }
+            if (cap == null) {
+                cap = fetchFilesCapability(s.getResourceID());
+            }
+            if (cap != null) {
+                caps.put(s.getResourceID(), cap);
+            }
+        }
+        Snapshot next = new Snapshot(sites, caps);
+        
+        synchronized (refreshLock) {
+            if (seq < installedSequence) {
+                log.debug("refresh: discard result superseded by a newer refresh");
+                return;
+            }
+            this.installedSequence = seq;
+            this.snapshot = next;
+            this.lastRefresh = System.currentTimeMillis();
+
+            // drop state of sites that were removed
+            Set<URI> ids = new HashSet<>();
+            Map<URI, Availability> avail = new HashMap<>();
+            for (StorageSite s : sites) {
+                ids.add(s.getResourceID());
+                Availability a = availabilities.get(s.getResourceID());
+                if (a != null) {
+                    avail.put(s.getResourceID(), a);
+                }
+            }
+            this.availabilities = Collections.unmodifiableMap(avail);
+            redirects.keySet().retainAll(ids);
+            log.debug("refresh: " + sites.size() + " sites, " + caps.size() + " files capabilities");
+        }
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot ret = snapshot;
+        if (ret == null) {
+            synchronized (loadLock) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                ret = snapshot;
+            }
+        }
+        return ret;
+    }
+
+    // tests can override to avoid database
+    protected Set<StorageSite> listSites() {
+        return storageSiteDAO.list();
+    }
+
+    // tests can override to avoid registry lookup
+    protected Capability fetchFilesCapability(URI resourceID) {
+        try {
+            RegistryClient regClient = new RegistryClient();
+            Capabilities caps = regClient.getCapabilities(resourceID);
+            Capability filesCap = caps.findCapability(Standards.SI_FILES);
+            if (filesCap == null) {
+                log.warn("service: " + resourceID + " does not provide " + Standards.SI_FILES);
+            }
+            return filesCap;
+        } catch (ResourceNotFoundException ex) {
+            log.warn("storage site not found: " + resourceID);
+        } catch (Exception ex) {
+            log.warn("storage site not responding (capabilities): " + resourceID, ex);
+        }
+        return null;
+    }
+
+    private static class Snapshot {
+        final Set<StorageSite> sites;
+        final Map<UUID, StorageSite> sitesByID;
+        final Map<URI, Capability> filesCapabilities;
+
+        Snapshot(Set<StorageSite> sites, Map<URI, Capability> filesCapabilities) {
+            this.sites = Collections.unmodifiableSet(new TreeSet<>(sites));
+            Map<UUID, StorageSite> ids = new HashMap<>();
+            for (StorageSite s : sites) {
+                ids.put(s.getID(), s);
+            }
+            this.sitesByID = Collections.unmodifiableMap(ids);
+            this.filesCapabilities = Collections.unmodifiableMap(filesCapabilities);
+        }
+    }
+}
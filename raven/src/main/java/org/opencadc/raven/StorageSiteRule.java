@@ -69,6 +69,7 @@
 
 package org.opencadc.raven;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.opencadc.inventory.Namespace;
@@ -76,6 +77,7 @@ import org.opencadc.inventory.Namespace;
 public class StorageSiteRule {
 
     private final List<Namespace> namespaces;
+    private final List<NetworkRange> networks = new ArrayList<>();
 
     public StorageSiteRule(List<Namespace> namespaces) {
         this.namespaces = namespaces;
@@ -85,4 +87,13 @@ public class StorageSiteRule {
         return this.namespaces;
     }
 
+    /**
+     * Client networks that are close to the site.
+     * 
+     * @return mutable list of client networks
+     */
+    public List<NetworkRange> getNetworks() {
+        return this.networks;
+    }
+
 }
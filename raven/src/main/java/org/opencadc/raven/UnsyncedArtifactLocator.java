@@ -0,0 +1,273 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.raven;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+import org.opencadc.inventory.Artifact;
+
+/**
+ * Locate artifacts that are not (yet) in the global inventory by probing storage sites
+ * concurrently (preventNotFound). The first site to report the artifact wins and the
+ * remaining probes are cancelled. Artifacts that no site has are remembered for a short 
+ * time so repeated requests for a missing artifact do not probe every site again.
+ * 
+ * <p>One instance is shared by all requests (see RavenInitAction).
+ *
+ * @author agent
+ */
+public class UnsyncedArtifactLocator {
+    private static final Logger log = Logger.getLogger(UnsyncedArtifactLocator.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final int DEFAULT_MAX_THREADS = 32;
+
+    private final long timeout;
+    private final long negativeTTL;
+    private final Map<URI, Long> notFound;
+    private final ExecutorService probes;
+
+    /**
+     * @param maxThreads max number of concurrent site probes (all requests)
+     * @param timeout max time to wait for the sites to respond (milliseconds)
+     * @param maxEntries max number of not-found artifacts to remember
+     * @param negativeTTL time to remember that no site has an artifact (milliseconds), 0 to disable
+     */
+    public UnsyncedArtifactLocator(int maxThreads, long timeout, int maxEntries, long negativeTTL) {
+        if (maxThreads <= 0 || timeout <= 0L || maxEntries <= 0 || negativeTTL < 0L) {
+            throw new IllegalArgumentException("invalid UnsyncedArtifactLocator config: maxThreads=" + maxThreads
+                    + " timeout=" + timeout + " maxEntries=" + maxEntries + " negativeTTL=" + negativeTTL);
+        }
+        this.timeout = timeout;
+        this.negativeTTL = negativeTTL;
+        this.notFound = new LinkedHashMap<URI, Long>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<URI, Long> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.probes = Executors.newFixedThreadPool(maxThreads, r -> {
+            Thread t = new Thread(r, "UnsyncedArtifactProbe");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Run the site probes concurrently and return the first artifact found.
+     * 
+     * @param artifactURI the artifact to locate
+     * @param siteProbes one probe per site; a probe returns null if the site does not have the artifact
+     * @return the artifact or null if not found
+     */
+    public Artifact locate(URI artifactURI, List<Callable<Artifact>> siteProbes) {
+        return locateAll(Collections.singletonMap(artifactURI, siteProbes)).get(artifactURI);
+    }
+
+    /**
+     * Run the site probes for several artifacts concurrently and return the first copy found
+     * of each artifact. All probes share the same time limit, so the time to locate many
+     * artifacts is no longer than the time to locate one.
+     * 
+     * @param siteProbes site probes by artifact URI; a probe returns null if the site does not have the artifact
+     * @return the artifacts that were found, by artifact URI
+     */
+    public Map<URI, Artifact> locateAll(Map<URI, List<Callable<Artifact>>> siteProbes) {
+        final long start = System.currentTimeMillis();
+        ExecutorCompletionService<Artifact> ecs = new ExecutorCompletionService<>(probes);
+        Map<Future<Artifact>, URI> pending = new HashMap<>();
+        Map<URI, Integer> remaining = new HashMap<>();
+        Set<URI> incomplete = new HashSet<>();
+        Map<URI, Artifact> ret = new HashMap<>();
+        try {
+            for (Map.Entry<URI, List<Callable<Artifact>>> me : siteProbes.entrySet()) {
+                URI artifactURI = me.getKey();
+                if (isNotFound(artifactURI)) {
+                    log.debug("not found (cached): " + artifactURI);
+                    continue;
+                }
+                if (me.getValue().isEmpty()) {
+                    // no site to check
+                    continue;
+                }
+                for (Callable<Artifact> p : me.getValue()) {
+                    pending.put(ecs.submit(p), artifactURI);
+                }
+                remaining.put(artifactURI, me.getValue().size());
+            }
+            while (!pending.isEmpty()) {
+                long wait = start + timeout - System.currentTimeMillis();
+                Future<Artifact> f = (wait > 0L ? ecs.poll(wait, TimeUnit.MILLISECONDS) : null);
+                if (f == null) {
+                    log.debug("probe timeout after " + timeout + "ms: " + pending.size() + " probes");
+                    break;
+                }
+                URI artifactURI = pending.remove(f);
+                if (artifactURI == null) {
+                    // cancelled after the artifact was found
+                    continue;
+                }
+                remaining.put(artifactURI, remaining.get(artifactURI) - 1);
+                try {
+                    Artifact a = f.get();
+                    if (a != null) {
+                        ret.put(artifactURI, a);
+                        cancel(pending, artifactURI);
+                    }
+                } catch (ExecutionException ex) {
+                    log.debug("probe failed: " + artifactURI + " cause: " + ex.getCause());
+                    incomplete.add(artifactURI);
+                }
+            }
+        } catch (InterruptedException ex) {
+            log.debug("interrupted while waiting for probes");
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<Artifact> f : pending.keySet()) {
+                f.cancel(true);
+            }
+        }
+
+        for (Map.Entry<URI, Integer> me : remaining.entrySet()) {
+            URI artifactURI = me.getKey();
+            if (me.getValue() == 0 && !ret.containsKey(artifactURI) && !incomplete.contains(artifactURI)) {
+                // every site answered: remember
+                setNotFound(artifactURI);
+            }
+        }
+        log.debug("locateAll: " + ret.size() + "/" + siteProbes.size() + " found in " 
+                + (System.currentTimeMillis() - start) + "ms");
+        return ret;
+    }
+    
+    // cancel the remaining probes for an artifact that was found
+    private void cancel(Map<Future<Artifact>, URI> pending, URI artifactURI) {
+        Iterator<Map.Entry<Future<Artifact>, URI>> i = pending.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<Future<Artifact>, URI> me = i.next();
+            if (artifactURI.equals(me.getValue())) {
+                me.getKey().cancel(true);
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget that an artifact was not found. 
+     * 
+     * @param artifactURI artifact URI
+     */
+    public void clearNotFound(URI artifactURI) {
+        synchronized (notFound) {
+            notFound.remove(artifactURI);
+        }
+    }
+
+    public void shutdown() {
+        probes.shutdownNow();
+    }
+
+    boolean isNotFound(URI artifactURI) {
+        synchronized (notFound) {
+            Long expires = notFound.get(artifactURI);
+            if (expires != null) {
+                if (expires > System.currentTimeMillis()) {
+                    return true;
+                }
+                notFound.remove(artifactURI);
+            }
+        }
+        return false;
+    }
+
+    private void setNotFound(URI artifactURI) {
+        if (negativeTTL > 0L) {
+            synchronized (notFound) {
+                notFound.put(artifactURI, System.currentTimeMillis() + negativeTTL);
+            }
+        }
+    }
+}
@@ -77,6 +77,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -248,5 +249,106 @@ public class ProtocolsGeneratorTest {
         Assert.assertEquals(writeOnlySite, actual.last());
     }
 
-}
 
+    @Test
+    public void testNetworkRange() throws Exception {
+        NetworkRange nr = new NetworkRange("192.168.16.0/20");
+        Assert.assertTrue(nr.contains(InetAddress.getByName("192.168.16.1")));
+        Assert.assertTrue(nr.contains(InetAddress.getByName("192.168.31.255")));
+        Assert.assertFalse(nr.contains(InetAddress.getByName("192.168.32.0")));
+        Assert.assertFalse(nr.contains(InetAddress.getByName("10.0.0.1")));
+        Assert.assertFalse(nr.contains(InetAddress.getByName("2001:db8::1")));
+        Assert.assertFalse(nr.contains(null));
+        
+        nr = new NetworkRange("2001:db8::/32");
+        Assert.assertTrue(nr.contains(InetAddress.getByName("2001:db8:1::1")));
+        Assert.assertFalse(nr.contains(InetAddress.getByName("2001:db9::1")));
+        
+        nr = new NetworkRange("0.0.0.0/0");
+        Assert.assertTrue(nr.contains(InetAddress.getByName("10.0.0.1")));
+
+        String[] invalid = new String[] { "192.168.0.0", "192.168.0.0/", "192.168.0.0/33", "example.net/24", "1.2.3.4/x" };
+        for (String s : invalid) {
+            try {
+                new NetworkRange(s);
+                Assert.fail("expected IllegalArgumentException: " + s);
+            } catch (IllegalArgumentException expected) {
+                log.debug("caught expected: " + expected);
+            }
+        }
+    }
+
+    @Test
+    public void testSiteRanking() throws Exception {
+        StorageSite near = new StorageSite(URI.create("ivo://site-near"), "near", true, true);
+        StorageSite fast = new StorageSite(URI.create("ivo://site-fast"), "fast", true, true);
+        StorageSite slow = new StorageSite(URI.create("ivo://site-slow"), "slow", true, true);
+        StorageSite flaky = new StorageSite(URI.create("ivo://site-flaky"), "flaky", true, true);
+        
+        Map<URI, StorageSiteRule> siteRules = new HashMap<>();
+        StorageSiteRule rule = new StorageSiteRule(new ArrayList<>());
+        rule.getNetworks().add(new NetworkRange("10.1.0.0/16"));
+        siteRules.put(near.getResourceID(), rule);
+        
+        Map<URI, SiteStats> stats = new HashMap<>();
+        stats.put(near.getResourceID(), new SiteStats(800.0, 0.0, 0L));
+        stats.put(fast.getResourceID(), new SiteStats(20.0, 0.0, 0L));
+        stats.put(slow.getResourceID(), new SiteStats(400.0, 0.0, 0L));
+        stats.put(flaky.getResourceID(), new SiteStats(20.0, 0.5, 0L));
+        
+        // client in the near network
+        List<StorageSite> sites = new ArrayList<>();
+        sites.add(slow);
+        sites.add(flaky);
+        sites.add(fast);
+        sites.add(near);
+        ProtocolsGenerator.prioritizePullFromSites(sites, siteRules, InetAddress.getByName("10.1.2.3"), stats);
+        Assert.assertEquals(near, sites.get(0));
+        Assert.assertEquals(fast, sites.get(1));
+        Assert.assertEquals(slow, sites.get(2));
+        Assert.assertEquals(flaky, sites.get(3));
+        
+        // client elsewhere
+        ProtocolsGenerator.prioritizePullFromSites(sites, siteRules, InetAddress.getByName("10.2.2.3"), stats);
+        Assert.assertEquals(fast, sites.get(0));
+        Assert.assertEquals(slow, sites.get(1));
+        Assert.assertEquals(near, sites.get(2));
+        Assert.assertEquals(flaky, sites.get(3));
+        
+        // fast site is busy
+        stats.put(fast.getResourceID(), new SiteStats(20.0, 0.0, 100L));
+        ProtocolsGenerator.prioritizePullFromSites(sites, siteRules, null, stats);
+        Assert.assertEquals(slow, sites.get(0));
+        Assert.assertEquals(near, sites.get(1));
+        Assert.assertEquals(fast, sites.get(2));
+        
+        // small latency differences are not significant: random order
+        stats.clear();
+        stats.put(fast.getResourceID(), new SiteStats(20.0, 0.0, 0L));
+        stats.put(slow.getResourceID(), new SiteStats(30.0, 0.0, 0L));
+        sites.clear();
+        sites.add(fast);
+        sites.add(slow);
+        Set<StorageSite> first = new TreeSet<>();
+        for (int i = 0; i < 100; i++) {
+            ProtocolsGenerator.prioritizePullFromSites(sites, siteRules, null, stats);
+            first.add(sites.get(0));
+        }
+        Assert.assertEquals(2, first.size());
+        
+        // namespace rules before network rules for put
+        List<Namespace> namespaces = new ArrayList<>();
+        namespaces.add(new Namespace("cadc:TEST/"));
+        siteRules.put(slow.getResourceID(), new StorageSiteRule(namespaces));
+        Set<StorageSite> all = new TreeSet<>();
+        all.add(near);
+        all.add(fast);
+        all.add(slow);
+        SortedSet<StorageSite> put = ProtocolsGenerator.prioritizePushToSites(all, URI.create("cadc:TEST/file.fits"), 
+                siteRules, InetAddress.getByName("10.1.2.3"), stats);
+        Assert.assertEquals(3, put.size());
+        Assert.assertEquals(slow, put.first());
+        Assert.assertEquals(near, put.toArray()[1]);
+        Assert.assertEquals(fast, put.last());
+    }
+}
@@ -71,10 +71,17 @@ package org.opencadc.raven;
 
 import ca.nrc.cadc.util.Log4jInit;
 import ca.nrc.cadc.util.PropertiesReader;
+import ca.nrc.cadc.vosi.Availability;
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
+import org.opencadc.inventory.StorageSite;
 
 public class RavenInitActionTest {
     private static final Logger log = Logger.getLogger(RavenInitActionTest.class);
@@ -155,9 +162,69 @@ public class RavenInitActionTest {
             Assert.assertTrue(message.contains("namespace: missing"));
             Assert.assertTrue(message.contains("namespace: empty value"));
             Assert.assertTrue(message.contains("invalid namespace, whitespace not allowed"));
+            Assert.assertTrue(message.contains("invalid network: 10.0.0.0/40"));
         } finally {
             System.setProperty("user.home", USER_HOME);
         }
     }
 
+
+    @Test
+    public void testConcurrentAvailabilityCheck() throws Exception {
+        final Set<StorageSite> sites = new TreeSet<>();
+        final Map<URI, Long> delays = new ConcurrentHashMap<>();
+        for (int i = 1; i <= 4; i++) {
+            StorageSite s = new StorageSite(URI.create("ivo://opencadc.org/site" + i), "site" + i, true, true);
+            sites.add(s);
+            delays.put(s.getResourceID(), 200L);
+        }
+        URI slow = URI.create("ivo://opencadc.org/site3");
+        URI down = URI.create("ivo://opencadc.org/site4");
+        delays.put(slow, 5000L);
+        final Set<URI> failing = ConcurrentHashMap.newKeySet();
+        failing.add(down);
+        
+        StorageSiteDirectory dir = new StorageSiteDirectory(null) {
+            @Override
+            protected Set<StorageSite> listSites() {
+                return sites;
+            }
+        };
+        final Map<URI, Integer> calls = new ConcurrentHashMap<>();
+        RavenInitAction.AvailabilityCheck check = new RavenInitAction.AvailabilityCheck(dir, 1000L) {
+            @Override
+            Availability getAvailability(URI resourceID, boolean minDetail) {
+                calls.merge(resourceID, 1, Integer::sum);
+                try {
+                    Thread.sleep(delays.get(resourceID));
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException("interrupted");
+                }
+                if (failing.contains(resourceID)) {
+                    throw new RuntimeException("connection refused");
+                }
+                return new Availability(true, "ok");
+            }
+        };
+
+        // 4 sites at 200ms and one at 5000ms: concurrent probes with 1000ms timeout
+        long t1 = System.currentTimeMillis();
+        check.checkSites(sites);
+        long dt = System.currentTimeMillis() - t1;
+        log.info("checkSites: " + dt + "ms");
+        Assert.assertTrue("concurrent: " + dt, dt < 2000L);
+        
+        Assert.assertTrue(dir.isAvailable(URI.create("ivo://opencadc.org/site1")));
+        Assert.assertTrue(dir.isAvailable(URI.create("ivo://opencadc.org/site2")));
+        Assert.assertFalse(dir.isAvailable(slow));
+        Assert.assertFalse(dir.isAvailable(down));
+        
+        // the hung probe is not restarted while it is still running
+        failing.clear();
+        check.checkSites(sites);
+        Assert.assertEquals(1, calls.get(slow).intValue());
+        Assert.assertEquals(2, calls.get(down).intValue());
+        Assert.assertFalse(dir.isAvailable(slow));
+        Assert.assertTrue(dir.isAvailable(down));
+    }
 }
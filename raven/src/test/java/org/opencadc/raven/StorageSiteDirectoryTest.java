@@ -0,0 +1,267 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.raven;
+
+import ca.nrc.cadc.reg.Capability;
+import ca.nrc.cadc.reg.Standards;
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.vosi.Availability;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.inventory.StorageSite;
+
+/**
+ *
+ * @author agent
+ */
+public class StorageSiteDirectoryTest {
+    private static final Logger log = Logger.getLogger(StorageSiteDirectoryTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.raven", Level.INFO);
+    }
+
+    public StorageSiteDirectoryTest() { 
+    }
+
+    @Test
+    public void testCachedSitesAndCapabilities() throws Exception {
+        StorageSite s1 = new StorageSite(URI.create("ivo://opencadc.org/site1"), "site1", true, true);
+        StorageSite s2 = new StorageSite(URI.create("ivo://opencadc.org/site2"), "site2", true, false);
+        TestDirectory dir = new TestDirectory();
+        dir.sites.add(s1);
+        dir.sites.add(s2);
+        dir.caps.put(s1.getResourceID(), new Capability(Standards.SI_FILES));
+        // s2 not in registry
+
+        // loaded on first use
+        Set<StorageSite> sites = dir.getSites();
+        Assert.assertEquals(2, sites.size());
+        Assert.assertEquals(1, dir.numList);
+        Assert.assertEquals(2, dir.numCaps);
+        
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(2, dir.getSites().size());
+            Assert.assertEquals(s1, dir.getSite(s1.getID()));
+            Assert.assertEquals(s2, dir.getSite(s2.getID()));
+            Assert.assertNotNull(dir.getFilesCapability(s1.getResourceID()));
+            Assert.assertNull(dir.getFilesCapability(s2.getResourceID()));
+        }
+        Assert.assertEquals(1, dir.numList);
+        Assert.assertEquals(2, dir.numCaps);
+        
+        try {
+            sites.clear();
+            Assert.fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException expected) {
+            log.debug("caught expected: " + expected);
+        }
+
+ 
+        // only the unresolved capability is retried
+        dir.caps.put(s2.getResourceID(), new Capability(Standards.SI_FILES));
+        dir.refreshSites();
+        Assert.assertEquals(2, dir.numList);
+        Assert.assertEquals(3, dir.numCaps);
+        Assert.assertNotNull(dir.getFilesCapability(s2.getResourceID()));
+        dir.refreshSites();
+        Assert.assertEquals(3, dir.numList);
+        Assert.assertEquals(3, dir.numCaps);
+        
+        // unknown site ID: reload site list
+        StorageSite s4 = new StorageSite(URI.create("ivo://opencadc.org/site4"), "site4", true, true);
+        dir.sites.add(s4);
+        Thread.sleep(StorageSiteDirectory.MIN_REFRESH_INTERVAL + 10L);
+        Assert.assertEquals(s4, dir.getSite(s4.getID()));
+        Assert.assertEquals(4, dir.numList);
+        Assert.assertEquals(4, dir.numCaps);
+        Assert.assertNull(dir.getSite(UUID.randomUUID())); // rate limited
+        Assert.assertEquals(4, dir.numList);
+        dir.sites.remove(s4);
+        
+
+        // full refresh picks up new sites and drops removed ones
+        StorageSite s3 = new StorageSite(URI.create("ivo://opencadc.org/site3"), "site3", true, true);
+        dir.sites.remove(s1);
+        dir.sites.add(s3);
+        dir.refresh();
+        Assert.assertEquals(5, dir.numList);
+        Assert.assertEquals(2, dir.getSites().size());
+        Assert.assertNull(dir.getSite(s1.getID()));
+        Assert.assertEquals(s3, dir.getSite(s3.getID()));
+        Assert.assertNull(dir.getFilesCapability(s1.getResourceID()));
+        Assert.assertNull(dir.getFilesCapability(s3.getResourceID()));
+    }
+    
+    @Test
+    public void testAvailability() throws Exception {
+        StorageSite s1 = new StorageSite(URI.create("ivo://opencadc.org/site1"), "site1", true, true);
+        StorageSite s2 = new StorageSite(URI.create("ivo://opencadc.org/site2"), "site2", true, true);
+        TestDirectory dir = new TestDirectory();
+        dir.sites.add(s1);
+        dir.sites.add(s2);
+        dir.refresh();
+
+        // not checked yet: assumed available
+        Assert.assertNull(dir.getAvailability(s1.getResourceID()));
+        Assert.assertTrue(dir.isAvailable(s1.getResourceID()));
+
+        Map<URI, Availability> avail = new HashMap<>();
+        avail.put(s1.getResourceID(), new Availability(false, "down"));
+        avail.put(s2.getResourceID(), new Availability(true, "up"));
+        dir.setAvailabilities(avail);
+        avail.clear();
+        Assert.assertFalse(dir.isAvailable(s1.getResourceID()));
+        Assert.assertTrue(dir.isAvailable(s2.getResourceID()));
+        
+        // removed site is dropped
+        dir.sites.remove(s1);
+        dir.refresh();
+        Assert.assertNull(dir.getAvailability(s1.getResourceID()));
+        Assert.assertNotNull(dir.getAvailability(s2.getResourceID()));
+    }
+
+    @Test
+    public void testSlowCapabilitiesDoNotBlock() throws Exception {
+        StorageSite s1 = new StorageSite(URI.create("ivo://opencadc.org/site1"), "site1", true, true);
+        TestDirectory dir = new TestDirectory();
+        dir.sites.add(s1);
+        dir.caps.put(s1.getResourceID(), new Capability(Standards.SI_FILES));
+        dir.refresh();
+        
+        // full refresh stuck in a registry call
+        dir.fetchStarted = new CountDownLatch(1);
+        dir.fetchRelease = new CountDownLatch(1);
+        Thread t = new Thread(() -> dir.refresh());
+        t.start();
+        try {
+            Assert.assertTrue(dir.fetchStarted.await(10, TimeUnit.SECONDS));
+            
+            // readers and writers of availability are not blocked by the refresh
+            Map<URI, Availability> avail = new HashMap<>();
+            avail.put(s1.getResourceID(), new Availability(false, "down"));
+            dir.setAvailabilities(avail);
+            dir.setSiteStats(new HashMap<>());
+            Assert.assertFalse(dir.isAvailable(s1.getResourceID()));
+            Assert.assertEquals(s1, dir.getSite(s1.getID()));
+            Assert.assertNotNull(dir.getFilesCapability(s1.getResourceID()));
+        } finally {
+            dir.fetchRelease.countDown();
+            t.join(10000L);
+        }
+        Assert.assertFalse(t.isAlive());
+        Assert.assertEquals(1, dir.getSites().size());
+        Assert.assertFalse(dir.isAvailable(s1.getResourceID()));
+    }
+
+    private class TestDirectory extends StorageSiteDirectory {
+        final Set<StorageSite> sites = new TreeSet<>();
+        final Map<URI, Capability> caps = new HashMap<>();
+        int numList = 0;
+        int numCaps = 0;
+        volatile CountDownLatch fetchStarted;
+        volatile CountDownLatch fetchRelease;
+
+        TestDirectory() {
+            super(null);
+        }
+
+        @Override
+        protected Set<StorageSite> listSites() {
+            numList++;
+            return new TreeSet<>(sites);
+        }
+
+        @Override
+        protected Capability fetchFilesCapability(URI resourceID) {
+            numCaps++;
+            if (fetchStarted != null) {
+                fetchStarted.countDown();
+                try {
+                    fetchRelease.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException("BUG: interrupted", ex);
+                }
+            }
+            return caps.get(resourceID);
+        }
+    }
+}
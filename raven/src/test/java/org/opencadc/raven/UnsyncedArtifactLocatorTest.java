@@ -0,0 +1,234 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.raven;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.inventory.Artifact;
+
+/**
+ *
+ * @author agent
+ */
+public class UnsyncedArtifactLocatorTest {
+    private static final Logger log = Logger.getLogger(UnsyncedArtifactLocatorTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.raven", Level.INFO);
+    }
+
+    private final AtomicInteger numProbes = new AtomicInteger();
+    private final AtomicInteger numInterrupted = new AtomicInteger();
+
+    public UnsyncedArtifactLocatorTest() { 
+    }
+
+    @Test
+    public void testFirstFound() throws Exception {
+        URI uri = URI.create("cadc:TEST/found.fits");
+        Artifact expected = new Artifact(uri, URI.create("md5:d41d8cd98f00b204e9800998ecf8427e"), new Date(), 0L);
+        UnsyncedArtifactLocator loc = new UnsyncedArtifactLocator(8, 5000L, 100, 60000L);
+        try {
+            List<Callable<Artifact>> probes = new ArrayList<>();
+            probes.add(probe(3000L, null));
+            probes.add(probe(3000L, null));
+            probes.add(probe(100L, null));
+            probes.add(probe(200L, expected));
+
+            long t1 = System.currentTimeMillis();
+            Artifact actual = loc.locate(uri, probes);
+            long dt = System.currentTimeMillis() - t1;
+            log.info("locate: " + dt + "ms");
+            Assert.assertNotNull(actual);
+            Assert.assertEquals(expected.getID(), actual.getID());
+            Assert.assertTrue("returned before slow probes: " + dt, dt < 2000L);
+            
+            // slow probes cancelled
+            Thread.sleep(200L);
+            Assert.assertEquals(2, numInterrupted.get());
+            Assert.assertFalse(loc.isNotFound(uri));
+        } finally {
+            loc.shutdown();
+        }
+    }
+
+    @Test
+    public void testNotFoundCache() throws Exception {
+        URI uri = URI.create("cadc:TEST/not-found.fits");
+        UnsyncedArtifactLocator loc = new UnsyncedArtifactLocator(8, 5000L, 100, 60000L);
+        try {
+            List<Callable<Artifact>> probes = new ArrayList<>();
+            probes.add(probe(100L, null));
+            probes.add(probe(200L, null));
+
+            Assert.assertNull(loc.locate(uri, probes));
+            Assert.assertEquals(2, numProbes.get());
+            Assert.assertTrue(loc.isNotFound(uri));
+
+            // cached: no probes
+            Assert.assertNull(loc.locate(uri, probes));
+            Assert.assertEquals(2, numProbes.get());
+            
+            loc.clearNotFound(uri);
+            Assert.assertFalse(loc.isNotFound(uri));
+            Assert.assertNull(loc.locate(uri, probes));
+            Assert.assertEquals(4, numProbes.get());
+        } finally {
+            loc.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeoutNotCached() throws Exception {
+        URI uri = URI.create("cadc:TEST/slow.fits");
+        UnsyncedArtifactLocator loc = new UnsyncedArtifactLocator(8, 500L, 100, 60000L);
+        try {
+            List<Callable<Artifact>> probes = new ArrayList<>();
+            probes.add(probe(100L, null));
+            probes.add(probe(3000L, null));
+
+            long t1 = System.currentTimeMillis();
+            Assert.assertNull(loc.locate(uri, probes));
+            long dt = System.currentTimeMillis() - t1;
+            Assert.assertTrue("timeout: " + dt, dt < 2000L);
+            
+            // a site did not answer: not remembered
+            Assert.assertFalse(loc.isNotFound(uri));
+        } finally {
+            loc.shutdown();
+        }
+    }
+
+    @Test
+    public void testLocateAll() throws Exception {
+        UnsyncedArtifactLocator loc = new UnsyncedArtifactLocator(32, 1000L, 100, 60000L);
+        try {
+            // many artifacts with slow sites: total time is bounded by one timeout
+            Map<URI, List<Callable<Artifact>>> probes = new LinkedHashMap<>();
+            Map<URI, Artifact> expected = new HashMap<>();
+            for (int i = 0; i < 20; i++) {
+                URI uri = URI.create("cadc:TEST/bulk-" + i + ".fits");
+                List<Callable<Artifact>> sp = new ArrayList<>();
+                if (i % 2 == 0) {
+                    Artifact a = new Artifact(uri, URI.create("md5:d41d8cd98f00b204e9800998ecf8427e"), new Date(), 0L);
+                    expected.put(uri, a);
+                    sp.add(probe(100L, a));
+                } else {
+                    sp.add(probe(100L, null));
+                }
+                sp.add(probe(3000L, null));
+                probes.put(uri, sp);
+            }
+            
+            long t1 = System.currentTimeMillis();
+            Map<URI, Artifact> actual = loc.locateAll(probes);
+            long dt = System.currentTimeMillis() - t1;
+            log.info("locateAll: " + dt + "ms");
+            Assert.assertTrue("time limit: " + dt, dt < 2000L);
+            Assert.assertEquals(expected.size(), actual.size());
+            for (Map.Entry<URI, Artifact> me : expected.entrySet()) {
+                Assert.assertEquals(me.getValue().getID(), actual.get(me.getKey()).getID());
+            }
+            
+            // slow site did not answer: not remembered
+            for (URI uri : probes.keySet()) {
+                Assert.assertFalse(loc.isNotFound(uri));
+            }
+        } finally {
+            loc.shutdown();
+        }
+    }
+
+    private Callable<Artifact> probe(long delay, Artifact ret) {
+        return () -> {
+            numProbes.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                numInterrupted.incrementAndGet();
+                return null;
+            }
+            return ret;
+        };
+    }
+}
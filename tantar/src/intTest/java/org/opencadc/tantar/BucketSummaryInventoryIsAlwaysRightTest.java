@@ -0,0 +1,133 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.tantar;
+
+import ca.nrc.cadc.net.ResourceNotFoundException;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.inventory.Artifact;
+import org.opencadc.inventory.storage.NewArtifact;
+import org.opencadc.inventory.storage.StorageMetadata;
+
+/**
+ * InventoryIsAlwaysRight integration test with the bucket summary feature enabled: the
+ * inherited test verifies that buckets with discrepancies are still validated.
+ * 
+ * @author agent
+ */
+public class BucketSummaryInventoryIsAlwaysRightTest extends InventoryIsAlwaysRightTest {
+    private static final Logger log = Logger.getLogger(BucketSummaryInventoryIsAlwaysRightTest.class);
+
+    public BucketSummaryInventoryIsAlwaysRightTest() throws Exception {
+        super(false);
+        validator.setEnableBucketSummaryFeature(true);
+    }
+    
+    private boolean exists(StorageMetadata sm) throws Exception {
+        try {
+            adapter.get(sm.getStorageLocation(), new ByteArrayOutputStream());
+            return true;
+        } catch (ResourceNotFoundException ex) {
+            return false;
+        }
+    }
+    
+    @Test
+    public void testSkipBuckets() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            StorageMetadata sm = adapter.put(new NewArtifact(URI.create("test:FOO/a" + i)), 
+                    getInputStreamOfRandomBytes(1024L), null);
+            Artifact a = new Artifact(sm.getArtifactURI(), sm.getContentChecksum(), sm.getContentLastModified(), sm.getContentLength());
+            a.storageLocation = sm.getStorageLocation();
+            artifactDAO.put(a);
+        }
+        
+        // consistent: all 16 buckets skipped
+        long num = validator.numSkippedBuckets;
+        validator.validate();
+        Assert.assertEquals("skipped", 16L, validator.numSkippedBuckets - num);
+        
+        // orphan: one bucket validated
+        StorageMetadata orphan = adapter.put(new NewArtifact(URI.create("test:FOO/orphan")), 
+                    getInputStreamOfRandomBytes(1024L), null);
+        log.info("orphan: " + orphan.getStorageLocation());
+        num = validator.numSkippedBuckets;
+        validator.validate();
+        Assert.assertEquals("skipped", 15L, validator.numSkippedBuckets - num);
+        Assert.assertFalse("orphan deleted", exists(orphan));
+        
+        num = validator.numSkippedBuckets;
+        validator.validate();
+        Assert.assertEquals("skipped", 16L, validator.numSkippedBuckets - num);
+    }
+}
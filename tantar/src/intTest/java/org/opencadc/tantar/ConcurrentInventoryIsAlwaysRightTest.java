@@ -0,0 +1,156 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.tantar;
+
+import ca.nrc.cadc.net.ResourceNotFoundException;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.Date;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.inventory.db.HarvestState;
+import org.opencadc.inventory.db.HarvestStateDAO;
+import org.opencadc.inventory.storage.NewArtifact;
+import org.opencadc.inventory.storage.StorageMetadata;
+import org.opencadc.inventory.storage.fs.OpaqueFileSystemStorageAdapter;
+
+/**
+ * InventoryIsAlwaysRight integration test with concurrent bucket validation: the
+ * inherited test verifies the same result as sequential validation.
+ * 
+ * @author agent
+ */
+public class ConcurrentInventoryIsAlwaysRightTest extends InventoryIsAlwaysRightTest {
+    private static final Logger log = Logger.getLogger(ConcurrentInventoryIsAlwaysRightTest.class);
+
+    public ConcurrentInventoryIsAlwaysRightTest() throws Exception {
+        super(false, 4);
+    }
+    
+    private StorageMetadata putOrphan(boolean inBucket, String bucket) throws Exception {
+        while (true) {
+            StorageMetadata sm = adapter.put(new NewArtifact(URI.create("test:FOO/orphan")), 
+                    getInputStreamOfRandomBytes(1024L), null);
+            if (inBucket == bucket.equals(sm.getStorageLocation().storageBucket)) {
+                return sm;
+            }
+            adapter.delete(sm.getStorageLocation());
+        }
+    }
+    
+    private boolean exists(StorageMetadata sm) throws Exception {
+        try {
+            adapter.get(sm.getStorageLocation(), new ByteArrayOutputStream());
+            return true;
+        } catch (ResourceNotFoundException ex) {
+            return false;
+        }
+    }
+    
+    @Test
+    public void testResume() throws Exception {
+        final String todo = "5";
+        StorageMetadata sm1 = putOrphan(true, todo);
+        StorageMetadata sm2 = putOrphan(false, todo);
+        log.info("orphan in todo bucket: " + sm1.getStorageLocation());
+        log.info("orphan in completed bucket: " + sm2.getStorageLocation());
+        
+        // interrupted run: all buckets except one completed
+        HarvestStateDAO hsDAO = new HarvestStateDAO(artifactDAO);
+        URI progressID = URI.create("class:" + OpaqueFileSystemStorageAdapter.class.getName());
+        HarvestState run = hsDAO.get(BucketValidator.RUN_STATE_PREFIX + "0-f", progressID);
+        run.curLastModified = new Date(System.currentTimeMillis() - 60000L);
+        hsDAO.put(run);
+        Date done = new Date();
+        for (char c : "0123456789abcdef".toCharArray()) {
+            String b = Character.toString(c);
+            if (!todo.equals(b)) {
+                HarvestState hs = hsDAO.get(BucketValidator.BUCKET_STATE_PREFIX + b, progressID);
+                hs.curLastModified = done;
+                hsDAO.put(hs);
+            }
+        }
+        Thread.sleep(10L);
+        
+        validator.validate();
+        
+        Assert.assertFalse("orphan in todo bucket deleted", exists(sm1));
+        Assert.assertTrue("orphan in completed bucket skipped", exists(sm2));
+        
+        HarvestState after = hsDAO.get(BucketValidator.RUN_STATE_PREFIX + "0-f", progressID);
+        Assert.assertNull("run complete", after.curLastModified);
+        
+        // next run starts from the beginning
+        validator.validate();
+        Assert.assertFalse("orphan in completed bucket deleted", exists(sm2));
+    }
+}
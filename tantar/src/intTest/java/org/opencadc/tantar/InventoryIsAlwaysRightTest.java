@@ -100,6 +100,10 @@ public class InventoryIsAlwaysRightTest extends TantarTest {
         super(policy, includeRecoverable);
     }
     
+    protected InventoryIsAlwaysRightTest(boolean includeRecoverable, int nthreads) throws Exception {
+        super(policy, includeRecoverable, nthreads);
+    }
+    
     @Before
     public void doCleanup() throws Exception {
         super.cleanupBefore();
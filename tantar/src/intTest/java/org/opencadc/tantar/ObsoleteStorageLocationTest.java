@@ -0,0 +1,164 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  if not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+
+package org.opencadc.tantar;
+
+import ca.nrc.cadc.io.ResourceIterator;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencadc.inventory.Artifact;
+import org.opencadc.inventory.ObsoleteStorageLocation;
+import org.opencadc.inventory.StorageLocation;
+import org.opencadc.inventory.db.ObsoleteStorageLocationDAO;
+import org.opencadc.inventory.storage.NewArtifact;
+import org.opencadc.inventory.storage.StorageMetadata;
+import org.opencadc.tantar.policy.StorageIsAlwaysRight;
+
+/**
+ * Verify that stored objects with an ObsoleteStorageLocation are removed instead
+ * of being handled by the policy.
+ * 
+ * @author agent
+ */
+public class ObsoleteStorageLocationTest extends TantarTest {
+    private static final Logger log = Logger.getLogger(ObsoleteStorageLocationTest.class);
+
+    private final ObsoleteStorageLocationDAO locDAO;
+    
+    public ObsoleteStorageLocationTest() throws Exception {
+        // StorageIsAlwaysRight would create artifacts for orphans that are not obsolete
+        super(new StorageIsAlwaysRight(), false);
+        this.locDAO = new ObsoleteStorageLocationDAO(artifactDAO);
+    }
+    
+    @Before
+    public void doCleanup() throws Exception {
+        super.cleanupBefore();
+        for (ObsoleteStorageLocation osl : locDAO.list((String) null)) {
+            locDAO.delete(osl.getID());
+        }
+    }
+    
+    @Test
+    public void testObsoleteOrphans() throws Exception {
+        // artifact + stored object
+        StorageMetadata sm1 = adapter.put(new NewArtifact(URI.create("test:FOO/a1")), getInputStreamOfRandomBytes(1024L), null);
+        Artifact a1 = new Artifact(sm1.getArtifactURI(), sm1.getContentChecksum(), sm1.getContentLastModified(), sm1.getContentLength());
+        a1.storageLocation = sm1.getStorageLocation();
+        artifactDAO.put(a1);
+        
+        // orphans: replaced or deleted artifacts
+        List<StorageLocation> obsolete = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            StorageMetadata sm = adapter.put(new NewArtifact(URI.create("test:FOO/obsolete-" + i)), 
+                    getInputStreamOfRandomBytes(1024L), null);
+            locDAO.put(new ObsoleteStorageLocation(sm.getStorageLocation()));
+            obsolete.add(sm.getStorageLocation());
+        }
+        
+        // orphan not marked obsolete
+        StorageMetadata sm2 = adapter.put(new NewArtifact(URI.create("test:FOO/a2")), getInputStreamOfRandomBytes(1024L), null);
+        
+        validator.setIncludeRecoverable(includeRecoverable);
+        validator.validate();
+        
+        List<StorageLocation> locs = new ArrayList<>();
+        Iterator<StorageMetadata> si = adapter.iterator();
+        while (si.hasNext()) {
+            StorageMetadata sm = si.next();
+            log.info("data: " + sm.getArtifactURI() + " " + sm.getStorageLocation());
+            locs.add(sm.getStorageLocation());
+        }
+        Assert.assertEquals("locs", 2, locs.size());
+        Assert.assertTrue(locs.contains(sm1.getStorageLocation()));
+        Assert.assertTrue(locs.contains(sm2.getStorageLocation()));
+        for (StorageLocation loc : obsolete) {
+            Assert.assertFalse("obsolete removed: " + loc, locs.contains(loc));
+        }
+        
+        Assert.assertTrue("obsolete cleared", locDAO.list((String) null).isEmpty());
+        
+        List<URI> refs = new ArrayList<>();
+        try (final ResourceIterator<Artifact> ai = artifactDAO.storedIterator(null)) {
+            while (ai.hasNext()) {
+                refs.add(ai.next().getURI());
+            }
+        }
+        Assert.assertEquals("refs", 2, refs.size());
+        Assert.assertTrue(refs.contains(a1.getURI()));
+        Assert.assertTrue("created for non-obsolete orphan", refs.contains(sm2.getArtifactURI()));
+    }
+}
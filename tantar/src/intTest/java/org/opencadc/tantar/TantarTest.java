@@ -75,6 +75,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -126,6 +127,10 @@ abstract class TantarTest {
     final BucketValidator validator;
     
     protected TantarTest(ResolutionPolicy policy, boolean includeRecoverable) throws Exception {
+        this(policy, includeRecoverable, 1);
+    }
+    
+    protected TantarTest(ResolutionPolicy policy, boolean includeRecoverable, int nthreads) throws Exception {
         this.adapter = new OpaqueFileSystemStorageAdapter(ROOT, 1);
         
         List<Namespace> preserve = new ArrayList<>();
@@ -144,7 +149,7 @@ abstract class TantarTest {
         daoConfig.put(SQLGenerator.class.getName(), SQLGenerator.class);
         daoConfig.put("schema", "inventory");
         
-        this.validator = new BucketValidator(daoConfig, cc, preservingAdapter, policy, "0-f", false);
+        this.validator = new BucketValidator(daoConfig, cc, preservingAdapter, policy, "0-f", false, nthreads);
         
         this.artifactDAO = new ArtifactDAO();
         artifactDAO.setConfig(daoConfig);
@@ -164,6 +169,13 @@ abstract class TantarTest {
         Iterator<Artifact> unstoredArtifacts = artifactDAO.unstoredIterator(null);
         log.debug("got an iterator back: " + storedArtifacts);
         cleanupDatabase(unstoredArtifacts);
+        
+        // validation progress from previous tests
+        String sql = "DELETE FROM inventory.HarvestState";
+        log.debug("pre-test cleanup: " + sql);
+        try (Connection con = artifactDAO.getDataSource().getConnection()) {
+            con.createStatement().execute(sql);
+        }
 
         // Clean up all test content in fsroot
         log.debug("deleting contents of test directories in: " + ROOT);
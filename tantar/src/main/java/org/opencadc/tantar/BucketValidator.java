@@ -74,13 +74,23 @@ import ca.nrc.cadc.db.DBUtil;
 import ca.nrc.cadc.db.TransactionManager;
 import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.net.ResourceNotFoundException;
+import ca.nrc.cadc.net.TransientException;
 import ca.nrc.cadc.profiler.Profiler;
 import ca.nrc.cadc.util.BucketSelector;
+import java.lang.reflect.Constructor;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
 import org.apache.log4j.Logger;
@@ -93,9 +103,12 @@ import org.opencadc.inventory.StorageLocationEvent;
 import org.opencadc.inventory.db.ArtifactDAO;
 import org.opencadc.inventory.db.DeletedArtifactEventDAO;
 import org.opencadc.inventory.db.DeletedStorageLocationEventDAO;
+import org.opencadc.inventory.db.HarvestState;
+import org.opencadc.inventory.db.HarvestStateDAO;
 import org.opencadc.inventory.db.ObsoleteStorageLocationDAO;
 import org.opencadc.inventory.db.StorageLocationEventDAO;
 import org.opencadc.inventory.db.version.InitDatabase;
+import org.opencadc.inventory.storage.BucketSummary;
 import org.opencadc.inventory.storage.StorageAdapter;
 import org.opencadc.inventory.storage.StorageEngageException;
 import org.opencadc.inventory.storage.StorageMetadata;
@@ -105,10 +118,22 @@ import org.opencadc.tantar.policy.ResolutionPolicy;
  * Main class to issue iterator requests to the Storage Adaptor and verify the contents.
  * Policies for conflicts, meaning situations where there is a discrepancy between what the Storage Adaptor relays
  * what is currently stored and what the Storage Inventory declares, are set at the properties level.
+ * 
+ * <p>Each bucket prefix is validated by a separate worker instance with its own policy instance and
+ * iterators; with more than one thread the prefixes are validated concurrently. Unless running in 
+ * report-only mode, completed prefixes are recorded (HarvestState) so that an interrupted run resumes 
+ * with the prefixes that were not completed.
+ * 
+ * <p>With the optional bucket summary feature, a summary of each bucket prefix in storage
+ * (StorageAdapter.getBucketSummary) is compared to the same summary computed from the 
+ * inventory database and the bucket prefix is skipped if they match.
  */
 public class BucketValidator implements ValidateActions {
 
     private static final Logger log = Logger.getLogger(BucketValidator.class);
+    
+    static final String RUN_STATE_PREFIX = BucketValidator.class.getSimpleName() + ".run:";
+    static final String BUCKET_STATE_PREFIX = BucketValidator.class.getSimpleName() + ".bucket:";
 
     private final List<String> bucketPrefixes = new ArrayList<>();
     private final StorageAdapter storageAdapter;
@@ -116,15 +141,26 @@ public class BucketValidator implements ValidateActions {
     private final boolean reportOnlyFlag;
     
     private boolean includeRecoverable = false;
+    private boolean enableBucketSummary = false;
+    
+    // concurrent validation: null harvestStateDAO means this instance validates its own bucketPrefixes
+    private final int nthreads;
+    private final HarvestStateDAO harvestStateDAO;
+    private final URI progressID;
+    private final String workerBucket;
 
     // Cached ArtifactDAO used for transactional access.
     private final ArtifactDAO artifactDAO;
     private final ArtifactDAO iteratorDAO;
     private final ObsoleteStorageLocationDAO obsoleteStorageLocationDAO;
     
+    // obsolete locations in the current bucket prefix, loaded once per prefix
+    private final SortedMap<StorageLocation, ObsoleteStorageLocation> obsoleteLocations = new TreeMap<>();
+    
     // occasional summary logging
     private final long summaryLogInterval = 5 * 60L; // 5 minutes
     private long lastSummary = 0L;
+    long numSkippedBuckets = 0L; // package access for intTest
     private long numValidated = 0L;
     private long numValid = 0L;
     private long numDelay = 0L;
@@ -148,9 +184,30 @@ public class BucketValidator implements ValidateActions {
      */
     public BucketValidator(Map<String, Object> daoConfig, ConnectionConfig connectionConfig, StorageAdapter adapter, 
             ResolutionPolicy validationPolicy, String bucketRange, boolean reportOnly) {
+        this(daoConfig, connectionConfig, adapter, validationPolicy, bucketRange, reportOnly, 1);
+    }
+    
+    /**
+     * Constructor.
+     * 
+     * @param daoConfig DAO config map
+     * @param connectionConfig database connection info
+     * @param adapter StorageAdapter
+     * @param validationPolicy the discrepancy resolution policy
+     * @param bucketRange raw bucket range
+     * @param reportOnly true for dry-run, false to take actions
+     * @param nthreads number of bucket prefixes to validate concurrently
+     */
+    public BucketValidator(Map<String, Object> daoConfig, ConnectionConfig connectionConfig, StorageAdapter adapter, 
+            ResolutionPolicy validationPolicy, String bucketRange, boolean reportOnly, int nthreads) {
         this.reportOnlyFlag = reportOnly;
         this.storageAdapter = adapter;
         this.validationPolicy = validationPolicy;
+        if (nthreads < 1) {
+            throw new IllegalArgumentException("invalid nthreads: " + nthreads);
+        }
+        this.nthreads = nthreads;
+        this.workerBucket = null;
         
         switch (storageAdapter.getBucketType()) {
             case NONE:
@@ -177,8 +234,16 @@ public class BucketValidator implements ValidateActions {
         
         try {
             // Register two datasources.
-            DBUtil.createJNDIDataSource("jdbc/inventory", connectionConfig);
-            DBUtil.createJNDIDataSource("jdbc/txinventory", connectionConfig);
+            if (nthreads > 1) {
+                // each worker uses one connection for the inventory iterator and one for transactions
+                DBUtil.PoolConfig pc = new DBUtil.PoolConfig(connectionConfig, nthreads, 20000L, "select 123");
+                DBUtil.createJNDIDataSource("jdbc/inventory", pc);
+                DBUtil.PoolConfig txpc = new DBUtil.PoolConfig(connectionConfig, nthreads, 20000L, "select 123");
+                DBUtil.createJNDIDataSource("jdbc/txinventory", txpc);
+            } else {
+                DBUtil.createJNDIDataSource("jdbc/inventory", connectionConfig);
+                DBUtil.createJNDIDataSource("jdbc/txinventory", connectionConfig);
+            }
         } catch (NamingException ne) {
             throw new IllegalStateException("Unable to access Inventory Database.", ne);
         }
@@ -190,6 +255,8 @@ public class BucketValidator implements ValidateActions {
         this.iteratorDAO = new ArtifactDAO();
         this.iteratorDAO.setConfig(daoConfig);
         this.obsoleteStorageLocationDAO = new ObsoleteStorageLocationDAO(this.artifactDAO);
+        this.harvestStateDAO = new HarvestStateDAO(this.artifactDAO);
+        this.progressID = URI.create("class:" + storageAdapter.getClass().getName());
         
         try {
             String database = (String) daoConfig.get("database");
@@ -211,12 +278,55 @@ public class BucketValidator implements ValidateActions {
         this.artifactDAO = null;
         this.obsoleteStorageLocationDAO = null;
         this.iteratorDAO = null;
+        this.nthreads = 1;
+        this.harvestStateDAO = null;
+        this.progressID = null;
+        this.workerBucket = null;
+    }
+    
+    // worker for a single bucket prefix: shares the storage adapter and DAOs
+    private BucketValidator(BucketValidator parent, String bucketPrefix) {
+        this.reportOnlyFlag = parent.reportOnlyFlag;
+        this.storageAdapter = parent.storageAdapter;
+        this.validationPolicy = newPolicy(parent.validationPolicy);
+        this.includeRecoverable = parent.includeRecoverable;
+        this.enableBucketSummary = parent.enableBucketSummary;
+        this.artifactDAO = parent.artifactDAO;
+        this.iteratorDAO = parent.iteratorDAO;
+        this.obsoleteStorageLocationDAO = parent.obsoleteStorageLocationDAO;
+        this.nthreads = 1;
+        this.harvestStateDAO = null;
+        this.progressID = null;
+        this.workerBucket = bucketPrefix;
+        this.bucketPrefixes.add(bucketPrefix);
+    }
+    
+    // policies keep per-validation state so each worker needs a separate instance
+    private static ResolutionPolicy newPolicy(ResolutionPolicy template) {
+        try {
+            Constructor<? extends ResolutionPolicy> c = template.getClass().getDeclaredConstructor();
+            c.setAccessible(true);
+            return c.newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new RuntimeException("BUG: failed to create " + template.getClass().getName(), ex);
+        }
     }
 
     public void setIncludeRecoverable(boolean enabled) {
         this.includeRecoverable = enabled;
     }
     
+    /**
+     * Enable comparison of bucket summaries to skip bucket prefixes where storage
+     * matches inventory. This is only used if the StorageAdapter supports bucket
+     * summaries and includeRecoverable is false.
+     * 
+     * @param enabled true to compare bucket summaries
+     */
+    public void setEnableBucketSummaryFeature(boolean enabled) {
+        this.enableBucketSummary = enabled;
+    }
+    
     /**
      * Main functionality.  This will obtain the iterators necessary to validate, and delegate to the Policy to take
      * action and/or report.
@@ -225,10 +335,14 @@ public class BucketValidator implements ValidateActions {
      */
     public void validate() throws Exception {
         log.info("BucketValidator.validate phase=start reportOnly=" + reportOnlyFlag
-            + " includeRecoverable=" + includeRecoverable);
-        validationPolicy.setValidateActions(this);
+            + " includeRecoverable=" + includeRecoverable + " bucketSummary=" + enableBucketSummary);
         try {
-            doit(validationPolicy);
+            if (harvestStateDAO == null) {
+                validationPolicy.setValidateActions(this);
+                doit(validationPolicy);
+            } else {
+                validateBuckets();
+            }
         } finally {
             logSummary(validationPolicy, true, false);
             log.info("BucketValidator.validate phase=end reportOnly=" + reportOnlyFlag
@@ -236,6 +350,185 @@ public class BucketValidator implements ValidateActions {
         }
     }
     
+    private void validateBuckets() throws Exception {
+        HarvestState run = null;
+        if (canTakeAction() && !bucketPrefixes.isEmpty()) {
+            String range = bucketPrefixes.get(0) + "-" + bucketPrefixes.get(bucketPrefixes.size() - 1);
+            run = harvestStateDAO.get(RUN_STATE_PREFIX + range, progressID);
+            if (run.curLastModified == null) {
+                run.curLastModified = new Date();
+                harvestStateDAO.put(run);
+                log.info("BucketValidator.run phase=start buckets=" + range);
+            } else {
+                log.info("BucketValidator.run phase=resume buckets=" + range + " started=" + run.curLastModified);
+            }
+        }
+        
+        List<String> todo = new ArrayList<>();
+        for (String prefix : bucketPrefixes) {
+            if (run != null && isDone(prefix, run.curLastModified)) {
+                log.info("BucketValidator.skip bucket=" + prefix + " reason=completed");
+            } else {
+                todo.add(prefix);
+            }
+        }
+        log.info("BucketValidator.buckets num=" + todo.size() + " threads=" + nthreads);
+        
+        if (nthreads == 1) {
+            for (String prefix : todo) {
+                validateBucket(prefix);
+            }
+        } else {
+            final AtomicBoolean failed = new AtomicBoolean(false);
+            ExecutorService pool = Executors.newFixedThreadPool(nthreads);
+            try {
+                List<Future<Object>> results = new ArrayList<>();
+                for (final String prefix : todo) {
+                    results.add(pool.submit(() -> {
+                        if (!failed.get()) {
+                            try {
+                                validateBucket(prefix);
+                            } catch (Exception | Error ex) {
+                                failed.set(true);
+                                throw ex;
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                Throwable fail = null;
+                for (Future<Object> f : results) {
+                    try {
+                        f.get();
+                    } catch (ExecutionException ex) {
+                        if (fail == null) {
+                            fail = ex.getCause();
+                        }
+                    }
+                }
+                if (fail instanceof Exception) {
+                    throw (Exception) fail;
+                }
+                if (fail instanceof Error) {
+                    throw (Error) fail;
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        
+        if (run != null) {
+            // complete: next run starts from the beginning
+            run.curLastModified = null;
+            harvestStateDAO.put(run);
+            log.info("BucketValidator.run phase=end");
+        }
+    }
+    
+    private void validateBucket(String bucketPrefix) throws Exception {
+        BucketValidator worker = new BucketValidator(this, bucketPrefix);
+        try {
+            if (worker.isSameBucketSummary()) {
+                worker.numSkippedBuckets++;
+            } else {
+                worker.validationPolicy.setValidateActions(worker);
+                worker.doit(worker.validationPolicy);
+            }
+        } finally {
+            worker.logSummary(worker.validationPolicy, true, false);
+            addCounts(worker);
+        }
+        if (canTakeAction()) {
+            setDone(bucketPrefix);
+        }
+    }
+    
+    private boolean isDone(String bucketPrefix, Date runStart) {
+        synchronized (harvestStateDAO) {
+            HarvestState hs = harvestStateDAO.get(BUCKET_STATE_PREFIX + bucketPrefix, progressID);
+            return hs.curLastModified != null && !hs.curLastModified.before(runStart);
+        }
+    }
+    
+    private void setDone(String bucketPrefix) {
+        synchronized (harvestStateDAO) {
+            HarvestState hs = harvestStateDAO.get(BUCKET_STATE_PREFIX + bucketPrefix, progressID);
+            hs.curLastModified = new Date();
+            harvestStateDAO.put(hs);
+        }
+    }
+    
+    private synchronized void addCounts(BucketValidator worker) {
+        numSkippedBuckets += worker.numSkippedBuckets;
+        numValidated += worker.numValidated;
+        numValid += worker.numValid;
+        numDelay += worker.numDelay;
+        numClearStorageLocation += worker.numClearStorageLocation;
+        numDeleteStorageLocation += worker.numDeleteStorageLocation;
+        numDeleteObsoleteStorageLocation += worker.numDeleteObsoleteStorageLocation;
+        numCreateArtifact += worker.numCreateArtifact;
+        numDeleteArtifact += worker.numDeleteArtifact;
+        numReplaceArtifact += worker.numReplaceArtifact;
+        numUpdateArtifact += worker.numUpdateArtifact;
+    }
+    
+    // compare summaries of storage and inventory for the worker bucket prefix: nothing to validate if they match
+    private boolean isSameBucketSummary() throws Exception {
+        if (!enableBucketSummary || includeRecoverable) {
+            return false;
+        }
+        long t1 = System.currentTimeMillis();
+        BucketSummary storageSummary;
+        try {
+            storageSummary = getStorageSummary(workerBucket);
+        } catch (UnsupportedOperationException ex) {
+            log.debug("bucket summary not supported: " + ex);
+            return false;
+        }
+        long t2 = System.currentTimeMillis();
+        BucketSummary inventorySummary = getInventorySummary(workerBucket);
+        long t3 = System.currentTimeMillis();
+        
+        boolean ret = storageSummary.equals(inventorySummary);
+        if (ret) {
+            log.info("BucketValidator.skip bucket=" + workerBucket + " reason=summary-match num=" 
+                + storageSummary.getNumObjects() + " storage=" + (t2 - t1) + "ms inventory=" + (t3 - t2) + "ms");
+        } else {
+            log.info("BucketValidator.summary bucket=" + workerBucket + " storage=" + storageSummary 
+                + " inventory=" + inventorySummary + " storage=" + (t2 - t1) + "ms inventory=" + (t3 - t2) + "ms");
+        }
+        return ret;
+    }
+    
+    /**
+     * Overrideable method to get the summary of a bucket prefix in storage.
+     * 
+     * @param bucketPrefix bucket prefix
+     * @return summary of stored objects
+     * @throws UnsupportedOperationException if the StorageAdapter does not support bucket summaries
+     */
+    BucketSummary getStorageSummary(String bucketPrefix) throws StorageEngageException, TransientException {
+        return storageAdapter.getBucketSummary(bucketPrefix);
+    }
+    
+    /**
+     * Overrideable method to compute the summary of a bucket prefix from the artifacts in 
+     * inventory with a matching storageLocation.
+     * 
+     * @param bucketPrefix bucket prefix
+     * @return summary of the artifacts expected in storage
+     */
+    BucketSummary getInventorySummary(String bucketPrefix) throws Exception {
+        BucketSummary ret = new BucketSummary(bucketPrefix);
+        try (ResourceIterator<Artifact> iter = iteratorDAO.storedIterator(bucketPrefix)) {
+            while (iter.hasNext()) {
+                Artifact a = iter.next();
+                ret.add(a.storageLocation.getStorageID(), a.getContentChecksum(), a.getContentLength());
+            }
+        }
+        return ret;
+    }
+    
     private void doit(ResolutionPolicy validationPolicy) throws Exception {
         final Profiler profiler = new Profiler(BucketValidator.class);
         
@@ -339,6 +632,12 @@ public class BucketValidator implements ValidateActions {
         
         StringBuilder sb = new StringBuilder();
         sb.append(pol.getClass().getSimpleName()).append(".summary");
+        if (workerBucket != null) {
+            sb.append(" bucket=").append(workerBucket);
+        }
+        if (numSkippedBuckets > 0) {
+            sb.append(" numSkippedBuckets=").append(numSkippedBuckets);
+        }
         if (numValidated > 0) {
             sb.append(" numValidated=").append(numValidated);
         }
@@ -668,19 +967,41 @@ public class BucketValidator implements ValidateActions {
         };
     }
 
+    /**
+     * Load the ObsoleteStorageLocation(s) in the specified bucket prefix. There are typically
+     * very few of these so they are kept in memory while the bucket is validated instead of
+     * querying once per stored object.
+     * 
+     * @param bucketPrefix storage bucket prefix
+     */
+    void loadObsoleteStorageLocations(String bucketPrefix) {
+        long t = System.currentTimeMillis();
+        obsoleteLocations.clear();
+        try {
+            for (ObsoleteStorageLocation osl : obsoleteStorageLocationDAO.list(bucketPrefix)) {
+                obsoleteLocations.put(osl.getLocation(), osl);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("query failed for ObsoleteStorageLocation in bucket " + bucketPrefix, e);
+        }
+        long dt = System.currentTimeMillis() - t;
+        log.debug("BucketValidator.loadObsoleteStorageLocations bucket=" + bucketPrefix 
+            + " num=" + obsoleteLocations.size() + " duration=" + dt);
+    }
+    
     /**
      * Check the StorageMetadata for a matching ObsoleteStorageLocation and if found
      * delete the file from storage and delete the ObsoleteStorageLocation.
      */
     boolean isObsoleteStorageLocation(StorageMetadata storageMetadata) {
+        ObsoleteStorageLocation obsoleteStorageLocation = obsoleteLocations.remove(storageMetadata.getStorageLocation());
+        if (obsoleteStorageLocation == null) {
+            return false;
+        }
         
-        // TODO: since there are typically very few ObsoleteStorageLocation sitting around: 
-        //    query for the whole list and keep in memory??
-        // otherwise, this query occurs once per stored object (many small fast queries, but still...)
-        
-        ObsoleteStorageLocation obsoleteStorageLocation;
+        // confirm: the location could have been re-used by a put since it was loaded
         try {
-            obsoleteStorageLocation = this.obsoleteStorageLocationDAO.get(storageMetadata.getStorageLocation());
+            obsoleteStorageLocation = this.obsoleteStorageLocationDAO.get(obsoleteStorageLocation.getID());
         } catch (Exception e) {
             throw new IllegalStateException(
                 String.format("query failed for ObsoleteStorageLocation %s for file %s",
@@ -735,7 +1056,9 @@ public class BucketValidator implements ValidateActions {
             this.bucketPrefixIterator = bucketPrefixes.iterator();
 
             // The bucket range should have at least one value, so calling next() should be safe here.
-            this.storageMetadataIterator = storageAdapter.iterator(bucketPrefixIterator.next(), includeRecoverable);
+            String bucketPrefix = bucketPrefixIterator.next();
+            loadObsoleteStorageLocations(bucketPrefix);
+            this.storageMetadataIterator = storageAdapter.iterator(bucketPrefix, includeRecoverable);
             advance();
         }
 
@@ -747,7 +1070,9 @@ public class BucketValidator implements ValidateActions {
                         advance();
                     }
                 } else if (this.bucketPrefixIterator.hasNext()) {
-                    this.storageMetadataIterator = storageAdapter.iterator(this.bucketPrefixIterator.next(), includeRecoverable);
+                    String bucketPrefix = this.bucketPrefixIterator.next();
+                    loadObsoleteStorageLocations(bucketPrefix);
+                    this.storageMetadataIterator = storageAdapter.iterator(bucketPrefix, includeRecoverable);
                     advance();
                 } else {
                     this.storageMetadata = null;
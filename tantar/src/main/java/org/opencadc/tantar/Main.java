@@ -105,7 +105,9 @@ public class Main {
     private static final String REPORT_ONLY_KEY = CONFIG_BASE + ".reportOnly";
     
     private static final String BUCKETS_KEY = CONFIG_BASE + ".buckets";
+    private static final String THREADS_KEY = CONFIG_BASE + ".threads";
     private static final String INCLUDE_RECOVERABLE_KEY = CONFIG_BASE + ".includeRecoverable";
+    private static final String BUCKET_SUMMARY_FEATURE_KEY = CONFIG_BASE + ".enableBucketSummaryFeature";
     private static final String RECOVERABLE_NS_KEY = CONFIG_BASE + ".recoverableNamespace";
     private static final String PURGE_NS_KEY = CONFIG_BASE + ".purgeNamespace";
 
@@ -159,12 +161,28 @@ public class Main {
             
             final String rawBucketRange = props.getFirstPropertyValue(BUCKETS_KEY);
             
+            int nthreads = 1;
+            String rawThreads = props.getFirstPropertyValue(THREADS_KEY);
+            if (StringUtil.hasText(rawThreads)) {
+                try {
+                    nthreads = Integer.parseInt(rawThreads.trim());
+                } catch (NumberFormatException ex) {
+                    throw new InvalidConfigException("invalid " + THREADS_KEY + ": " + rawThreads);
+                }
+                if (nthreads < 1) {
+                    throw new InvalidConfigException("invalid " + THREADS_KEY + ": " + rawThreads + " must be > 0");
+                }
+            }
+            
             String reportOnlyStr = props.getFirstPropertyValue(REPORT_ONLY_KEY);
             final boolean reportOnly = StringUtil.hasText(reportOnlyStr) && Boolean.parseBoolean(reportOnlyStr);
             
             String rawIncludeRecovery = props.getFirstPropertyValue(INCLUDE_RECOVERABLE_KEY);
             final boolean includeRecoverable = StringUtil.hasText(rawIncludeRecovery) && Boolean.parseBoolean(rawIncludeRecovery);
             
+            String rawBucketSummary = props.getFirstPropertyValue(BUCKET_SUMMARY_FEATURE_KEY);
+            final boolean enableBucketSummary = StringUtil.hasText(rawBucketSummary) && Boolean.parseBoolean(rawBucketSummary);
+            
             List<String> rawRecNS = props.getProperty(RECOVERABLE_NS_KEY);
             List<Namespace> recoverableNS = new ArrayList<>();
             for (String ns : rawRecNS) {
@@ -204,8 +222,10 @@ public class Main {
             log.debug("database connection: " + jdbcURL);
             ConnectionConfig cc = new ConnectionConfig(null, null, dbUsername, dbPassword, jdbcDriverClassname, jdbcURL);
             
-            BucketValidator bucketValidator = new BucketValidator(daoConfig, cc, storageAdapter, validationPolicy, rawBucketRange, reportOnly);
+            BucketValidator bucketValidator = new BucketValidator(daoConfig, cc, storageAdapter, validationPolicy, 
+                    rawBucketRange, reportOnly, nthreads);
             bucketValidator.setIncludeRecoverable(includeRecoverable);
+            bucketValidator.setEnableBucketSummaryFeature(enableBucketSummary);
             
             Subject.doAs(s, (PrivilegedExceptionAction<Object>) () -> {
                 bucketValidator.validate();